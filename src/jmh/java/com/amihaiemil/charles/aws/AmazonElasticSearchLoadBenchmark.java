@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.AmazonClientException;
+import com.amihaiemil.charles.DataExportException;
+import com.amihaiemil.charles.Link;
+import com.amihaiemil.charles.SnapshotWebPage;
+import com.amihaiemil.charles.WebPage;
+import com.amihaiemil.charles.aws.requests.Hedging;
+
+/**
+ * Load test of {@link AmazonElasticSearch} against the local
+ * {@link EsStandIn}, with injected latency and throttling. Concurrent
+ * searches and exports are sent from 8 threads (override with -t) and the
+ * latency distribution is sampled, so connection handling, retries and
+ * concurrency limits can be compared offline. Failed calls are counted
+ * in the errors counter instead of failing the run.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class AmazonElasticSearchLoadBenchmark {
+
+    /**
+     * Latency added by ES, in millis.
+     */
+    @Param({"0", "20"})
+    private long latency;
+
+    /**
+     * Ratio of the requests throttled (429) by ES.
+     */
+    @Param({"0", "0.05"})
+    private double throttling;
+
+    /**
+     * ES stand-in.
+     */
+    private EsStandIn standin;
+
+    /**
+     * Client.
+     */
+    private ElasticSearch es;
+
+    /**
+     * Pages exported by each export call.
+     */
+    private List<WebPage> pages;
+
+    /**
+     * Start the stand-in and index some pages.
+     * @throws Exception If something goes wrong.
+     */
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        this.standin = new EsStandIn().start();
+        this.es = new AmazonElasticSearch(
+            "benchmarkxrepo",
+            new AccessKeyId.Fake("access_key"),
+            new SecretKey.Fake("secret_key"),
+            new Region.Fake("eu-central-1"),
+            new EsRouting(new EsEndPoint.Fake(this.standin.endpoint())),
+            new Hedging(-1, 0),
+            new SharedIndexes(0)
+        );
+        this.pages = new ArrayList<>();
+        for(int idx = 0; idx < 50; ++idx) {
+            final WebPage page = new SnapshotWebPage();
+            page.setUrl("http://amihaiemil.com/page" + idx + ".html");
+            page.setLinks(new HashSet<Link>());
+            page.setTextContent("charles indexes github pages, page " + idx);
+            page.setName("page" + idx + ".html");
+            page.setTitle("page " + idx);
+            this.pages.add(page);
+        }
+        this.es.export(this.pages);
+        this.standin.latency(this.latency).throttling(this.throttling);
+    }
+
+    /**
+     * Stop the stand-in.
+     */
+    @TearDown(Level.Trial)
+    public void stop() {
+        this.standin.close();
+    }
+
+    /**
+     * Search.
+     * @param errors Error counter.
+     * @return Total hits.
+     */
+    @Benchmark
+    public int search(final Errors errors) {
+        int hits = -1;
+        try {
+            hits = this.es.search(
+                new SearchQuery("github", "page", 0, 10)
+            ).totalHits();
+        } catch (final AmazonClientException ex) {
+            ++errors.errors;
+        }
+        return hits;
+    }
+
+    /**
+     * Export 50 pages.
+     * @param errors Error counter.
+     */
+    @Benchmark
+    public void export(final Errors errors) {
+        try {
+            this.es.export(this.pages);
+        } catch (final AmazonClientException | DataExportException ex) {
+            ++errors.errors;
+        }
+    }
+
+    /**
+     * Failed calls, per thread.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Errors {
+
+        /**
+         * Number of failed calls.
+         */
+        public long errors;
+    }
+}
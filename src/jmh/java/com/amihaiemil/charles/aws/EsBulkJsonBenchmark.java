@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amihaiemil.charles.Link;
+import com.amihaiemil.charles.SnapshotWebPage;
+import com.amihaiemil.charles.WebPage;
+
+/**
+ * Benchmarks for {@link EsBulkJson}, at several batch and page sizes.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EsBulkJsonBenchmark {
+
+    /**
+     * Number of pages in the bulk.
+     */
+    @Param({"10", "100", "1000"})
+    private int batch;
+
+    /**
+     * Number of characters of text content, per page.
+     */
+    @Param({"1024", "16384"})
+    private int text;
+
+    /**
+     * Bulk to write.
+     */
+    private EsBulkJson bulk;
+
+    /**
+     * Prepare the pages.
+     */
+    @Setup
+    public void pages() {
+        final StringBuilder content = new StringBuilder(this.text);
+        while(content.length() < this.text) {
+            content.append("Lorem ipsum \"dolor\" sit amet, consectetur. ");
+        }
+        content.setLength(this.text);
+        final List<WebPage> pages = new ArrayList<>(this.batch);
+        for(int idx = 0; idx < this.batch; ++idx) {
+            final WebPage page = new SnapshotWebPage();
+            page.setUrl("http://amihaiemil.com/page" + idx + ".html");
+            page.setLinks(new HashSet<Link>());
+            page.setTextContent(content.toString());
+            page.setName("page" + idx + ".html");
+            page.setTitle("page " + idx + " | title");
+            pages.add(page);
+        }
+        this.bulk = new EsBulkJson("benchmark", pages);
+    }
+
+    /**
+     * The whole bulk structure, as a String.
+     * @return String.
+     * @throws IOException If something goes wrong.
+     */
+    @Benchmark
+    public String structure() throws IOException {
+        return this.bulk.structure();
+    }
+
+    /**
+     * The bulk structure, streamed to a sink.
+     * @return Number of bytes written.
+     * @throws IOException If something goes wrong.
+     */
+    @Benchmark
+    public long writeTo() throws IOException {
+        final Sink sink = new Sink();
+        this.bulk.writeTo(sink);
+        return sink.count;
+    }
+
+    /**
+     * OutputStream which only counts the bytes.
+     */
+    private static final class Sink extends OutputStream {
+
+        /**
+         * Bytes written.
+         */
+        private long count;
+
+        @Override
+        public void write(final int value) {
+            ++this.count;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int off, final int len) {
+            this.count += len;
+        }
+    }
+}
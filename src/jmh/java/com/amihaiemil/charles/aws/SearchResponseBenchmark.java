@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+
+import org.apache.http.client.methods.HttpPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.http.HttpResponse;
+import com.amihaiemil.charles.rest.model.ElasticSearchResults;
+import com.amihaiemil.charles.rest.model.SearchResult;
+import com.amihaiemil.charles.rest.model.SearchResultsPage;
+
+/**
+ * Benchmarks for {@link SearchResponseHandler} and
+ * {@link ElasticSearchResults#results()}, on responses built from
+ * the esSearchResponse.json test resource, with more or fewer hits.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchResponseBenchmark {
+
+    /**
+     * Number of hits in the response.
+     */
+    @Param({"10", "100"})
+    private int hits;
+
+    /**
+     * Response body.
+     */
+    private byte[] body;
+
+    /**
+     * Already parsed response.
+     */
+    private ElasticSearchResults parsed;
+
+    /**
+     * Build the response with the wanted number of hits.
+     * @throws IOException If the resource cannot be read.
+     */
+    @Setup
+    public void response() throws IOException {
+        final JsonObject sample;
+        try (final InputStream resource = SearchResponseBenchmark.class
+            .getResourceAsStream("/esSearchResponse.json")) {
+            sample = Json.createReader(resource).readObject();
+        }
+        final JsonArray sampleHits = sample.getJsonObject("hits")
+            .getJsonArray("hits");
+        final JsonArrayBuilder all = Json.createArrayBuilder();
+        for(int idx = 0; idx < this.hits; ++idx) {
+            all.add(sampleHits.get(idx % sampleHits.size()));
+        }
+        final JsonObjectBuilder hitsObject = Json.createObjectBuilder()
+            .add("total", this.hits * 3)
+            .add("max_score", 1.0)
+            .add("hits", all);
+        final JsonObjectBuilder response = Json.createObjectBuilder();
+        for(final Map.Entry<String, JsonValue> entry
+            : sample.entrySet()) {
+            if(!"hits".equals(entry.getKey())) {
+                response.add(entry.getKey(), entry.getValue());
+            }
+        }
+        this.body = response.add("hits", hitsObject).build().toString()
+            .getBytes(StandardCharsets.UTF_8);
+        this.parsed = new ElasticSearchResults(
+            Json.createReader(
+                new ByteArrayInputStream(this.body)
+            ).readObject()
+        );
+    }
+
+    /**
+     * Parse the HTTP response.
+     * @return SearchResultsPage.
+     */
+    @Benchmark
+    public SearchResultsPage handle() {
+        final HttpResponse response = new HttpResponse(
+            new DefaultRequest<Void>("es"), new HttpPost("http://localhost/")
+        );
+        response.setStatusCode(200);
+        response.setContent(new ByteArrayInputStream(this.body));
+        return new SearchResponseHandler().handle(response);
+    }
+
+    /**
+     * Turn the parsed response into SearchResults.
+     * @return List of SearchResult.
+     */
+    @Benchmark
+    public List<SearchResult> results() {
+        return this.parsed.results();
+    }
+
+    /**
+     * Parse the response and read the results, like a search does.
+     * @return Number of characters of the results' links.
+     */
+    @Benchmark
+    public int handleAndRead() {
+        int chars = 0;
+        for(final SearchResult result : this.handle().results()) {
+            chars += result.link().length();
+        }
+        return chars;
+    }
+}
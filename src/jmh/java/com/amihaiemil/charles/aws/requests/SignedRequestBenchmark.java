@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.util.BinaryUtils;
+import com.amihaiemil.charles.aws.AccessKeyId;
+import com.amihaiemil.charles.aws.Region;
+import com.amihaiemil.charles.aws.SecretKey;
+
+/**
+ * Benchmarks for {@link SignedRequest}: SigV4 signing of a payload, with
+ * the hash computed by the signer or taken from the x-amz-content-sha256
+ * header.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignedRequestBenchmark {
+
+    /**
+     * Size of the payload, in bytes.
+     */
+    @Param({"1024", "1048576"})
+    private int size;
+
+    /**
+     * Payload.
+     */
+    private byte[] payload;
+
+    /**
+     * Hex SHA-256 of the payload.
+     */
+    private String hash;
+
+    /**
+     * Prepare the payload.
+     * @throws NoSuchAlgorithmException If SHA-256 is not available.
+     */
+    @Setup
+    public void payload() throws NoSuchAlgorithmException {
+        final StringBuilder content = new StringBuilder(this.size);
+        while(content.length() < this.size) {
+            content.append("{\"index\":{\"_index\":\"benchmark\"}}\n");
+        }
+        content.setLength(this.size);
+        this.payload = content.toString().getBytes(StandardCharsets.UTF_8);
+        this.hash = BinaryUtils.toHex(
+            MessageDigest.getInstance("SHA-256").digest(this.payload)
+        );
+    }
+
+    /**
+     * Sign the request, hashing the payload.
+     * @return Authorization header.
+     */
+    @Benchmark
+    public String signsPayload() {
+        return this.sign(false);
+    }
+
+    /**
+     * Sign the request, with the payload's hash already computed.
+     * @return Authorization header.
+     */
+    @Benchmark
+    public String signsPrecomputedHash() {
+        return this.sign(true);
+    }
+
+    /**
+     * Sign a fake request.
+     * @param precomputed Should the hash header be set?
+     * @return Authorization header.
+     */
+    private String sign(final boolean precomputed) {
+        final AwsHttpRequest<String> fake =
+            new AwsHttpRequest.FakeAwsHttpRequest();
+        fake.request().setContent(new ByteArrayInputStream(this.payload));
+        if(precomputed) {
+            fake.request().addHeader(SignedRequest.CONTENT_SHA256, this.hash);
+        }
+        final AwsHttpRequest<String> signed = new SignedRequest<>(
+            fake,
+            new AccessKeyId.Fake("access_key"),
+            new SecretKey.Fake("secret_key"),
+            new Region.Fake("eu-central-1")
+        );
+        signed.perform();
+        return signed.request().getHeaders().get("Authorization");
+    }
+}
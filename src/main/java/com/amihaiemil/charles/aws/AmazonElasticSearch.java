@@ -27,25 +27,47 @@ package com.amihaiemil.charles.aws;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.http.HttpResponse;
 import com.amihaiemil.charles.DataExportException;
 import com.amihaiemil.charles.WebPage;
+import com.amihaiemil.charles.aws.metrics.CountingResponseHandler;
+import com.amihaiemil.charles.aws.metrics.EsMetrics;
+import com.amihaiemil.charles.aws.metrics.EsOperation;
 import com.amihaiemil.charles.aws.requests.AwsDelete;
 import com.amihaiemil.charles.aws.requests.AwsHead;
 import com.amihaiemil.charles.aws.requests.AwsHttpHeaders;
+import com.amihaiemil.charles.aws.requests.AwsHttpParams;
 import com.amihaiemil.charles.aws.requests.AwsHttpRequest;
 import com.amihaiemil.charles.aws.requests.AwsPost;
+import com.amihaiemil.charles.aws.requests.AwsPut;
+import com.amihaiemil.charles.aws.requests.ConcurrencyLimit;
 import com.amihaiemil.charles.aws.requests.EsHttpRequest;
+import com.amihaiemil.charles.aws.requests.FailoverRequest;
+import com.amihaiemil.charles.aws.requests.HedgedRequest;
+import com.amihaiemil.charles.aws.requests.Hedging;
+import com.amihaiemil.charles.aws.requests.LimitedRequest;
+import com.amihaiemil.charles.aws.requests.MeasuredRequest;
+import com.amihaiemil.charles.aws.requests.RoutedRequest;
 import com.amihaiemil.charles.aws.requests.SignedRequest;
+import com.amihaiemil.charles.aws.requests.SpilledPayload;
 import com.amihaiemil.charles.rest.model.SearchResultsPage;
 
 /**
@@ -60,6 +82,24 @@ import com.amihaiemil.charles.rest.model.SearchResultsPage;
 public final class AmazonElasticSearch implements ElasticSearch {
     private static final Logger LOG = LoggerFactory.getLogger(AmazonElasticSearch.class);    
 
+    /**
+     * Endpoints where the template of the shared indexes was put.
+     */
+    private static final Set<String> TEMPLATES = Collections.newSetFromMap(
+        new ConcurrentHashMap<String, Boolean>()
+    );
+
+    /**
+     * How many times the pages rejected by an overloaded ES are sent again.
+     */
+    private static final int BULK_RETRIES = 3;
+
+    /**
+     * Millis to wait before sending the rejected pages again, doubled
+     * after each retry.
+     */
+    private static final long BULK_BACKOFF = 200;
+
     /**
      * Name of the Es index where the pages will be exported.
      */
@@ -81,9 +121,34 @@ public final class AmazonElasticSearch implements ElasticSearch {
     private Region reg;
     
     /**
-     * ElasticSearch URL.
+     * ElasticSearch endpoints.
+     */
+    private EsRouting routing;
+
+    /**
+     * Hedging policy for the search requests.
+     */
+    private Hedging hedging;
+
+    /**
+     * Shared indexes mode.
+     */
+    private SharedIndexes shared;
+
+    /**
+     * Metrics of the requests.
+     */
+    private EsMetrics metrics;
+
+    /**
+     * Generations of the indexes, bumped when an index changes.
+     */
+    private IndexGenerations generations;
+
+    /**
+     * Timeout of a search, in millis; 0 for the SDK's defaults.
      */
-    private EsEndPoint esEdp;
+    private int timeout;
     
     /**
      * Ctor. 
@@ -95,7 +160,9 @@ public final class AmazonElasticSearch implements ElasticSearch {
             new StAccessKeyId(),
             new StSecretKey(),
             new StRegion(),
-            new StEsEndPoint()
+            EsRouting.system(),
+            Hedging.system(),
+            SharedIndexes.system()
         );
     }
     
@@ -113,75 +180,338 @@ public final class AmazonElasticSearch implements ElasticSearch {
         final SecretKey secretKey,
         final Region reg,
         final EsEndPoint es
+    ) {
+        this(
+            indexName, accesskey, secretKey, reg,
+            new EsRouting(es), Hedging.system(), SharedIndexes.system()
+        );
+    }
+
+    /**
+     * ctor.
+     * @param indexName Name of the Es index where the pages will be exported.
+     * @param accesskey Aws access key.
+     * @param secretKey Aws secret key.
+     * @param reg AWS ElasticSearch region.
+     * @param routing ElasticSearch endpoints.
+     * @param hedging Hedging policy for the search requests.
+     */
+    public AmazonElasticSearch(
+        final String indexName,
+        final AccessKeyId accesskey,
+        final SecretKey secretKey,
+        final Region reg,
+        final EsRouting routing,
+        final Hedging hedging
+    ) {
+        this(
+            indexName, accesskey, secretKey, reg,
+            routing, hedging, SharedIndexes.system()
+        );
+    }
+
+    /**
+     * ctor.
+     * @param indexName Name of the Es index where the pages will be exported.
+     *  In shared indexes mode, this is the repo the pages belong to.
+     * @param accesskey Aws access key.
+     * @param secretKey Aws secret key.
+     * @param reg AWS ElasticSearch region.
+     * @param routing ElasticSearch endpoints.
+     * @param hedging Hedging policy for the search requests.
+     * @param shared Shared indexes mode.
+     */
+    public AmazonElasticSearch(
+        final String indexName,
+        final AccessKeyId accesskey,
+        final SecretKey secretKey,
+        final Region reg,
+        final EsRouting routing,
+        final Hedging hedging,
+        final SharedIndexes shared
+    ) {
+        this(
+            indexName, accesskey, secretKey, reg,
+            routing, hedging, shared, EsMetrics.system()
+        );
+    }
+
+    /**
+     * ctor.
+     * @param indexName Name of the Es index where the pages will be exported.
+     *  In shared indexes mode, this is the repo the pages belong to.
+     * @param accesskey Aws access key.
+     * @param secretKey Aws secret key.
+     * @param reg AWS ElasticSearch region.
+     * @param routing ElasticSearch endpoints.
+     * @param hedging Hedging policy for the search requests.
+     * @param shared Shared indexes mode.
+     * @param metrics Metrics of the requests.
+     */
+    public AmazonElasticSearch(
+        final String indexName,
+        final AccessKeyId accesskey,
+        final SecretKey secretKey,
+        final Region reg,
+        final EsRouting routing,
+        final Hedging hedging,
+        final SharedIndexes shared,
+        final EsMetrics metrics
+    ) {
+        this(
+            indexName, accesskey, secretKey, reg,
+            routing, hedging, shared, metrics, 0
+        );
+    }
+
+    /**
+     * ctor.
+     * @param indexName Name of the Es index where the pages will be exported.
+     *  In shared indexes mode, this is the repo the pages belong to.
+     * @param accesskey Aws access key.
+     * @param secretKey Aws secret key.
+     * @param reg AWS ElasticSearch region.
+     * @param routing ElasticSearch endpoints.
+     * @param hedging Hedging policy for the search requests.
+     * @param shared Shared indexes mode.
+     * @param metrics Metrics of the requests.
+     * @param timeout Timeout of a search, in millis: it bounds the connect
+     *  and the socket reads, and the search is not retried, so a stuck ES
+     *  does not hold the thread after the caller gave up; 0 for the SDK's
+     *  defaults.
+     * @checkstyle ParameterNumber (15 lines)
+     */
+    public AmazonElasticSearch(
+        final String indexName,
+        final AccessKeyId accesskey,
+        final SecretKey secretKey,
+        final Region reg,
+        final EsRouting routing,
+        final Hedging hedging,
+        final SharedIndexes shared,
+        final EsMetrics metrics,
+        final int timeout
     ) {
         this.indexName = indexName;
         this.accesskey = accesskey;
         this.secretKey = secretKey;
         this.reg = reg;
-        this.esEdp = es;
+        this.routing = routing;
+        this.hedging = hedging;
+        this.shared = shared;
+        this.metrics = metrics;
+        this.generations = IndexGenerations.system();
+        this.timeout = timeout;
     }
 
     @Override
     public SearchResultsPage search(final SearchQuery query) {
+        final SearchQuery filtered;
+        if(this.shared.enabled()) {
+            filtered = query.forRepo(this.indexName);
+        } else {
+            filtered = query;
+        }
+        final byte[] body = filtered.toBytes();
+        final EsOperation operation = this.operation("search");
+        final List<EsNode> nodes = this.routing.reads();
+        AwsHttpRequest<SearchResultsPage> search =
+            this.searchRequest(nodes, body, operation);
+        if(this.hedging.enabled()) {
+            final List<EsNode> others = new ArrayList<>(nodes);
+            Collections.rotate(others, -1);
+            search = new HedgedRequest<>(
+                search,
+                this.searchRequest(others, body, operation),
+                this.hedging
+            );
+        }
+        return new MeasuredRequest<>(search, operation).perform();
+    }
+
+    /**
+     * Build a search request which fails over the given nodes.
+     * @param nodes ES nodes, in order of preference.
+     * @param body Query as bytes.
+     * @param operation Metrics of the search.
+     * @return AwsHttpRequest.
+     */
+    private AwsHttpRequest<SearchResultsPage> searchRequest(
+        final List<EsNode> nodes, final byte[] body,
+        final EsOperation operation
+    ) {
         final Map<String, String> headers = new HashMap<String, String>();
         headers.put("Content-Type", "application/json");
-        AwsHttpRequest<SearchResultsPage> search =
-            new SignedRequest<>(
-                new AwsHttpHeaders<>(
-                    new AwsPost<>(
-                        new EsHttpRequest<>(
-                            this.esEdp,
-                            this.indexName + "/_search",
-                            new SearchResponseHandler(),
-                            new SimpleAwsErrorHandler(false)
+        final List<AwsHttpRequest<SearchResultsPage>> candidates =
+            new ArrayList<>();
+        for(final EsNode node : nodes) {
+            candidates.add(
+                new RoutedRequest<>(
+                    new SignedRequest<>(
+                        new AwsHttpHeaders<>(
+                            new AwsPost<>(
+                                new AwsHttpParams<>(
+                                    new EsHttpRequest<>(
+                                        node,
+                                        this.index() + "/_search",
+                                        new CountingResponseHandler<>(
+                                            new SearchResponseHandler(),
+                                            operation
+                                        ),
+                                        new SimpleAwsErrorHandler(false),
+                                        this.searchConfig()
+                                    ),
+                                    this.params()
+                                ),
+                                new ByteArrayInputStream(body)
+                            ), headers
                         ),
-                        new ByteArrayInputStream(query.toJson().toString().getBytes())
-                    ), headers
-                ),
-                this.accesskey,
-                this.secretKey,
-                this.reg
+                        this.accesskey,
+                        this.secretKey,
+                        this.reg
+                    ),
+                    node
+                )
             );
-        return search.perform();
+        }
+        return new FailoverRequest<>(candidates);
     }
     
+    /**
+     * Send the pages to ES. Each bulk waits until its pages are searchable;
+     * the generation of the index is bumped afterwards, if any page was
+     * written.
+     * @param pages Pages.
+     * @throws DataExportException If the pages could not be exported.
+     */
     @Override
     public void export(List<WebPage> pages) throws DataExportException {
+        final EsNode primary = this.routing.primary();
+        boolean written = false;
         try {
-            String data = new EsBulkJson(this.indexName, pages).structure();
-            Map<String, String> headers = new HashMap<String, String>();
-            headers.put("Content-Type", "application/json");
-            final AwsHttpRequest<HttpResponse> index =
-                new SignedRequest<>(
-                    new AwsHttpHeaders<>(
-                        new AwsPost<>(
-                            new EsHttpRequest<>(
-                                this.esEdp,
-                                "_bulk",
-                                new SimpleAwsResponseHandler(false),
-                                new SimpleAwsErrorHandler(false)
-                            ),
-                            new ByteArrayInputStream(data.getBytes())
-                        ), headers
-                     ),
-                     this.accesskey,
-                     this.secretKey,
-                     this.reg
-                );
-                index.perform();
+            if(this.shared.enabled()) {
+                this.template(primary);
+            }
+            List<WebPage> remaining = pages;
+            for(int attempt = 1; !remaining.isEmpty(); ++attempt) {
+                try {
+                    this.bulk(primary, remaining);
+                    written = true;
+                    remaining = Collections.emptyList();
+                } catch (final EsBulkRejection ex) {
+                    written = written || ex.items().size() < remaining.size();
+                    if(attempt > BULK_RETRIES) {
+                        throw new DataExportException(
+                            ex.getErrorMessage() + ", even after "
+                            + BULK_RETRIES + " retries"
+                        );
+                    }
+                    final List<WebPage> rejected = new ArrayList<>();
+                    for(final int idx : ex.items()) {
+                        rejected.add(remaining.get(idx));
+                    }
+                    remaining = rejected;
+                    LOG.warn(ex.getErrorMessage() + ", sending them again");
+                    Thread.sleep(BULK_BACKOFF << (attempt - 1));
+                }
+            }
         } catch (IOException e) {
             LOG.error(e.getMessage(), e);
             throw new DataExportException(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataExportException("Interrupted while exporting the pages");
+        } finally {
+            if(written) {
+                this.generations.bump(this.indexName);
+            }
+        }
+    }
+
+    /**
+     * Send the pages to the _bulk API of the primary node.
+     * @param primary Primary node.
+     * @param pages Pages.
+     * @throws IOException If the bulk cannot be written.
+     * @throws EsBulkRejection If some of the pages were rejected because
+     *  ES was overloaded.
+     */
+    private void bulk(final EsNode primary, final List<WebPage> pages)
+        throws IOException {
+        final EsBulkJson bulk;
+        if(this.shared.enabled()) {
+            bulk = new EsBulkJson(this.index(), this.indexName, pages);
+        } else {
+            bulk = new EsBulkJson(this.indexName, pages);
+        }
+        try (final SpilledPayload data = new SpilledPayload()) {
+            try (final OutputStream out = data.output()) {
+                bulk.writeTo(out);
+            }
+            Map<String, String> headers = new HashMap<String, String>();
+            headers.put("Content-Type", "application/json");
+            headers.put("Content-Length", String.valueOf(data.length()));
+            headers.put(SignedRequest.CONTENT_SHA256, data.sha256());
+            final EsOperation operation = this.operation("export");
+            new MeasuredRequest<>(
+                new LimitedRequest<>(
+                    new SignedRequest<>(
+                        new AwsHttpHeaders<>(
+                            new AwsPost<>(
+                                new AwsHttpParams<>(
+                                    new EsHttpRequest<>(
+                                        primary,
+                                        "_bulk",
+                                        new CountingResponseHandler<>(
+                                            new BulkResponseHandler(),
+                                            operation
+                                        ),
+                                        new SimpleAwsErrorHandler(false)
+                                    ),
+                                    Collections.singletonMap("refresh", "wait_for")
+                                ),
+                                data.content()
+                            ), headers
+                        ),
+                        this.accesskey,
+                        this.secretKey,
+                        this.reg
+                    ),
+                    ConcurrencyLimit.of(primary.read()),
+                    data.length()
+                ),
+                operation
+            ).perform();
         }
     }
 
     @Override
     public boolean exists() {
-        final AwsHttpRequest<Boolean> head =
+        boolean exists = false;
+        try {
+            if(this.shared.enabled()) {
+                exists = this.count().perform() > 0;
+            } else {
+                exists = this.head().perform();
+            }
+        } catch (AmazonServiceException ex) {
+            if (!(ex.getStatusCode() == HttpStatus.SC_NOT_FOUND)) {
+                throw ex;
+            }
+        }
+        return exists;
+    }
+
+    /**
+     * HEAD request checking that the index exists.
+     * @return AwsHttpRequest.
+     */
+    private AwsHttpRequest<Boolean> head() {
+        return new MeasuredRequest<>(
             new SignedRequest<>(
                 new AwsHead<>(
                     new EsHttpRequest<>(
-                        this.esEdp,
+                        this.routing.primary(),
                         this.indexName,
                         new BooleanAwsResponseHandler(),
                         new SimpleAwsErrorHandler(false)
@@ -190,25 +520,49 @@ public final class AmazonElasticSearch implements ElasticSearch {
                 this.accesskey,
                 this.secretKey,
                 this.reg
-            );
-        boolean exists = false;
-        try {
-            exists = head.perform();
-        } catch (AmazonServiceException ex) {
-            if (!(ex.getStatusCode() == HttpStatus.SC_NOT_FOUND)) {
-                throw ex;
-            }
-        }
-        return exists;
+            ),
+            this.operation("exists")
+        );
     }
-    
+
+    /**
+     * Delete this index or, in shared indexes mode, all the pages of
+     * this repo (routed delete-by-query, refreshing the shard, since it
+     * cannot wait for the refresh). The generation is bumped afterwards.
+     */
     @Override
     public void delete() {
-        final AwsHttpRequest<HttpResponse> deleteIndex =
-            new SignedRequest<>(
+        final AwsHttpRequest<HttpResponse> deleteIndex;
+        if(this.shared.enabled()) {
+            final Map<String, String> headers = new HashMap<String, String>();
+            headers.put("Content-Type", "application/json");
+            deleteIndex = new SignedRequest<>(
+                new AwsHttpHeaders<>(
+                    new AwsPost<>(
+                        new AwsHttpParams<>(
+                            new EsHttpRequest<>(
+                                this.routing.primary(),
+                                this.index() + "/_delete_by_query",
+                                new SimpleAwsResponseHandler(false),
+                                new SimpleAwsErrorHandler(false)
+                            ),
+                            this.params("true")
+                        ),
+                        new ByteArrayInputStream(
+                            new RepoQuery(this.indexName).toJson()
+                                .toString().getBytes()
+                        )
+                    ), headers
+                ),
+                this.accesskey,
+                this.secretKey,
+                this.reg
+            );
+        } else {
+            deleteIndex = new SignedRequest<>(
                 new AwsDelete<>(
                     new EsHttpRequest<>(
-                        this.esEdp,
+                        this.routing.primary(),
                         this.indexName,
                         new SimpleAwsResponseHandler(false),
                         new SimpleAwsErrorHandler(false)
@@ -217,8 +571,10 @@ public final class AmazonElasticSearch implements ElasticSearch {
                 this.accesskey,
                 this.secretKey,
                 this.reg
-           );
-       deleteIndex.perform();
+            );
+        }
+        new MeasuredRequest<>(deleteIndex, this.operation("delete")).perform();
+        this.generations.bump(this.indexName);
     }
 
     @Override
@@ -226,18 +582,163 @@ public final class AmazonElasticSearch implements ElasticSearch {
         final AwsHttpRequest<HttpResponse> deleteDoc =
             new SignedRequest<>(
                 new AwsDelete<>(
-                    new EsHttpRequest<>(
-                        this.esEdp,
-                        this.indexName + "/" + type + "/" + id,
-                        new SimpleAwsResponseHandler(false),
-                        new SimpleAwsErrorHandler(false)
+                    new AwsHttpParams<>(
+                        new EsHttpRequest<>(
+                            this.routing.primary(),
+                            this.index() + "/" + type + "/" + AmazonElasticSearch.encode(id),
+                            new SimpleAwsResponseHandler(false),
+                            new SimpleAwsErrorHandler(false)
+                        ),
+                        this.params("wait_for")
                     )
                 ),
                 this.accesskey,
                 this.secretKey,
                 this.reg
            );
-           deleteDoc.perform();
+           new MeasuredRequest<>(
+               deleteDoc, this.operation("delete_doc")
+           ).perform();
+           this.generations.bump(this.indexName);
+    }
+
+    /**
+     * Configuration of the HTTP client for the searches.
+     * @return ClientConfiguration.
+     */
+    private ClientConfiguration searchConfig() {
+        final ClientConfiguration config = new ClientConfiguration();
+        if(this.timeout > 0) {
+            config.setConnectionTimeout(
+                Math.min(this.timeout, config.getConnectionTimeout())
+            );
+            config.setSocketTimeout(
+                Math.min(this.timeout, config.getSocketTimeout())
+            );
+            config.setMaxErrorRetry(0);
+        }
+        return config;
+    }
+
+    /**
+     * Put the template of the shared indexes, once per endpoint, so the
+     * repo field is a keyword in the indexes created by the bulk requests.
+     * @param primary Node where the template is put.
+     */
+    private void template(final EsNode primary) {
+        if(!TEMPLATES.contains(primary.read())) {
+            final Map<String, String> headers = new HashMap<String, String>();
+            headers.put("Content-Type", "application/json");
+            new MeasuredRequest<>(
+                new SignedRequest<>(
+                    new AwsHttpHeaders<>(
+                        new AwsPut<>(
+                            new EsHttpRequest<>(
+                                primary,
+                                "_template/" + SharedIndexes.TEMPLATE,
+                                new SimpleAwsResponseHandler(false),
+                                new SimpleAwsErrorHandler(false)
+                            ),
+                            new ByteArrayInputStream(
+                                this.shared.template().toString().getBytes()
+                            )
+                        ), headers
+                    ),
+                    this.accesskey,
+                    this.secretKey,
+                    this.reg
+                ),
+                this.metrics.of("template", SharedIndexes.TEMPLATE)
+            ).perform();
+            TEMPLATES.add(primary.read());
+        }
+    }
+
+    /**
+     * Name of the index where the pages are actually stored.
+     * @return Index name.
+     */
+    private String index() {
+        return this.shared.index(this.indexName);
+    }
+
+    /**
+     * Query parameters: the routing by repo, in shared indexes mode.
+     * @return Map of parameters.
+     */
+    private Map<String, String> params() {
+        final Map<String, String> params = new LinkedHashMap<String, String>();
+        if(this.shared.enabled()) {
+            params.put("routing", this.indexName);
+        }
+        return params;
+    }
+
+    /**
+     * Query parameters of a write: the routing by repo, in shared indexes
+     * mode, and the refresh policy.
+     * @param refresh Refresh policy (true, wait_for).
+     * @return Map of parameters.
+     */
+    private Map<String, String> params(final String refresh) {
+        final Map<String, String> params = this.params();
+        params.put("refresh", refresh);
+        return params;
+    }
+
+    /**
+     * Request counting the pages of this repo, in the shared index.
+     * @return AwsHttpRequest.
+     */
+    private AwsHttpRequest<Long> count() {
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Content-Type", "application/json");
+        return new MeasuredRequest<>(
+            new SignedRequest<>(
+                new AwsHttpHeaders<>(
+                    new AwsPost<>(
+                        new AwsHttpParams<>(
+                            new EsHttpRequest<>(
+                                this.routing.primary(),
+                                this.index() + "/_count",
+                                new CountResponseHandler(),
+                                new SimpleAwsErrorHandler(false)
+                            ),
+                            this.params()
+                        ),
+                        new ByteArrayInputStream(
+                            new RepoQuery(this.indexName).toJson()
+                                .toString().getBytes()
+                        )
+                    ), headers
+                ),
+                this.accesskey,
+                this.secretKey,
+                this.reg
+            ),
+            this.operation("exists")
+        );
+    }
+
+    /**
+     * Metrics of an operation on this index.
+     * @param name Name of the operation.
+     * @return EsOperation.
+     */
+    private EsOperation operation(final String name) {
+        return this.metrics.of(name, this.indexName);
+    }
+
+    /**
+     * URL-encode a path segment (e.g. a document id, which is the page's URL).
+     * @param segment Path segment.
+     * @return Encoded segment.
+     */
+    private static String encode(final String segment) {
+        try {
+            return URLEncoder.encode(segment, "UTF-8").replace("+", "%20");
+        } catch (final UnsupportedEncodingException ex) {
+            throw new IllegalStateException("UTF-8 is not supported", ex);
+        }
     }
-    
 }
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.HttpResponseHandler;
+
+/**
+ * Response handler of the _bulk API. ES answers 200 even if some of the
+ * items failed, so the <b>errors</b> flag and the status of each item are
+ * read: the items rejected because ES was overloaded (429,
+ * es_rejected_execution_exception) are thrown as an {@link EsBulkRejection},
+ * to be sent again; the other failed items are only logged.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class BulkResponseHandler implements HttpResponseHandler<JsonObject> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkResponseHandler.class);
+
+    @Override
+    public JsonObject handle(final HttpResponse response) {
+        final int status = response.getStatusCode();
+        if(status < 200 || status >= 300) {
+            final AmazonServiceException ase = new AmazonServiceException(
+                "Unexpected status: " + status
+            );
+            ase.setStatusCode(status);
+            throw ase;
+        }
+        final JsonObject bulk = Json.createReader(response.getContent()).readObject();
+        if(bulk.getBoolean("errors", false)) {
+            final List<Integer> rejected = new ArrayList<>();
+            int failed = 0;
+            String reason = "";
+            final JsonArray items = bulk.getJsonArray("items");
+            for(int idx = 0; idx < items.size(); ++idx) {
+                final JsonObject item = BulkResponseHandler.item(items.getJsonObject(idx));
+                final int code = item.getInt("status", 200);
+                if(code == 429) {
+                    rejected.add(idx);
+                } else if(code < 200 || code >= 300) {
+                    ++failed;
+                    final JsonValue error = item.get("error");
+                    if(error != null) {
+                        reason = error.toString();
+                    }
+                }
+            }
+            if(failed > 0) {
+                LOG.error(failed + " of " + items.size() + " pages could not be indexed, e.g. " + reason);
+            }
+            if(!rejected.isEmpty()) {
+                throw new EsBulkRejection(rejected, items.size());
+            }
+        }
+        return bulk;
+    }
+
+    @Override
+    public boolean needsConnectionLeftOpen() {
+        return false;
+    }
+
+    /**
+     * The result of a bulk item, under its action (index, delete etc.).
+     * @param item Item.
+     * @return JsonObject.
+     */
+    private static JsonObject item(final JsonObject item) {
+        return item.getJsonObject(item.keySet().iterator().next());
+    }
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2016-2019, Mihai Emil Andronache
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
  * All rights reserved.
  * Redistribution and use in source and binary forms, with or without
  * modification, are permitted provided that the following conditions are met:
@@ -23,28 +23,32 @@
  * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
  * POSSIBILITY OF SUCH DAMAGE.
  */
-package com.amihaiemil.charles.rest;
-
-import com.amihaiemil.charles.github.Action;
-
-import javax.ejb.Asynchronous;
-import javax.ejb.Stateless;
+package com.amihaiemil.charles.aws;
 
 /**
- * Async EJB that takes care of the received notifications (takes actions about them).
+ * {@link EsEndPoint} with a given URL, for the nodes listed in
+ * <b>aws.es.endpoints</b>.
  * @author Mihai Andronache (amihaiemil@gmail.com)
  * @version $Id$
- * @since 1.2.2
+ * @since 1.2.3
  */
-@Stateless
-public class ActionHandler {
+public final class ConstEsEndPoint implements EsEndPoint {
 
     /**
-     * Take an action.
-     * @param action Given action.
+     * Endpoint's URL.
      */
-    @Asynchronous
-    public void take(Action action) {
-        action.perform();
+    private final String url;
+
+    /**
+     * Ctor.
+     * @param url Endpoint's URL.
+     */
+    public ConstEsEndPoint(final String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String read() {
+        return this.url;
     }
 }
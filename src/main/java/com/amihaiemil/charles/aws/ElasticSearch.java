@@ -54,7 +54,7 @@ public interface ElasticSearch extends Repository {
     boolean exists();
     
     /**
-     * Delete this intex.
+     * Delete this intex (or all the repo's documents, if the index is shared).
      */
     void delete();
 
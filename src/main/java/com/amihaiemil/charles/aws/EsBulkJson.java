@@ -26,10 +26,19 @@
 
 package com.amihaiemil.charles.aws;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import javax.json.Json;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
 import com.amihaiemil.charles.JsonWebPage;
 import com.amihaiemil.charles.WebPage;
 
@@ -52,17 +61,35 @@ public class EsBulkJson {
      */
     private String index;
 
+    /**
+     * Repository the pages belong to, used as routing and as the repo
+     * field of each page, when the index is shared; null otherwise.
+     */
+    private String repo;
+
     /**
      * Ctor.
      * @param index Index where the pages will be stored.
      * @param pages Given web pages.
      */
     public EsBulkJson(String index, List<WebPage> pages) {
+        this(index, null, pages);
+    }
+
+    /**
+     * Ctor.
+     * @param index Shared index where the pages will be stored.
+     * @param repo Repository the pages belong to; null if the index is
+     *  not shared.
+     * @param pages Given web pages.
+     */
+    public EsBulkJson(String index, String repo, List<WebPage> pages) {
         if(pages == null || pages.isEmpty()) {
             throw new IllegalArgumentException("There must be at least 1 page!");
         }
         this.pages = pages;
         this.index = index;
+        this.repo = repo;
     }
 
     /**
@@ -71,21 +98,52 @@ public class EsBulkJson {
      * @throws IOException If something goes wrong while parsing.
      */
     public String structure() throws IOException {
-        StringBuilder sb = new StringBuilder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.writeTo(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the json structure for bulk indexing to the given stream,
+     * page by page, without building it all in memory.
+     * @param out Where to write the structure (UTF-8).
+     * @throws IOException If something goes wrong while parsing or writing.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(out, StandardCharsets.UTF_8)
+        );
         for(WebPage page : pages) {
             JsonObject doc = this.preparePage(page);
             String id = doc.getString("id", "");
+            String routing = "";
+            if(this.repo != null) {
+                routing = ", \"_routing\":" + EsBulkJson.quoted(this.repo);
+            }
             String action_and_meta_data;
             if(id.isEmpty()) {
-                action_and_meta_data = "{\"index\":{\"_index\":\"" + this.index + "\", \"_type\":\"page\"}}";
+                action_and_meta_data = "{\"index\":{\"_index\":\"" + this.index + "\", \"_type\":\"page\""
+                                        + routing + "}}";
             } else {
                 action_and_meta_data = "{\"index\":{\"_index\":\"" + this.index + "\", \"_type\":\"page\", "
-                                        + "\"_id\":\"" + id + "\"}}";
+                                        + "\"_id\":\"" + id + "\"" + routing + "}}";
             }
-            sb = sb.append(action_and_meta_data).append("\n");
-            sb = sb.append(doc.getJsonObject("page").toString()).append("\n");
+            writer.write(action_and_meta_data);
+            writer.write("\n");
+            writer.write(doc.getJsonObject("page").toString());
+            writer.write("\n");
         }
-        return sb.toString();
+        writer.flush();
+    }
+
+    /**
+     * A String as a JSON string literal, quoted and escaped.
+     * @param value String.
+     * @return JSON string.
+     */
+    private static String quoted(String value) {
+        String array = Json.createArrayBuilder().add(value).build().toString();
+        return array.substring(1, array.length() - 1);
     }
 
     /**
@@ -97,6 +155,13 @@ public class EsBulkJson {
     private JsonObject preparePage(WebPage page) throws IOException {
         JsonWebPage jsonPage = new JsonWebPage(page);
         JsonObject parsed = jsonPage.toJsonObject();
+        if(this.repo != null) {
+            JsonObjectBuilder withRepo = Json.createObjectBuilder();
+            for(Map.Entry<String, JsonValue> field : parsed.entrySet()) {
+                withRepo.add(field.getKey(), field.getValue());
+            }
+            parsed = withRepo.add("repo", this.repo).build();
+        }
         return Json.createObjectBuilder()
             .add("id", page.getUrl())
             .add("category", "page")
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.AmazonServiceException;
+
+/**
+ * Some items of a bulk request were rejected by ES because it was
+ * overloaded (429, es_rejected_execution_exception). They were not
+ * indexed and should be sent again, after backing off.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class EsBulkRejection extends AmazonServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Positions of the rejected items in the bulk.
+     */
+    private final List<Integer> items;
+
+    /**
+     * Ctor.
+     * @param items Positions of the rejected items in the bulk.
+     * @param total Number of items in the bulk.
+     */
+    public EsBulkRejection(final List<Integer> items, final int total) {
+        super(items.size() + " of " + total + " bulk items were rejected");
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.setStatusCode(429);
+        this.setErrorCode("es_rejected_execution_exception");
+    }
+
+    /**
+     * Positions of the rejected items in the bulk.
+     * @return List of Integer.
+     */
+    public List<Integer> items() {
+        return this.items;
+    }
+}
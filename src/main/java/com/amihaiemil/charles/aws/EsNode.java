@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+/**
+ * One ElasticSearch endpoint out of more, which remembers how fast it
+ * answered recently (exponentially weighted moving average of the latency)
+ * and whether it failed. A failed endpoint is considered unavailable for
+ * a while, then it is given another chance.<br><br>
+ * The average is only as fresh as the latest request, so while no requests
+ * go to the endpoint it decays (halved every 10 seconds, by default): an
+ * endpoint which was slow once is tried again after a while, instead of
+ * being avoided forever.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class EsNode implements EsEndPoint {
+
+    /**
+     * Weight of the newest latency in the average.
+     */
+    private static final double ALPHA = 0.3;
+
+    /**
+     * For how long (millis) is a failed node avoided.
+     */
+    private static final long COOLDOWN = 30000;
+
+    /**
+     * Default half-life (millis) of the average, while not refreshed.
+     */
+    private static final long HALF_LIFE = 10000;
+
+    /**
+     * Endpoint.
+     */
+    private final EsEndPoint origin;
+
+    /**
+     * Can we write to this node or is it a read replica?
+     */
+    private final boolean writable;
+
+    /**
+     * Half-life of the average in millis, while not refreshed.
+     */
+    private final long halfLife;
+
+    /**
+     * Average latency in millis; negative if unknown.
+     */
+    private double average;
+
+    /**
+     * Time until which this node is unavailable.
+     */
+    private long downUntil;
+
+    /**
+     * Time of the latest latency sample.
+     */
+    private long sampled;
+
+    /**
+     * Ctor.
+     * @param url Endpoint's URL.
+     * @param writable Can we write to this endpoint?
+     */
+    public EsNode(final String url, final boolean writable) {
+        this(new ConstEsEndPoint(url), writable);
+    }
+
+    /**
+     * Ctor.
+     * @param origin Endpoint.
+     * @param writable Can we write to this endpoint?
+     */
+    public EsNode(final EsEndPoint origin, final boolean writable) {
+        this(origin, writable, HALF_LIFE);
+    }
+
+    /**
+     * Ctor.
+     * @param origin Endpoint.
+     * @param writable Can we write to this endpoint?
+     * @param halfLife Half-life of the average latency in millis, while
+     *  no requests go to this endpoint.
+     */
+    public EsNode(
+        final EsEndPoint origin, final boolean writable, final long halfLife
+    ) {
+        this.origin = origin;
+        this.writable = writable;
+        this.halfLife = halfLife;
+        this.average = -1;
+        this.downUntil = 0;
+        this.sampled = 0;
+    }
+
+    @Override
+    public String read() {
+        return this.origin.read();
+    }
+
+    /**
+     * Can we write to this endpoint?
+     * @return True or false.
+     */
+    public boolean writable() {
+        return this.writable;
+    }
+
+    /**
+     * Average latency, decayed since the latest request.
+     * @return Latency in millis, 0 if unknown.
+     */
+    public synchronized double latency() {
+        final double latency;
+        if(this.average < 0) {
+            latency = 0;
+        } else {
+            final long idle = System.currentTimeMillis() - this.sampled;
+            latency = this.average * Math.pow(0.5, (double) idle / this.halfLife);
+        }
+        return latency;
+    }
+
+    /**
+     * Is this node available (it did not fail recently)?
+     * @return True or false.
+     */
+    public synchronized boolean available() {
+        return System.currentTimeMillis() >= this.downUntil;
+    }
+
+    /**
+     * A request to this node succeeded.
+     * @param millis Latency of the request.
+     */
+    public synchronized void succeeded(final long millis) {
+        if(this.average < 0) {
+            this.average = millis;
+        } else {
+            this.average += ALPHA * (millis - this.average);
+        }
+        this.sampled = System.currentTimeMillis();
+        this.downUntil = 0;
+    }
+
+    /**
+     * A request to this node failed.
+     */
+    public synchronized void failed() {
+        this.downUntil = System.currentTimeMillis() + COOLDOWN;
+    }
+}
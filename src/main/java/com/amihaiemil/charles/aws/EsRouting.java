@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Routing of the requests between more ElasticSearch endpoints.
+ * Writes go to the primary (first writable) endpoint, reads go to the
+ * available endpoint with the best recent latency, with the others as
+ * fallbacks. The latency of an endpoint which gets no reads decays, so
+ * a slower one is tried again from time to time.<br><br>
+ * The endpoints are read from the system property <b>aws.es.endpoints</b>,
+ * which is a comma-separated list of <b>role:url</b> pairs, where role is
+ * <b>write</b> or <b>read</b> (e.g.
+ * <code>write:https://primary.es.amazonaws.com,read:https://replica.es.amazonaws.com</code>).
+ * If it is missing, the single endpoint from <b>aws.es.endpoint</b> is used.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class EsRouting {
+
+    /**
+     * Actual name of the sys prop listing the ES endpoints.
+     */
+    public static final String NAME = "aws.es.endpoints";
+
+    /**
+     * Routing specified in the system properties.
+     */
+    private static final EsRouting SYSTEM = EsRouting.parse(
+        System.getProperty(NAME)
+    );
+
+    /**
+     * All the endpoints.
+     */
+    private final List<EsNode> nodes;
+
+    /**
+     * Ctor.
+     * @param single The only ES endpoint.
+     */
+    public EsRouting(final EsEndPoint single) {
+        this(Arrays.asList(new EsNode(single, true)));
+    }
+
+    /**
+     * Ctor.
+     * @param nodes ES endpoints.
+     */
+    public EsRouting(final List<EsNode> nodes) {
+        EsNode primary = null;
+        for(final EsNode node : nodes) {
+            if(node.writable()) {
+                primary = node;
+                break;
+            }
+        }
+        if(primary == null) {
+            throw new IllegalArgumentException(
+                "At least one ElasticSearch endpoint has to be writable!"
+            );
+        }
+        this.nodes = new ArrayList<>(nodes);
+    }
+
+    /**
+     * Routing specified in the system properties.
+     * @return EsRouting.
+     */
+    public static EsRouting system() {
+        return SYSTEM;
+    }
+
+    /**
+     * The primary endpoint, where the writes go.
+     * @return EsNode.
+     */
+    public EsNode primary() {
+        for(final EsNode node : this.nodes) {
+            if(node.writable()) {
+                return node;
+            }
+        }
+        throw new IllegalStateException("No writable ElasticSearch endpoint!");
+    }
+
+    /**
+     * Endpoints to read from, in order of preference: available ones
+     * sorted by latency first, then the ones which failed recently.
+     * @return List of EsNode.
+     */
+    public List<EsNode> reads() {
+        final List<EsNode> available = new ArrayList<>();
+        final List<EsNode> down = new ArrayList<>();
+        for(final EsNode node : this.nodes) {
+            if(node.available()) {
+                available.add(node);
+            } else {
+                down.add(node);
+            }
+        }
+        Collections.sort(
+            available,
+            new Comparator<EsNode>() {
+                @Override
+                public int compare(final EsNode first, final EsNode second) {
+                    return Double.compare(first.latency(), second.latency());
+                }
+            }
+        );
+        available.addAll(down);
+        return available;
+    }
+
+    /**
+     * Parse the endpoints specification.
+     * @param spec Comma-separated role:url pairs; may be null.
+     * @return EsRouting.
+     */
+    static EsRouting parse(final String spec) {
+        if(spec == null || spec.trim().isEmpty()) {
+            return new EsRouting(new StEsEndPoint());
+        }
+        final List<EsNode> nodes = new ArrayList<>();
+        for(final String endpoint : spec.split(",")) {
+            final String trimmed = endpoint.trim();
+            final int colon = trimmed.indexOf(':');
+            if(colon < 0) {
+                throw new IllegalArgumentException(
+                    "Expected role:url, but got " + trimmed + " in " + NAME
+                );
+            }
+            final String role = trimmed.substring(0, colon);
+            final String url = trimmed.substring(colon + 1);
+            if("write".equalsIgnoreCase(role)) {
+                nodes.add(new EsNode(url, true));
+            } else if("read".equalsIgnoreCase(role)) {
+                nodes.add(new EsNode(url, false));
+            } else {
+                throw new IllegalArgumentException(
+                    "Unknown role " + role + " in " + NAME
+                    + ". It should be either write or read."
+                );
+            }
+        }
+        return new EsRouting(nodes);
+    }
+}
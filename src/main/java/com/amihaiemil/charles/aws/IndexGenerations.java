@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generations of the indexes: the generation of an index is bumped every
+ * time its content changes (export or delete), once the change is visible
+ * to the searches, so anything derived from its content (e.g. the ETag of
+ * a search) can tell if it is stale.<br><br>
+ * Generations are kept in memory, so they start over after a restart;
+ * the epoch tells them apart.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class IndexGenerations {
+
+    /**
+     * Generations of this application.
+     */
+    private static final IndexGenerations SYSTEM = new IndexGenerations();
+
+    /**
+     * Random epoch of these generations.
+     */
+    private final String epoch;
+
+    /**
+     * Generations, by index.
+     */
+    private final ConcurrentMap<String, AtomicLong> generations =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Ctor.
+     */
+    public IndexGenerations() {
+        this(Long.toHexString(new SecureRandom().nextLong()));
+    }
+
+    /**
+     * Ctor.
+     * @param epoch Epoch of these generations.
+     */
+    public IndexGenerations(final String epoch) {
+        this.epoch = epoch;
+    }
+
+    /**
+     * Generations of this application.
+     * @return IndexGenerations.
+     */
+    public static IndexGenerations system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Epoch of these generations.
+     * @return String.
+     */
+    public String epoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Current generation of the index.
+     * @param index Index.
+     * @return Generation, 0 if the index never changed.
+     */
+    public long current(final String index) {
+        final AtomicLong generation = this.generations.get(index);
+        if(generation == null) {
+            return 0;
+        }
+        return generation.get();
+    }
+
+    /**
+     * The content of the index changed.
+     * @param index Index.
+     */
+    public void bump(final String index) {
+        AtomicLong generation = this.generations.get(index);
+        if(generation == null) {
+            this.generations.putIfAbsent(index, new AtomicLong());
+            generation = this.generations.get(index);
+        }
+        generation.incrementAndGet();
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The most popular search queries of each index, counted with a
+ * {@link SpaceSaving} sketch, so the memory is bounded no matter how
+ * many distinct queries come in. Only the indexes used most recently are
+ * tracked, so the memory is bounded in the number of indexes too. The
+ * popular queries can be saved to and loaded from a file, so they survive
+ * restarts.<br><br>
+ * The default instance is configured by the system properties
+ * <b>aws.es.warmup.queries</b> (how many top queries of each index
+ * are replayed on warm-up; disabled if missing or 0) and
+ * <b>aws.es.warmup.indexes</b> (how many indexes are tracked, default
+ * 1000). The file is
+ * <b>${LOG_ROOT}/charles-rest/PopularQueries.txt</b>, if LOG_ROOT is set.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class PopularQueries {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PopularQueries.class);
+
+    /**
+     * Popular queries configured by the system properties.
+     */
+    private static final PopularQueries SYSTEM = new PopularQueries(
+        Integer.valueOf(
+            System.getProperty("aws.es.warmup.queries", "0").trim()
+        ),
+        Integer.valueOf(
+            System.getProperty("aws.es.warmup.indexes", "1000").trim()
+        ),
+        System.getProperty("LOG_ROOT") == null ? null : new File(
+            System.getProperty("LOG_ROOT")
+            + "/charles-rest/PopularQueries.txt"
+        )
+    );
+
+    /**
+     * Keys counted by each sketch, for each top query.
+     */
+    private static final int SKETCH_FACTOR = 4;
+
+    /**
+     * How many top queries are wanted.
+     */
+    private final int top;
+
+    /**
+     * File where the queries are saved; may be null.
+     */
+    private final File file;
+
+    /**
+     * Sketches, by index, the least recently used first.
+     * Guarded by itself.
+     */
+    private final Map<String, SpaceSaving> sketches;
+
+    /**
+     * Ctor.
+     * @param top How many top queries are wanted; 0 to disable.
+     */
+    public PopularQueries(final int top) {
+        this(top, null);
+    }
+
+    /**
+     * Ctor.
+     * @param top How many top queries are wanted; 0 to disable.
+     * @param file File where the queries are saved; may be null.
+     */
+    public PopularQueries(final int top, final File file) {
+        this(top, 1000, file);
+    }
+
+    /**
+     * Ctor.
+     * @param top How many top queries are wanted; 0 to disable.
+     * @param indexes How many indexes are tracked; the least recently
+     *  used one is forgotten when a new one comes.
+     * @param file File where the queries are saved; may be null.
+     */
+    public PopularQueries(final int top, final int indexes, final File file) {
+        if(top < 0) {
+            throw new IllegalArgumentException(
+                "The number of top queries cannot be negative!"
+            );
+        }
+        if(indexes < 1) {
+            throw new IllegalArgumentException(
+                "At least one index must be tracked!"
+            );
+        }
+        this.top = top;
+        this.file = file;
+        this.sketches = new LinkedHashMap<String, SpaceSaving>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(
+                final Map.Entry<String, SpaceSaving> eldest
+            ) {
+                return this.size() > indexes;
+            }
+        };
+    }
+
+    /**
+     * Popular queries configured by the system properties.
+     * @return PopularQueries.
+     */
+    public static PopularQueries system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Are the popular queries tracked?
+     * @return True or false.
+     */
+    public boolean enabled() {
+        return this.top > 0;
+    }
+
+    /**
+     * A query was made on the index.
+     * @param index Index.
+     * @param query Query.
+     */
+    public void add(final String index, final SearchQuery query) {
+        if(this.enabled()) {
+            this.sketch(index).add(query.canonical());
+        }
+    }
+
+    /**
+     * The most popular queries of the index. Queries which cannot be
+     * parsed are skipped.
+     * @param index Index.
+     * @return Queries, the most popular first.
+     */
+    public List<SearchQuery> top(final String index) {
+        final List<SearchQuery> queries = new ArrayList<>();
+        final SpaceSaving sketch;
+        synchronized (this.sketches) {
+            sketch = this.sketches.get(index);
+        }
+        if(sketch != null) {
+            for(final String canonical : sketch.top(this.top)) {
+                try {
+                    queries.add(SearchQuery.parse(canonical));
+                } catch (final IllegalArgumentException ex) {
+                    LOG.warn("Skipping popular query of " + index + ": " + ex.getMessage());
+                }
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Indexes which have popular queries.
+     * @return Index names.
+     */
+    public Set<String> indexes() {
+        synchronized (this.sketches) {
+            return new HashSet<>(this.sketches.keySet());
+        }
+    }
+
+    /**
+     * Save the top queries of each index to the file, one per line:
+     * index, count and canonical query, separated by tabs.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save() throws IOException {
+        if(this.enabled() && this.file != null) {
+            final File dir = this.file.getParentFile();
+            if(dir != null) {
+                dir.mkdirs();
+            }
+            try (
+                final Writer out = new OutputStreamWriter(
+                    new FileOutputStream(this.file), StandardCharsets.UTF_8
+                )
+            ) {
+                final Map<String, SpaceSaving> copy;
+                synchronized (this.sketches) {
+                    copy = new LinkedHashMap<>(this.sketches);
+                }
+                for(final Map.Entry<String, SpaceSaving> entry : copy.entrySet()) {
+                    final String index = entry.getKey();
+                    final SpaceSaving sketch = entry.getValue();
+                    for(final String canonical : sketch.top(this.top)) {
+                        out.write(
+                            index + '\t' + sketch.count(canonical)
+                            + '\t' + canonical + '\n'
+                        );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Load the queries saved in the file, if it exists.
+     * Lines which cannot be read are skipped.
+     * @throws IOException If the file cannot be read.
+     */
+    public void load() throws IOException {
+        if(this.enabled() && this.file != null && this.file.exists()) {
+            try (
+                final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(
+                        new FileInputStream(this.file), StandardCharsets.UTF_8
+                    )
+                )
+            ) {
+                String line = in.readLine();
+                while(line != null) {
+                    final String[] parts = line.split("\t", 3);
+                    if(parts.length == 3) {
+                        try {
+                            this.sketch(parts[0]).add(
+                                SearchQuery.parse(parts[2]).canonical(),
+                                Long.parseLong(parts[1])
+                            );
+                        } catch (final IllegalArgumentException ex) {
+                            //corrupt line, skip it
+                        }
+                    }
+                    line = in.readLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sketch of an index, created if missing.
+     * @param index Index.
+     * @return SpaceSaving.
+     */
+    private SpaceSaving sketch(final String index) {
+        synchronized (this.sketches) {
+            SpaceSaving sketch = this.sketches.get(index);
+            if(sketch == null) {
+                sketch = new SpaceSaving(this.top * SKETCH_FACTOR);
+                this.sketches.put(index, sketch);
+            }
+            return sketch;
+        }
+    }
+}
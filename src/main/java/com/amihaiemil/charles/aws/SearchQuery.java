@@ -25,8 +25,13 @@
  */
 package com.amihaiemil.charles.aws;
 
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import javax.json.Json;
 import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 
 /**
@@ -38,6 +43,15 @@ import javax.json.JsonObject;
  */
 public final class SearchQuery {
 
+    /**
+     * Pattern of the canonical form. The category may also be unquoted,
+     * as it was in the queries saved by older versions.
+     */
+    private static final Pattern CANONICAL = Pattern.compile(
+        "ctg=(?:\"((?:[^\"\\\\]|\\\\.)*)\"|(\\S*)) "
+        + "kw=\"((?:[^\"\\\\]|\\\\.)*)\" from=(\\d+) size=(\\d+)"
+    );
+
     /**
      * Query the content field.
      */
@@ -57,6 +71,12 @@ public final class SearchQuery {
      * Show nr of results on a page.
      */
     private int nr;
+
+    /**
+     * Only show results from this repository (in a shared index);
+     * null or empty for no filter.
+     */
+    private String repo;
     
     /**
      * Default ctor.
@@ -72,10 +92,36 @@ public final class SearchQuery {
      * @param nr Number of results per page.
      */
     public SearchQuery(String content, String category, int index, int nr) {
+        this(content, category, index, nr, null);
+    }
+
+    /**
+     * Ctor.
+     * @param content Keywords.
+     * @param category Category.
+     * @param index Index to start at.
+     * @param nr Number of results per page.
+     * @param repo Only show results from this repository (shared index).
+     */
+    public SearchQuery(
+        String content, String category, int index, int nr, String repo
+    ) {
         this.content = content;
         this.category = category;
         this.index = index;
         this.nr = nr;
+        this.repo = repo;
+    }
+
+    /**
+     * This query, limited to the pages of the given repository.
+     * @param repository Repository (e.g. ownerxrepo).
+     * @return SearchQuery.
+     */
+    public SearchQuery forRepo(String repository) {
+        return new SearchQuery(
+            this.content, this.category, this.index, this.nr, repository
+        );
     }
 
     /**
@@ -126,7 +172,15 @@ public final class SearchQuery {
                 "type",
                 Json.createObjectBuilder().add("value", this.category)    
             ).build();
-        JsonArray filter = Json.createArrayBuilder().add(matcher).add(type).build();
+        JsonArrayBuilder filters = Json.createArrayBuilder().add(matcher).add(type);
+        if(this.repo != null && !this.repo.isEmpty()) {
+            filters.add(
+                Json.createObjectBuilder().add(
+                    "term", Json.createObjectBuilder().add("repo", this.repo)
+                )
+            );
+        }
+        JsonArray filter = filters.build();
         JsonObject bool = Json.createObjectBuilder().add(
             "bool", Json.createObjectBuilder().add("filter", filter).build()
         ).build();
@@ -152,5 +206,84 @@ public final class SearchQuery {
             .build();
         return query;
     }
-    
+
+    /**
+     * This query in JSON format, as UTF-8 bytes, ready to be sent.
+     * Same content as {@link #toJson()}, but rendered from a pre-compiled
+     * template, without building the intermediary JsonObjects.
+     * @return Bytes.
+     */
+    public byte[] toBytes() {
+        return SearchTemplate.render(
+            this.content, this.category, this.index, this.nr, this.repo
+        );
+    }
+
+    /**
+     * Canonical form of this query, the same for queries which are
+     * equivalent for ElasticSearch (keywords differing only in case or
+     * whitespace), e.g. <code>ctg="page" kw="some words" from=0 size=10</code>.
+     * @return String.
+     */
+    public String canonical() {
+        final String keywords = this.content.trim()
+            .replaceAll("\\s+", " ")
+            .toLowerCase(Locale.ENGLISH);
+        return "ctg=" + SearchQuery.quoted(this.category)
+            + " kw=" + SearchQuery.quoted(keywords)
+            + " from=" + this.index + " size=" + this.nr;
+    }
+
+    /**
+     * Parse a query from its canonical form.
+     * @param canonical Canonical form, as returned by {@link #canonical()}.
+     * @return SearchQuery.
+     * @throws IllegalArgumentException If the text is not a canonical query.
+     */
+    public static SearchQuery parse(final String canonical) {
+        final Matcher matcher = CANONICAL.matcher(canonical);
+        if(!matcher.matches()) {
+            throw new IllegalArgumentException(
+                "Not a canonical query: " + canonical
+            );
+        }
+        final String category;
+        if(matcher.group(1) == null) {
+            category = matcher.group(2);
+        } else {
+            category = SearchQuery.unquoted(matcher.group(1));
+        }
+        return new SearchQuery(
+            SearchQuery.unquoted(matcher.group(3)), category,
+            Integer.parseInt(matcher.group(4)),
+            Integer.parseInt(matcher.group(5))
+        );
+    }
+
+    /**
+     * Quote a value of the canonical form, escaping the quotes and
+     * backslashes in it.
+     * @param value Value.
+     * @return Quoted value.
+     */
+    private static String quoted(final String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /**
+     * Unescape a quoted value of the canonical form, without the quotes.
+     * @param escaped Escaped value.
+     * @return Value.
+     */
+    private static String unquoted(final String escaped) {
+        final StringBuilder value = new StringBuilder(escaped.length());
+        for(int idx = 0; idx < escaped.length(); ++idx) {
+            char chr = escaped.charAt(idx);
+            if(chr == '\\') {
+                chr = escaped.charAt(++idx);
+            }
+            value.append(chr);
+        }
+        return value.toString();
+    }
 }
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pre-compiled JSON template of the {@link SearchQuery}. The static parts
+ * (bool/filter skeleton, highlight block) are encoded once; only the
+ * escaped keywords, category, repo and paging values are spliced in for
+ * each search, straight to bytes. The output is the same as
+ * {@link SearchQuery#toJson()}.toString().
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+final class SearchTemplate {
+
+    /**
+     * Beginning, up to the from value.
+     */
+    private static final byte[] FROM = SearchTemplate.utf8("{\"from\":");
+
+    /**
+     * Between from and size.
+     */
+    private static final byte[] SIZE = SearchTemplate.utf8(",\"size\":");
+
+    /**
+     * Between size and the keywords.
+     */
+    private static final byte[] CONTENT = SearchTemplate.utf8(
+        ",\"query\":{\"bool\":{\"filter\":[{\"match_phrase_prefix\":"
+        + "{\"textContent\":\""
+    );
+
+    /**
+     * Between the keywords and the category.
+     */
+    private static final byte[] CATEGORY = SearchTemplate.utf8(
+        "\"}},{\"type\":{\"value\":\""
+    );
+
+    /**
+     * After the category, if there is a repo filter.
+     */
+    private static final byte[] REPO = SearchTemplate.utf8(
+        "\"}},{\"term\":{\"repo\":\""
+    );
+
+    /**
+     * The end: closes the filters and adds the highlight block.
+     */
+    private static final byte[] END = SearchTemplate.utf8(
+        "\"}}]}},\"highlight\":{\"fields\":{\"textContent\":"
+        + "{\"fragment_size\":150}}}}"
+    );
+
+    /**
+     * Hex digits, for escaping control characters.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Hidden ctor.
+     */
+    private SearchTemplate() {
+    }
+
+    /**
+     * Render the query.
+     * @param content Keywords.
+     * @param category Category.
+     * @param from Index to start at.
+     * @param size Number of results per page.
+     * @param repo Repo filter; null or empty for none.
+     * @return JSON query as UTF-8 bytes.
+     */
+    static byte[] render(
+        final String content, final String category,
+        final int from, final int size, final String repo
+    ) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(
+            256 + content.length() + category.length()
+        );
+        out.write(FROM, 0, FROM.length);
+        SearchTemplate.write(out, String.valueOf(from));
+        out.write(SIZE, 0, SIZE.length);
+        SearchTemplate.write(out, String.valueOf(size));
+        out.write(CONTENT, 0, CONTENT.length);
+        SearchTemplate.write(out, SearchTemplate.escape(content));
+        out.write(CATEGORY, 0, CATEGORY.length);
+        SearchTemplate.write(out, SearchTemplate.escape(category));
+        if(repo != null && !repo.isEmpty()) {
+            out.write(REPO, 0, REPO.length);
+            SearchTemplate.write(out, SearchTemplate.escape(repo));
+        }
+        out.write(END, 0, END.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Escape a JSON string value, the same way javax.json does.
+     * @param value Value to escape.
+     * @return Escaped value (the same instance if nothing is escaped).
+     */
+    static String escape(final String value) {
+        StringBuilder escaped = null;
+        for(int idx = 0; idx < value.length(); ++idx) {
+            final char chr = value.charAt(idx);
+            final String replacement;
+            if(chr == '"') {
+                replacement = "\\\"";
+            } else if(chr == '\\') {
+                replacement = "\\\\";
+            } else if(chr < 0x20) {
+                replacement = SearchTemplate.control(chr);
+            } else {
+                replacement = null;
+            }
+            if(replacement != null && escaped == null) {
+                escaped = new StringBuilder(value.length() + 16);
+                escaped.append(value, 0, idx);
+            }
+            if(escaped != null) {
+                if(replacement == null) {
+                    escaped.append(chr);
+                } else {
+                    escaped.append(replacement);
+                }
+            }
+        }
+        final String result;
+        if(escaped == null) {
+            result = value;
+        } else {
+            result = escaped.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Escape a control character.
+     * @param chr Character lower than 0x20.
+     * @return Escape sequence.
+     */
+    private static String control(final char chr) {
+        final String sequence;
+        switch (chr) {
+            case '\b':
+                sequence = "\\b";
+                break;
+            case '\f':
+                sequence = "\\f";
+                break;
+            case '\n':
+                sequence = "\\n";
+                break;
+            case '\r':
+                sequence = "\\r";
+                break;
+            case '\t':
+                sequence = "\\t";
+                break;
+            default:
+                sequence = new String(
+                    new char[] {
+                        '\\', 'u', '0', '0', HEX[chr >> 4], HEX[chr & 0xF],
+                    }
+                );
+                break;
+        }
+        return sequence;
+    }
+
+    /**
+     * Write a String as UTF-8.
+     * @param out Destination.
+     * @param value String.
+     */
+    private static void write(final ByteArrayOutputStream out, final String value) {
+        final byte[] bytes = SearchTemplate.utf8(value);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * UTF-8 bytes of a String.
+     * @param value String.
+     * @return Bytes.
+     */
+    private static byte[] utf8(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+/**
+ * Shared indexes mode. Instead of one index per repository, the pages
+ * of all the repositories go into a few shared indexes. Each page has
+ * a <b>repo</b> field and is routed by it, so all the pages of one repository
+ * live in the same shard and searches/deletes only touch that shard.<br><br>
+ * The number of shared indexes is read from the system property
+ * <b>aws.es.shared.indexes</b>. If missing (or 0), every repository
+ * has its own index, as before.<br><br>
+ * The <b>repo</b> field has to be mapped as <b>keyword</b>, otherwise it is
+ * analyzed and the term queries on it miss the repositories with dots or
+ * dashes in their names; see {@link #template()}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SharedIndexes {
+
+    /**
+     * Actual name of the sys prop with the number of shared indexes.
+     */
+    public static final String NAME = "aws.es.shared.indexes";
+
+    /**
+     * Prefix of the shared indexes' names.
+     */
+    public static final String PREFIX = "charles-shared-";
+
+    /**
+     * Name of the index template of the shared indexes.
+     */
+    public static final String TEMPLATE = "charles-shared";
+
+    /**
+     * Shared indexes specified in the system properties.
+     */
+    private static final SharedIndexes SYSTEM = new SharedIndexes(
+        Integer.valueOf(System.getProperty(NAME, "0").trim())
+    );
+
+    /**
+     * Number of shared indexes.
+     */
+    private final int count;
+
+    /**
+     * Ctor.
+     * @param count Number of shared indexes; 0 disables the shared mode.
+     */
+    public SharedIndexes(final int count) {
+        if(count < 0) {
+            throw new IllegalArgumentException(
+                "The number of shared indexes cannot be negative!"
+            );
+        }
+        this.count = count;
+    }
+
+    /**
+     * Shared indexes specified in the system properties.
+     * @return SharedIndexes.
+     */
+    public static SharedIndexes system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Is the shared mode on?
+     * @return True or false.
+     */
+    public boolean enabled() {
+        return this.count > 0;
+    }
+
+    /**
+     * Index template of the shared indexes, mapping the <b>repo</b> field
+     * as keyword. It has to be in place before the first page goes into
+     * a shared index, because ES does not change the mapping of an
+     * existing field.
+     * @return JsonObject.
+     */
+    public JsonObject template() {
+        return Json.createObjectBuilder()
+            .add("index_patterns", Json.createArrayBuilder().add(PREFIX + "*"))
+            .add(
+                "mappings",
+                Json.createObjectBuilder().add(
+                    "page",
+                    Json.createObjectBuilder().add(
+                        "properties",
+                        Json.createObjectBuilder().add(
+                            "repo",
+                            Json.createObjectBuilder().add("type", "keyword")
+                        )
+                    )
+                )
+            ).build();
+    }
+
+    /**
+     * The index where the given repository's pages are stored.
+     * @param repo Name of the repository's own index (e.g. ownerxrepo).
+     * @return Name of the shared index, or the repo's index if the shared
+     *  mode is off.
+     */
+    public String index(final String repo) {
+        final String index;
+        if(this.enabled()) {
+            index = PREFIX + (repo.hashCode() & Integer.MAX_VALUE) % this.count;
+        } else {
+            index = repo;
+        }
+        return index;
+    }
+}
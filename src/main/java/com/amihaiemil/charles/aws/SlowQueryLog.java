@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.List;
+
+import com.amihaiemil.charles.DataExportException;
+import com.amihaiemil.charles.WebPage;
+import com.amihaiemil.charles.aws.metrics.SlowQueries;
+import com.amihaiemil.charles.aws.metrics.SlowQuery;
+import com.amihaiemil.charles.rest.model.SearchResultsPage;
+
+/**
+ * ElasticSearch which records the slow searches: index, canonical query,
+ * ES took, observed latency and number of hits.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SlowQueryLog implements ElasticSearch {
+
+    /**
+     * Decorated ElasticSearch.
+     */
+    private final ElasticSearch origin;
+
+    /**
+     * Name of the index.
+     */
+    private final String index;
+
+    /**
+     * Where the slow queries are recorded.
+     */
+    private final SlowQueries queries;
+
+    /**
+     * Ctor.
+     * @param origin Decorated ElasticSearch.
+     * @param index Name of the index.
+     */
+    public SlowQueryLog(final ElasticSearch origin, final String index) {
+        this(origin, index, SlowQueries.system());
+    }
+
+    /**
+     * Ctor.
+     * @param origin Decorated ElasticSearch.
+     * @param index Name of the index.
+     * @param queries Where the slow queries are recorded.
+     */
+    public SlowQueryLog(
+        final ElasticSearch origin, final String index,
+        final SlowQueries queries
+    ) {
+        this.origin = origin;
+        this.index = index;
+        this.queries = queries;
+    }
+
+    @Override
+    public SearchResultsPage search(final SearchQuery query) {
+        final long start = System.currentTimeMillis();
+        final SearchResultsPage page = this.origin.search(query);
+        final long end = System.currentTimeMillis();
+        if(this.queries.slow(end - start)) {
+            this.queries.record(
+                new SlowQuery(
+                    end, this.index, query.canonical(), page.took(),
+                    end - start, page.totalHits()
+                )
+            );
+        }
+        return page;
+    }
+
+    @Override
+    public void export(final List<WebPage> pages) throws DataExportException {
+        this.origin.export(pages);
+    }
+
+    @Override
+    public boolean exists() {
+        return this.origin.exists();
+    }
+
+    @Override
+    public void delete() {
+        this.origin.delete();
+    }
+
+    @Override
+    public void delete(final String type, final String id) {
+        this.origin.delete(type, id);
+    }
+}
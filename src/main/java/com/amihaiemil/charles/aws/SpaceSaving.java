@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving sketch: approximate counts of the most frequent keys,
+ * in a fixed amount of memory. When the sketch is full, a new key
+ * replaces the least frequent one and inherits its count, so the
+ * counts of the heavy hitters are never underestimated.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ * @see <a href="https://www.cs.ucsb.edu/research/tech-reports/2005-23">Space-Saving</a>
+ */
+final class SpaceSaving {
+
+    /**
+     * Max number of counted keys.
+     */
+    private final int capacity;
+
+    /**
+     * Counts, by key.
+     */
+    private final Map<String, Long> counts;
+
+    /**
+     * Ctor.
+     * @param capacity Max number of counted keys.
+     */
+    SpaceSaving(final int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException(
+                "The capacity must be positive!"
+            );
+        }
+        this.capacity = capacity;
+        this.counts = new HashMap<>();
+    }
+
+    /**
+     * Count a key once.
+     * @param key Key.
+     */
+    void add(final String key) {
+        this.add(key, 1);
+    }
+
+    /**
+     * Count a key.
+     * @param key Key.
+     * @param times How many times it was seen.
+     */
+    synchronized void add(final String key, final long times) {
+        final Long count = this.counts.get(key);
+        if(count != null) {
+            this.counts.put(key, count + times);
+        } else if(this.counts.size() < this.capacity) {
+            this.counts.put(key, times);
+        } else {
+            String victim = null;
+            long min = Long.MAX_VALUE;
+            for(final Map.Entry<String, Long> entry : this.counts.entrySet()) {
+                if(entry.getValue() < min) {
+                    min = entry.getValue();
+                    victim = entry.getKey();
+                }
+            }
+            this.counts.remove(victim);
+            this.counts.put(key, min + times);
+        }
+    }
+
+    /**
+     * Estimated count of a key.
+     * @param key Key.
+     * @return Count; 0 if the key is not counted.
+     */
+    synchronized long count(final String key) {
+        final Long count = this.counts.get(key);
+        if(count == null) {
+            return 0;
+        }
+        return count;
+    }
+
+    /**
+     * The most frequent keys.
+     * @param top How many.
+     * @return Keys, the most frequent first.
+     */
+    synchronized List<String> top(final int top) {
+        final List<Map.Entry<String, Long>> entries =
+            new ArrayList<>(this.counts.entrySet());
+        Collections.sort(
+            entries,
+            new Comparator<Map.Entry<String, Long>>() {
+                @Override
+                public int compare(
+                    final Map.Entry<String, Long> first,
+                    final Map.Entry<String, Long> second
+                ) {
+                    return Long.compare(second.getValue(), first.getValue());
+                }
+            }
+        );
+        final List<String> keys = new ArrayList<>();
+        for(final Map.Entry<String, Long> entry : entries) {
+            if(keys.size() == top) {
+                break;
+            }
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+}
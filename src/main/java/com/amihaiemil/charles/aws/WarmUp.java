@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warm-up of an index: the most popular queries are replayed, so the
+ * ElasticSearch caches are warm when the first real users come (e.g.
+ * after a site was re-indexed or after a restart).<br><br>
+ * Warm-ups are delayed and debounced per index: a crawl exports the pages
+ * in many batches, but the index is warmed up only once, after the last
+ * batch.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class WarmUp {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WarmUp.class);
+
+    /**
+     * Warm-up of the popular queries configured by the system properties.
+     */
+    private static final WarmUp SYSTEM = new WarmUp(
+        PopularQueries.system(), TimeUnit.SECONDS.toMillis(30)
+    );
+
+    /**
+     * Popular queries.
+     */
+    private final PopularQueries popular;
+
+    /**
+     * Delay of a warm-up, in millis.
+     */
+    private final long delay;
+
+    /**
+     * Pending warm-ups, by index.
+     */
+    private final ConcurrentMap<String, Future<?>> pending =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Thread running the warm-ups.
+     */
+    private final ScheduledExecutorService threads;
+
+    /**
+     * Ctor.
+     * @param popular Popular queries.
+     * @param delay Delay of a warm-up, in millis.
+     */
+    public WarmUp(final PopularQueries popular, final long delay) {
+        this.popular = popular;
+        this.delay = delay;
+        this.threads = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "charles-warmup");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+        );
+    }
+
+    /**
+     * Warm-up configured by the system properties.
+     * @return WarmUp.
+     */
+    public static WarmUp system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Schedule the warm-up of an index, replacing the one already
+     * pending, if any.
+     * @param index Index.
+     * @param es ElasticSearch where the queries are replayed.
+     */
+    public void schedule(final String index, final ElasticSearch es) {
+        if(this.popular.enabled()) {
+            final Future<?> previous = this.pending.put(
+                index,
+                this.threads.schedule(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                WarmUp.this.replay(index, es);
+                            } catch (final RuntimeException ex) {
+                                LOG.error("Could not warm up " + index, ex);
+                            }
+                        }
+                    },
+                    this.delay, TimeUnit.MILLISECONDS
+                )
+            );
+            if(previous != null) {
+                previous.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Replay the popular queries of the index now, then save the popular
+     * queries, so they are available after a restart.
+     * @param index Index.
+     * @param es ElasticSearch where the queries are replayed.
+     * @return Number of queries which were replayed successfully.
+     */
+    public int replay(final String index, final ElasticSearch es) {
+        int replayed = 0;
+        try {
+            for(final SearchQuery query : this.popular.top(index)) {
+                try {
+                    es.search(query);
+                    ++replayed;
+                } catch (final RuntimeException ex) {
+                    LOG.warn(
+                        "Warm-up query " + query.canonical() + " failed on "
+                        + index + ": " + ex.getMessage()
+                    );
+                }
+            }
+            LOG.info("Warmed up " + index + " with " + replayed + " queries.");
+        } finally {
+            try {
+                this.popular.save();
+            } catch (final IOException ex) {
+                LOG.error("Could not save the popular queries", ex);
+            }
+        }
+        return replayed;
+    }
+}
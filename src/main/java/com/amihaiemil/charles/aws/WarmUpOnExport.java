@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.List;
+
+import com.amihaiemil.charles.DataExportException;
+import com.amihaiemil.charles.WebPage;
+import com.amihaiemil.charles.rest.model.SearchResultsPage;
+
+/**
+ * ElasticSearch which schedules the warm-up of the index after
+ * every successful export.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class WarmUpOnExport implements ElasticSearch {
+
+    /**
+     * Decorated ElasticSearch.
+     */
+    private final ElasticSearch origin;
+
+    /**
+     * Name of the index.
+     */
+    private final String index;
+
+    /**
+     * Warm-up.
+     */
+    private final WarmUp warmup;
+
+    /**
+     * Ctor.
+     * @param origin Decorated ElasticSearch.
+     * @param index Name of the index.
+     */
+    public WarmUpOnExport(final ElasticSearch origin, final String index) {
+        this(origin, index, WarmUp.system());
+    }
+
+    /**
+     * Ctor.
+     * @param origin Decorated ElasticSearch.
+     * @param index Name of the index.
+     * @param warmup Warm-up.
+     */
+    public WarmUpOnExport(
+        final ElasticSearch origin, final String index, final WarmUp warmup
+    ) {
+        this.origin = origin;
+        this.index = index;
+        this.warmup = warmup;
+    }
+
+    @Override
+    public void export(final List<WebPage> pages) throws DataExportException {
+        this.origin.export(pages);
+        this.warmup.schedule(this.index, this.origin);
+    }
+
+    @Override
+    public SearchResultsPage search(final SearchQuery query) {
+        return this.origin.search(query);
+    }
+
+    @Override
+    public boolean exists() {
+        return this.origin.exists();
+    }
+
+    @Override
+    public void delete() {
+        this.origin.delete();
+    }
+
+    @Override
+    public void delete(final String type, final String id) {
+        this.origin.delete(type, id);
+    }
+}
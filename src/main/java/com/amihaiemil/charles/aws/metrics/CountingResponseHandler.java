@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.HttpResponseHandler;
+
+/**
+ * Response handler which counts the bytes received from ElasticSearch:
+ * the Content-Length, if present, otherwise the bytes actually read
+ * by the decorated handler.
+ * @param <T> Response type.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class CountingResponseHandler<T> implements HttpResponseHandler<T> {
+
+    /**
+     * Decorated handler.
+     */
+    private final HttpResponseHandler<T> origin;
+
+    /**
+     * Where the bytes are counted.
+     */
+    private final EsOperation operation;
+
+    /**
+     * Ctor.
+     * @param origin Decorated handler.
+     * @param operation Where the bytes are counted.
+     */
+    public CountingResponseHandler(
+        final HttpResponseHandler<T> origin, final EsOperation operation
+    ) {
+        this.origin = origin;
+        this.operation = operation;
+    }
+
+    @Override
+    public T handle(final HttpResponse response) throws Exception {
+        final String length = response.getHeaders().get("Content-Length");
+        if(length != null) {
+            this.operation.received(Long.parseLong(length.trim()));
+        } else if(response.getContent() != null) {
+            response.setContent(new Counting(response.getContent()));
+        }
+        return this.origin.handle(response);
+    }
+
+    @Override
+    public boolean needsConnectionLeftOpen() {
+        return this.origin.needsConnectionLeftOpen();
+    }
+
+    /**
+     * Stream counting the bytes read.
+     */
+    private final class Counting extends FilterInputStream {
+
+        /**
+         * Ctor.
+         * @param origin Stream.
+         */
+        Counting(final InputStream origin) {
+            super(origin);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+            if(read != -1) {
+                CountingResponseHandler.this.operation.received(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len)
+            throws IOException {
+            final int read = super.read(bytes, off, len);
+            if(read > 0) {
+                CountingResponseHandler.this.operation.received(read);
+            }
+            return read;
+        }
+    }
+}
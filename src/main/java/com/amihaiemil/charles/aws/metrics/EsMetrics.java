@@ -0,0 +1,294 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics of all the ElasticSearch operations, per operation and index,
+ * renderable in the Prometheus text format. Only the first indexes get
+ * their own metrics, the others are counted together under the index
+ * {@link #OTHER}, so the memory and the scrape size stay bounded. The sizes
+ * of the requests (e.g. the _bulk ones) are kept per operation only.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ * @see <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus text format</a>
+ */
+public final class EsMetrics {
+
+    /**
+     * Index under which the operations on the untracked indexes are counted.
+     */
+    public static final String OTHER = "_other";
+
+    /**
+     * Upper bounds of the request size buckets, in bytes (1KB to 100MB).
+     */
+    static final long[] SIZES = {
+        1024, 16384, 131072, 1048576, 5242880, 10485760, 52428800, 104857600,
+    };
+
+    /**
+     * Metrics of this application.
+     */
+    private static final EsMetrics SYSTEM = new EsMetrics(
+        Integer.valueOf(
+            System.getProperty("aws.es.metrics.indexes", "100").trim()
+        )
+    );
+
+    /**
+     * Operations, by name and index.
+     */
+    private final ConcurrentMap<String, EsOperation> operations =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Sizes of the sent requests, by operation.
+     */
+    private final ConcurrentMap<String, Histogram> sizes =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Indexes which have their own metrics.
+     */
+    private final Set<String> indexes = Collections.newSetFromMap(
+        new ConcurrentHashMap<String, Boolean>()
+    );
+
+    /**
+     * Max number of indexes which have their own metrics.
+     */
+    private final int max;
+
+    /**
+     * Ctor.
+     */
+    public EsMetrics() {
+        this(100);
+    }
+
+    /**
+     * Ctor.
+     * @param max Max number of indexes which have their own metrics.
+     */
+    public EsMetrics(final int max) {
+        this.max = max;
+    }
+
+    /**
+     * Metrics of this application.
+     * @return EsMetrics.
+     */
+    public static EsMetrics system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Metrics of an operation on an index.
+     * @param operation Name of the operation (e.g. search).
+     * @param index Index.
+     * @return EsOperation.
+     */
+    public EsOperation of(final String operation, final String index) {
+        final String tracked = this.tracked(index);
+        final String key = operation + '\n' + tracked;
+        EsOperation metrics = this.operations.get(key);
+        if(metrics == null) {
+            this.operations.putIfAbsent(
+                key, new EsOperation(operation, tracked, this.sizes(operation))
+            );
+            metrics = this.operations.get(key);
+        }
+        return metrics;
+    }
+
+    /**
+     * The index under which the metrics of the given index are kept:
+     * itself, if it is tracked or there is still room, {@link #OTHER}
+     * otherwise.
+     * @param index Index.
+     * @return Index.
+     */
+    private String tracked(final String index) {
+        String tracked = index;
+        if(!this.indexes.contains(index)) {
+            synchronized (this.indexes) {
+                if(this.indexes.size() < this.max) {
+                    this.indexes.add(index);
+                } else if(!this.indexes.contains(index)) {
+                    tracked = OTHER;
+                }
+            }
+        }
+        return tracked;
+    }
+
+    /**
+     * Sizes of the requests sent by an operation.
+     * @param operation Name of the operation.
+     * @return Histogram.
+     */
+    private Histogram sizes(final String operation) {
+        Histogram histogram = this.sizes.get(operation);
+        if(histogram == null) {
+            this.sizes.putIfAbsent(operation, new Histogram(SIZES));
+            histogram = this.sizes.get(operation);
+        }
+        return histogram;
+    }
+
+    /**
+     * All the metrics, in the Prometheus text format.
+     * @return String.
+     */
+    public String prometheus() {
+        final List<EsOperation> all = new ArrayList<>(this.operations.values());
+        Collections.sort(
+            all,
+            new Comparator<EsOperation>() {
+                @Override
+                public int compare(final EsOperation first, final EsOperation second) {
+                    int result = first.name().compareTo(second.name());
+                    if(result == 0) {
+                        result = first.index().compareTo(second.index());
+                    }
+                    return result;
+                }
+            }
+        );
+        final StringBuilder text = new StringBuilder();
+        text.append("# HELP charles_es_request_duration_seconds")
+            .append(" Latency of the requests made to ElasticSearch.\n")
+            .append("# TYPE charles_es_request_duration_seconds histogram\n");
+        for(final EsOperation operation : all) {
+            final String labels = EsMetrics.labels(operation);
+            final Histogram latencies = operation.latencies();
+            final long[] bounds = latencies.bounds();
+            for(int idx = 0; idx < bounds.length; ++idx) {
+                text.append("charles_es_request_duration_seconds_bucket{")
+                    .append(labels).append(",le=\"")
+                    .append(EsMetrics.seconds(bounds[idx])).append("\"} ")
+                    .append(latencies.cumulative(idx)).append('\n');
+            }
+            text.append("charles_es_request_duration_seconds_bucket{")
+                .append(labels).append(",le=\"+Inf\"} ")
+                .append(latencies.cumulative(bounds.length)).append('\n')
+                .append("charles_es_request_duration_seconds_sum{")
+                .append(labels).append("} ")
+                .append(EsMetrics.seconds(latencies.sum())).append('\n')
+                .append("charles_es_request_duration_seconds_count{")
+                .append(labels).append("} ")
+                .append(latencies.count()).append('\n');
+        }
+        text.append("# HELP charles_es_request_errors_total")
+            .append(" Failed requests made to ElasticSearch.\n")
+            .append("# TYPE charles_es_request_errors_total counter\n");
+        for(final EsOperation operation : all) {
+            text.append("charles_es_request_errors_total{")
+                .append(EsMetrics.labels(operation)).append("} ")
+                .append(operation.errors()).append('\n');
+        }
+        text.append("# HELP charles_es_sent_bytes_total")
+            .append(" Bytes sent to ElasticSearch.\n")
+            .append("# TYPE charles_es_sent_bytes_total counter\n");
+        for(final EsOperation operation : all) {
+            text.append("charles_es_sent_bytes_total{")
+                .append(EsMetrics.labels(operation)).append("} ")
+                .append(operation.sent()).append('\n');
+        }
+        text.append("# HELP charles_es_received_bytes_total")
+            .append(" Bytes received from ElasticSearch.\n")
+            .append("# TYPE charles_es_received_bytes_total counter\n");
+        for(final EsOperation operation : all) {
+            text.append("charles_es_received_bytes_total{")
+                .append(EsMetrics.labels(operation)).append("} ")
+                .append(operation.received()).append('\n');
+        }
+        final List<String> names = new ArrayList<>(this.sizes.keySet());
+        Collections.sort(names);
+        text.append("# HELP charles_es_request_size_bytes")
+            .append(" Size of the requests sent to ElasticSearch.\n")
+            .append("# TYPE charles_es_request_size_bytes histogram\n");
+        for(final String name : names) {
+            final String labels = "operation=\"" + EsMetrics.escape(name) + '"';
+            final Histogram histogram = this.sizes.get(name);
+            for(int idx = 0; idx < SIZES.length; ++idx) {
+                text.append("charles_es_request_size_bytes_bucket{")
+                    .append(labels).append(",le=\"")
+                    .append(SIZES[idx]).append("\"} ")
+                    .append(histogram.cumulative(idx)).append('\n');
+            }
+            text.append("charles_es_request_size_bytes_bucket{")
+                .append(labels).append(",le=\"+Inf\"} ")
+                .append(histogram.cumulative(SIZES.length)).append('\n')
+                .append("charles_es_request_size_bytes_sum{")
+                .append(labels).append("} ")
+                .append(histogram.sum()).append('\n')
+                .append("charles_es_request_size_bytes_count{")
+                .append(labels).append("} ")
+                .append(histogram.count()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Labels of an operation.
+     * @param operation Operation.
+     * @return Labels, without braces.
+     */
+    private static String labels(final EsOperation operation) {
+        return "operation=\"" + EsMetrics.escape(operation.name())
+            + "\",index=\"" + EsMetrics.escape(operation.index()) + '"';
+    }
+
+    /**
+     * Escape a label value.
+     * @param value Value.
+     * @return Escaped value.
+     */
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"")
+            .replace("\n", "\\n");
+    }
+
+    /**
+     * Millis as seconds.
+     * @param millis Millis.
+     * @return Seconds, as String.
+     */
+    private static String seconds(final long millis) {
+        return String.format(Locale.ENGLISH, "%.3f", millis / 1000.0);
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of one operation (e.g. search) on one index.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class EsOperation {
+
+    /**
+     * Name of the operation.
+     */
+    private final String name;
+
+    /**
+     * Index.
+     */
+    private final String index;
+
+    /**
+     * Latencies.
+     */
+    private final Histogram latencies = new Histogram();
+
+    /**
+     * Sizes of the sent requests, in bytes.
+     */
+    private final Histogram sizes;
+
+    /**
+     * Failed requests.
+     */
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Bytes sent.
+     */
+    private final AtomicLong sent = new AtomicLong();
+
+    /**
+     * Bytes received.
+     */
+    private final AtomicLong received = new AtomicLong();
+
+    /**
+     * Ctor.
+     * @param name Name of the operation.
+     * @param index Index.
+     */
+    public EsOperation(final String name, final String index) {
+        this(name, index, new Histogram(EsMetrics.SIZES));
+    }
+
+    /**
+     * Ctor.
+     * @param name Name of the operation.
+     * @param index Index.
+     * @param sizes Sizes of the sent requests, in bytes, shared by all
+     *  the indexes of this operation.
+     */
+    public EsOperation(
+        final String name, final String index, final Histogram sizes
+    ) {
+        this.name = name;
+        this.index = index;
+        this.sizes = sizes;
+    }
+
+    /**
+     * A request finished.
+     * @param millis Latency.
+     * @param success Did it succeed?
+     */
+    public void record(final long millis, final boolean success) {
+        this.latencies.record(millis);
+        if(!success) {
+            this.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * A request of this many bytes was sent.
+     * @param bytes Number of bytes.
+     */
+    public void sent(final long bytes) {
+        this.sent.addAndGet(bytes);
+        this.sizes.record(bytes);
+    }
+
+    /**
+     * Bytes were received.
+     * @param bytes Number of bytes.
+     */
+    public void received(final long bytes) {
+        this.received.addAndGet(bytes);
+    }
+
+    /**
+     * Name of the operation.
+     * @return String.
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Index.
+     * @return String.
+     */
+    public String index() {
+        return this.index;
+    }
+
+    /**
+     * Latencies.
+     * @return Histogram.
+     */
+    public Histogram latencies() {
+        return this.latencies;
+    }
+
+    /**
+     * Sizes of the sent requests, in bytes.
+     * @return Histogram.
+     */
+    public Histogram sizes() {
+        return this.sizes;
+    }
+
+    /**
+     * Number of failed requests.
+     * @return Long.
+     */
+    public long errors() {
+        return this.errors.get();
+    }
+
+    /**
+     * Number of bytes sent.
+     * @return Long.
+     */
+    public long sent() {
+        return this.sent.get();
+    }
+
+    /**
+     * Number of bytes received.
+     * @return Long.
+     */
+    public long received() {
+        return this.received.get();
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram with fixed buckets, of latencies in millis by default. Recording is lock-free (one atomic
+ * increment per bucket, count and sum), so it can be shared by all the
+ * threads sending requests.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class Histogram {
+
+    /**
+     * Default upper bounds of the buckets, in millis.
+     */
+    private static final long[] DEFAULT = {
+        1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000,
+    };
+
+    /**
+     * Upper bounds (inclusive) of the buckets, in millis.
+     */
+    private final long[] bounds;
+
+    /**
+     * Counts per bucket; the last one is for values over the last bound.
+     */
+    private final AtomicLongArray buckets;
+
+    /**
+     * Number of recorded values.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Sum of the recorded values.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Ctor.
+     */
+    public Histogram() {
+        this(DEFAULT);
+    }
+
+    /**
+     * Ctor.
+     * @param bounds Upper bounds of the buckets, in millis, ascending.
+     */
+    public Histogram(final long... bounds) {
+        for(int idx = 1; idx < bounds.length; ++idx) {
+            if(bounds[idx] <= bounds[idx - 1]) {
+                throw new IllegalArgumentException(
+                    "Bucket bounds must be ascending!"
+                );
+            }
+        }
+        this.bounds = bounds.clone();
+        this.buckets = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * Record a value.
+     * @param millis Latency in millis.
+     */
+    public void record(final long millis) {
+        int bucket = Arrays.binarySearch(this.bounds, millis);
+        if(bucket < 0) {
+            bucket = -bucket - 1;
+        }
+        this.buckets.incrementAndGet(bucket);
+        this.count.incrementAndGet();
+        this.sum.addAndGet(millis);
+    }
+
+    /**
+     * Upper bounds of the buckets.
+     * @return Bounds in millis.
+     */
+    public long[] bounds() {
+        return this.bounds.clone();
+    }
+
+    /**
+     * Number of values lower or equal to the given bucket's bound.
+     * @param bucket Index of the bucket; bounds().length means all.
+     * @return Cumulative count.
+     */
+    public long cumulative(final int bucket) {
+        long total = 0;
+        for(int idx = 0; idx <= bucket; ++idx) {
+            total += this.buckets.get(idx);
+        }
+        return total;
+    }
+
+    /**
+     * Number of recorded values.
+     * @return Long.
+     */
+    public long count() {
+        return this.count.get();
+    }
+
+    /**
+     * Sum of the recorded values.
+     * @return Millis.
+     */
+    public long sum() {
+        return this.sum.get();
+    }
+}
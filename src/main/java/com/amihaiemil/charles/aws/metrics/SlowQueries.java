@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The most recent slow queries, kept in a bounded ring buffer: when it is
+ * full, the oldest query is overwritten. If a file is given, the queries
+ * are also appended to it (one JSON per line), asynchronously and in
+ * batches, so the searches never wait for the disk.<br><br>
+ * The default recorder is configured by the system properties
+ * <b>aws.es.slowlog.millis</b> (threshold; slow queries are not recorded
+ * if missing) and <b>aws.es.slowlog.size</b> (capacity, default 100). The
+ * file is <b>${LOG_ROOT}/charles-rest/SlowQueries.log</b>, if LOG_ROOT is set.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SlowQueries {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SlowQueries.class);
+
+    /**
+     * Recorder configured by the system properties.
+     */
+    private static final SlowQueries SYSTEM = new SlowQueries(
+        System.getProperty("aws.es.slowlog.millis"),
+        System.getProperty("aws.es.slowlog.size", "100"),
+        System.getProperty("LOG_ROOT")
+    );
+
+    /**
+     * Delay between a slow query and the flushing of the file, in millis.
+     */
+    private static final long FLUSH_DELAY = 1000;
+
+    /**
+     * Threshold in millis; negative if disabled.
+     */
+    private final long threshold;
+
+    /**
+     * Ring buffer.
+     */
+    private final SlowQuery[] ring;
+
+    /**
+     * Number of queries ever recorded (the next position in the ring,
+     * modulo its length).
+     */
+    private long recorded;
+
+    /**
+     * Number of queries already appended to the file.
+     */
+    private long flushed;
+
+    /**
+     * File where the queries are appended; may be null.
+     */
+    private final File file;
+
+    /**
+     * Is a flush already scheduled?
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Thread flushing the file.
+     */
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Ctor.
+     * @param threshold Threshold as String, may be null.
+     * @param capacity Capacity as String.
+     * @param logroot Log root directory, may be null.
+     */
+    private SlowQueries(
+        final String threshold, final String capacity, final String logroot
+    ) {
+        this(
+            threshold == null || threshold.trim().isEmpty()
+                ? -1 : Long.valueOf(threshold.trim()),
+            Integer.valueOf(capacity.trim()),
+            logroot == null
+                ? null : new File(logroot + "/charles-rest/SlowQueries.log")
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param threshold Queries slower than this are recorded, in millis;
+     *  negative to disable.
+     * @param capacity How many queries are kept in memory.
+     */
+    public SlowQueries(final long threshold, final int capacity) {
+        this(threshold, capacity, null);
+    }
+
+    /**
+     * Ctor.
+     * @param threshold Queries slower than this are recorded, in millis;
+     *  negative to disable.
+     * @param capacity How many queries are kept in memory.
+     * @param file File where the queries are appended; may be null.
+     */
+    public SlowQueries(
+        final long threshold, final int capacity, final File file
+    ) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException(
+                "The capacity must be positive!"
+            );
+        }
+        this.threshold = threshold;
+        this.ring = new SlowQuery[capacity];
+        this.file = file;
+        if(file == null || threshold < 0) {
+            this.flusher = null;
+        } else {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(
+                            runnable, "charles-slowlog"
+                        );
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }
+            );
+        }
+    }
+
+    /**
+     * Slow queries recorder configured by the system properties.
+     * @return SlowQueries.
+     */
+    public static SlowQueries system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Is the recorder enabled?
+     * @return True or false.
+     */
+    public boolean enabled() {
+        return this.threshold >= 0;
+    }
+
+    /**
+     * Is a query with this latency slow enough to be recorded?
+     * @param latency Latency in millis.
+     * @return True or false.
+     */
+    public boolean slow(final long latency) {
+        return this.enabled() && latency >= this.threshold;
+    }
+
+    /**
+     * Record the query, if it is slow.
+     * @param query Query.
+     * @return True if the query was slow and was recorded.
+     */
+    public boolean record(final SlowQuery query) {
+        boolean slow = this.slow(query.latency());
+        if(slow) {
+            synchronized (this.ring) {
+                this.ring[(int) (this.recorded % this.ring.length)] = query;
+                ++this.recorded;
+            }
+            if(this.flusher != null && this.scheduled.compareAndSet(false, true)) {
+                this.flusher.schedule(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                SlowQueries.this.flush();
+                            } catch (final IOException ex) {
+                                LOG.error("Could not write the slow queries", ex);
+                            }
+                        }
+                    },
+                    FLUSH_DELAY, TimeUnit.MILLISECONDS
+                );
+            }
+        }
+        return slow;
+    }
+
+    /**
+     * The slowest of the recent queries.
+     * @param top How many.
+     * @return Slow queries, the slowest first.
+     */
+    public List<SlowQuery> slowest(final int top) {
+        final List<SlowQuery> queries;
+        synchronized (this.ring) {
+            queries = new ArrayList<>(
+                Arrays.asList(this.ring).subList(
+                    0, (int) Math.min(this.recorded, this.ring.length)
+                )
+            );
+        }
+        Collections.sort(
+            queries,
+            new Comparator<SlowQuery>() {
+                @Override
+                public int compare(final SlowQuery first, final SlowQuery second) {
+                    return Long.compare(second.latency(), first.latency());
+                }
+            }
+        );
+        return queries.subList(0, Math.max(0, Math.min(top, queries.size())));
+    }
+
+    /**
+     * Append the queries recorded since the last flush to the file.
+     * Queries which were overwritten in the meantime are lost.
+     * @throws IOException If the file cannot be written.
+     */
+    void flush() throws IOException {
+        this.scheduled.set(false);
+        final List<SlowQuery> pending = new ArrayList<>();
+        synchronized (this.ring) {
+            final long first = Math.max(
+                this.flushed, this.recorded - this.ring.length
+            );
+            for(long idx = first; idx < this.recorded; ++idx) {
+                pending.add(this.ring[(int) (idx % this.ring.length)]);
+            }
+            this.flushed = this.recorded;
+        }
+        if(!pending.isEmpty() && this.file != null) {
+            final File dir = this.file.getParentFile();
+            if(dir != null) {
+                dir.mkdirs();
+            }
+            try (
+                final Writer out = new OutputStreamWriter(
+                    new FileOutputStream(this.file, true),
+                    StandardCharsets.UTF_8
+                )
+            ) {
+                for(final SlowQuery query : pending) {
+                    out.write(query.toJson().toString());
+                    out.write('\n');
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.metrics;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+/**
+ * A search which took longer than the slow-query threshold.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SlowQuery {
+
+    /**
+     * When the search finished, in epoch millis.
+     */
+    private final long time;
+
+    /**
+     * Index.
+     */
+    private final String index;
+
+    /**
+     * Canonical query.
+     */
+    private final String query;
+
+    /**
+     * Time ElasticSearch took to run the query, in millis.
+     */
+    private final int took;
+
+    /**
+     * Latency observed by us, in millis.
+     */
+    private final long latency;
+
+    /**
+     * Number of hits.
+     */
+    private final int hits;
+
+    /**
+     * Ctor.
+     * @param time When the search finished, in epoch millis.
+     * @param index Index.
+     * @param query Canonical query.
+     * @param took Time ElasticSearch took to run the query, in millis.
+     * @param latency Latency observed by us, in millis.
+     * @param hits Number of hits.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    public SlowQuery(
+        final long time, final String index, final String query,
+        final int took, final long latency, final int hits
+    ) {
+        this.time = time;
+        this.index = index;
+        this.query = query;
+        this.took = took;
+        this.latency = latency;
+        this.hits = hits;
+    }
+
+    /**
+     * Latency observed by us.
+     * @return Millis.
+     */
+    public long latency() {
+        return this.latency;
+    }
+
+    /**
+     * This slow query in JSON format.
+     * @return JsonObject.
+     */
+    public JsonObject toJson() {
+        return Json.createObjectBuilder()
+            .add("time", this.time)
+            .add("index", this.index)
+            .add("query", this.query)
+            .add("took", this.took)
+            .add("latency", this.latency)
+            .add("hits", this.hits)
+            .build();
+    }
+}
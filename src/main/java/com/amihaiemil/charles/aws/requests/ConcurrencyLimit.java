@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Adaptive limit of concurrent requests (AIMD). Every successful
+ * request which is not slower than the baseline increases the limit
+ * a little (roughly by 1 per limit-full of requests). A rejected request
+ * (e.g. 429 Too Many Requests) halves the limit and a request which is much
+ * slower than the baseline decreases it by 10%.<br><br>
+ * The baseline is the lowest latency seen, slowly drifting up so it
+ * follows the real capacity of the cluster. The latencies of big requests
+ * are normalized by their payload (millis per 64 KB), so a big bulk is not
+ * taken for congestion just because it takes longer.<br><br>
+ * The limits of the ES endpoints start at <b>aws.es.limit.initial</b>
+ * (default 2) and stay between <b>aws.es.limit.min</b> (default 1) and
+ * <b>aws.es.limit.max</b> (default 64); a request is congested if it is
+ * <b>aws.es.limit.tolerance</b> (default 2.0) times slower than the baseline.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class ConcurrencyLimit {
+
+    /**
+     * Limits per ElasticSearch endpoint.
+     */
+    private static final ConcurrentMap<String, ConcurrencyLimit> ENDPOINTS =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Initial limit of the endpoints.
+     */
+    private static final int INITIAL = Integer.valueOf(
+        System.getProperty("aws.es.limit.initial", "2")
+    );
+
+    /**
+     * Lowest limit of the endpoints.
+     */
+    private static final int MIN = Integer.valueOf(
+        System.getProperty("aws.es.limit.min", "1")
+    );
+
+    /**
+     * Highest limit of the endpoints.
+     */
+    private static final int MAX = Integer.valueOf(
+        System.getProperty("aws.es.limit.max", "64")
+    );
+
+    /**
+     * Latency tolerance of the endpoints.
+     */
+    private static final double TOLERANCE = Double.valueOf(
+        System.getProperty("aws.es.limit.tolerance", "2.0")
+    );
+
+    /**
+     * Payload size to which the latencies are normalized, in bytes.
+     */
+    private static final long UNIT = 64 * 1024;
+
+    /**
+     * Lowest possible limit.
+     */
+    private final int min;
+
+    /**
+     * Highest possible limit.
+     */
+    private final int max;
+
+    /**
+     * A request slower than baseline * tolerance is considered congested.
+     */
+    private final double tolerance;
+
+    /**
+     * Current limit.
+     */
+    private double limit;
+
+    /**
+     * Requests in flight.
+     */
+    private int inflight;
+
+    /**
+     * Baseline latency in millis; negative until the first sample.
+     */
+    private double baseline;
+
+    /**
+     * Ctor.
+     * @param initial Initial limit.
+     * @param min Lowest limit.
+     * @param max Highest limit.
+     * @param tolerance Latency tolerance.
+     */
+    public ConcurrencyLimit(
+        final int initial, final int min, final int max, final double tolerance
+    ) {
+        if(min < 1 || initial < min || max < initial) {
+            throw new IllegalArgumentException(
+                "Limits must respect 1 <= min <= initial <= max!"
+            );
+        }
+        this.min = min;
+        this.max = max;
+        this.tolerance = tolerance;
+        this.limit = initial;
+        this.inflight = 0;
+        this.baseline = -1;
+    }
+
+    /**
+     * The limit of the given ES endpoint, shared by all the requests
+     * made to it, configured by the system properties.
+     * @param endpoint ElasticSearch endpoint.
+     * @return ConcurrencyLimit.
+     */
+    public static ConcurrencyLimit of(final String endpoint) {
+        final String key = String.valueOf(endpoint);
+        ConcurrencyLimit limit = ENDPOINTS.get(key);
+        if(limit == null) {
+            final ConcurrencyLimit created = new ConcurrencyLimit(
+                INITIAL, MIN, MAX, TOLERANCE
+            );
+            limit = ENDPOINTS.putIfAbsent(key, created);
+            if(limit == null) {
+                limit = created;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Wait until a request may be sent.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while(this.inflight >= this.limit()) {
+            this.wait();
+        }
+        this.inflight++;
+    }
+
+    /**
+     * A request completed successfully.
+     * @param millis Latency of the request.
+     */
+    public void succeeded(final long millis) {
+        this.succeeded(millis, 0);
+    }
+
+    /**
+     * A request completed successfully.
+     * @param latency Latency of the request, in millis.
+     * @param bytes Size of its payload; the latency of a payload bigger
+     *  than 64 KB is counted per 64 KB.
+     */
+    public synchronized void succeeded(final long latency, final long bytes) {
+        final double millis = (double) latency * UNIT / Math.max(bytes, UNIT);
+        if(this.baseline < 0 || millis < this.baseline) {
+            this.baseline = millis;
+        } else {
+            this.baseline += (millis - this.baseline) * 0.01;
+        }
+        if(millis > this.baseline * this.tolerance) {
+            this.limit = Math.max(this.min, this.limit * 0.9);
+        } else if(this.inflight >= this.limit()) {
+            this.limit = Math.min(this.max, this.limit + 1 / this.limit);
+        }
+        this.release();
+    }
+
+    /**
+     * A request was rejected by the server because it was overloaded.
+     */
+    public synchronized void rejected() {
+        this.limit = Math.max(this.min, this.limit / 2);
+        this.release();
+    }
+
+    /**
+     * A request failed for some other reason; the limit stays the same.
+     */
+    public synchronized void failed() {
+        this.release();
+    }
+
+    /**
+     * Current limit.
+     * @return Integer.
+     */
+    public synchronized int limit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Number of requests in flight.
+     * @return Integer.
+     */
+    public synchronized int inflight() {
+        return this.inflight;
+    }
+
+    /**
+     * Release a slot and wake up the waiting requests.
+     */
+    private void release() {
+        this.inflight--;
+        this.notifyAll();
+    }
+}
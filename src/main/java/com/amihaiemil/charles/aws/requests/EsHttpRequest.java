@@ -61,6 +61,11 @@ public final class EsHttpRequest<T> extends AwsHttpRequest<T> {
      */
     private HttpResponseHandler<AmazonServiceException> errHandler;
 
+    /**
+     * Configuration of the HTTP client (timeouts, retries).
+     */
+    private final ClientConfiguration config;
+
     /**
      * Ctor.
      * @param esEdp ElasticSearch URL.
@@ -73,6 +78,24 @@ public final class EsHttpRequest<T> extends AwsHttpRequest<T> {
         String uri,
         HttpResponseHandler<T> respHandler,
         HttpResponseHandler<AmazonServiceException> errHandler
+    ){
+        this(esEdp, uri, respHandler, errHandler, new ClientConfiguration());
+    }
+
+    /**
+     * Ctor.
+     * @param esEdp ElasticSearch URL.
+     * @param uri REST path to the desired ElasticSearch endpoint.
+     * @param respHandler Response handler.
+     * @param errHandler Error handler.
+     * @param config Configuration of the HTTP client (timeouts, retries).
+     */
+    public EsHttpRequest(
+        EsEndPoint esEdp,
+        String uri,
+        HttpResponseHandler<T> respHandler,
+        HttpResponseHandler<AmazonServiceException> errHandler,
+        ClientConfiguration config
     ){
     	this.request = new DefaultRequest<Void>("es");
         String esEndpoint = esEdp.read();
@@ -89,6 +112,7 @@ public final class EsHttpRequest<T> extends AwsHttpRequest<T> {
         
         this.respHandler = respHandler;
         this.errHandler = errHandler;
+        this.config = config;
     }
 
     /**
@@ -96,7 +120,7 @@ public final class EsHttpRequest<T> extends AwsHttpRequest<T> {
      */
     @Override
     public T perform() {
-        final Response<T> rsp = new AmazonHttpClient(new ClientConfiguration())
+        final Response<T> rsp = new AmazonHttpClient(this.config)
             .requestExecutionBuilder()
             .executionContext(new ExecutionContext(true))
             .request(this.request)
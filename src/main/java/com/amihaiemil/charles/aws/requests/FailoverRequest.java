@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.Request;
+
+/**
+ * A request which is tried against more endpoints, in the given order,
+ * until one of them answers. It moves on to the next candidate only if
+ * the endpoint failed (server error, throttling or network problem);
+ * client errors such as 404 are thrown right away, since another endpoint
+ * would give the same answer.
+ * @param <T> Response type.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class FailoverRequest<T> extends AwsHttpRequest<T> {
+
+    /**
+     * Candidate requests, in order of preference.
+     */
+    private final List<AwsHttpRequest<T>> candidates;
+
+    /**
+     * Ctor.
+     * @param candidates Candidate requests, in order of preference.
+     */
+    public FailoverRequest(final List<AwsHttpRequest<T>> candidates) {
+        if(candidates.isEmpty()) {
+            throw new IllegalArgumentException(
+                "At least one candidate request is needed!"
+            );
+        }
+        this.candidates = new ArrayList<>(candidates);
+    }
+
+    @Override
+    public T perform() {
+        AmazonClientException last = null;
+        for(final AwsHttpRequest<T> candidate : this.candidates) {
+            try {
+                return candidate.perform();
+            } catch (final AmazonClientException ex) {
+                if(!RoutedRequest.nodeFailure(ex)) {
+                    throw ex;
+                }
+                last = ex;
+            }
+        }
+        throw last;
+    }
+
+    @Override
+    Request<Void> request() {
+        return this.candidates.get(0).request();
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.Request;
+
+/**
+ * A hedged request. If the original request does not complete within
+ * the delay given by the {@link Hedging} policy, a duplicate is sent and
+ * the first response which arrives is used. The other request is cancelled.
+ * <br><br>
+ * The duplicate has to be a separate request, built the same way as
+ * the original one (the requests are mutated while being signed and
+ * their content is a stream which can only be read once).
+ * @param <T> Response type.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class HedgedRequest<T> extends AwsHttpRequest<T> {
+
+    /**
+     * Original request.
+     */
+    private final AwsHttpRequest<T> original;
+
+    /**
+     * Duplicate, sent only if the original is slow.
+     */
+    private final AwsHttpRequest<T> duplicate;
+
+    /**
+     * Hedging policy.
+     */
+    private final Hedging hedging;
+
+    /**
+     * Ctor.
+     * @param original Original request.
+     * @param duplicate Duplicate of the original request.
+     * @param hedging Hedging policy.
+     */
+    public HedgedRequest(
+        final AwsHttpRequest<T> original,
+        final AwsHttpRequest<T> duplicate,
+        final Hedging hedging
+    ) {
+        this.original = original;
+        this.duplicate = duplicate;
+        this.hedging = hedging;
+    }
+
+    @Override
+    public T perform() {
+        final long delay = this.hedging.delay();
+        final long start = System.currentTimeMillis();
+        if(delay < 0) {
+            final T response = this.original.perform();
+            this.hedging.record(System.currentTimeMillis() - start);
+            return response;
+        }
+        final CompletionService<T> race = new ExecutorCompletionService<>(
+            this.hedging.threads()
+        );
+        final List<Future<T>> sent = new ArrayList<>(2);
+        sent.add(race.submit(new Performed<>(this.original)));
+        try {
+            Future<T> done = race.poll(delay, TimeUnit.MILLISECONDS);
+            if(done == null && this.hedging.hedge()) {
+                sent.add(race.submit(new Performed<>(this.duplicate)));
+            }
+            ExecutionException failure = null;
+            for(int pending = sent.size(); pending > 0; pending--) {
+                if(done == null) {
+                    done = race.take();
+                }
+                try {
+                    final T response = done.get();
+                    this.hedging.record(System.currentTimeMillis() - start);
+                    return response;
+                } catch (final ExecutionException ex) {
+                    failure = ex;
+                    done = null;
+                }
+            }
+            throw this.unwrap(failure);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ES", ex);
+        } finally {
+            for(final Future<T> request : sent) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    Request<Void> request() {
+        return this.original.request();
+    }
+
+    /**
+     * Unwrap the exception thrown by a request.
+     * @param failure ExecutionException.
+     * @return RuntimeException to be thrown further.
+     */
+    private RuntimeException unwrap(final ExecutionException failure) {
+        final Throwable cause = failure.getCause();
+        if(cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if(cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /**
+     * An AwsHttpRequest performed on another thread.
+     * @param <T> Response type.
+     */
+    private static final class Performed<T> implements Callable<T> {
+
+        /**
+         * Request to perform.
+         */
+        private final AwsHttpRequest<T> req;
+
+        /**
+         * Ctor.
+         * @param req Request to perform.
+         */
+        Performed(final AwsHttpRequest<T> req) {
+            this.req = req;
+        }
+
+        @Override
+        public T call() {
+            return this.req.perform();
+        }
+    }
+}
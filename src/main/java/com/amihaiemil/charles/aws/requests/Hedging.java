@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Policy for hedging requests: if a request takes longer than the given
+ * percentile of the recent latencies, a duplicate is sent. The number of
+ * duplicates is capped by a budget which grows with every request, so
+ * hedging cannot amplify the load on ElasticSearch by more than the
+ * given ratio.<br><br>
+ * The default policy is read from the system properties
+ * <b>aws.es.hedge.percentile</b> (hedging is disabled if missing) and
+ * <b>aws.es.hedge.ratio</b> (max ratio of hedged requests, default 0.05).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class Hedging {
+
+    /**
+     * Policy read from the system properties, shared by all the searches.
+     */
+    private static final Hedging SYSTEM = new Hedging(
+        System.getProperty("aws.es.hedge.percentile"),
+        System.getProperty("aws.es.hedge.ratio", "0.05")
+    );
+
+    /**
+     * Minimum number of recorded latencies before we start hedging.
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * Maximum number of hedges that can be saved up in the budget.
+     */
+    private static final double MAX_BUDGET = 10;
+
+    /**
+     * Recent latencies.
+     */
+    private final Latencies latencies;
+
+    /**
+     * Percentile of the recent latencies after which we hedge.
+     * Negative if hedging is disabled.
+     */
+    private final double percentile;
+
+    /**
+     * Max ratio of hedged requests.
+     */
+    private final double ratio;
+
+    /**
+     * Available hedges.
+     */
+    private double budget;
+
+    /**
+     * Threads on which the requests are raced.
+     */
+    private final ExecutorService threads;
+
+    /**
+     * Ctor.
+     * @param percentile Percentile as String, may be null.
+     * @param ratio Max ratio of hedged requests as String.
+     */
+    private Hedging(final String percentile, final String ratio) {
+        this(
+            percentile == null || percentile.isEmpty()
+                ? -1 : Double.valueOf(percentile),
+            Double.valueOf(ratio)
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param percentile Percentile of the recent latencies after which
+     *  a request is hedged; negative to disable hedging.
+     * @param ratio Max ratio of hedged requests (e.g. 0.05 means that
+     *  at most 5% of the requests are duplicated).
+     */
+    public Hedging(final double percentile, final double ratio) {
+        this(percentile, ratio, new Latencies(1000));
+    }
+
+    /**
+     * Ctor.
+     * @param percentile Percentile of the recent latencies after which
+     *  a request is hedged; negative to disable hedging.
+     * @param ratio Max ratio of hedged requests.
+     * @param latencies Recent latencies.
+     */
+    public Hedging(
+        final double percentile, final double ratio, final Latencies latencies
+    ) {
+        if(percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be at most 100!");
+        }
+        this.percentile = percentile;
+        this.ratio = ratio;
+        this.latencies = latencies;
+        this.budget = 0;
+        this.threads = Executors.newCachedThreadPool(new Daemons());
+    }
+
+    /**
+     * Hedging policy specified in the system properties.
+     * @return Hedging.
+     */
+    public static Hedging system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Is hedging enabled at all?
+     * @return True or false.
+     */
+    public boolean enabled() {
+        return this.percentile >= 0;
+    }
+
+    /**
+     * How long should we wait before sending a duplicate request?
+     * Every call counts as a request and adds to the hedging budget.
+     * @return Delay in milliseconds, or -1 if there are not
+     *  enough recorded latencies yet.
+     */
+    public long delay() {
+        synchronized (this) {
+            this.budget = Math.min(this.budget + this.ratio, MAX_BUDGET);
+        }
+        if(this.latencies.size() < MIN_SAMPLES) {
+            return -1;
+        }
+        return this.latencies.percentile(this.percentile);
+    }
+
+    /**
+     * Take a hedge from the budget.
+     * @return True if a duplicate request may be sent, false otherwise.
+     */
+    public synchronized boolean hedge() {
+        final boolean allowed = this.budget >= 1;
+        if(allowed) {
+            this.budget--;
+        }
+        return allowed;
+    }
+
+    /**
+     * Record the latency of a completed request.
+     * @param millis Latency in milliseconds.
+     */
+    public void record(final long millis) {
+        this.latencies.record(millis);
+    }
+
+    /**
+     * Threads on which the requests should be performed.
+     * @return ExecutorService.
+     */
+    ExecutorService threads() {
+        return this.threads;
+    }
+
+    /**
+     * Daemon threads, so they do not keep the JVM alive.
+     */
+    private static final class Daemons implements ThreadFactory {
+
+        /**
+         * Counter of created threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable task) {
+            final Thread thread = new Thread(
+                task, "es-hedge-" + this.count.incrementAndGet()
+            );
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
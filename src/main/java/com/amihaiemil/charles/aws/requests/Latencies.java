@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latencies of some requests, kept in a fixed-size window.
+ * Old values are overwritten as new ones are recorded.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class Latencies {
+
+    /**
+     * Recorded latencies, in milliseconds.
+     */
+    private final long[] window;
+
+    /**
+     * Total number of recorded latencies.
+     */
+    private long recorded;
+
+    /**
+     * Ctor.
+     * @param size How many latencies to remember.
+     */
+    public Latencies(final int size) {
+        if(size <= 0) {
+            throw new IllegalArgumentException("The window size must be positive!");
+        }
+        this.window = new long[size];
+    }
+
+    /**
+     * Record a latency.
+     * @param millis Latency in milliseconds.
+     */
+    public synchronized void record(final long millis) {
+        this.window[(int) (this.recorded % this.window.length)] = millis;
+        this.recorded++;
+    }
+
+    /**
+     * How many latencies are in the window at the moment.
+     * @return Integer.
+     */
+    public synchronized int size() {
+        return (int) Math.min(this.recorded, this.window.length);
+    }
+
+    /**
+     * The given percentile of the latencies in the window.
+     * @param percentile Percentile, between 0 and 100.
+     * @return Latency in milliseconds or -1 if nothing was recorded yet.
+     */
+    public long percentile(final double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100!");
+        }
+        final long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(this.window, this.size());
+        }
+        if(sorted.length == 0) {
+            return -1;
+        }
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+}
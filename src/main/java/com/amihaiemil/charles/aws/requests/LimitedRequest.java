@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import org.apache.http.HttpStatus;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.Request;
+
+/**
+ * A request which respects a {@link ConcurrencyLimit}: it waits for a free
+ * slot before being sent and reports its latency or rejection afterwards.
+ * A 429 or 503 answer, or an {@link AmazonServiceException} with status
+ * 429 thrown by the response handler (e.g. some items of a bulk were
+ * rejected), counts as a rejection.
+ * @param <T> Response type.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class LimitedRequest<T> extends AwsHttpRequest<T> {
+
+    /**
+     * Base request.
+     */
+    private final AwsHttpRequest<T> base;
+
+    /**
+     * Concurrency limit.
+     */
+    private final ConcurrencyLimit limit;
+
+    /**
+     * Size of the payload, in bytes.
+     */
+    private final long bytes;
+
+    /**
+     * Ctor.
+     * @param req Base request.
+     * @param limit Concurrency limit.
+     */
+    public LimitedRequest(final AwsHttpRequest<T> req, final ConcurrencyLimit limit) {
+        this(req, limit, 0);
+    }
+
+    /**
+     * Ctor.
+     * @param req Base request.
+     * @param limit Concurrency limit.
+     * @param bytes Size of the payload, by which the latency is normalized.
+     */
+    public LimitedRequest(
+        final AwsHttpRequest<T> req, final ConcurrencyLimit limit,
+        final long bytes
+    ) {
+        this.base = req;
+        this.limit = limit;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public T perform() {
+        try {
+            this.limit.acquire();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to send the request", ex);
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            final T response = this.base.perform();
+            this.limit.succeeded(System.currentTimeMillis() - start, this.bytes);
+            return response;
+        } catch (final AmazonServiceException ex) {
+            final int status = ex.getStatusCode();
+            if(status == 429 || status == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                this.limit.rejected();
+            } else {
+                this.limit.failed();
+            }
+            throw ex;
+        } catch (final RuntimeException ex) {
+            this.limit.failed();
+            throw ex;
+        }
+    }
+
+    @Override
+    Request<Void> request() {
+        return this.base.request();
+    }
+}
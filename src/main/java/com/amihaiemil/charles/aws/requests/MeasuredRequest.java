@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.Request;
+import com.amihaiemil.charles.aws.metrics.EsOperation;
+
+/**
+ * A request whose latency, outcome and payload size are recorded in
+ * the metrics of an {@link EsOperation}.
+ * @param <T> Response type.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class MeasuredRequest<T> extends AwsHttpRequest<T> {
+
+    /**
+     * Base request.
+     */
+    private final AwsHttpRequest<T> base;
+
+    /**
+     * Metrics of the operation.
+     */
+    private final EsOperation operation;
+
+    /**
+     * Ctor.
+     * @param req Base request.
+     * @param operation Metrics of the operation.
+     */
+    public MeasuredRequest(
+        final AwsHttpRequest<T> req, final EsOperation operation
+    ) {
+        this.base = req;
+        this.operation = operation;
+    }
+
+    @Override
+    public T perform() {
+        this.operation.sent(this.payload());
+        final long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            final T response = this.base.perform();
+            success = true;
+            return response;
+        } finally {
+            this.operation.record(System.currentTimeMillis() - start, success);
+        }
+    }
+
+    @Override
+    Request<Void> request() {
+        return this.base.request();
+    }
+
+    /**
+     * Size of the payload: the Content-Length header, if present, otherwise
+     * the bytes available in the content (the request is not sent yet).
+     * @return Number of bytes.
+     */
+    private long payload() {
+        final Request<Void> request = this.base.request();
+        final String length = request.getHeaders().get("Content-Length");
+        long size = 0;
+        if(length != null) {
+            size = Long.parseLong(length.trim());
+        } else {
+            final InputStream content = request.getContent();
+            if(content != null) {
+                try {
+                    size = content.available();
+                } catch (final IOException ex) {
+                    size = 0;
+                }
+            }
+        }
+        return size;
+    }
+}
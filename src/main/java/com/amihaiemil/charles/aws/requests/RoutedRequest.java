@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.Request;
+import com.amihaiemil.charles.aws.EsNode;
+
+/**
+ * A request sent to a certain {@link EsNode}, which reports its latency
+ * to the node or marks the node as failed, if the node could not serve it.
+ * @param <T> Response type.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class RoutedRequest<T> extends AwsHttpRequest<T> {
+
+    /**
+     * Base request.
+     */
+    private final AwsHttpRequest<T> base;
+
+    /**
+     * Node where the request goes.
+     */
+    private final EsNode node;
+
+    /**
+     * Ctor.
+     * @param req Base request.
+     * @param node Node where the request goes.
+     */
+    public RoutedRequest(final AwsHttpRequest<T> req, final EsNode node) {
+        this.base = req;
+        this.node = node;
+    }
+
+    @Override
+    public T perform() {
+        final long start = System.currentTimeMillis();
+        try {
+            final T response = this.base.perform();
+            this.node.succeeded(System.currentTimeMillis() - start);
+            return response;
+        } catch (final AmazonClientException ex) {
+            if(RoutedRequest.nodeFailure(ex)) {
+                this.node.failed();
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    Request<Void> request() {
+        return this.base.request();
+    }
+
+    /**
+     * Is the exception the node's fault (server error, throttling or a
+     * network problem) or is it the request's fault (e.g. 404, 400)?
+     * @param ex Exception.
+     * @return True if the node failed; false otherwise.
+     */
+    static boolean nodeFailure(final AmazonClientException ex) {
+        boolean failure = true;
+        if(ex instanceof AmazonServiceException) {
+            final int status = ((AmazonServiceException) ex).getStatusCode();
+            failure = status >= 500 || status == 429;
+        }
+        return failure;
+    }
+}
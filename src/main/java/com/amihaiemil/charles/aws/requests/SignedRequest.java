@@ -26,6 +26,7 @@
 package com.amihaiemil.charles.aws.requests;
 
 import com.amazonaws.Request;
+import com.amazonaws.SignableRequest;
 import com.amazonaws.auth.AWS4Signer;
 import com.amazonaws.auth.AWSCredentials;
 import com.amihaiemil.charles.aws.AccessKeyId;
@@ -44,6 +45,13 @@ import com.amihaiemil.charles.aws.SecretKey;
  */
 public class SignedRequest<T> extends AwsHttpRequest<T> {
 
+    /**
+     * Header carrying the SHA-256 of the payload. If the request already
+     * has it (e.g. computed while the payload was written to disk), the
+     * payload is not read again for signing.
+     */
+    public static final String CONTENT_SHA256 = "x-amz-content-sha256";
+
     /**
      * Base request.
      */
@@ -85,7 +93,13 @@ public class SignedRequest<T> extends AwsHttpRequest<T> {
     
     @Override
     public T perform() {
-        AWS4Signer signer = new AWS4Signer();
+        final String hash = this.base.request().getHeaders().get(CONTENT_SHA256);
+        final AWS4Signer signer;
+        if(hash == null) {
+            signer = new AWS4Signer();
+        } else {
+            signer = new PrecomputedHashSigner(hash);
+        }
         String region = this.reg.read();
         if(region == null || region.isEmpty()) {
             throw new IllegalStateException("Mandatory sys property aws.es.region not specified!");
@@ -101,6 +115,31 @@ public class SignedRequest<T> extends AwsHttpRequest<T> {
         return this.base.request();
     }
     
+    /**
+     * AWS4Signer which uses an already computed hash of the payload,
+     * instead of reading the whole content stream.
+     */
+    private static final class PrecomputedHashSigner extends AWS4Signer {
+
+        /**
+         * Hex SHA-256 of the payload.
+         */
+        private final String hash;
+
+        /**
+         * Ctor.
+         * @param hash Hex SHA-256 of the payload.
+         */
+        private PrecomputedHashSigner(final String hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        protected String calculateContentHash(final SignableRequest<?> request) {
+            return this.hash;
+        }
+    }
+
     /**
      * AWS credentials (aws access key id and aws secret key from the system properties).
      */
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.amazonaws.internal.ResettableInputStream;
+import com.amazonaws.util.BinaryUtils;
+
+/**
+ * Request payload spilled to a temporary file, with its SHA-256 computed
+ * while it is written. This way, big payloads (e.g. _bulk) are neither
+ * kept in memory nor read twice for the SigV4 signature; use
+ * {@link #sha256()} as the x-amz-content-sha256 header, see
+ * {@link SignedRequest#CONTENT_SHA256}.<br><br>
+ * Usage: write the payload to {@link #output()}, close it, then send
+ * {@link #content()}. Closing the SpilledPayload deletes the file.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SpilledPayload implements Closeable {
+
+    /**
+     * Temporary file.
+     */
+    private final File file;
+
+    /**
+     * Digest computed while writing.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * Hex hash, computed once the writing is done.
+     */
+    private String hash;
+
+    /**
+     * Content stream, if opened.
+     */
+    private InputStream content;
+
+    /**
+     * Ctor.
+     * @throws IOException If the temporary file cannot be created.
+     */
+    public SpilledPayload() throws IOException {
+        this.file = File.createTempFile("charles-payload", ".json");
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Stream to write the payload to. It has to be closed before
+     * reading the hash or the content.
+     * @return OutputStream.
+     * @throws IOException If the file cannot be opened.
+     */
+    public OutputStream output() throws IOException {
+        return new DigestOutputStream(
+            new BufferedOutputStream(new FileOutputStream(this.file)),
+            this.digest
+        );
+    }
+
+    /**
+     * Hex SHA-256 of the written payload.
+     * @return String.
+     */
+    public String sha256() {
+        if(this.hash == null) {
+            this.hash = BinaryUtils.toHex(this.digest.digest());
+        }
+        return this.hash;
+    }
+
+    /**
+     * Size of the written payload.
+     * @return Number of bytes.
+     */
+    public long length() {
+        return this.file.length();
+    }
+
+    /**
+     * The payload, to be sent. The stream supports mark/reset, so the
+     * request can be retried.
+     * @return InputStream.
+     * @throws IOException If the file cannot be opened.
+     */
+    public InputStream content() throws IOException {
+        if(this.content == null) {
+            this.content = new ResettableInputStream(this.file);
+        }
+        return this.content;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if(this.content != null) {
+                this.content.close();
+            }
+        } finally {
+            if(!this.file.delete() && this.file.exists()) {
+                throw new IOException(
+                    "Could not delete " + this.file.getAbsolutePath()
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used cache of compressed response bodies.
+ * The bound is the total number of cached bytes; bodies bigger than
+ * an eighth of it are not cached, so one response cannot flush
+ * the others.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+final class CompressedCache {
+
+    /**
+     * Bodies by key, in access order.
+     */
+    private final Map<String, byte[]> bodies =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Max number of cached bytes.
+     */
+    private final long capacity;
+
+    /**
+     * Number of cached bytes.
+     */
+    private long bytes;
+
+    /**
+     * Ctor.
+     * @param capacity Max number of cached bytes.
+     */
+    CompressedCache(final long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Fetch a body.
+     * @param key Key.
+     * @return Compressed body or null if it is not cached.
+     */
+    synchronized byte[] get(final String key) {
+        return this.bodies.get(key);
+    }
+
+    /**
+     * Cache a body, evicting the least recently used ones if needed.
+     * @param key Key.
+     * @param body Compressed body.
+     */
+    synchronized void put(final String key, final byte[] body) {
+        if(body.length <= this.capacity / 8) {
+            final byte[] old = this.bodies.put(key, body);
+            if(old != null) {
+                this.bytes -= old.length;
+            }
+            this.bytes += body.length;
+            final Iterator<byte[]> eldest = this.bodies.values().iterator();
+            while(this.bytes > this.capacity) {
+                this.bytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Number of cached bytes.
+     * @return Long.
+     */
+    synchronized long bytes() {
+        return this.bytes;
+    }
+}
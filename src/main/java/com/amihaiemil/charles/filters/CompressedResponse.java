@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response which buffers the body and, when it is finished, sends it
+ * compressed. The body is sent as it is if it is too small, not textual,
+ * not a 200 or already encoded.<br><br>
+ * The compressed bodies of cacheable responses (200s to a GET, with an
+ * ETag and without Cache-Control no-store or private) are kept in a
+ * {@link CompressedCache}, by coding, URL and ETag.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+final class CompressedResponse extends HttpServletResponseWrapper {
+
+    /**
+     * Wrapped response.
+     */
+    private final HttpServletResponse origin;
+
+    /**
+     * Content coding: gzip or deflate.
+     */
+    private final String coding;
+
+    /**
+     * URL of the request if it is a GET, null otherwise.
+     */
+    private final String url;
+
+    /**
+     * Cache of compressed bodies; null if disabled.
+     */
+    private final CompressedCache cache;
+
+    /**
+     * Bodies smaller than this are not compressed.
+     */
+    private final int min;
+
+    /**
+     * Uncompressed body.
+     */
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    /**
+     * Was the body sent?
+     */
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    /**
+     * Stream over the buffer, if asked for.
+     */
+    private ServletOutputStream stream;
+
+    /**
+     * Writer over the buffer, if asked for.
+     */
+    private PrintWriter writer;
+
+    /**
+     * Ctor.
+     * @param origin Wrapped response.
+     * @param coding Content coding: gzip or deflate.
+     * @param url URL of the request if it is a GET, null otherwise.
+     * @param cache Cache of compressed bodies; null to disable.
+     * @param min Bodies smaller than this are not compressed.
+     */
+    CompressedResponse(
+        final HttpServletResponse origin, final String coding,
+        final String url, final CompressedCache cache, final int min
+    ) {
+        super(origin);
+        this.origin = origin;
+        this.coding = coding;
+        this.url = url;
+        this.cache = cache;
+        this.min = min;
+    }
+
+    @Override
+    public synchronized ServletOutputStream getOutputStream() {
+        if(this.writer != null) {
+            throw new IllegalStateException("getWriter() was already called");
+        }
+        if(this.stream == null) {
+            this.stream = new Buffered();
+        }
+        return this.stream;
+    }
+
+    @Override
+    public synchronized PrintWriter getWriter() throws IOException {
+        if(this.stream != null) {
+            throw new IllegalStateException("getOutputStream() was already called");
+        }
+        if(this.writer == null) {
+            this.writer = new PrintWriter(
+                new OutputStreamWriter(new Buffered(), this.getCharacterEncoding())
+            );
+        }
+        return this.writer;
+    }
+
+    @Override
+    public void setContentLength(final int len) {
+        //the length is set when the body is sent
+    }
+
+    @Override
+    public void setContentLengthLong(final long len) {
+        //the length is set when the body is sent
+    }
+
+    @Override
+    public void setHeader(final String name, final String value) {
+        if(!"Content-Length".equalsIgnoreCase(name)) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(final String name, final String value) {
+        if(!"Content-Length".equalsIgnoreCase(name)) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(final String name, final int value) {
+        if(!"Content-Length".equalsIgnoreCase(name)) {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(final String name, final int value) {
+        if(!"Content-Length".equalsIgnoreCase(name)) {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if(this.finished.get()) {
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public synchronized void resetBuffer() {
+        super.resetBuffer();
+        this.buffer.reset();
+    }
+
+    @Override
+    public synchronized void reset() {
+        super.reset();
+        this.buffer.reset();
+    }
+
+    /**
+     * Send the body. Only the first call has any effect.
+     * @throws IOException If the body cannot be sent.
+     */
+    void finish() throws IOException {
+        if(this.finished.compareAndSet(false, true)) {
+            final byte[] raw;
+            synchronized (this) {
+                if(this.writer != null) {
+                    this.writer.flush();
+                }
+                raw = this.buffer.toByteArray();
+            }
+            if(raw.length > 0) {
+                byte[] body = raw;
+                if(!this.origin.isCommitted() && this.compressible(raw)) {
+                    body = this.compressed(raw);
+                    this.origin.setHeader("Content-Encoding", this.coding);
+                }
+                if(!this.origin.isCommitted()) {
+                    this.origin.setContentLength(body.length);
+                }
+                final ServletOutputStream out = this.origin.getOutputStream();
+                out.write(body);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Should the body be compressed?
+     * @param raw Uncompressed body.
+     * @return True or false.
+     */
+    private boolean compressible(final byte[] raw) {
+        final String type = this.origin.getContentType();
+        boolean textual = false;
+        if(type != null) {
+            final String mime = type.toLowerCase(Locale.ENGLISH);
+            textual = mime.startsWith("text/") || mime.contains("json")
+                || mime.contains("xml") || mime.contains("javascript");
+        }
+        return textual && raw.length >= this.min
+            && this.origin.getStatus() == HttpServletResponse.SC_OK
+            && !this.origin.containsHeader("Content-Encoding");
+    }
+
+    /**
+     * Compress the body or take it from the cache.
+     * @param raw Uncompressed body.
+     * @return Compressed body.
+     * @throws IOException If something goes wrong.
+     */
+    private byte[] compressed(final byte[] raw) throws IOException {
+        final String key = this.key();
+        byte[] body = null;
+        if(key != null) {
+            body = this.cache.get(key);
+        }
+        if(body == null) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                Math.max(64, raw.length / 4)
+            );
+            final DeflaterOutputStream zip;
+            if("gzip".equals(this.coding)) {
+                zip = new GZIPOutputStream(bytes);
+            } else {
+                zip = new DeflaterOutputStream(bytes);
+            }
+            zip.write(raw);
+            zip.close();
+            body = bytes.toByteArray();
+            if(key != null) {
+                this.cache.put(key, body);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Cache key of the body.
+     * @return String key or null if the response is not cacheable.
+     */
+    private String key() {
+        String key = null;
+        final String etag = this.origin.getHeader("ETag");
+        if(this.cache != null && this.url != null && etag != null) {
+            final String control = this.origin.getHeader("Cache-Control");
+            if(control == null
+                || !(control.contains("no-store") || control.contains("private"))) {
+                key = this.coding + ' ' + this.url + ' ' + etag;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Stream writing into the buffer, which is always ready. Closing it
+     * sends the body.
+     */
+    private final class Buffered extends ServletOutputStream {
+
+        @Override
+        public void write(final int b) {
+            synchronized (CompressedResponse.this) {
+                CompressedResponse.this.buffer.write(b);
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            synchronized (CompressedResponse.this) {
+                CompressedResponse.this.buffer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            CompressedResponse.this.finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(final WriteListener listener) {
+            try {
+                listener.onWritePossible();
+            } catch (final IOException ex) {
+                listener.onError(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.io.IOException;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Async context of a compressed response: the compressed body is written
+ * and flushed before the context is completed, while the response can
+ * still be written.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+final class FinishingAsyncContext implements AsyncContext {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FinishingAsyncContext.class);
+
+    /**
+     * Original context.
+     */
+    private final AsyncContext origin;
+
+    /**
+     * Compressed response.
+     */
+    private final CompressedResponse response;
+
+    /**
+     * Ctor.
+     * @param origin Original context.
+     * @param response Compressed response.
+     */
+    FinishingAsyncContext(
+        final AsyncContext origin, final CompressedResponse response
+    ) {
+        this.origin = origin;
+        this.response = response;
+    }
+
+    @Override
+    public void complete() {
+        try {
+            this.response.finish();
+        } catch (final IOException ex) {
+            LOG.error("Could not send the compressed body", ex);
+        }
+        this.origin.complete();
+    }
+
+    @Override
+    public ServletRequest getRequest() {
+        return this.origin.getRequest();
+    }
+
+    @Override
+    public ServletResponse getResponse() {
+        return this.origin.getResponse();
+    }
+
+    @Override
+    public boolean hasOriginalRequestAndResponse() {
+        return this.origin.hasOriginalRequestAndResponse();
+    }
+
+    @Override
+    public void dispatch() {
+        this.origin.dispatch();
+    }
+
+    @Override
+    public void dispatch(final String path) {
+        this.origin.dispatch(path);
+    }
+
+    @Override
+    public void dispatch(final ServletContext context, final String path) {
+        this.origin.dispatch(context, path);
+    }
+
+    @Override
+    public void start(final Runnable run) {
+        this.origin.start(run);
+    }
+
+    @Override
+    public void addListener(final AsyncListener listener) {
+        this.origin.addListener(listener);
+    }
+
+    @Override
+    public void addListener(
+        final AsyncListener listener, final ServletRequest request,
+        final ServletResponse response
+    ) {
+        this.origin.addListener(listener, request, response);
+    }
+
+    @Override
+    public <T extends AsyncListener> T createListener(final Class<T> clazz)
+        throws ServletException {
+        return this.origin.createListener(clazz);
+    }
+
+    @Override
+    public void setTimeout(final long timeout) {
+        this.origin.setTimeout(timeout);
+    }
+
+    @Override
+    public long getTimeout() {
+        return this.origin.getTimeout();
+    }
+}
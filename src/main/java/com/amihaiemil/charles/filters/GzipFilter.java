@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.io.IOException;
+import java.util.Locale;
+import javax.servlet.AsyncContext;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Compresses the responses with gzip or deflate, as negotiated through
+ * the Accept-Encoding header. The compressed bodies of the cacheable
+ * GET responses are cached, so hot responses are not compressed again.<br><br>
+ * Configured with the system properties <b>charles.gzip.min</b> (bodies
+ * smaller than this many bytes are not compressed, default 256) and
+ * <b>charles.gzip.cache</b> (max bytes of cached compressed bodies,
+ * default 4194304; 0 disables the cache).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class GzipFilter implements Filter {
+
+    /**
+     * Cache of compressed bodies; null if disabled.
+     */
+    private final CompressedCache cache;
+
+    /**
+     * Bodies smaller than this are not compressed.
+     */
+    private final int min;
+
+    /**
+     * Ctor.
+     */
+    public GzipFilter() {
+        this(
+            Long.valueOf(System.getProperty("charles.gzip.cache", "4194304")),
+            Integer.valueOf(System.getProperty("charles.gzip.min", "256"))
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param cache Max bytes of cached compressed bodies; 0 to disable.
+     * @param min Bodies smaller than this are not compressed.
+     */
+    public GzipFilter(final long cache, final int min) {
+        if(cache > 0) {
+            this.cache = new CompressedCache(cache);
+        } else {
+            this.cache = null;
+        }
+        this.min = min;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {}
+
+    @Override
+    public void doFilter(
+        final ServletRequest request, final ServletResponse response,
+        final FilterChain chain
+    ) throws IOException, ServletException {
+        final HttpServletRequest http = (HttpServletRequest) request;
+        final HttpServletResponse resp = (HttpServletResponse) response;
+        resp.addHeader("Vary", "Accept-Encoding");
+        final String coding = GzipFilter.coding(http.getHeader("Accept-Encoding"));
+        if(coding == null || "HEAD".equals(http.getMethod())) {
+            chain.doFilter(request, response);
+        } else {
+            String url = null;
+            if("GET".equals(http.getMethod())) {
+                url = http.getRequestURI();
+                if(http.getQueryString() != null) {
+                    url = url + '?' + http.getQueryString();
+                }
+            }
+            final CompressedResponse compressed = new CompressedResponse(
+                resp, coding, url, this.cache, this.min
+            );
+            final AsyncRequest async = new AsyncRequest(http, compressed);
+            chain.doFilter(async, compressed);
+            if(!async.isAsyncStarted()) {
+                compressed.finish();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {}
+
+    /**
+     * Request whose async context sends the compressed body before it
+     * completes.
+     */
+    private static final class AsyncRequest extends HttpServletRequestWrapper {
+
+        /**
+         * Compressed response.
+         */
+        private final CompressedResponse compressed;
+
+        /**
+         * Async context, once started.
+         */
+        private AsyncContext context;
+
+        /**
+         * Ctor.
+         * @param request Original request.
+         * @param compressed Compressed response.
+         */
+        AsyncRequest(
+            final HttpServletRequest request, final CompressedResponse compressed
+        ) {
+            super(request);
+            this.compressed = compressed;
+        }
+
+        @Override
+        public synchronized AsyncContext startAsync() {
+            this.context = new FinishingAsyncContext(
+                super.startAsync(), this.compressed
+            );
+            return this.context;
+        }
+
+        @Override
+        public synchronized AsyncContext startAsync(
+            final ServletRequest request, final ServletResponse response
+        ) {
+            this.context = new FinishingAsyncContext(
+                super.startAsync(request, response), this.compressed
+            );
+            return this.context;
+        }
+
+        @Override
+        public synchronized AsyncContext getAsyncContext() {
+            final AsyncContext async;
+            if(this.context == null) {
+                async = super.getAsyncContext();
+            } else {
+                async = this.context;
+            }
+            return async;
+        }
+    }
+
+    /**
+     * Choose the content coding from the Accept-Encoding header. Gzip is
+     * preferred over deflate; codings with q=0 are refused.
+     * @param accept Value of Accept-Encoding, may be null.
+     * @return gzip, deflate or null if neither is accepted.
+     */
+    static String coding(final String accept) {
+        String coding = null;
+        if(accept != null) {
+            float gzip = -1;
+            float deflate = -1;
+            float any = -1;
+            for(final String part : accept.split(",")) {
+                final String[] params = part.split(";");
+                final String name = params[0].trim().toLowerCase(Locale.ENGLISH);
+                float quality = 1;
+                for(int idx = 1; idx < params.length; ++idx) {
+                    final String param = params[idx].trim();
+                    if(param.startsWith("q=")) {
+                        try {
+                            quality = Float.parseFloat(param.substring(2));
+                        } catch (final NumberFormatException ex) {
+                            quality = 0;
+                        }
+                    }
+                }
+                if("gzip".equals(name) || "x-gzip".equals(name)) {
+                    gzip = quality;
+                } else if("deflate".equals(name)) {
+                    deflate = quality;
+                } else if("*".equals(name)) {
+                    any = quality;
+                }
+            }
+            if(gzip < 0) {
+                gzip = any;
+            }
+            if(deflate < 0) {
+                deflate = any;
+            }
+            if(gzip > 0 && gzip >= deflate) {
+                coding = "gzip";
+            } else if(deflate > 0) {
+                coding = "deflate";
+            }
+        }
+        return coding;
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Rate limiting of the search API, with token buckets per client IP and
+ * per searched index. Requests over the limits get a 429 with a
+ * Retry-After header.<br><br>
+ * The limits are read from the system properties
+ * <b>charles.ratelimit.ip</b> (default 10/30, meaning 10 requests per
+ * second with bursts of 30), <b>charles.ratelimit.index</b> (default
+ * 100/200) and <b>charles.ratelimit.keys</b> (max number of buckets of
+ * each kind, default 10000). Set a limit to an empty value to disable it.
+ * <br><br>
+ * Behind a proxy, every request comes from the proxy's address. The
+ * addresses listed in <b>charles.ratelimit.proxies</b> (comma-separated,
+ * default none) are trusted to tell the client's address in the
+ * X-Forwarded-For header: the client is the last address of the header
+ * which is not a trusted proxy. A request rejected by the index limit
+ * does not cost the client a token.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class RateLimitFilter implements Filter {
+
+    /**
+     * Prefix of the searched paths.
+     */
+    private static final String SEARCH = "/api/s/";
+
+    /**
+     * Limits per client IP; null if disabled.
+     */
+    private final RateLimits clients;
+
+    /**
+     * Limits per index; null if disabled.
+     */
+    private final RateLimits indexes;
+
+    /**
+     * Addresses of the trusted proxies.
+     */
+    private final Set<String> proxies;
+
+    /**
+     * Ctor.
+     */
+    public RateLimitFilter() {
+        this(
+            RateLimits.parse(
+                System.getProperty("charles.ratelimit.ip", "10/30"),
+                Integer.valueOf(System.getProperty("charles.ratelimit.keys", "10000"))
+            ),
+            RateLimits.parse(
+                System.getProperty("charles.ratelimit.index", "100/200"),
+                Integer.valueOf(System.getProperty("charles.ratelimit.keys", "10000"))
+            ),
+            RateLimitFilter.proxies(System.getProperty("charles.ratelimit.proxies", ""))
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param clients Limits per client IP; null to disable.
+     * @param indexes Limits per index; null to disable.
+     */
+    public RateLimitFilter(final RateLimits clients, final RateLimits indexes) {
+        this(clients, indexes, Collections.<String>emptySet());
+    }
+
+    /**
+     * Ctor.
+     * @param clients Limits per client IP; null to disable.
+     * @param indexes Limits per index; null to disable.
+     * @param proxies Addresses of the trusted proxies.
+     */
+    public RateLimitFilter(
+        final RateLimits clients, final RateLimits indexes,
+        final Set<String> proxies
+    ) {
+        this.clients = clients;
+        this.indexes = indexes;
+        this.proxies = proxies;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {}
+
+    @Override
+    public void doFilter(
+        final ServletRequest request, final ServletResponse response,
+        final FilterChain chain
+    ) throws IOException, ServletException {
+        final HttpServletRequest http = (HttpServletRequest) request;
+        long wait = 0;
+        String client = null;
+        if(this.clients != null) {
+            client = this.client(http);
+            wait = this.clients.take(client);
+        }
+        if(wait == 0 && this.indexes != null) {
+            final String index = RateLimitFilter.index(http);
+            if(index != null) {
+                wait = this.indexes.take(index);
+                if(wait > 0 && client != null) {
+                    this.clients.refund(client);
+                }
+            }
+        }
+        if(wait > 0) {
+            final HttpServletResponse limited = (HttpServletResponse) response;
+            limited.setStatus(429);
+            limited.setHeader(
+                "Retry-After",
+                String.valueOf(
+                    Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1)
+                        / TimeUnit.SECONDS.toNanos(1))
+                )
+            );
+            limited.setContentType("text/plain; charset=UTF-8");
+            limited.getWriter().write("Too many requests, try again later.");
+        } else {
+            chain.doFilter(request, response);
+        }
+    }
+
+    @Override
+    public void destroy() {}
+
+    /**
+     * Address of the client: the remote address or, if that is a trusted
+     * proxy, the last address of X-Forwarded-For which is not a trusted
+     * proxy.
+     * @param request Request.
+     * @return Address.
+     */
+    private String client(final HttpServletRequest request) {
+        String client = request.getRemoteAddr();
+        final String forwarded = request.getHeader("X-Forwarded-For");
+        if(forwarded != null && this.proxies.contains(client)) {
+            final String[] hops = forwarded.split(",");
+            for(int idx = hops.length - 1; idx >= 0; --idx) {
+                final String hop = hops[idx].trim();
+                if(!hop.isEmpty()) {
+                    client = hop;
+                    if(!this.proxies.contains(hop)) {
+                        break;
+                    }
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Parse the trusted proxies.
+     * @param proxies Comma-separated addresses.
+     * @return Set of addresses.
+     */
+    static Set<String> proxies(final String proxies) {
+        final Set<String> parsed = new HashSet<>();
+        for(final String proxy : Arrays.asList(proxies.split(","))) {
+            if(!proxy.trim().isEmpty()) {
+                parsed.add(proxy.trim());
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Index searched by the request: {user}x{repo} from /api/s/{user}/{repo}.
+     * @param request Request.
+     * @return Index name or null if the request is not a search.
+     */
+    private static String index(final HttpServletRequest request) {
+        String path = request.getRequestURI();
+        final String context = request.getContextPath();
+        if(context != null && path.startsWith(context)) {
+            path = path.substring(context.length());
+        }
+        String index = null;
+        if(path.startsWith(SEARCH)) {
+            final String[] parts = path.substring(SEARCH.length()).split("/");
+            if(parts.length >= 2) {
+                index = (parts[0] + "x" + parts[1]).toLowerCase(Locale.ENGLISH);
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets by key (e.g. client IP). The key space is bounded: when
+ * there are too many buckets, the idle (full) ones are evicted, which
+ * changes nothing for their keys. If there are still too many, the new
+ * keys share one overflow bucket. The buckets are scanned for eviction
+ * at most once per second.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class RateLimits {
+
+    /**
+     * Tokens refilled per second.
+     */
+    private final double rate;
+
+    /**
+     * Capacity of each bucket.
+     */
+    private final int burst;
+
+    /**
+     * Max number of buckets.
+     */
+    private final int keys;
+
+    /**
+     * Buckets.
+     */
+    private final ConcurrentMap<String, TokenBucket> buckets =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Bucket shared by the keys which do not fit.
+     */
+    private final TokenBucket overflow;
+
+    /**
+     * When the buckets were last scanned for eviction, in nanos.
+     */
+    private final AtomicLong evicted;
+
+    /**
+     * Ctor.
+     * @param rate Tokens refilled per second, for each key.
+     * @param burst Capacity of each bucket.
+     * @param keys Max number of buckets.
+     */
+    public RateLimits(final double rate, final int burst, final int keys) {
+        this.rate = rate;
+        this.burst = burst;
+        this.keys = keys;
+        this.overflow = new TokenBucket(rate, burst);
+        this.evicted = new AtomicLong(
+            System.nanoTime() - TimeUnit.SECONDS.toNanos(1)
+        );
+    }
+
+    /**
+     * Parse limits from text like "10/30" (rate/burst).
+     * @param limits Limits as text; null or empty means no limits.
+     * @param keys Max number of buckets.
+     * @return RateLimits or null if there are no limits.
+     */
+    public static RateLimits parse(final String limits, final int keys) {
+        RateLimits parsed = null;
+        if(limits != null && !limits.trim().isEmpty()) {
+            final String[] parts = limits.trim().split("/");
+            final double rate = Double.parseDouble(parts[0].trim());
+            final int burst;
+            if(parts.length > 1) {
+                burst = Integer.parseInt(parts[1].trim());
+            } else {
+                burst = (int) Math.max(1, Math.ceil(rate));
+            }
+            parsed = new RateLimits(rate, burst, keys);
+        }
+        return parsed;
+    }
+
+    /**
+     * Take a token from the key's bucket.
+     * @param key Key.
+     * @return 0 if a token was taken, otherwise the nanos to wait until
+     *  a token is available.
+     */
+    public long take(final String key) {
+        return this.take(key, System.nanoTime());
+    }
+
+    /**
+     * Take a token from the key's bucket.
+     * @param key Key.
+     * @param now Current time in nanos.
+     * @return 0 if a token was taken, otherwise the nanos to wait.
+     */
+    long take(final String key, final long now) {
+        TokenBucket bucket = this.buckets.get(key);
+        if(bucket == null) {
+            if(this.buckets.size() >= this.keys) {
+                this.evict(now);
+            }
+            if(this.buckets.size() < this.keys) {
+                this.buckets.putIfAbsent(
+                    key, new TokenBucket(this.rate, this.burst, now)
+                );
+                bucket = this.buckets.get(key);
+            } else {
+                bucket = this.overflow;
+            }
+        }
+        return bucket.take(now);
+    }
+
+    /**
+     * Give back a token taken from the key's bucket, but not used.
+     * @param key Key.
+     */
+    public void refund(final String key) {
+        TokenBucket bucket = this.buckets.get(key);
+        if(bucket == null) {
+            bucket = this.overflow;
+        }
+        bucket.refund();
+    }
+
+    /**
+     * Number of buckets.
+     * @return Integer.
+     */
+    int size() {
+        return this.buckets.size();
+    }
+
+    /**
+     * Evict the idle buckets.
+     * @param now Current time in nanos.
+     */
+    private void evict(final long now) {
+        final long last = this.evicted.get();
+        if(now - last < TimeUnit.SECONDS.toNanos(1)
+            || !this.evicted.compareAndSet(last, now)) {
+            return;
+        }
+        final Iterator<TokenBucket> all = this.buckets.values().iterator();
+        while (all.hasNext()) {
+            if(all.next().idle(now)) {
+                all.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as a GCRA (generic cell rate
+ * algorithm): instead of a number of tokens and a refill timestamp, it
+ * keeps a single value, the theoretical arrival time (TAT) of the next
+ * request, which is updated with compare-and-set.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class TokenBucket {
+
+    /**
+     * Nanos needed to refill one token.
+     */
+    private final long interval;
+
+    /**
+     * How far ahead the TAT may go: the burst, in nanos.
+     */
+    private final long tolerance;
+
+    /**
+     * Theoretical arrival time, in nanos.
+     */
+    private final AtomicLong tat;
+
+    /**
+     * Ctor.
+     * @param rate Tokens refilled per second.
+     * @param burst Capacity of the bucket.
+     */
+    public TokenBucket(final double rate, final int burst) {
+        this(rate, burst, System.nanoTime());
+    }
+
+    /**
+     * Ctor.
+     * @param rate Tokens refilled per second.
+     * @param burst Capacity of the bucket.
+     * @param now Current time in nanos.
+     */
+    TokenBucket(final double rate, final int burst, final long now) {
+        if(rate <= 0 || burst <= 0) {
+            throw new IllegalArgumentException(
+                "The rate and the burst must be positive!"
+            );
+        }
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        this.tolerance = this.interval * burst;
+        this.tat = new AtomicLong(now);
+    }
+
+    /**
+     * Take a token.
+     * @return 0 if a token was taken, otherwise the nanos to wait until
+     *  a token is available.
+     */
+    public long take() {
+        return this.take(System.nanoTime());
+    }
+
+    /**
+     * Take a token.
+     * @param now Current time in nanos.
+     * @return 0 if a token was taken, otherwise the nanos to wait until
+     *  a token is available.
+     */
+    long take(final long now) {
+        while (true) {
+            final long current = this.tat.get();
+            final long next = Math.max(current, now) + this.interval;
+            final long ahead = next - now;
+            if(ahead > this.tolerance) {
+                return ahead - this.tolerance;
+            }
+            if(this.tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Give back a token which was taken, but not used.
+     */
+    public void refund() {
+        this.tat.addAndGet(-this.interval);
+    }
+
+    /**
+     * Is the bucket full (i.e. unused for long enough that it could be
+     * dropped and created again, without any difference)?
+     * @param now Current time in nanos.
+     * @return True or false.
+     */
+    boolean idle(final long now) {
+        return this.tat.get() - now <= 0;
+    }
+}
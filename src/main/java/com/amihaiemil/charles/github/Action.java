@@ -28,6 +28,9 @@ package com.amihaiemil.charles.github;
 import java.io.File;
 import java.io.IOException;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.json.JsonObject;
 
 import org.apache.log4j.FileAppender;
 import org.apache.log4j.Level;
@@ -67,22 +70,43 @@ public class Action {
      */
     private LogsLocation logs;
 
+    /**
+     * Comment which triggered the action, if known; null otherwise.
+     */
+    private JsonObject comment;
+
     /**
      * Constructor.
      * @param issue - The Github issue where the agent was mentioned.
      * @throws IOException If the file appender cannot be instantiated.
      */
     public Action(Issue issue) throws IOException {
+        this(issue, null);
+    }
+
+    /**
+     * Constructor.
+     * @param issue - The Github issue where the agent was mentioned.
+     * @param comment - The comment where the agent was mentioned, if known
+     *  (e.g. from the webhook payload); null to look for it in the issue.
+     * @throws IOException If the file appender cannot be instantiated.
+     */
+    public Action(Issue issue, JsonObject comment) throws IOException {
         this.id = UUID.randomUUID().toString();
         this.issue = issue;
+        this.comment = comment;
         this.setupLog4jForAction();
         this.logs = new LogsOnServer(
             System.getProperty("charles.rest.logs.endpoint"), this.id + ".log"
         );
     }
     
-    
-    public void perform() {
+    /**
+     * Perform the action.
+     * @return True if its command was a crawl and the website was indexed.
+     */
+    public boolean perform() {
+        final AtomicBoolean indexed = new AtomicBoolean(false);
         try {
             this.logger.info("Started action " + this.id);
             final Conversation talk = new Conversation(
@@ -94,14 +118,23 @@ public class Action {
                                     new DeletePageKn(
                                         new Confused()
                                     )
-                                )
-                            )
-                        )
+                                ),
+                                indexed
+                            ),
+                            indexed
+                        ),
+                        indexed
                     )
                 )
             );
+            final Command command;
+            if(this.comment == null) {
+                command = new LastComment(this.issue);
+            } else {
+                command = new KnownComment(this.issue, this.comment);
+            }
             final Steps steps = talk.start(
-                new ValidCommand(new LastComment(this.issue)),
+                new ValidCommand(command),
                 this.logs
             );
             steps.perform(this.logger);
@@ -115,6 +148,7 @@ public class Action {
                 this.logger.error("FAILED TO SEND ERROR-REPLY!", errReplyEx);
             }
         }
+        return indexed.get();
     }
 
 
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+
+import com.jcabi.github.Github;
+
+/**
+ * Username of the Github agent, looked up at most once. The default
+ * instance takes it from the system property <b>github.auth.login</b>
+ * or, if that is missing, asks the Github API once, with the shared
+ * {@link GithubClient}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class AgentLogin {
+
+    /**
+     * Instance configured by the system properties.
+     */
+    private static AgentLogin system;
+
+    /**
+     * Github, to ask for the login; null if it is known.
+     */
+    private final Github github;
+
+    /**
+     * The login, once known.
+     */
+    private volatile String login;
+
+    /**
+     * Ctor.
+     * @param login Known login.
+     */
+    public AgentLogin(final String login) {
+        this.github = null;
+        this.login = login;
+    }
+
+    /**
+     * Ctor.
+     * @param github Github, to ask for the login.
+     */
+    public AgentLogin(final Github github) {
+        this.github = github;
+    }
+
+    /**
+     * Instance configured by the system properties.
+     * @return AgentLogin.
+     */
+    public static synchronized AgentLogin system() {
+        if(system == null) {
+            final String login = System.getProperty("github.auth.login");
+            if(login == null || login.isEmpty()) {
+                system = new AgentLogin(GithubClient.system().github());
+            } else {
+                system = new AgentLogin(login);
+            }
+        }
+        return system;
+    }
+
+    /**
+     * The login.
+     * @return String.
+     * @throws IOException If it cannot be fetched from Github.
+     */
+    public String value() throws IOException {
+        String value = this.login;
+        if(value == null) {
+            synchronized (this) {
+                if(this.login == null) {
+                    this.login = this.github.users().self().login();
+                }
+                value = this.login;
+            }
+        }
+        return value;
+    }
+}
@@ -28,6 +28,7 @@ package com.amihaiemil.charles.github;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.URI;
 
 import javax.json.JsonObject;
 
@@ -36,7 +37,6 @@ import org.hamcrest.Matchers;
 
 import com.jcabi.github.Repo;
 import com.jcabi.http.Request;
-import com.jcabi.http.request.ApacheRequest;
 import com.jcabi.http.response.RestResponse;
 
 /**
@@ -80,6 +80,7 @@ public class CachedRepo {
     /**
      * Returns true if the repository has a gh-pages branch, false otherwise.
      * The result is <b>cached</b> and so the http call to Github API is performed only at the first call.
+     * The call is made through the repo's Github, so it is authenticated.
      * @return true if there is a gh-pages branch, false otherwise.
      * @throws IOException If an error occurs
      *  while communicating with the Github API.
@@ -89,7 +90,9 @@ public class CachedRepo {
             if(this.ghPagesBranch == null) {
                 String branchesUrlPattern = this.json().getString("branches_url");
                 String ghPagesUrl = branchesUrlPattern.substring(0, branchesUrlPattern.indexOf("{")) + "/gh-pages";
-                Request req = new ApacheRequest(ghPagesUrl);
+                Request req = this.repo.github().entry()
+                    .uri().set(URI.create(ghPagesUrl)).back()
+                    .method(Request.GET);
                 this.ghPagesBranch = req.fetch().as(RestResponse.class)
                     .assertStatus(
                         Matchers.isOneOf(
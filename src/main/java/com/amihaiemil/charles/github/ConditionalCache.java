@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.jcabi.http.Response;
+
+/**
+ * Responses of the Github API kept by the {@link ConditionalWire}, with
+ * their ETag or Last-Modified. The least recently used ones are evicted
+ * when there are too many.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class ConditionalCache {
+
+    /**
+     * Responses by key. Guarded by itself.
+     */
+    private final Map<String, Response> responses;
+
+    /**
+     * Ctor.
+     * @param max Max number of responses.
+     */
+    public ConditionalCache(final int max) {
+        this.responses = new LinkedHashMap<String, Response>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Response> eldest) {
+                return this.size() > max;
+            }
+        };
+    }
+
+    /**
+     * Cached response.
+     * @param key Key.
+     * @return Response or null if there is none.
+     */
+    public Response get(final String key) {
+        synchronized (this.responses) {
+            return this.responses.get(key);
+        }
+    }
+
+    /**
+     * Cache a response.
+     * @param key Key.
+     * @param response Response.
+     */
+    public void put(final String key, final Response response) {
+        synchronized (this.responses) {
+            this.responses.put(key, response);
+        }
+    }
+
+    /**
+     * Forget a response.
+     * @param key Key.
+     */
+    public void remove(final String key) {
+        synchronized (this.responses) {
+            this.responses.remove(key);
+        }
+    }
+
+    /**
+     * Number of cached responses.
+     * @return Integer.
+     */
+    public int size() {
+        synchronized (this.responses) {
+            return this.responses.size();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.jcabi.http.ImmutableHeader;
+import com.jcabi.http.Request;
+import com.jcabi.http.Response;
+import com.jcabi.http.Wire;
+import com.jcabi.http.request.DefaultResponse;
+import com.jcabi.immutable.Array;
+
+/**
+ * Wire which makes the GET requests conditional. The responses with an
+ * ETag or Last-Modified header are cached; the next time, the request is
+ * sent with If-None-Match or If-Modified-Since and, if Github answers 304
+ * Not Modified, the cached response is returned, with the headers of the
+ * 304 (e.g. the rate limit ones). A 304 does not count against the Github
+ * rate limit. Use it like:
+ * <pre>
+ *     request.through(ConditionalWire.class, cache)
+ * </pre>
+ * Requests which are already conditional are not touched.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class ConditionalWire implements Wire {
+
+    /**
+     * Original wire.
+     */
+    private final Wire origin;
+
+    /**
+     * Cached responses.
+     */
+    private final ConditionalCache cache;
+
+    /**
+     * Ctor.
+     * @param origin Original wire.
+     * @param cache Cached responses.
+     */
+    public ConditionalWire(final Wire origin, final ConditionalCache cache) {
+        this.origin = origin;
+        this.cache = cache;
+    }
+
+    @Override
+    public Response send(
+        final Request req, final String home, final String method,
+        final Collection<Map.Entry<String, String>> headers,
+        final InputStream content, final int connect, final int read
+    ) throws IOException {
+        final Response response;
+        if(Request.GET.equals(method)
+            && ConditionalWire.header(headers, "If-None-Match") == null
+            && ConditionalWire.header(headers, "If-Modified-Since") == null) {
+            response = this.conditional(req, home, method, headers, content, connect, read);
+        } else {
+            response = this.origin.send(req, home, method, headers, content, connect, read);
+        }
+        return response;
+    }
+
+    /**
+     * Send a GET request, conditional if its response is cached.
+     * @param req Request.
+     * @param home URI.
+     * @param method Method.
+     * @param headers Headers.
+     * @param content Body.
+     * @param connect Connect timeout.
+     * @param read Read timeout.
+     * @return Response.
+     * @throws IOException If something goes wrong.
+     */
+    private Response conditional(
+        final Request req, final String home, final String method,
+        final Collection<Map.Entry<String, String>> headers,
+        final InputStream content, final int connect, final int read
+    ) throws IOException {
+        final String key = home + '\n'
+            + ConditionalWire.header(headers, "Accept") + '\n'
+            + ConditionalWire.header(headers, "Authorization");
+        final Response cached = this.cache.get(key);
+        final Collection<Map.Entry<String, String>> sent;
+        if(cached == null) {
+            sent = headers;
+        } else {
+            sent = new ArrayList<>(headers);
+            final String etag = ConditionalWire.header(cached, "ETag");
+            if(etag == null) {
+                sent.add(
+                    new ImmutableHeader(
+                        "If-Modified-Since", ConditionalWire.header(cached, "Last-Modified")
+                    )
+                );
+            } else {
+                sent.add(new ImmutableHeader("If-None-Match", etag));
+            }
+        }
+        Response response = this.origin.send(req, home, method, sent, content, connect, read);
+        if(cached != null && response.status() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            response = ConditionalWire.refreshed(req, cached, response);
+        } else if(response.status() == HttpURLConnection.HTTP_OK
+            && (ConditionalWire.header(response, "ETag") != null
+                || ConditionalWire.header(response, "Last-Modified") != null)) {
+            this.cache.put(key, response);
+        } else if(cached != null) {
+            this.cache.remove(key);
+        }
+        return response;
+    }
+
+    /**
+     * The cached response, with the headers of the 304.
+     * @param req Request.
+     * @param cached Cached response.
+     * @param fresh The 304 response.
+     * @return Response.
+     */
+    private static Response refreshed(
+        final Request req, final Response cached, final Response fresh
+    ) {
+        final Map<String, List<String>> merged =
+            new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        merged.putAll(cached.headers());
+        for(final Map.Entry<String, List<String>> header : fresh.headers().entrySet()) {
+            if(!"Content-Length".equalsIgnoreCase(header.getKey())) {
+                merged.put(header.getKey(), header.getValue());
+            }
+        }
+        final List<Map.Entry<String, String>> headers = new ArrayList<>();
+        for(final Map.Entry<String, List<String>> header : merged.entrySet()) {
+            for(final String value : header.getValue()) {
+                headers.add(new ImmutableHeader(header.getKey(), value));
+            }
+        }
+        return new DefaultResponse(
+            req, cached.status(), cached.reason(), new Array<>(headers), cached.binary()
+        );
+    }
+
+    /**
+     * Value of a request header.
+     * @param headers Headers.
+     * @param name Name.
+     * @return Value or null if it is missing.
+     */
+    private static String header(
+        final Collection<Map.Entry<String, String>> headers, final String name
+    ) {
+        String value = null;
+        for(final Map.Entry<String, String> header : headers) {
+            if(name.equalsIgnoreCase(header.getKey())) {
+                value = header.getValue();
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Value of a response header.
+     * @param response Response.
+     * @param name Name.
+     * @return Value or null if it is missing.
+     */
+    private static String header(final Response response, final String name) {
+        String value = null;
+        for(final Map.Entry<String, List<String>> header : response.headers().entrySet()) {
+            if(name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                value = header.getValue().get(0);
+                break;
+            }
+        }
+        return value;
+    }
+}
@@ -32,7 +32,8 @@ import org.slf4j.Logger;
 import com.amihaiemil.charles.aws.AmazonElasticSearch;
 
 /**
- * Step that deletes the index from AWS es.
+ * Step that deletes the index from AWS es. In shared indexes mode,
+ * only the repo's pages are deleted from the shared index.
  * @author Mihai Andronache (amihaiemil@gmail.com)
  * @version  $Id$
  * @since 1.0.0
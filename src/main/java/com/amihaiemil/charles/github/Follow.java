@@ -39,16 +39,37 @@ import com.jcabi.http.Request;
  */
 public final class Follow extends IntermediaryStep {
 
+    /**
+     * Github rate limit.
+     */
+    private final RateLimit limit;
+
     /**
      * Ctor.
      * @param next Next step to execute.
      */
     public Follow(Step next) {
+        this(next, RateLimit.system());
+    }
+
+    /**
+     * Ctor.
+     * @param next Next step to execute.
+     * @param limit Github rate limit; the user is not followed if the
+     *  calls left are needed for replies.
+     */
+    public Follow(final Step next, final RateLimit limit) {
         super(next);
+        this.limit = limit;
     }
 
     @Override
     public void perform(Command command, Logger logger) throws IOException {
+        if(!this.limit.cosmetic()) {
+            logger.info("Github rate limit is low, not following the user.");
+            this.next().perform(command, logger);
+            return;
+        }
         final String author = command.authorLogin();
         final Github github = command.issue().repo().github();
         final Request follow = github.entry()
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import com.jcabi.github.Github;
+import com.jcabi.github.RtGithub;
+import com.jcabi.http.wire.RetryWire;
+
+/**
+ * Github client shared by all the Actions: one authenticated RtGithub,
+ * sending its requests through a {@link PooledWire}, so the connections
+ * to the Github API are kept alive and reused, and through a
+ * {@link ConditionalWire}, so the GET requests which were answered before
+ * are made conditional. Every response updates the {@link RateLimit}.<br><br>
+ * The default instance uses the <b>github.auth.token</b>, at most
+ * <b>charles.github.connections</b> (default 20) connections at the same
+ * time and caches at most <b>charles.github.cache</b> (default 1000)
+ * responses. Idle connections are closed after 30 seconds.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class GithubClient {
+
+    /**
+     * Instance configured by the system properties.
+     */
+    private static GithubClient system;
+
+    /**
+     * Pooled HTTP client.
+     */
+    private final CloseableHttpClient http;
+
+    /**
+     * Github.
+     */
+    private final Github github;
+
+    /**
+     * Ctor.
+     * @param token Github auth token.
+     * @param http Pooled HTTP client.
+     * @param cache Cached responses.
+     * @param limit Rate limit, updated by every response.
+     */
+    public GithubClient(
+        final String token, final CloseableHttpClient http,
+        final ConditionalCache cache, final RateLimit limit
+    ) {
+        this.http = http;
+        this.github = new RtGithub(
+            new RtGithub(token).entry()
+                .through(PooledWire.class, http)
+                .through(ConditionalWire.class, cache)
+                .through(RateLimitWire.class, limit)
+                .through(RetryWire.class)
+        );
+    }
+
+    /**
+     * Instance configured by the system properties.
+     * @return GithubClient.
+     */
+    public static synchronized GithubClient system() {
+        if(system == null) {
+            system = new GithubClient(
+                System.getProperty("github.auth.token"),
+                GithubClient.pooled(
+                    Integer.valueOf(System.getProperty("charles.github.connections", "20"))
+                ),
+                new ConditionalCache(
+                    Integer.valueOf(System.getProperty("charles.github.cache", "1000"))
+                ),
+                RateLimit.system()
+            );
+        }
+        return system;
+    }
+
+    /**
+     * HTTP client with a pool of keep-alive connections.
+     * @param connections Max number of connections.
+     * @return CloseableHttpClient.
+     */
+    public static CloseableHttpClient pooled(final int connections) {
+        final PoolingHttpClientConnectionManager pool =
+            new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        pool.setMaxTotal(connections);
+        pool.setDefaultMaxPerRoute(connections);
+        pool.setValidateAfterInactivity(5000);
+        return HttpClients.custom()
+            .setConnectionManager(pool)
+            .evictIdleConnections(30, TimeUnit.SECONDS)
+            .useSystemProperties()
+            .build();
+    }
+
+    /**
+     * The shared Github.
+     * @return Github.
+     */
+    public Github github() {
+        return this.github;
+    }
+
+    /**
+     * Close the pooled connections.
+     * @throws IOException If something goes wrong.
+     */
+    public void close() throws IOException {
+        this.http.close();
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.json.JsonObject;
+
+/**
+ * Is a comment a heavy command, one which crawls pages? Only the comment's
+ * body is looked at, so it can be told before the Action starts.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class HeavyCommand {
+
+    /**
+     * Types of the commands which crawl.
+     */
+    private static final Set<String> CRAWLS = new HashSet<>(
+        Arrays.asList("indexsite", "indexsitemap", "indexpage")
+    );
+
+    /**
+     * Comment json; null if it is not known yet.
+     */
+    private final JsonObject comment;
+
+    /**
+     * Ctor.
+     * @param comment Comment json; null if it is not known yet.
+     */
+    public HeavyCommand(final JsonObject comment) {
+        this.comment = comment;
+    }
+
+    /**
+     * Is it heavy? A comment which is not known yet might be anything,
+     * so it is considered heavy.
+     * @return True or false.
+     * @throws IOException If the command cannot be categorized.
+     */
+    public boolean value() throws IOException {
+        return this.comment == null || CRAWLS.contains(this.type());
+    }
+
+    /**
+     * Type of the command (e.g. indexsite).
+     * @return String or null if the comment is not known yet.
+     * @throws IOException If the command cannot be categorized.
+     */
+    public String type() throws IOException {
+        String type = null;
+        if(this.comment != null) {
+            type = new English().categorize(new KnownComment(null, this.comment));
+        }
+        return type;
+    }
+
+    /**
+     * The work the command asks for, so that two commands asking for the
+     * same work can be told apart from the others: indexsite alone, since
+     * it crawls the whole site, or indexpage and indexsitemap followed by
+     * their link.
+     * @return String or null if it is not a crawl or its link is missing.
+     * @throws IOException If the command cannot be categorized.
+     */
+    public String work() throws IOException {
+        final String type = this.type();
+        String work = null;
+        if("indexsite".equals(type)) {
+            work = type;
+        } else if(CRAWLS.contains(type)) {
+            final String body = this.comment.getString("body", "");
+            final int start = body.indexOf('(');
+            final int end = body.indexOf(')', start + 1);
+            if(start >= 0 && end > start + 1) {
+                work = type + ' ' + body.substring(start + 1, end).trim();
+            }
+        }
+        return work;
+    }
+}
@@ -36,6 +36,7 @@ import com.amihaiemil.charles.LiveWebPage;
 import com.amihaiemil.charles.SnapshotWebPage;
 import com.amihaiemil.charles.WebPage;
 import com.amihaiemil.charles.aws.AmazonElasticSearch;
+import com.amihaiemil.charles.aws.WarmUpOnExport;
 
 /**
  * Step to index a single page.
@@ -71,7 +72,8 @@ public class IndexPage extends IndexStep {
              driver.get(link);
              WebPage snapshot = new SnapshotWebPage(new LiveWebPage(driver));
              logger.info("Page crawled. Sending to aws...");
-             new AmazonElasticSearch(
+             new WarmUpOnExport(
+                 new AmazonElasticSearch(command.indexName()),
                  command.indexName()
              ).export(Arrays.asList(snapshot));
              logger.info("Page successfully sent to aws!");
@@ -26,6 +26,7 @@
 package com.amihaiemil.charles.github;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The bot knows how to index a single page from the website.
@@ -40,12 +41,27 @@ public final class IndexPageKn implements Knowledge {
      */
     private Knowledge notIdxPage;
 
+    /**
+     * Set to true if the website is indexed.
+     */
+    private final AtomicBoolean indexed;
+
     /**
      * Ctor.
      * @param notIdxPage What do we do if it's not an 'indexpage' command?
      */
     public IndexPageKn(final Knowledge notIdxPage) {
+        this(notIdxPage, new AtomicBoolean());
+    }
+
+    /**
+     * Ctor.
+     * @param notIdxPage What do we do if it's not an 'indexpage' command?
+     * @param indexed Set to true if the website is indexed.
+     */
+    public IndexPageKn(final Knowledge notIdxPage, final AtomicBoolean indexed) {
         this.notIdxPage = notIdxPage;
+        this.indexed = indexed;
     }
 
     @Override
@@ -64,16 +80,19 @@ public final class IndexPageKn implements Knowledge {
 	                            )
 	                        ),
 	                        new IndexPage(
-	                            new StarRepo(
-	                                new SendReply(
-	                                    new TextReply(
-	                                        com,
-	                                        String.format(
-	                                            com.language().response("index.finished.comment"),
-	                                            com.authorLogin(), logs.address()
-	                                        )
-	                                    ),
-	                                    new Follow(new Step.FinalStep())
+	                            new Indexed(
+	                                this.indexed,
+	                                new StarRepo(
+	                                    new SendReply(
+	                                        new TextReply(
+	                                            com,
+	                                            String.format(
+	                                                com.language().response("index.finished.comment"),
+	                                                com.authorLogin(), logs.address()
+	                                            )
+	                                        ),
+	                                        new Follow(new Step.FinalStep())
+	                                    )
 	                                )
 	                            )
 	                        )
@@ -37,6 +37,7 @@ import com.amihaiemil.charles.IgnoredPatterns;
 import com.amihaiemil.charles.RetriableCrawl;
 import com.amihaiemil.charles.WebCrawl;
 import com.amihaiemil.charles.aws.AmazonElasticSearch;
+import com.amihaiemil.charles.aws.WarmUpOnExport;
 
 /**
  * Step to index a website.
@@ -105,7 +106,10 @@ public class IndexSite extends IndexStep {
             siteIndexUrl,
             driver,
             new IgnoredPatterns(command.repo().charlesYml().ignored()),
-            new AmazonElasticSearch(command.indexName()),
+            new WarmUpOnExport(
+                new AmazonElasticSearch(command.indexName()),
+                command.indexName()
+            ),
             20
         );
         return new RetriableCrawl(siteCrawl, 5);
@@ -26,6 +26,7 @@
 package com.amihaiemil.charles.github;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The bot knows how to index an entire website.
@@ -40,12 +41,27 @@ public final class IndexSiteKn implements Knowledge {
      */
     private Knowledge notIdxSite;
 
+    /**
+     * Set to true if the website is indexed.
+     */
+    private final AtomicBoolean indexed;
+
     /**
      * Ctor.
      * @param notIdxSite What do we do if it's not an 'indexsite' command?
      */
     public IndexSiteKn(final Knowledge notIdxSite) {
+        this(notIdxSite, new AtomicBoolean());
+    }
+
+    /**
+     * Ctor.
+     * @param notIdxSite What do we do if it's not an 'indexsite' command?
+     * @param indexed Set to true if the website is indexed.
+     */
+    public IndexSiteKn(final Knowledge notIdxSite, final AtomicBoolean indexed) {
         this.notIdxSite = notIdxSite;
+        this.indexed = indexed;
     }
 
     @Override
@@ -63,16 +79,19 @@ public final class IndexSiteKn implements Knowledge {
 		                    )
 		                ),
 		                new IndexSite(
-		                    new StarRepo(
-		                        new SendReply(
-		                            new TextReply(
-		                                com,
-		                                String.format(
-		                                    com.language().response("index.finished.comment"),
-		                                    com.authorLogin(), logs.address()
-		                                )
-		                            ),
-		                            new Follow(new Step.FinalStep())
+		                    new Indexed(
+		                        this.indexed,
+		                        new StarRepo(
+		                            new SendReply(
+		                                new TextReply(
+		                                    com,
+		                                    String.format(
+		                                        com.language().response("index.finished.comment"),
+		                                        com.authorLogin(), logs.address()
+		                                    )
+		                                ),
+		                                new Follow(new Step.FinalStep())
+		                            )
 		                        )
 		                    )
 		                )
@@ -35,6 +35,7 @@ import com.amihaiemil.charles.RetriableCrawl;
 import com.amihaiemil.charles.SitemapXmlCrawl;
 import com.amihaiemil.charles.WebCrawl;
 import com.amihaiemil.charles.aws.AmazonElasticSearch;
+import com.amihaiemil.charles.aws.WarmUpOnExport;
 import com.amihaiemil.charles.sitemap.SitemapXmlOnline;
 
 /**
@@ -72,7 +73,10 @@ public class IndexSitemap extends IndexStep {
                 new SitemapXmlCrawl(
                     driver,
                     new SitemapXmlOnline(link),
-                    new AmazonElasticSearch(command.indexName()),
+                    new WarmUpOnExport(
+                        new AmazonElasticSearch(command.indexName()),
+                        command.indexName()
+                    ),
                     20
                 ),
                 5
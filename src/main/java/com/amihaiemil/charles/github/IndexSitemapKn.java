@@ -26,6 +26,7 @@
 package com.amihaiemil.charles.github;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The bot knows how to index a website based on its sitemap.xml
@@ -40,12 +41,27 @@ public final class IndexSitemapKn implements Knowledge {
      */
     private Knowledge notIdxSitemap;
 
+    /**
+     * Set to true if the website is indexed.
+     */
+    private final AtomicBoolean indexed;
+
     /**
      * Ctor.
      * @param notIdxSitemap What do we do if it's not an 'indexpage' command?
      */
     public IndexSitemapKn(final Knowledge notIdxSitemap) {
+        this(notIdxSitemap, new AtomicBoolean());
+    }
+
+    /**
+     * Ctor.
+     * @param notIdxSitemap What do we do if it's not an 'indexpage' command?
+     * @param indexed Set to true if the website is indexed.
+     */
+    public IndexSitemapKn(final Knowledge notIdxSitemap, final AtomicBoolean indexed) {
         this.notIdxSitemap = notIdxSitemap;
+        this.indexed = indexed;
     }
 
     @Override
@@ -63,16 +79,19 @@ public final class IndexSitemapKn implements Knowledge {
 	                            )
 	                        ),
 	                        new IndexSitemap(
-	                            new StarRepo(
-	                                new SendReply(
-	                                    new TextReply(
-	                                        com,
-	                                        String.format(
-	                                            com.language().response("index.finished.comment"),
-	                                            com.authorLogin(), logs.address()
-	                                        )
-	                                    ),
-	                                    new Follow(new Step.FinalStep())
+	                            new Indexed(
+	                                this.indexed,
+	                                new StarRepo(
+	                                    new SendReply(
+	                                        new TextReply(
+	                                            com,
+	                                            String.format(
+	                                                com.language().response("index.finished.comment"),
+	                                                com.authorLogin(), logs.address()
+	                                            )
+	                                        ),
+	                                        new Follow(new Step.FinalStep())
+	                                    )
 	                                )
 	                            )
 	                        )
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import com.jcabi.http.ImmutableHeader;
+import com.jcabi.http.Request;
+import com.jcabi.http.Response;
+import com.jcabi.http.Wire;
+import com.jcabi.http.request.DefaultResponse;
+import com.jcabi.immutable.Array;
+
+/**
+ * Wire which sends the requests with a shared HTTP client, instead of the
+ * new client built by ApacheRequest for every request, so the connections
+ * are pooled and kept alive between requests. Use it like:
+ * <pre>
+ *     new ApacheRequest(uri).through(PooledWire.class, client)
+ * </pre>
+ * It sends the request itself and never calls the original wire, so it has
+ * to be the first wire in the chain: any wire put through before it is
+ * skipped. The body is sent only if there is one, or if the method
+ * (POST, PUT or PATCH) expects it.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class PooledWire implements Wire {
+
+    /**
+     * Methods which always send a body, even an empty one.
+     */
+    private static final Set<String> ENCLOSING = new HashSet<>(
+        Arrays.asList(Request.POST, Request.PUT, Request.PATCH)
+    );
+
+    /**
+     * Shared HTTP client.
+     */
+    private final CloseableHttpClient client;
+
+    /**
+     * Ctor.
+     * @param origin Original wire, which is never called.
+     * @param client Shared HTTP client.
+     */
+    public PooledWire(final Wire origin, final CloseableHttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Response send(
+        final Request req, final String home, final String method,
+        final Collection<Map.Entry<String, String>> headers,
+        final InputStream content, final int connect, final int read
+    ) throws IOException {
+        final byte[] body = PooledWire.body(content);
+        final HttpRequestBase request;
+        if(body.length > 0 || PooledWire.ENCLOSING.contains(method)) {
+            final HttpEntityEnclosingRequestBase enclosing =
+                new HttpEntityEnclosingRequestBase() {
+                    @Override
+                    public String getMethod() {
+                        return method;
+                    }
+                };
+            enclosing.setEntity(new ByteArrayEntity(body));
+            request = enclosing;
+        } else {
+            request = new HttpRequestBase() {
+                @Override
+                public String getMethod() {
+                    return method;
+                }
+            };
+        }
+        request.setURI(URI.create(home));
+        request.setConfig(
+            RequestConfig.custom()
+                .setCircularRedirectsAllowed(false)
+                .setRedirectsEnabled(false)
+                .setConnectTimeout(connect)
+                .setSocketTimeout(read)
+                .build()
+        );
+        for(final Map.Entry<String, String> header : headers) {
+            request.addHeader(header.getKey(), header.getValue());
+        }
+        try (CloseableHttpResponse response = this.client.execute(request)) {
+            final List<Map.Entry<String, String>> received = new LinkedList<>();
+            for(final Header header : response.getAllHeaders()) {
+                received.add(new ImmutableHeader(header.getName(), header.getValue()));
+            }
+            final HttpEntity entity = response.getEntity();
+            final byte[] payload;
+            if(entity == null) {
+                payload = new byte[0];
+            } else {
+                payload = EntityUtils.toByteArray(entity);
+            }
+            return new DefaultResponse(
+                req,
+                response.getStatusLine().getStatusCode(),
+                response.getStatusLine().getReasonPhrase(),
+                new Array<>(received),
+                payload
+            );
+        }
+    }
+
+    /**
+     * Read the body of the request.
+     * @param content Content of the request, may be null.
+     * @return Bytes, empty if there is no body.
+     * @throws IOException If the content cannot be read.
+     */
+    private static byte[] body(final InputStream content) throws IOException {
+        byte[] body = null;
+        if(content != null) {
+            body = EntityUtils.toByteArray(new InputStreamEntity(content));
+        }
+        if(body == null) {
+            body = new byte[0];
+        }
+        return body;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+/**
+ * The Github API rate limit, as told by the X-RateLimit-Remaining and
+ * X-RateLimit-Reset headers of the responses (see {@link RateLimitWire}).
+ * It is shared by all the Actions, which ask it before starting:
+ * <ul>
+ *     <li>while plenty of calls remain, the actions start right away;</li>
+ *     <li>under <b>5 x reserve</b> calls, the starts are paced, so the
+ *     remaining calls last until the reset;</li>
+ *     <li>under <b>reserve</b> calls, the actions are parked until the
+ *     reset.</li>
+ * </ul>
+ * The cosmetic steps (follow the commander, star the repo) are skipped
+ * under <b>2 x reserve</b> calls, to keep the budget for the replies.
+ * The default instance reads the reserve from the system property
+ * <b>charles.github.reserve</b> (default 100).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class RateLimit {
+
+    /**
+     * Instance configured by the system properties.
+     */
+    private static final RateLimit SYSTEM = new RateLimit(
+        Integer.valueOf(System.getProperty("charles.github.reserve", "100"))
+    );
+
+    /**
+     * Calls kept for the actions already running.
+     */
+    private final int reserve;
+
+    /**
+     * Remaining calls; -1 if not known yet. Guarded by this.
+     */
+    private int remaining = -1;
+
+    /**
+     * When the limit resets, in epoch millis. Guarded by this.
+     */
+    private long reset;
+
+    /**
+     * When the next paced action may start, in epoch millis.
+     * Guarded by this.
+     */
+    private long next;
+
+    /**
+     * Ctor.
+     * @param reserve Calls kept for the actions already running.
+     */
+    public RateLimit(final int reserve) {
+        this.reserve = reserve;
+    }
+
+    /**
+     * Instance configured by the system properties.
+     * @return RateLimit.
+     */
+    public static RateLimit system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Update with the headers of a response. The responses of the same
+     * window may come out of order, so the lowest remaining is kept.
+     * @param remaining Remaining calls.
+     * @param reset When the limit resets, in epoch seconds.
+     */
+    public synchronized void update(final int remaining, final long reset) {
+        final long millis = reset * 1000;
+        if(millis > this.reset) {
+            this.reset = millis;
+            this.remaining = remaining;
+        } else if(millis == this.reset) {
+            this.remaining = Math.min(this.remaining, remaining);
+        }
+    }
+
+    /**
+     * Remaining calls.
+     * @return Integer or -1 if not known yet.
+     */
+    public synchronized int remaining() {
+        return this.remaining;
+    }
+
+    /**
+     * May an action start now? If it may, it is counted for the pacing.
+     * @return 0 if it may start now, otherwise the millis to wait.
+     */
+    public long acquire() {
+        return this.acquire(System.currentTimeMillis());
+    }
+
+    /**
+     * May an action start now? If it may, it is counted for the pacing.
+     * @param now Current time, in epoch millis.
+     * @return 0 if it may start now, otherwise the millis to wait.
+     */
+    synchronized long acquire(final long now) {
+        long wait = 0;
+        if(this.remaining >= 0 && now < this.reset) {
+            if(this.remaining <= this.reserve) {
+                wait = this.reset - now;
+            } else if(this.remaining < 5 * this.reserve) {
+                if(this.next > now) {
+                    wait = this.next - now;
+                } else {
+                    this.next = now + (this.reset - now) / (this.remaining - this.reserve);
+                }
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * May a cosmetic call be made now?
+     * @return True or false.
+     */
+    public boolean cosmetic() {
+        return this.cosmetic(System.currentTimeMillis());
+    }
+
+    /**
+     * May a cosmetic call be made now?
+     * @param now Current time, in epoch millis.
+     * @return True or false.
+     */
+    synchronized boolean cosmetic(final long now) {
+        return this.remaining < 0 || now >= this.reset
+            || this.remaining > 2 * this.reserve;
+    }
+}
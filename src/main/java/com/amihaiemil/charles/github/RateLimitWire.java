@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.jcabi.http.Request;
+import com.jcabi.http.Response;
+import com.jcabi.http.Wire;
+
+/**
+ * Wire which tells the {@link RateLimit} about the X-RateLimit-Remaining
+ * and X-RateLimit-Reset headers of every response. Use it like:
+ * <pre>
+ *     request.through(RateLimitWire.class, limit)
+ * </pre>
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class RateLimitWire implements Wire {
+
+    /**
+     * Original wire.
+     */
+    private final Wire origin;
+
+    /**
+     * Rate limit.
+     */
+    private final RateLimit limit;
+
+    /**
+     * Ctor.
+     * @param origin Original wire.
+     * @param limit Rate limit.
+     */
+    public RateLimitWire(final Wire origin, final RateLimit limit) {
+        this.origin = origin;
+        this.limit = limit;
+    }
+
+    @Override
+    public Response send(
+        final Request req, final String home, final String method,
+        final Collection<Map.Entry<String, String>> headers,
+        final InputStream content, final int connect, final int read
+    ) throws IOException {
+        final Response response = this.origin.send(
+            req, home, method, headers, content, connect, read
+        );
+        final String remaining = RateLimitWire.header(response, "X-RateLimit-Remaining");
+        final String reset = RateLimitWire.header(response, "X-RateLimit-Reset");
+        if(remaining != null && reset != null) {
+            try {
+                this.limit.update(
+                    Integer.parseInt(remaining.trim()), Long.parseLong(reset.trim())
+                );
+            } catch (final NumberFormatException ex) {
+                //not a Github rate limit header, nothing to track
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Value of a response header.
+     * @param response Response.
+     * @param name Name.
+     * @return Value or null if it is missing.
+     */
+    private static String header(final Response response, final String name) {
+        String value = null;
+        for(final Map.Entry<String, List<String>> header : response.headers().entrySet()) {
+            if(name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                value = header.getValue().get(0);
+                break;
+            }
+        }
+        return value;
+    }
+}
@@ -41,16 +41,37 @@ import com.jcabi.github.Repo;
  */
 public class StarRepo extends IntermediaryStep {
     
+    /**
+     * Github rate limit.
+     */
+    private final RateLimit limit;
+
     /**
      * Constructor.
      * @param next Next step to perform.
      */
     public StarRepo(final Step next) {
+        this(next, RateLimit.system());
+    }
+
+    /**
+     * Constructor.
+     * @param next Next step to perform.
+     * @param limit Github rate limit; the repo is not starred if the
+     *  calls left are needed for replies.
+     */
+    public StarRepo(final Step next, final RateLimit limit) {
         super(next);
+        this.limit = limit;
     }
 
     @Override
     public void perform(Command command, Logger logger) throws IOException {
+        if(!this.limit.cosmetic()) {
+            logger.info("Github rate limit is low, not starring the repository.");
+            this.next().perform(command, logger);
+            return;
+        }
         try {
             logger.info("Starring repository...");
             Repo repo = command.issue().repo();
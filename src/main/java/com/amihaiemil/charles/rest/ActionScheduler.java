@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amihaiemil.charles.aws.metrics.Histogram;
+import com.amihaiemil.charles.github.HeavyCommand;
+import com.amihaiemil.charles.github.RateLimit;
+import com.amihaiemil.charles.rest.model.Notification;
+
+/**
+ * Runs the actions in two lanes, each with its own threads and queue:
+ * a fast one for the quick commands (hello, delete page etc.) and a heavy
+ * one for the crawls, so a burst of indexsite commands does not delay
+ * the other replies. Notifications without the comment go to the heavy
+ * lane, since the command is not known.<br><br>
+ * The default scheduler is configured by the system properties
+ * <b>charles.actions.fast.threads</b> (default 8),
+ * <b>charles.actions.fast.queue</b> (default 1000),
+ * <b>charles.actions.heavy.threads</b> (default 2) and
+ * <b>charles.actions.heavy.queue</b> (default 100).<br><br>
+ * With <b>charles.actions.mode</b> set to <b>elastic</b>, the fast lane is
+ * an {@link Lane#elastic(String, int, long) elastic} one instead: it runs
+ * each action on its own small-stack thread, up to
+ * <b>charles.actions.elastic.max</b> (default 2000) at the same time, with
+ * stacks of <b>charles.actions.elastic.stack</b> bytes (default 262144).
+ * The heavy lane keeps its threads, which cap the concurrent crawls.<br><br>
+ * The actions of a repository run one after the other, each in its own
+ * lane, so two crawls never write into the same index at the same time;
+ * the actions of different repositories run in parallel. A crawl which
+ * finds the same work of its repository waiting (indexsite, or indexpage
+ * and indexsitemap with the same link) is merged into it instead of
+ * crawling again; if that crawl is refused or fails, the merged one runs
+ * after all.<br><br>
+ * Before an action starts, the Github {@link RateLimit} is asked whether
+ * it may: near the limit the starts are paced or parked until the reset.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class ActionScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ActionScheduler.class);
+
+    /**
+     * Scheduler configured by the system properties.
+     */
+    private static final ActionScheduler SYSTEM = new ActionScheduler(
+        ActionScheduler.fastLane(System.getProperty("charles.actions.mode", "pooled")),
+        new Lane(
+            "heavy",
+            Integer.valueOf(System.getProperty("charles.actions.heavy.threads", "2")),
+            Integer.valueOf(System.getProperty("charles.actions.heavy.queue", "100"))
+        )
+    );
+
+    /**
+     * Lane of the quick commands.
+     */
+    private final Lane fast;
+
+    /**
+     * Lane of the crawls.
+     */
+    private final Lane heavy;
+
+    /**
+     * Serializes the actions of each repository.
+     */
+    private final KeyedExecutor repos;
+
+    /**
+     * Github rate limit.
+     */
+    private final RateLimit limit;
+
+    /**
+     * Ctor.
+     * @param fast Lane of the quick commands.
+     * @param heavy Lane of the crawls.
+     */
+    public ActionScheduler(final Lane fast, final Lane heavy) {
+        this(fast, heavy, new KeyedExecutor(64), RateLimit.system());
+    }
+
+    /**
+     * Ctor.
+     * @param fast Lane of the quick commands.
+     * @param heavy Lane of the crawls.
+     * @param repos Serializes the actions of each repository.
+     * @param limit Github rate limit.
+     */
+    public ActionScheduler(
+        final Lane fast, final Lane heavy, final KeyedExecutor repos,
+        final RateLimit limit
+    ) {
+        this.fast = fast;
+        this.heavy = heavy;
+        this.repos = repos;
+        this.limit = limit;
+    }
+
+    /**
+     * Scheduler configured by the system properties.
+     * @return ActionScheduler.
+     */
+    public static ActionScheduler system() {
+        return SYSTEM;
+    }
+
+    /**
+     * The fast lane configured by the system properties.
+     * @param mode Execution mode: pooled or elastic.
+     * @return Lane.
+     */
+    static Lane fastLane(final String mode) {
+        final Lane lane;
+        if("elastic".equalsIgnoreCase(mode)) {
+            lane = Lane.elastic(
+                "fast",
+                Integer.valueOf(System.getProperty("charles.actions.elastic.max", "2000")),
+                Long.valueOf(System.getProperty("charles.actions.elastic.stack", "262144"))
+            );
+        } else if("pooled".equalsIgnoreCase(mode)) {
+            lane = new Lane(
+                "fast",
+                Integer.valueOf(System.getProperty("charles.actions.fast.threads", "8")),
+                Integer.valueOf(System.getProperty("charles.actions.fast.queue", "1000"))
+            );
+        } else {
+            throw new IllegalArgumentException(
+                "Unknown charles.actions.mode: " + mode + " (use pooled or elastic)"
+            );
+        }
+        return lane;
+    }
+
+    /**
+     * Run the action for a notification, in its lane, after the other
+     * actions of its repository.
+     * @param notification Notification.
+     * @param action Action; it returns true if the command was fulfilled.
+     * @param merged Run instead of the action if it is a crawl merged
+     *  into the same work of the repository, after that one was
+     *  fulfilled; it should still reply to the command.
+     * @param rejected Run if the action waited behind others of its
+     *  repository and then its lane's queue was full.
+     * @throws RejectedExecutionException If the lane's queue is full.
+     */
+    public void execute(
+        final Notification notification, final Callable<Boolean> action,
+        final Runnable merged, final Runnable rejected
+    ) {
+        final HeavyCommand command = new HeavyCommand(notification.comment());
+        String crawl = null;
+        try {
+            crawl = command.work();
+        } catch (final IOException ex) {
+            LOG.warn("Could not categorize the command, it will not be merged", ex);
+        }
+        this.repos.execute(
+            notification.repoFullName().toLowerCase(Locale.ENGLISH),
+            crawl, this.lane(notification), action, merged, rejected
+        );
+    }
+
+    /**
+     * May an action start now, given the Github rate limit? If it may,
+     * it is counted for the pacing.
+     * @return 0 if it may start now, otherwise the millis to wait.
+     */
+    public long delay() {
+        return this.limit.acquire();
+    }
+
+    /**
+     * The lane of a notification.
+     * @param notification Notification.
+     * @return Lane.
+     */
+    public Lane lane(final Notification notification) {
+        boolean crawl;
+        try {
+            crawl = new HeavyCommand(notification.comment()).value();
+        } catch (final IOException ex) {
+            LOG.warn("Could not categorize the command, running it as heavy", ex);
+            crawl = true;
+        }
+        final Lane lane;
+        if(crawl) {
+            lane = this.heavy;
+        } else {
+            lane = this.fast;
+        }
+        return lane;
+    }
+
+    /**
+     * Stop the lanes; the waiting actions are dropped.
+     */
+    public void close() {
+        this.fast.close();
+        this.heavy.close();
+    }
+
+    /**
+     * Metrics of the lanes, in the Prometheus text format.
+     * @return String.
+     */
+    public String prometheus() {
+        final Lane[] lanes = {this.fast, this.heavy};
+        final StringBuilder text = new StringBuilder();
+        text.append("# HELP charles_actions_queue_depth Actions waiting in the lane.\n")
+            .append("# TYPE charles_actions_queue_depth gauge\n");
+        for(final Lane lane : lanes) {
+            text.append("charles_actions_queue_depth{lane=\"").append(lane.name())
+                .append("\"} ").append(lane.depth()).append('\n');
+        }
+        text.append("# HELP charles_actions_active Actions running in the lane.\n")
+            .append("# TYPE charles_actions_active gauge\n");
+        for(final Lane lane : lanes) {
+            text.append("charles_actions_active{lane=\"").append(lane.name())
+                .append("\"} ").append(lane.active()).append('\n');
+        }
+        text.append("# HELP charles_actions_rejected_total Actions rejected by the lane.\n")
+            .append("# TYPE charles_actions_rejected_total counter\n");
+        for(final Lane lane : lanes) {
+            text.append("charles_actions_rejected_total{lane=\"").append(lane.name())
+                .append("\"} ").append(lane.rejected()).append('\n');
+        }
+        text.append("# HELP charles_actions_wait_seconds Time spent by the actions in the queue.\n")
+            .append("# TYPE charles_actions_wait_seconds histogram\n");
+        for(final Lane lane : lanes) {
+            final String label = "lane=\"" + lane.name() + '"';
+            final Histogram waits = lane.waits();
+            final long[] bounds = waits.bounds();
+            for(int idx = 0; idx < bounds.length; ++idx) {
+                text.append("charles_actions_wait_seconds_bucket{").append(label)
+                    .append(",le=\"").append(ActionScheduler.seconds(bounds[idx]))
+                    .append("\"} ").append(waits.cumulative(idx)).append('\n');
+            }
+            text.append("charles_actions_wait_seconds_bucket{").append(label)
+                .append(",le=\"+Inf\"} ").append(waits.cumulative(bounds.length)).append('\n')
+                .append("charles_actions_wait_seconds_sum{").append(label).append("} ")
+                .append(ActionScheduler.seconds(waits.sum())).append('\n')
+                .append("charles_actions_wait_seconds_count{").append(label).append("} ")
+                .append(waits.count()).append('\n');
+        }
+        final int remaining = this.limit.remaining();
+        if(remaining >= 0) {
+            text.append("# HELP charles_github_ratelimit_remaining Github API calls left until the reset.\n")
+                .append("# TYPE charles_github_ratelimit_remaining gauge\n")
+                .append("charles_github_ratelimit_remaining ").append(remaining).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Millis as seconds.
+     * @param millis Millis.
+     * @return Seconds, as String.
+     */
+    private static String seconds(final long millis) {
+        return String.format(Locale.ENGLISH, "%.3f", millis / 1000.0);
+    }
+}
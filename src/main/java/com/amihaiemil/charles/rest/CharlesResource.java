@@ -25,8 +25,14 @@
  */
 package com.amihaiemil.charles.rest;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.json.Json;
 import javax.servlet.http.HttpServletRequest;
@@ -36,24 +42,36 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.container.TimeoutHandler;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import com.amihaiemil.charles.aws.AccessKeyId;
 import com.amihaiemil.charles.aws.AmazonElasticSearch;
 import com.amihaiemil.charles.aws.ElasticSearch;
 import com.amihaiemil.charles.aws.EsEndPoint;
+import com.amihaiemil.charles.aws.EsRouting;
+import com.amihaiemil.charles.aws.IndexGenerations;
+import com.amihaiemil.charles.aws.PopularQueries;
 import com.amihaiemil.charles.aws.Region;
 import com.amihaiemil.charles.aws.SearchQuery;
 import com.amihaiemil.charles.aws.SecretKey;
+import com.amihaiemil.charles.aws.SharedIndexes;
+import com.amihaiemil.charles.aws.SlowQueryLog;
 import com.amihaiemil.charles.aws.StAccessKeyId;
-import com.amihaiemil.charles.aws.StEsEndPoint;
 import com.amihaiemil.charles.aws.StRegion;
 import com.amihaiemil.charles.aws.StSecretKey;
+import com.amihaiemil.charles.aws.metrics.EsMetrics;
+import com.amihaiemil.charles.aws.requests.Hedging;
+import com.amihaiemil.charles.rest.model.Pagination;
 import com.amihaiemil.charles.rest.model.SearchResultsPage;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * REST interface for charles' logic.
@@ -64,6 +82,23 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 @Path("/")
 public class CharlesResource extends JsonResource {
 
+    /**
+     * Writer of the search results, shared by all the requests.
+     * It does not close the response's stream.
+     */
+    private static final ObjectWriter JSON = new ObjectMapper()
+        .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+        .writer();
+
+    /**
+     * Cache-Control of the search responses, from the system property
+     * charles.search.cache.control. By default, caches must revalidate
+     * every time (cheap, with the ETag).
+     */
+    private static final String CACHE_CONTROL = System.getProperty(
+        "charles.search.cache.control", "no-cache"
+    );
+
     /**
      * Http request.
      */
@@ -71,9 +106,9 @@ public class CharlesResource extends JsonResource {
     private HttpServletRequest servletRequest;
 
     /**
-     * ElasticSearch URL.
+     * ElasticSearch endpoints.
      */
-    private EsEndPoint esEdp = new StEsEndPoint();
+    private EsRouting routing = EsRouting.system();
 
     /**
      * AWS access key.
@@ -95,9 +130,11 @@ public class CharlesResource extends JsonResource {
         super(
             Json.createObjectBuilder()
                 .add("ping", "GET /api/ping")
-                .add("search", "GET /api/s/{github_user}/{github_repo}?kw=%s&ctg=page&index=%d&size=%d")
+                .add("search", "GET /api/s/{github_user}/{github_repo}?kw=%s&ctg=page&index=%d&size=%d&v=%d")
                 .add("logs", "GET /api/logs/")
                 .add("notifications", "GET /api/notifications")
+                .add("metrics", "GET /api/metrics")
+                .add("slowQueries", "GET /api/metrics/slow?top=%d")
                 .build()
         );
     }
@@ -120,14 +157,14 @@ public class CharlesResource extends JsonResource {
         super(
             Json.createObjectBuilder()
                 .add("ping", "GET /api/ping")
-                .add("search", "GET /api/s/{github_user}/{github_repo}?kw=%s&ctg=page&index=%d&size=%d")
+                .add("search", "GET /api/s/{github_user}/{github_repo}?kw=%s&ctg=page&index=%d&size=%d&v=%d")
                 .build()
         );
         this.servletRequest = servletRequest;
         this.accesskey = accessKey;
         this.reg = reg;
         this.secretKey = secret;
-        this.esEdp = es;
+        this.routing = new EsRouting(es);
     }
 
     /**
@@ -152,40 +189,140 @@ public class CharlesResource extends JsonResource {
     }
 
     /**
-     * Perform a search.
-     * @return Http response.
+     * Perform a search. The request is suspended and the search runs on the
+     * {@link SearchPool}, so the container's thread is released while
+     * waiting for ElasticSearch. If the search takes longer than the pool's
+     * timeout, it is cancelled and the client gets a 503. The same timeout
+     * bounds the reads from ElasticSearch, so a cancelled search, which
+     * cannot be interrupted while reading, still frees its thread.
+     * @param response Suspended response.
      * @param user Github username.
      * @param repo Github reponame.
      * @param keywords Keywords.
      * @param category Category.
      * @param index Start displaying results form index.
      * @param size Max number of results on the page.
-     * @throws JsonProcessingException If something goes wrong.
+     * @param version Format of the response: 1 (default) or 2 (compact,
+     *  see {@link CompactSearchResults}).
+     * @checkstyle ParameterNumber (20 lines)
      */
     @GET
     @Path("/s/{username}/{reponame}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response search(
-        @PathParam("username") String user,
-        @PathParam("reponame") String repo,
-        @QueryParam("kw") @DefaultValue("") String keywords,
-        @QueryParam("ctg") @DefaultValue("page") String category,
-        @QueryParam("index") @DefaultValue("0") String index,
-        @QueryParam("size") @DefaultValue("10") String size
-    ) throws JsonProcessingException {
-
-        int idx = Integer.valueOf(index);
-        int nr = Integer.valueOf(size);
-        SearchQuery query = new SearchQuery(keywords, category, Integer.valueOf(index), Integer.valueOf(size));
-        String indexName = user.toLowerCase() + "x" + repo.toLowerCase();
-
-        ElasticSearch aws = new AmazonElasticSearch(
-            indexName, this.accesskey, this.secretKey, this.reg, this.esEdp
+    public void search(
+        @Suspended final AsyncResponse response,
+        @PathParam("username") final String user,
+        @PathParam("reponame") final String repo,
+        @QueryParam("kw") @DefaultValue("") final String keywords,
+        @QueryParam("ctg") @DefaultValue("page") final String category,
+        @QueryParam("index") @DefaultValue("0") final String index,
+        @QueryParam("size") @DefaultValue("10") final String size,
+        @QueryParam("v") @DefaultValue("1") final String version
+    ) {
+        final int idx = Integer.valueOf(index);
+        final int nr = Integer.valueOf(size);
+        final SearchQuery query = new SearchQuery(keywords, category, idx, nr);
+        final String indexName = user.toLowerCase() + "x" + repo.toLowerCase();
+        final String requestUrl = servletRequest.getRequestURL().toString().replace("http://", "https://");
+
+        final SearchETag etag = new SearchETag(
+            IndexGenerations.system(), indexName,
+            query.canonical(), keywords, version, requestUrl
+        );
+        if(etag.matches(servletRequest.getHeader("If-None-Match"))) {
+            response.resume(
+                Response.notModified()
+                    .header("ETag", etag.toString())
+                    .header("Cache-Control", CACHE_CONTROL)
+                    .build()
+            );
+            return;
+        }
+        final SearchPool pool = SearchPool.system();
+        final AtomicReference<Future<?>> running = new AtomicReference<>();
+        response.setTimeoutHandler(
+            new TimeoutHandler() {
+                @Override
+                public void handleTimeout(final AsyncResponse suspended) {
+                    final Future<?> search = running.get();
+                    if(search != null) {
+                        search.cancel(true);
+                    }
+                    suspended.resume(CharlesResource.unavailable());
+                }
+            }
+        );
+        response.setTimeout(pool.timeout(), TimeUnit.MILLISECONDS);
+        try {
+            final Future<?> search = pool.submit(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            response.resume(
+                                CharlesResource.this.results(
+                                    query, indexName, requestUrl,
+                                    keywords, category, idx, nr,
+                                    version, etag
+                                )
+                            );
+                        } catch (final RuntimeException ex) {
+                            response.resume(ex);
+                        }
+                    }
+                }
+            );
+            running.set(search);
+            if(response.isDone()) {
+                search.cancel(true);
+            }
+        } catch (final RejectedExecutionException ex) {
+            response.resume(CharlesResource.unavailable());
+        }
+    }
+
+    /**
+     * Search and build the response. A query which found pages is counted
+     * for the warm-ups; the ones on missing indexes or repos are not.
+     * @param query Query.
+     * @param indexName Index name.
+     * @param requestUrl URL of the request.
+     * @param keywords Keywords.
+     * @param category Category.
+     * @param idx Start displaying results form index.
+     * @param nr Max number of results on the page.
+     * @param version Format of the response.
+     * @param etag ETag of the response.
+     * @return Http response.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    private Response results(
+        final SearchQuery query, final String indexName,
+        final String requestUrl, final String keywords, final String category,
+        final int idx, final int nr, final String version, final SearchETag etag
+    ) {
+        ElasticSearch aws = new SlowQueryLog(
+            new AmazonElasticSearch(
+                indexName, this.accesskey, this.secretKey, this.reg,
+                this.routing, Hedging.system(), SharedIndexes.system(),
+                EsMetrics.system(), (int) SearchPool.system().timeout()
+            ),
+            indexName
         );
         SearchResultsPage results = aws.search(query);
-        
+        if(results.totalHits() > 0) {
+            PopularQueries.system().add(indexName, query);
+        }
+        final Pagination pagination = new Pagination(results.totalHits(), idx, nr);
+        if("2".equals(version)) {
+            return Response.ok(
+                new CompactSearchResults(results, pagination, JSON.getFactory())
+            ).header("ETag", etag.toString())
+                .header("Cache-Control", CACHE_CONTROL)
+                .build();
+        }
+
         String queryStringFormat = "?kw=%s&ctg=%s&index=%s&size=%s";
-        String requestUrl = servletRequest.getRequestURL().toString().replace("http://", "https://");
         if(idx == 0) {
         	results = results.withPrevPage("-");
         } else {
@@ -198,19 +335,40 @@ public class CharlesResource extends JsonResource {
             String queryString = String.format(queryStringFormat, keywords, category, idx + nr, nr);
             results = results.withNextPage(requestUrl + queryString);
         }
-        results = results.withPageNr(idx/nr + 1);
-        
-        int start = 0;
+        results = results.withPageNr(pagination.current());
+
         List<String> pagesLinks = new ArrayList<String>();
-        while(start < results.totalHits()) {
+        for(final int page : pagination.pages()) {
             pagesLinks.add(
-                requestUrl + String.format(queryStringFormat, keywords, category, start, nr)
+                requestUrl + String.format(
+                    queryStringFormat, keywords, category,
+                    pagination.start(page), nr
+                )
             );
-            start += nr;
         }
-        results = results.withPages(pagesLinks);
-        
-        return Response.ok().entity(new ObjectMapper().writeValueAsString(results)).build();
+        final SearchResultsPage page = results.withPages(pagesLinks);
+
+        return Response.ok(
+            new StreamingOutput() {
+                @Override
+                public void write(final OutputStream output)
+                    throws IOException {
+                    JSON.writeValue(output, page);
+                }
+            }
+        ).header("ETag", etag.toString())
+            .header("Cache-Control", CACHE_CONTROL)
+            .build();
+    }
+
+    /**
+     * Response for a search which could not be served in time.
+     * @return Http response.
+     */
+    private static Response unavailable() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", "1")
+            .build();
     }
 
 }
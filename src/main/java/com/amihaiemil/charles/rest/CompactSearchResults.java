@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.amihaiemil.charles.rest.model.Pagination;
+import com.amihaiemil.charles.rest.model.SearchResult;
+import com.amihaiemil.charles.rest.model.SearchResultsPage;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Compact (v2) format of a search results page, streamed to the response.
+ * Instead of links, the pages are given by number; the client builds
+ * the links from its own query:
+ * <pre>
+ * {
+ *   "v": 2, "hits": 27, "page": 2, "size": 3,
+ *   "prev": 1, "next": 3, "pages": [1, 2, 3, 4, 9],
+ *   "results": [{"title": "...", "link": "...", "highlight": "...", "category": "page"}]
+ * }
+ * </pre>
+ * prev and next are null if there is no previous or next page.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class CompactSearchResults implements StreamingOutput {
+
+    /**
+     * Results.
+     */
+    private final SearchResultsPage results;
+
+    /**
+     * Pagination.
+     */
+    private final Pagination pagination;
+
+    /**
+     * JSON factory.
+     */
+    private final JsonFactory json;
+
+    /**
+     * Ctor.
+     * @param results Results.
+     * @param pagination Pagination.
+     * @param json JSON factory.
+     */
+    public CompactSearchResults(
+        final SearchResultsPage results, final Pagination pagination,
+        final JsonFactory json
+    ) {
+        this.results = results;
+        this.pagination = pagination;
+        this.json = json;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        try (
+            final JsonGenerator out = this.json.createGenerator(
+                output, JsonEncoding.UTF8
+            )
+        ) {
+            final int current = this.pagination.current();
+            out.writeStartObject();
+            out.writeNumberField("v", 2);
+            out.writeNumberField("hits", this.results.totalHits());
+            out.writeNumberField("page", current);
+            out.writeNumberField("size", this.pagination.size());
+            out.writeFieldName("prev");
+            if(this.pagination.hasPrevious()) {
+                out.writeNumber(current - 1);
+            } else {
+                out.writeNull();
+            }
+            out.writeFieldName("next");
+            if(this.pagination.hasNext()) {
+                out.writeNumber(current + 1);
+            } else {
+                out.writeNull();
+            }
+            out.writeArrayFieldStart("pages");
+            for(final int page : this.pagination.pages()) {
+                out.writeNumber(page);
+            }
+            out.writeEndArray();
+            out.writeArrayFieldStart("results");
+            for(final SearchResult result : this.results.results()) {
+                out.writeStartObject();
+                out.writeStringField("title", result.title());
+                out.writeStringField("link", result.link());
+                out.writeStringField("highlight", result.highlight());
+                out.writeStringField("category", result.category());
+                out.writeEndObject();
+            }
+            out.writeEndArray();
+            out.writeEndObject();
+        }
+    }
+}
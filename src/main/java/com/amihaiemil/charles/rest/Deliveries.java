@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ids of the latest webhook deliveries (X-GitHub-Delivery header), so
+ * the ones redelivered by Github are not handled twice. Only the most
+ * recent ids are kept.<br><br>
+ * The default instance keeps <b>charles.notifications.deliveries</b>
+ * ids (default 10000).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class Deliveries {
+
+    /**
+     * Instance configured by the system properties.
+     */
+    private static final Deliveries SYSTEM = new Deliveries(
+        Integer.valueOf(System.getProperty("charles.notifications.deliveries", "10000"))
+    );
+
+    /**
+     * Ids, oldest first.
+     */
+    private final Map<String, Boolean> ids;
+
+    /**
+     * Ctor.
+     * @param capacity Max number of kept ids.
+     */
+    public Deliveries(final int capacity) {
+        this.ids = new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Instance configured by the system properties.
+     * @return Deliveries.
+     */
+    public static Deliveries system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Remember a delivery.
+     * @param id Delivery id.
+     * @return True if it was not seen before, false if it is a redelivery.
+     */
+    public synchronized boolean first(final String id) {
+        return this.ids.put(id, Boolean.TRUE) == null;
+    }
+
+    /**
+     * Forget a delivery, e.g. if it could not be accepted.
+     * @param id Delivery id.
+     */
+    public synchronized void forget(final String id) {
+        this.ids.remove(id);
+    }
+}
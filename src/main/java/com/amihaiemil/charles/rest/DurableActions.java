@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amihaiemil.charles.rest.journal.Journal;
+import com.amihaiemil.charles.rest.journal.Record;
+import com.amihaiemil.charles.rest.model.Notification;
+import com.amihaiemil.charles.rest.model.SimpleJsonNotification;
+
+/**
+ * Notifications are written to a {@link Journal} and synced to the disk
+ * before they are accepted, then handled in the lanes of an
+ * {@link ActionScheduler}, through an {@link IssueCoalescer} so an issue
+ * is not handled many times over. The ones
+ * which are not handled before a redeploy or a crash are recovered from
+ * the journal on startup.<br><br>
+ * The default instance is configured by the system properties
+ * <b>charles.journal.dir</b> (default LOG_ROOT/charles-rest/Journal),
+ * <b>charles.journal.segment</b> (bytes, default 16777216) and
+ * <b>charles.notifications.window</b> (millis during which the
+ * notifications about the same issue are coalesced, default 2000).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class DurableActions {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DurableActions.class);
+
+    /**
+     * Instance configured by the system properties; opened on first use.
+     */
+    private static DurableActions system;
+
+    /**
+     * Journal.
+     */
+    private final Journal journal;
+
+    /**
+     * Scheduler of the actions.
+     */
+    private final ActionScheduler workers;
+
+    /**
+     * Coalescer of the notifications about the same issue.
+     */
+    private final IssueCoalescer coalescer;
+
+    /**
+     * Were the journal's records recovered?
+     */
+    private final AtomicBoolean recovered = new AtomicBoolean(false);
+
+    /**
+     * Ctor.
+     * @param journal Journal.
+     * @param workers Scheduler of the actions.
+     * @param window Millis during which the notifications about the same
+     *  issue are coalesced.
+     * @param handler Handler of the notifications.
+     */
+    public DurableActions(
+        final Journal journal, final ActionScheduler workers, final long window,
+        final NotificationHandler handler
+    ) {
+        this.journal = journal;
+        this.workers = workers;
+        this.coalescer = new IssueCoalescer(window, workers, handler);
+    }
+
+    /**
+     * Instance configured by the system properties.
+     * @return DurableActions.
+     * @throws IOException If the journal cannot be opened.
+     */
+    public static synchronized DurableActions system() throws IOException {
+        if(system == null) {
+            String dir = System.getProperty("charles.journal.dir");
+            if(dir == null) {
+                String logroot = System.getProperty("LOG_ROOT");
+                if(logroot == null) {
+                    logroot = ".";
+                }
+                dir = logroot + "/charles-rest/Journal";
+            }
+            system = new DurableActions(
+                new Journal(
+                    new File(dir),
+                    Integer.valueOf(System.getProperty("charles.journal.segment", "16777216"))
+                ),
+                ActionScheduler.system(),
+                Long.valueOf(System.getProperty("charles.notifications.window", "2000")),
+                new GithubActions()
+            );
+        }
+        return system;
+    }
+
+    /**
+     * Write the notifications to the journal and hand them to the workers.
+     * When this method returns, they are on the disk.
+     * @param notifications Notifications.
+     * @throws IOException If they cannot be written.
+     */
+    public void take(final Iterable<Notification> notifications) throws IOException {
+        final List<Record> records = new ArrayList<>();
+        for(final Notification notification : notifications) {
+            final JsonObjectBuilder json = Json.createObjectBuilder()
+                .add("repoFullName", notification.repoFullName())
+                .add("issueNumber", notification.issueNumber());
+            if(notification.comment() != null) {
+                json.add("comment", notification.comment());
+            }
+            records.add(
+                this.journal.write(
+                    json.build().toString().getBytes(StandardCharsets.UTF_8)
+                )
+            );
+        }
+        if(!records.isEmpty()) {
+            this.journal.sync(records.get(records.size() - 1).next());
+        }
+        for(final Record record : records) {
+            this.submit(record, false);
+        }
+    }
+
+    /**
+     * Hand the records left pending at the last shutdown to the workers.
+     * Only the first call has any effect. Their comments are dropped: the
+     * agent may have replied to them before the shutdown, so the Action
+     * has to look at the issue's last comment again.
+     */
+    public void recover() {
+        if(this.recovered.compareAndSet(false, true)) {
+            final List<Record> records = this.journal.recovered();
+            if(!records.isEmpty()) {
+                LOG.info("Recovering " + records.size() + " notifications from the journal");
+            }
+            for(final Record record : records) {
+                this.submit(record, true);
+            }
+        }
+    }
+
+    /**
+     * Stop the lanes and close the journal. The queued notifications are
+     * dropped; they are still in the journal and will be recovered.
+     * @throws IOException If the journal cannot be closed.
+     */
+    public void close() throws IOException {
+        this.coalescer.close();
+        this.workers.close();
+        this.journal.close();
+    }
+
+    /**
+     * Hand a record to the workers, through the coalescer.
+     * @param record Record of the journal.
+     * @param recovered Was the record left pending at the last shutdown?
+     */
+    private void submit(final Record record, final boolean recovered) {
+        JsonObject json = Json.createReader(
+            new StringReader(
+                new String(record.payload(), StandardCharsets.UTF_8)
+            )
+        ).readObject();
+        if(recovered && json.containsKey("comment")) {
+            json = Json.createObjectBuilder()
+                .add("repoFullName", json.getString("repoFullName"))
+                .add("issueNumber", json.getInt("issueNumber"))
+                .build();
+        }
+        this.coalescer.submit(
+            new SimpleJsonNotification(json),
+            new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        DurableActions.this.journal.done(record.offset());
+                    } catch (final IOException ex) {
+                        LOG.error("Could not checkpoint the journal", ex);
+                    }
+                }
+            }
+        );
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.io.IOException;
+
+import com.amihaiemil.charles.github.Action;
+import com.amihaiemil.charles.rest.model.Notification;
+import com.amihaiemil.charles.github.GithubClient;
+import com.amihaiemil.charles.github.KnownComment;
+import com.amihaiemil.charles.github.MergedReply;
+import com.jcabi.github.Coordinates;
+import com.jcabi.github.Issue;
+
+/**
+ * Handles a notification by performing an {@link Action} on the Github
+ * issue it comes from. If the notification carries the comment, it is not
+ * fetched again. All the Actions share the {@link GithubClient}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class GithubActions implements NotificationHandler {
+
+    @Override
+    public boolean handle(final Notification notification) throws IOException {
+        return new Action(this.issue(notification), notification.comment()).perform();
+    }
+
+    @Override
+    public void merged(final Notification notification) throws IOException {
+        new MergedReply(
+            new KnownComment(this.issue(notification), notification.comment())
+        ).send();
+    }
+
+    /**
+     * The issue of a notification.
+     * @param notification Notification.
+     * @return Issue.
+     */
+    private Issue issue(final Notification notification) {
+        return GithubClient.system().github().repos().get(
+            new Coordinates.Simple(notification.repoFullName())
+        ).issues().get(notification.issueNumber());
+    }
+}
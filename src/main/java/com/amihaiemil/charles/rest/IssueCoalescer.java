@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amihaiemil.charles.rest.model.Notification;
+
+/**
+ * Collapses the notifications about the same issue into one execution of
+ * the handler. The first notification about an issue is handled after a
+ * window, gathering the ones which come meanwhile; the notifications which
+ * come while the issue is being handled are gathered too, and handled
+ * once more after it ends. The {@link com.amihaiemil.charles.github.Action} reads the last comment
+ * anyway, so one execution serves them all.<br><br>
+ * If the issue's lane in the {@link ActionScheduler} is full, the issue
+ * waits and is tried again later; its notifications stay in the journal
+ * meanwhile. The same happens if the Github rate limit is low: the
+ * issue is parked until the scheduler lets it start.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class IssueCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IssueCoalescer.class);
+
+    /**
+     * Millis after which an issue rejected by its lane is tried again.
+     */
+    private static final long RETRY = 1000;
+
+    /**
+     * Issues waiting or being handled, by repo and number.
+     */
+    private final Map<String, Issue> issues = new HashMap<>();
+
+    /**
+     * Window, in millis.
+     */
+    private final long window;
+
+    /**
+     * Scheduler where the handler is run.
+     */
+    private final ActionScheduler workers;
+
+    /**
+     * Handler.
+     */
+    private final NotificationHandler handler;
+
+    /**
+     * Timer of the windows.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Ctor.
+     * @param window Window, in millis.
+     * @param workers Scheduler where the handler is run.
+     * @param handler Handler.
+     */
+    public IssueCoalescer(
+        final long window, final ActionScheduler workers,
+        final NotificationHandler handler
+    ) {
+        this.window = window;
+        this.workers = workers;
+        this.handler = handler;
+        this.timer = new ScheduledThreadPoolExecutor(
+            1,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "charles-coalescer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+        );
+    }
+
+    /**
+     * Handle a notification, maybe together with others about the same issue.
+     * @param notification Notification.
+     * @param done Run after the execution which covers the notification.
+     */
+    public void submit(final Notification notification, final Runnable done) {
+        final String key = notification.repoFullName().toLowerCase(Locale.ENGLISH)
+            + '#' + notification.issueNumber();
+        synchronized (this.issues) {
+            Issue issue = this.issues.get(key);
+            if(issue == null) {
+                issue = new Issue(key);
+                this.issues.put(key, issue);
+            }
+            issue.latest = notification;
+            issue.waiting.add(done);
+            if(!issue.scheduled && !issue.running) {
+                this.schedule(issue);
+            }
+        }
+    }
+
+    /**
+     * Number of issues waiting or being handled.
+     * @return Integer.
+     */
+    public int size() {
+        synchronized (this.issues) {
+            return this.issues.size();
+        }
+    }
+
+    /**
+     * Stop the timer. The notifications still waiting are not handled.
+     */
+    public void close() {
+        this.timer.shutdownNow();
+    }
+
+    /**
+     * Schedule the handling of an issue after the window.
+     * Called while holding the lock on the issues.
+     * @param issue Issue.
+     */
+    private void schedule(final Issue issue) {
+        this.schedule(issue, this.window);
+    }
+
+    /**
+     * Schedule the handling of an issue after a delay.
+     * Called while holding the lock on the issues.
+     * @param issue Issue.
+     * @param delay Delay in millis.
+     */
+    private void schedule(final Issue issue, final long delay) {
+        issue.scheduled = true;
+        this.timer.schedule(
+            new Runnable() {
+                @Override
+                public void run() {
+                    IssueCoalescer.this.start(issue);
+                }
+            },
+            delay, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Hand an issue to the workers, with the notifications gathered so far.
+     * @param issue Issue.
+     */
+    private void start(final Issue issue) {
+        final Notification notification;
+        final List<Runnable> covered;
+        synchronized (this.issues) {
+            issue.scheduled = false;
+            issue.running = true;
+            notification = issue.latest;
+            covered = new ArrayList<>(issue.waiting);
+            issue.waiting.clear();
+        }
+        final long wait = this.workers.delay();
+        if(wait > 0) {
+            LOG.info("Github rate limit is low, " + issue.key + " is parked for " + wait + " ms");
+            this.postpone(issue, covered, wait);
+            return;
+        }
+        if(covered.size() > 1) {
+            LOG.info(
+                "Coalesced " + covered.size() + " notifications about " + issue.key
+            );
+        }
+        final Runnable finish = new Runnable() {
+            @Override
+            public void run() {
+                IssueCoalescer.this.finish(issue, covered);
+            }
+        };
+        try {
+            this.workers.execute(
+                notification,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        boolean done = false;
+                        try {
+                            done = IssueCoalescer.this.handler.handle(notification);
+                        } catch (final IOException | RuntimeException ex) {
+                            LOG.error("Could not handle the notification about " + issue.key, ex);
+                        } finally {
+                            finish.run();
+                        }
+                        return done;
+                    }
+                },
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            IssueCoalescer.this.handler.merged(notification);
+                        } catch (final IOException | RuntimeException ex) {
+                            LOG.error("Could not reply to the merged command about " + issue.key, ex);
+                        } finally {
+                            finish.run();
+                        }
+                    }
+                },
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        IssueCoalescer.this.retry(issue, covered);
+                    }
+                }
+            );
+        } catch (final RejectedExecutionException ex) {
+            this.retry(issue, covered);
+        }
+    }
+
+    /**
+     * The issue's lane was full: try it again later.
+     * @param issue Issue.
+     * @param covered Callbacks of the notifications it would have covered.
+     */
+    private void retry(final Issue issue, final List<Runnable> covered) {
+        LOG.warn("Lane full, " + issue.key + " will be tried again later");
+        this.postpone(issue, covered, Math.max(this.window, RETRY));
+    }
+
+    /**
+     * An issue could not start: try it again later, with the same
+     * notifications and the ones which come meanwhile.
+     * @param issue Issue.
+     * @param covered Callbacks of the notifications it would have covered.
+     * @param delay Millis after which it is tried again.
+     */
+    private void postpone(
+        final Issue issue, final List<Runnable> covered, final long delay
+    ) {
+        synchronized (this.issues) {
+            issue.running = false;
+            issue.waiting.addAll(0, covered);
+            this.schedule(issue, delay);
+        }
+    }
+
+    /**
+     * An issue was handled: run the callbacks of the covered notifications
+     * and handle it again if more came meanwhile.
+     * @param issue Issue.
+     * @param covered Callbacks of the covered notifications.
+     */
+    private void finish(final Issue issue, final List<Runnable> covered) {
+        synchronized (this.issues) {
+            issue.running = false;
+            if(issue.waiting.isEmpty()) {
+                this.issues.remove(issue.key);
+            } else {
+                this.schedule(issue);
+            }
+        }
+        for(final Runnable done : covered) {
+            done.run();
+        }
+    }
+
+    /**
+     * State of an issue. Guarded by the lock on the issues.
+     */
+    private static final class Issue {
+
+        /**
+         * Repo and number.
+         */
+        private final String key;
+
+        /**
+         * Callbacks of the notifications not handled yet.
+         */
+        private final List<Runnable> waiting = new ArrayList<>();
+
+        /**
+         * Latest notification.
+         */
+        private Notification latest;
+
+        /**
+         * Is it waiting for the window to pass?
+         */
+        private boolean scheduled;
+
+        /**
+         * Is it being handled?
+         */
+        private boolean running;
+
+        /**
+         * Ctor.
+         * @param key Repo and number.
+         */
+        Issue(final String key) {
+            this.key = key;
+        }
+    }
+}
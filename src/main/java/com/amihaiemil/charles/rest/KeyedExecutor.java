@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the tasks with the same key one after the other, and the tasks
+ * with different keys in parallel. The keys are spread over stripes, each
+ * with its own lock, which is held only to queue or dequeue a task, never
+ * while one runs; so there is no global lock.<br><br>
+ * A task may have a merge key: if a task with the same key and merge key
+ * is waiting, the new one is not run at all. When the duplicate ends, the
+ * callbacks of the merged tasks run if it did its work; otherwise the
+ * first merged task runs in its place, with the others merged into it.
+ * A task is never merged into a running one, which may have started
+ * before the changes the new one asks for.<br><br>
+ * When a task ends, the next task of its key is handed to the executor it
+ * was given for, so it runs and waits in its own lane, never on the thread
+ * of the previous task. If that executor rejects it, its rejection callback
+ * runs instead, together with the ones of the tasks merged into it.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class KeyedExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyedExecutor.class);
+
+    /**
+     * Stripes; a key's tasks are guarded by the lock of its stripe.
+     */
+    private final List<Map<String, Serial>> stripes;
+
+    /**
+     * Ctor.
+     * @param stripes Number of stripes.
+     */
+    public KeyedExecutor(final int stripes) {
+        this.stripes = new ArrayList<>(stripes);
+        for(int idx = 0; idx < stripes; ++idx) {
+            this.stripes.add(new HashMap<String, Serial>());
+        }
+    }
+
+    /**
+     * Run a task after the others with the same key.
+     * @param key Key.
+     * @param merge Merge key; null if the task is never merged.
+     * @param executor Where to run the task, if its key is idle.
+     * @param task Task; it returns true if it did its work, false if it
+     *  failed or was refused.
+     * @param merged Run instead of the task if it is merged, after the
+     *  duplicate did its work.
+     * @param rejected Run if the task waited behind others of its key and
+     *  the executor rejected it afterwards.
+     * @throws RejectedExecutionException If the key is idle and the
+     *  executor rejects the task.
+     */
+    public void execute(
+        final String key, final String merge, final Executor executor,
+        final Callable<Boolean> task, final Runnable merged,
+        final Runnable rejected
+    ) {
+        final Map<String, Serial> stripe = this.stripe(key);
+        synchronized (stripe) {
+            Serial serial = stripe.get(key);
+            if(serial == null) {
+                serial = new Serial(key, stripe);
+                stripe.put(key, serial);
+            }
+            final Entry entry = new Entry(merge, executor, task, merged, rejected);
+            final Entry duplicate = serial.find(merge);
+            if(duplicate != null) {
+                LOG.info("Merged " + merge + " on " + key + " into the one waiting");
+                duplicate.merged.add(entry);
+            } else {
+                if(serial.running == null) {
+                    try {
+                        serial.running = entry;
+                        executor.execute(serial);
+                    } catch (final RejectedExecutionException ex) {
+                        serial.running = null;
+                        stripe.remove(key);
+                        throw ex;
+                    }
+                } else {
+                    serial.waiting.add(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of keys with running or waiting tasks.
+     * @return Integer.
+     */
+    public int size() {
+        int size = 0;
+        for(final Map<String, Serial> stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The stripe of a key.
+     * @param key Key.
+     * @return Map of the stripe's keys, also its lock.
+     */
+    private Map<String, Serial> stripe(final String key) {
+        return this.stripes.get((key.hashCode() & Integer.MAX_VALUE) % this.stripes.size());
+    }
+
+    /**
+     * Tasks of a key. Guarded by the lock of the stripe.
+     */
+    private static final class Serial implements Runnable {
+
+        /**
+         * Key.
+         */
+        private final String key;
+
+        /**
+         * Stripe of the key.
+         */
+        private final Map<String, Serial> stripe;
+
+        /**
+         * Waiting tasks.
+         */
+        private final Deque<Entry> waiting = new ArrayDeque<>();
+
+        /**
+         * Running task.
+         */
+        private Entry running;
+
+        /**
+         * Ctor.
+         * @param key Key.
+         * @param stripe Stripe of the key.
+         */
+        Serial(final String key, final Map<String, Serial> stripe) {
+            this.key = key;
+            this.stripe = stripe;
+        }
+
+        /**
+         * Run the running task, then hand the next one to its executor.
+         * If the task did not do its work, the first task merged into it
+         * is the next one.
+         */
+        @Override
+        public void run() {
+            final Entry entry;
+            synchronized (this.stripe) {
+                entry = this.running;
+            }
+            boolean done = false;
+            try {
+                done = Boolean.TRUE.equals(entry.task.call());
+            } catch (final Exception ex) {
+                LOG.error("Task of " + this.key + " failed", ex);
+            } finally {
+                final List<Entry> rejected = new ArrayList<>();
+                synchronized (this.stripe) {
+                    if(!done && !entry.merged.isEmpty()) {
+                        final Entry first = entry.merged.remove(0);
+                        first.merged.addAll(entry.merged);
+                        entry.merged.clear();
+                        this.waiting.addFirst(first);
+                        LOG.info(
+                            "Merged " + entry.merge + " on " + this.key
+                            + " was not done, running the next one"
+                        );
+                    }
+                    this.next(rejected);
+                }
+                for(final Entry merged : entry.merged) {
+                    merged.callback.run();
+                }
+                for(final Entry refused : rejected) {
+                    refused.rejected.run();
+                    for(final Entry merged : refused.merged) {
+                        merged.rejected.run();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Hand the first waiting task, which its executor accepts, to its
+         * executor. Called while holding the lock of the stripe.
+         * @param rejected Where the tasks rejected by their executors go.
+         */
+        void next(final List<Entry> rejected) {
+            this.running = null;
+            Entry entry = this.waiting.poll();
+            while(entry != null && this.running == null) {
+                this.running = entry;
+                try {
+                    entry.executor.execute(this);
+                } catch (final RejectedExecutionException ex) {
+                    LOG.warn("Executor rejected the next task of " + this.key);
+                    this.running = null;
+                    rejected.add(entry);
+                    entry = this.waiting.poll();
+                }
+            }
+            if(this.running == null) {
+                this.stripe.remove(this.key);
+            }
+        }
+
+        /**
+         * Find the waiting task with a merge key.
+         * @param merge Merge key; may be null.
+         * @return Entry or null.
+         */
+        Entry find(final String merge) {
+            Entry found = null;
+            if(merge != null) {
+                for(final Entry entry : this.waiting) {
+                    if(merge.equals(entry.merge)) {
+                        found = entry;
+                        break;
+                    }
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * A task and the tasks merged into it.
+     */
+    private static final class Entry {
+
+        /**
+         * Merge key; may be null.
+         */
+        private final String merge;
+
+        /**
+         * Where the task runs.
+         */
+        private final Executor executor;
+
+        /**
+         * Task; returns true if it did its work.
+         */
+        private final Callable<Boolean> task;
+
+        /**
+         * Run instead of the task if it is merged.
+         */
+        private final Runnable callback;
+
+        /**
+         * Run if the executor rejects the task after it waited.
+         */
+        private final Runnable rejected;
+
+        /**
+         * Tasks merged into this one.
+         */
+        private final List<Entry> merged = new ArrayList<>();
+
+        /**
+         * Ctor.
+         * @param merge Merge key; may be null.
+         * @param executor Where the task runs.
+         * @param task Task.
+         * @param merged Run instead of the task if it is merged.
+         * @param rejected Run if the executor rejects the task after it waited.
+         */
+        Entry(
+            final String merge, final Executor executor,
+            final Callable<Boolean> task, final Runnable merged,
+            final Runnable rejected
+        ) {
+            this.merge = merge;
+            this.executor = executor;
+            this.task = task;
+            this.callback = merged;
+            this.rejected = rejected;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amihaiemil.charles.aws.metrics.Histogram;
+
+/**
+ * Lane of the {@link ActionScheduler}: a bounded pool of threads with a
+ * bounded queue, which records how long the actions waited in the queue
+ * and how many were rejected.<br><br>
+ * An {@link #elastic(String, int, long)} lane has no queue: it starts a
+ * thread for every action, up to a high cap, and lets idle threads die
+ * soon. Its threads have small stacks, since the actions spend their
+ * time blocked on Github and ElasticSearch calls, not computing.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class Lane implements Executor {
+
+    /**
+     * Name.
+     */
+    private final String name;
+
+    /**
+     * Threads.
+     */
+    private final ThreadPoolExecutor threads;
+
+    /**
+     * Time spent by the actions in the queue, in millis.
+     */
+    private final Histogram waits = new Histogram(
+        10, 100, 500, 1000, 5000, 10000, 30000, 60000, 300000, 600000
+    );
+
+    /**
+     * Number of rejected actions.
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Ctor.
+     * @param name Name.
+     * @param threads Max number of actions run at the same time.
+     * @param queue Max number of waiting actions.
+     */
+    public Lane(final String name, final int threads, final int queue) {
+        this(
+            name,
+            new ThreadPoolExecutor(
+                threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queue),
+                Lane.factory(name, 0)
+            )
+        );
+        this.threads.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Ctor.
+     * @param name Name.
+     * @param threads Threads.
+     */
+    private Lane(final String name, final ThreadPoolExecutor threads) {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    /**
+     * Lane without a queue, which starts a thread for each action.
+     * @param name Name.
+     * @param max Max number of actions run at the same time.
+     * @param stack Stack size of the threads, in bytes; 0 for the default.
+     * @return Lane.
+     */
+    public static Lane elastic(final String name, final int max, final long stack) {
+        return new Lane(
+            name,
+            new ThreadPoolExecutor(
+                0, max, 5, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                Lane.factory(name, stack)
+            )
+        );
+    }
+
+    /**
+     * Run an action.
+     * @param action Action.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    @Override
+    public void execute(final Runnable action) {
+        final long queued = System.nanoTime();
+        try {
+            this.threads.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        Lane.this.waits.record(
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queued)
+                        );
+                        action.run();
+                    }
+                }
+            );
+        } catch (final RejectedExecutionException ex) {
+            this.rejected.incrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Name.
+     * @return String.
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Number of waiting actions.
+     * @return Integer.
+     */
+    public int depth() {
+        return this.threads.getQueue().size();
+    }
+
+    /**
+     * Number of running actions.
+     * @return Integer.
+     */
+    public int active() {
+        return this.threads.getActiveCount();
+    }
+
+    /**
+     * Number of rejected actions.
+     * @return Long.
+     */
+    public long rejected() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Time spent by the actions in the queue.
+     * @return Histogram of millis.
+     */
+    public Histogram waits() {
+        return this.waits;
+    }
+
+    /**
+     * Stop the threads; the waiting actions are dropped.
+     */
+    public void close() {
+        this.threads.getQueue().clear();
+        this.threads.shutdown();
+    }
+
+    /**
+     * Factory of daemon threads, named after the lane.
+     * @param name Name of the lane.
+     * @param stack Stack size of the threads, in bytes; 0 for the default.
+     * @return ThreadFactory.
+     */
+    private static ThreadFactory factory(final String name, final long stack) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(
+                    null, runnable,
+                    "charles-" + name + "-" + count.incrementAndGet(), stack
+                );
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
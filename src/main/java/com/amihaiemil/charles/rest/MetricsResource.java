@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.net.HttpURLConnection;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.amihaiemil.charles.aws.metrics.EsMetrics;
+import com.amihaiemil.charles.aws.metrics.SlowQueries;
+import com.amihaiemil.charles.aws.metrics.SlowQuery;
+
+/**
+ * REST resource exposing the metrics of the ElasticSearch requests and
+ * of the action lanes, in the Prometheus text format.<br><br>
+ * Each call has to contain the <b>Authorization http header</b>, with the
+ * same token as the calls to {@link NotificationsResource}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+    /**
+     * Content type of the Prometheus text format.
+     */
+    static final String PROMETHEUS = "text/plain; version=0.0.4; charset=UTF-8";
+
+    /**
+     * ElasticSearch metrics.
+     */
+    private final EsMetrics metrics;
+
+    /**
+     * Recent slow queries.
+     */
+    private final SlowQueries slow;
+
+    /**
+     * Action lanes.
+     */
+    private final ActionScheduler actions;
+
+    /**
+     * The http request.
+     */
+    @Context
+    private HttpServletRequest request;
+
+    /**
+     * Default ctor.
+     */
+    public MetricsResource() {
+        this(
+            EsMetrics.system(), SlowQueries.system(), ActionScheduler.system(), null
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param metrics ElasticSearch metrics.
+     * @param slow Recent slow queries.
+     * @param actions Action lanes.
+     * @param request The http request.
+     */
+    public MetricsResource(
+        final EsMetrics metrics, final SlowQueries slow,
+        final ActionScheduler actions, final HttpServletRequest request
+    ) {
+        this.metrics = metrics;
+        this.slow = slow;
+        this.actions = actions;
+        this.request = request;
+    }
+
+    /**
+     * Scrape the metrics.
+     * @return Http response.
+     */
+    @GET
+    public Response metrics() {
+        if(!this.authorized()) {
+            return Response.status(HttpURLConnection.HTTP_FORBIDDEN).build();
+        }
+        return Response.ok()
+            .entity(this.metrics.prometheus() + this.actions.prometheus())
+            .header("Content-Type", PROMETHEUS)
+            .build();
+    }
+
+    /**
+     * The slowest of the recent slow queries.
+     * @param top How many queries to list.
+     * @return Http response.
+     */
+    @GET
+    @Path("/slow")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response slowQueries(
+        @QueryParam("top") @DefaultValue("10") final int top
+    ) {
+        if(!this.authorized()) {
+            return Response.status(HttpURLConnection.HTTP_FORBIDDEN).build();
+        }
+        final JsonArrayBuilder queries = Json.createArrayBuilder();
+        for(final SlowQuery query : this.slow.slowest(top)) {
+            queries.add(query.toJson());
+        }
+        return Response.ok().entity(queries.build().toString()).build();
+    }
+
+    /**
+     * Does the request carry the agreed upon token?
+     * @return True or false.
+     */
+    private boolean authorized() {
+        final String token = this.request.getHeader(HttpHeaders.AUTHORIZATION);
+        final String key = System.getProperty("github.auth.token");
+        return token != null && !token.isEmpty() && token.equals(key);
+    }
+}
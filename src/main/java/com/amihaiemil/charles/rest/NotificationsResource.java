@@ -28,9 +28,6 @@ package com.amihaiemil.charles.rest;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 
-import javax.ejb.Asynchronous;
-import javax.ejb.EJB;
-import javax.ejb.Stateless;
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.servlet.http.HttpServletRequest;
@@ -43,15 +40,11 @@ import javax.ws.rs.core.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.amihaiemil.charles.github.Action;
-import com.amihaiemil.charles.rest.model.Notification;
+import com.amihaiemil.charles.github.AgentLogin;
+import com.amihaiemil.charles.rest.model.IssueCommentNotification;
 import com.amihaiemil.charles.rest.model.Notifications;
 import com.amihaiemil.charles.rest.model.SimplifiedNotifications;
 import com.amihaiemil.charles.rest.model.WebhookNotifications;
-import com.jcabi.github.Coordinates;
-import com.jcabi.github.Github;
-import com.jcabi.github.RtGithub;
-import com.jcabi.http.wire.RetryWire;
 
 /**
  * REST interface to receive Github notifications form the EJB checker.
@@ -68,9 +61,6 @@ public class NotificationsResource extends JsonResource {
      */
     private static final Logger LOG = LoggerFactory.getLogger(NotificationsResource.class.getName());
 
-    @EJB
-    ActionHandler actions;
-
     /**
      * The http request.
      */
@@ -160,21 +150,38 @@ public class NotificationsResource extends JsonResource {
                 return Response.ok().build();
             }
             if("issue_comment".equalsIgnoreCase(event)) {
+                try {
+                    final String agent = AgentLogin.system().value();
+                    if(!new IssueCommentNotification(issueComment).addressedTo(agent)) {
+                        return Response.ok().build();
+                    }
+                } catch (final IOException ex) {
+                    LOG.warn("Could not find the agent's login, handling the comment anyway", ex);
+                }
+                final String delivery = this.request.getHeader("X-GitHub-Delivery");
+                if(delivery != null && !Deliveries.system().first(delivery)) {
+                    LOG.info("Ignoring redelivered webhook " + delivery);
+                    return Response.ok().build();
+                }
                 boolean startedHandling = this.handleNotifications(
                     new WebhookNotifications(issueComment)
                 );
                 if(startedHandling) {
                     return Response.ok().build();
                 }
+                if(delivery != null) {
+                    Deliveries.system().forget(delivery);
+                }
             }
         }
         return Response.status(HttpURLConnection.HTTP_PRECON_FAILED).build();
     }
     
     /**
-     * Handles notifications, starts one action thread for each of them.
+     * Handles notifications: they are written to the journal, then one
+     * action is performed for each of them by the {@link DurableActions}.
      * @param notifications List of notifications.
-     * @return true if actions were started successfully; false otherwise.
+     * @return true if the notifications were journaled; false otherwise.
      */
     private boolean handleNotifications(final Notifications notifications) {
         String authToken = System.getProperty("github.auth.token");
@@ -182,24 +189,11 @@ public class NotificationsResource extends JsonResource {
             LOG.error("Missing github.auth.token. Please specify a Github api access token!");
             return false;
         } else {
-            Github gh = new RtGithub(
-                new RtGithub(
-                    authToken
-                ).entry().through(RetryWire.class)
-            );
             try {
-                for(final Notification notification : notifications) {
-                    this.actions.take(
-                        new Action(
-                            gh.repos().get(
-                                new Coordinates.Simple(notification.repoFullName())
-                            ).issues().get(notification.issueNumber())
-                        )
-                    );
-                }
+                DurableActions.system().take(notifications);
                 return true;
             } catch (IOException ex) {
-                LOG.error("IOException while getting the Issue from Github API");
+                LOG.error("Could not write the notifications to the journal", ex);
                 return false;
             }
         }
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.amihaiemil.charles.aws.IndexGenerations;
+
+/**
+ * Strong ETag of a search response. It is derived from the current
+ * generation of the index and from everything else the response depends
+ * on (canonical query, format, request URL), so it changes as soon as the
+ * index changes and it can be computed without searching.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SearchETag {
+
+    /**
+     * Hex digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Number of digest bytes kept in the tag.
+     */
+    private static final int BYTES = 8;
+
+    /**
+     * The quoted tag.
+     */
+    private final String tag;
+
+    /**
+     * Ctor.
+     * @param generations Generations of the indexes.
+     * @param index Searched index.
+     * @param parts What else the response depends on
+     *  (e.g. canonical query, format).
+     */
+    public SearchETag(
+        final IndexGenerations generations, final String index,
+        final String... parts
+    ) {
+        final MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 is not available", ex);
+        }
+        sha.update(index.getBytes(StandardCharsets.UTF_8));
+        for(final String part : parts) {
+            sha.update((byte) '\n');
+            sha.update(part.getBytes(StandardCharsets.UTF_8));
+        }
+        final byte[] digest = sha.digest();
+        final StringBuilder value = new StringBuilder("\"")
+            .append(generations.epoch()).append('-')
+            .append(generations.current(index)).append('-');
+        for(int idx = 0; idx < BYTES; ++idx) {
+            value.append(HEX[(digest[idx] >> 4) & 0xF])
+                .append(HEX[digest[idx] & 0xF]);
+        }
+        this.tag = value.append('"').toString();
+    }
+
+    /**
+     * Does this tag match the If-None-Match header?
+     * @param header Value of If-None-Match; may be null.
+     * @return True if the client already has the response.
+     */
+    public boolean matches(final String header) {
+        boolean matches = false;
+        if(header != null) {
+            for(final String candidate : header.split(",")) {
+                String etag = candidate.trim();
+                if(etag.startsWith("W/")) {
+                    etag = etag.substring(2);
+                }
+                if("*".equals(etag) || this.tag.equals(etag)) {
+                    matches = true;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public String toString() {
+        return this.tag;
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads on which the suspended searches are run, so the container's
+ * threads are released while waiting for ElasticSearch. The pool and its
+ * queue are bounded: when both are full, searches are rejected right
+ * away instead of piling up. A cancelled search cannot be interrupted
+ * while it reads from ElasticSearch, so its reads are bounded by the same
+ * timeout (see {@link CharlesResource}) and its thread is freed soon after.<br><br>
+ * The default pool is configured by the system properties
+ * <b>charles.search.threads</b> (default 16), <b>charles.search.queue</b>
+ * (default 1000) and <b>charles.search.timeout</b> (millis, default 10000).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SearchPool {
+
+    /**
+     * Pool configured by the system properties.
+     */
+    private static final SearchPool SYSTEM = new SearchPool(
+        Integer.valueOf(System.getProperty("charles.search.threads", "16")),
+        Integer.valueOf(System.getProperty("charles.search.queue", "1000")),
+        Long.valueOf(System.getProperty("charles.search.timeout", "10000"))
+    );
+
+    /**
+     * Threads.
+     */
+    private final ThreadPoolExecutor threads;
+
+    /**
+     * Timeout of a search, in millis.
+     */
+    private final long timeout;
+
+    /**
+     * Ctor.
+     * @param threads Number of threads.
+     * @param queue Max number of waiting searches.
+     * @param timeout Timeout of a search, in millis.
+     */
+    public SearchPool(final int threads, final int queue, final long timeout) {
+        final AtomicInteger count = new AtomicInteger();
+        this.threads = new ThreadPoolExecutor(
+            threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queue),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(
+                        runnable, "charles-search-" + count.incrementAndGet()
+                    );
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+        );
+        this.threads.allowCoreThreadTimeOut(true);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Pool configured by the system properties.
+     * @return SearchPool.
+     */
+    public static SearchPool system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Timeout of a search.
+     * @return Millis.
+     */
+    public long timeout() {
+        return this.timeout;
+    }
+
+    /**
+     * Run a search.
+     * @param search Search.
+     * @return Future, to cancel it if it times out.
+     * @throws RejectedExecutionException If the pool is saturated.
+     */
+    public Future<?> submit(final Runnable search) {
+        return this.threads.submit(search);
+    }
+}
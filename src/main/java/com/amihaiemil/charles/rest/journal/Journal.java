@@ -0,0 +1,338 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Append-only journal, kept in memory-mapped segment files.<br><br>
+ * Writers append records and then {@link #sync(long)} them to the disk.
+ * Syncing is grouped: while a writer forces the segment, the others
+ * wait and are all covered by the next force, so a burst of records
+ * costs a few fsyncs rather than one each.<br><br>
+ * Every record is pending until it is marked {@link #done(long)}. The
+ * checkpoint, the offset before which all records are done, is kept in
+ * a file; the segments before it are deleted. When the journal is
+ * reopened, the records after the checkpoint are {@link #recovered()},
+ * so they are handled at least once.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class Journal implements Closeable {
+
+    /**
+     * Extension of the segment files.
+     */
+    private static final String EXT = ".journal";
+
+    /**
+     * Directory.
+     */
+    private final File dir;
+
+    /**
+     * Size of a segment, in bytes.
+     */
+    private final int size;
+
+    /**
+     * Segments, oldest first.
+     */
+    private final List<Segment> segments = new ArrayList<>();
+
+    /**
+     * Offsets of the pending records.
+     */
+    private final SortedSet<Long> pending = new TreeSet<>();
+
+    /**
+     * Records found pending when the journal was opened.
+     */
+    private final List<Record> recovered;
+
+    /**
+     * File with the checkpoint.
+     */
+    private final RandomAccessFile checkpoints;
+
+    /**
+     * Last saved checkpoint.
+     */
+    private long checkpoint;
+
+    /**
+     * Is it closed?
+     */
+    private boolean closed;
+
+    /**
+     * Lock of the sync state.
+     */
+    private final Object sync = new Object();
+
+    /**
+     * Offset up to which the records are on the disk.
+     */
+    private long forced;
+
+    /**
+     * Is some writer forcing the segment now?
+     */
+    private boolean forcing;
+
+    /**
+     * Ctor. Opens the journal in the given directory, creating it if needed.
+     * @param dir Directory.
+     * @param size Size of a segment, in bytes.
+     * @throws IOException If the journal cannot be opened.
+     */
+    public Journal(final File dir, final int size) throws IOException {
+        if(size <= Segment.HEADER) {
+            throw new IllegalArgumentException("Segment size too small: " + size);
+        }
+        this.dir = dir;
+        this.size = size;
+        if(!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create the journal directory " + dir);
+        }
+        final File[] files = dir.listFiles();
+        final List<Long> bases = new ArrayList<>();
+        for(final File file : files) {
+            final String name = file.getName();
+            if(name.endsWith(EXT)) {
+                bases.add(Long.valueOf(name.substring(0, name.length() - EXT.length())));
+            }
+        }
+        Collections.sort(bases);
+        for(final Long base : bases) {
+            this.segments.add(new Segment(this.file(base), base, size));
+        }
+        if(this.segments.isEmpty()) {
+            this.segments.add(new Segment(this.file(0), 0, size));
+        }
+        this.checkpoints = new RandomAccessFile(new File(dir, "checkpoint"), "rw");
+        if(this.checkpoints.length() >= 8) {
+            this.checkpoint = this.checkpoints.readLong();
+        } else {
+            this.checkpoint = this.segments.get(0).base();
+        }
+        final List<Record> records = new ArrayList<>();
+        for(final Segment segment : this.segments) {
+            for(final Record record : segment.records(this.checkpoint)) {
+                records.add(record);
+                this.pending.add(record.offset());
+            }
+        }
+        this.recovered = Collections.unmodifiableList(records);
+        this.forced = this.last().end();
+        this.clean();
+    }
+
+    /**
+     * Records which were pending when the journal was opened.
+     * @return List of records, oldest first.
+     */
+    public List<Record> recovered() {
+        return this.recovered;
+    }
+
+    /**
+     * Append a record and sync it to the disk.
+     * @param payload Payload.
+     * @return The record.
+     * @throws IOException If the record cannot be written.
+     */
+    public Record append(final byte[] payload) throws IOException {
+        final Record record = this.write(payload);
+        this.sync(record.next());
+        return record;
+    }
+
+    /**
+     * Append a record, without syncing it to the disk.
+     * @param payload Payload.
+     * @return The record.
+     * @throws IOException If the record cannot be written.
+     */
+    public synchronized Record write(final byte[] payload) throws IOException {
+        if(this.closed) {
+            throw new IOException("The journal is closed");
+        }
+        if(payload.length == 0 || payload.length > this.size - Segment.HEADER) {
+            throw new IllegalArgumentException(
+                "Payload must have between 1 and " + (this.size - Segment.HEADER)
+                + " bytes, it has " + payload.length
+            );
+        }
+        Segment last = this.last();
+        if(!last.fits(payload.length)) {
+            last.force();
+            last = new Segment(this.file(last.end()), last.end(), this.size);
+            this.segments.add(last);
+        }
+        final Record record = last.write(payload);
+        this.pending.add(record.offset());
+        return record;
+    }
+
+    /**
+     * Wait until the records before the given offset are on the disk.
+     * Only one writer forces the segment at a time; it covers everything
+     * written until then.
+     * @param offset Offset.
+     * @throws IOException If the segment cannot be forced.
+     */
+    public void sync(final long offset) throws IOException {
+        while(true) {
+            synchronized (this.sync) {
+                while(this.forcing && this.forced < offset) {
+                    try {
+                        this.sync.wait();
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while syncing");
+                    }
+                }
+                if(this.forced >= offset) {
+                    return;
+                }
+                this.forcing = true;
+            }
+            final long target;
+            final Segment last;
+            synchronized (this) {
+                last = this.last();
+                target = last.end();
+            }
+            boolean done = false;
+            try {
+                last.force();
+                done = true;
+            } finally {
+                synchronized (this.sync) {
+                    if(done) {
+                        this.forced = Math.max(this.forced, target);
+                    }
+                    this.forcing = false;
+                    this.sync.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark a record as done, moving the checkpoint if possible.
+     * Does nothing if the journal is closed: the record will be
+     * recovered when it is opened again.
+     * @param offset Offset of the record.
+     * @throws IOException If the checkpoint cannot be saved.
+     */
+    public synchronized void done(final long offset) throws IOException {
+        if(!this.closed) {
+            this.pending.remove(offset);
+            final long next;
+            if(this.pending.isEmpty()) {
+                next = this.last().end();
+            } else {
+                next = this.pending.first();
+            }
+            if(next > this.checkpoint) {
+                this.checkpoints.getChannel().write(
+                    (ByteBuffer) ByteBuffer.allocate(8).putLong(next).flip(), 0
+                );
+                this.checkpoint = next;
+                this.clean();
+            }
+        }
+    }
+
+    /**
+     * The checkpoint: all the records before it are done.
+     * @return Offset.
+     */
+    public synchronized long checkpoint() {
+        return this.checkpoint;
+    }
+
+    /**
+     * Number of pending records.
+     * @return Integer.
+     */
+    public synchronized int pending() {
+        return this.pending.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(!this.closed) {
+            this.closed = true;
+            for(final Segment segment : this.segments) {
+                segment.close();
+            }
+            this.checkpoints.getChannel().force(true);
+            this.checkpoints.close();
+        }
+    }
+
+    /**
+     * Delete the segments which are entirely before the checkpoint.
+     * @throws IOException If a segment cannot be deleted.
+     */
+    private void clean() throws IOException {
+        while(this.segments.size() > 1
+            && this.segments.get(1).base() <= this.checkpoint) {
+            this.segments.remove(0).delete();
+        }
+    }
+
+    /**
+     * The segment being written.
+     * @return Segment.
+     */
+    private Segment last() {
+        return this.segments.get(this.segments.size() - 1);
+    }
+
+    /**
+     * File of a segment.
+     * @param base Offset of the segment.
+     * @return File.
+     */
+    private File file(final long base) {
+        return new File(this.dir, String.format("%019d%s", base, EXT));
+    }
+}
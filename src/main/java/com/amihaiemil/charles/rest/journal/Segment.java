@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped file holding a part of the {@link Journal}. Each record
+ * is written as its length (int), the CRC32 of its payload (int) and the
+ * payload. The file is preallocated, so the written records end at the
+ * first zero length, or at the first record which does not match its
+ * checksum (torn by a crash).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+final class Segment implements Closeable {
+
+    /**
+     * Size of a record's header.
+     */
+    static final int HEADER = 8;
+
+    /**
+     * File.
+     */
+    private final File file;
+
+    /**
+     * Offset of the segment in the journal.
+     */
+    private final long base;
+
+    /**
+     * Opened file.
+     */
+    private final RandomAccessFile opened;
+
+    /**
+     * Mapped file.
+     */
+    private final MappedByteBuffer map;
+
+    /**
+     * Position after the last record.
+     */
+    private int end;
+
+    /**
+     * Ctor. Opens or creates the segment; the space after the valid
+     * records is zeroed, in case a torn record is left there.
+     * @param file File.
+     * @param base Offset of the segment in the journal.
+     * @param size Size of a new segment, in bytes.
+     * @throws IOException If the file cannot be mapped.
+     */
+    Segment(final File file, final long base, final int size) throws IOException {
+        this.file = file;
+        this.base = base;
+        this.opened = new RandomAccessFile(file, "rw");
+        if(this.opened.length() == 0) {
+            this.opened.setLength(size);
+        }
+        this.map = this.opened.getChannel().map(
+            FileChannel.MapMode.READ_WRITE, 0, this.opened.length()
+        );
+        this.end = this.scan();
+        for(int idx = this.end; idx < this.map.capacity(); ++idx) {
+            if(this.map.get(idx) != 0) {
+                this.map.put(idx, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Offset of the segment in the journal.
+     * @return Long.
+     */
+    long base() {
+        return this.base;
+    }
+
+    /**
+     * Offset after the last record, in the journal.
+     * @return Long.
+     */
+    long end() {
+        return this.base + this.end;
+    }
+
+    /**
+     * Is there room for a payload?
+     * @param length Length of the payload.
+     * @return True or false.
+     */
+    boolean fits(final int length) {
+        return this.end + HEADER + length <= this.map.capacity();
+    }
+
+    /**
+     * Append a record. Not forced to the disk.
+     * @param payload Payload.
+     * @return Record.
+     */
+    Record write(final byte[] payload) {
+        final int position = this.end;
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        final ByteBuffer buffer = this.map.duplicate();
+        buffer.position(position + HEADER);
+        buffer.put(payload);
+        this.map.putInt(position + 4, (int) crc.getValue());
+        this.map.putInt(position, payload.length);
+        this.end = position + HEADER + payload.length;
+        return new Record(this.base + position, payload);
+    }
+
+    /**
+     * Records starting from an offset, up to the end.
+     * @param from Offset in the journal.
+     * @return List of records.
+     */
+    List<Record> records(final long from) {
+        final List<Record> records = new ArrayList<>();
+        int position = 0;
+        while(position < this.end) {
+            final int length = this.map.getInt(position);
+            if(this.base + position >= from) {
+                final byte[] payload = new byte[length];
+                final ByteBuffer buffer = this.map.duplicate();
+                buffer.position(position + HEADER);
+                buffer.get(payload);
+                records.add(new Record(this.base + position, payload));
+            }
+            position += HEADER + length;
+        }
+        return records;
+    }
+
+    /**
+     * Force the written records to the disk.
+     */
+    void force() {
+        this.map.force();
+    }
+
+    /**
+     * Close and delete the segment.
+     * @throws IOException If it cannot be deleted.
+     */
+    void delete() throws IOException {
+        this.close();
+        if(!this.file.delete()) {
+            throw new IOException("Could not delete " + this.file);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.map.force();
+        this.opened.close();
+    }
+
+    /**
+     * Find the end of the valid records.
+     * @return Position after the last valid record.
+     */
+    private int scan() {
+        int position = 0;
+        while(position + HEADER <= this.map.capacity()) {
+            final int length = this.map.getInt(position);
+            if(length <= 0 || length > this.map.capacity() - position - HEADER) {
+                break;
+            }
+            final byte[] payload = new byte[length];
+            final ByteBuffer buffer = this.map.duplicate();
+            buffer.position(position + HEADER);
+            buffer.get(payload);
+            final CRC32 crc = new CRC32();
+            crc.update(payload);
+            if((int) crc.getValue() != this.map.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER + length;
+        }
+        return position;
+    }
+}
@@ -112,6 +112,11 @@ public final class ElasticSearchResults implements SearchResultsPage {
         return this.pages;
     }
 
+    @Override
+    public int took() {
+        return this.results.getInt("took", 0);
+    }
+
     @Override
     public SearchResultsPage withPageNr(int pageNr) {
         return new ElasticSearchResults(this.results, pageNr, this.nextPage, this.previousPage, this.pages);
@@ -59,4 +59,38 @@ public final class IssueCommentNotification implements Notification {
         return this.payload.getJsonObject("issue").getInt("number");
     }
 
+    /**
+     * The comment, if it was just created. An edited comment is not
+     * passed on, since the agent might have replied to it already.
+     * @return Comment json or null.
+     */
+    @Override
+    public JsonObject comment() {
+        JsonObject comment = null;
+        if("created".equals(this.payload.getString("action", ""))) {
+            comment = this.payload.getJsonObject("comment");
+        }
+        return comment;
+    }
+
+    /**
+     * Can this notification be a command for the agent? It cannot if the
+     * comment was deleted, if it was written by the agent or if it does
+     * not mention the agent. Checked only with the payload, without
+     * calling the Github API.
+     * @param agent Username of the Github agent.
+     * @return True if the notification should be handled.
+     */
+    public boolean addressedTo(final String agent) {
+        boolean addressed = true;
+        final JsonObject comment = this.payload.getJsonObject("comment");
+        if(comment != null) {
+            final JsonObject user = comment.getJsonObject("user");
+            addressed = !"deleted".equals(this.payload.getString("action", ""))
+                && !(user != null && agent.equals(user.getString("login", "")))
+                && comment.getString("body", "").contains("@" + agent);
+        }
+        return addressed;
+    }
+
 }
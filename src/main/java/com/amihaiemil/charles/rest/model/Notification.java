@@ -25,6 +25,8 @@
  */
 package com.amihaiemil.charles.rest.model;
 
+import javax.json.JsonObject;
+
 /**
  * Simplified Github notification to act upon.
  * @author Mihai Andronache (amihaiemil@gmail.com)
@@ -47,4 +49,11 @@ public interface Notification {
      * @return String.
      */
     int issueNumber();
+
+    /**
+     * The comment which mentioned the agent, if it came with the notification.
+     * @return Comment json, as returned by the Github API, or null if it
+     *  has to be looked for in the issue.
+     */
+    JsonObject comment();
 }
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Windowed pagination of the search results: the first page, the last
+ * page and a neighborhood of the current page, instead of every page
+ * (a query may match tens of thousands of documents).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class Pagination {
+
+    /**
+     * Default number of pages shown on each side of the current one.
+     */
+    public static final int WINDOW = 2;
+
+    /**
+     * Total number of hits.
+     */
+    private final int hits;
+
+    /**
+     * Index of the first result on the current page.
+     */
+    private final int index;
+
+    /**
+     * Number of results on a page.
+     */
+    private final int size;
+
+    /**
+     * Pages shown on each side of the current one.
+     */
+    private final int window;
+
+    /**
+     * Ctor.
+     * @param hits Total number of hits.
+     * @param index Index of the first result on the current page.
+     * @param size Number of results on a page.
+     */
+    public Pagination(final int hits, final int index, final int size) {
+        this(hits, index, size, WINDOW);
+    }
+
+    /**
+     * Ctor.
+     * @param hits Total number of hits.
+     * @param index Index of the first result on the current page.
+     * @param size Number of results on a page.
+     * @param window Pages shown on each side of the current one.
+     */
+    public Pagination(
+        final int hits, final int index, final int size, final int window
+    ) {
+        if(size <= 0) {
+            throw new IllegalArgumentException("The page size must be positive!");
+        }
+        this.hits = hits;
+        this.index = index;
+        this.size = size;
+        this.window = window;
+    }
+
+    /**
+     * Number of the current page, starting at 1.
+     * @return Integer.
+     */
+    public int current() {
+        return this.index / this.size + 1;
+    }
+
+    /**
+     * Number of results on a page.
+     * @return Integer.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Number of the last page; 0 if there are no hits.
+     * @return Integer.
+     */
+    public int last() {
+        return (this.hits + this.size - 1) / this.size;
+    }
+
+    /**
+     * Is there a previous page?
+     * @return True or false.
+     */
+    public boolean hasPrevious() {
+        return this.index > 0;
+    }
+
+    /**
+     * Is there a next page?
+     * @return True or false.
+     */
+    public boolean hasNext() {
+        return this.index + this.size < this.hits;
+    }
+
+    /**
+     * Index of the first result on the given page.
+     * @param page Number of the page, starting at 1.
+     * @return Integer.
+     */
+    public int start(final int page) {
+        return (page - 1) * this.size;
+    }
+
+    /**
+     * Numbers of the shown pages, ascending: the first, the ones around
+     * the current page and the last.
+     * @return List of page numbers.
+     */
+    public List<Integer> pages() {
+        final List<Integer> pages = new ArrayList<>();
+        final int last = this.last();
+        if(last > 0) {
+            pages.add(1);
+            final int from = Math.max(2, this.current() - this.window);
+            final int upto = Math.min(last - 1, this.current() + this.window);
+            for(int page = from; page <= upto; ++page) {
+                pages.add(page);
+            }
+            if(last > 1) {
+                pages.add(last);
+            }
+        }
+        return pages;
+    }
+}
@@ -28,6 +28,7 @@ package com.amihaiemil.charles.rest.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -80,6 +81,13 @@ public interface SearchResultsPage {
      */
     @JsonProperty("pages")
     List<String> pages();
+
+    /**
+     * Time ElasticSearch took to run the query, in millis.
+     * @return Integer.
+     */
+    @JsonIgnore
+    int took();
     
     /**
      * Specify the page number.
@@ -141,6 +149,11 @@ public interface SearchResultsPage {
             return new ArrayList<>();
         }
 
+        @Override
+        public int took() {
+            return 0;
+        }
+
         @Override
         public SearchResultsPage withPageNr(int pageNr) {
             return this;
@@ -59,4 +59,9 @@ public final class SimpleJsonNotification implements Notification {
         return this.json.getInt("issueNumber");
     }
 
+    @Override
+    public JsonObject comment() {
+        return this.json.getJsonObject("comment");
+    }
+
 }
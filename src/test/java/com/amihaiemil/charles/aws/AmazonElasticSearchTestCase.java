@@ -34,6 +34,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.ServerSocket;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -43,9 +44,13 @@ import org.apache.http.HttpStatus;
 import org.junit.Test;
 
 import com.amazonaws.AmazonServiceException;
+import com.amazonaws.util.BinaryUtils;
 import com.amihaiemil.charles.Link;
 import com.amihaiemil.charles.SnapshotWebPage;
 import com.amihaiemil.charles.WebPage;
+import com.amihaiemil.charles.aws.metrics.EsMetrics;
+import com.amihaiemil.charles.aws.metrics.EsOperation;
+import com.amihaiemil.charles.aws.requests.Hedging;
 import com.amihaiemil.charles.rest.model.SearchResult;
 import com.amihaiemil.charles.rest.model.SearchResultsPage;
 import com.jcabi.http.mock.MkAnswer;
@@ -180,8 +185,16 @@ public class AmazonElasticSearchTestCase {
                 new EsEndPoint.Fake("http://localhost:" + port + "/es")
             ).export(pages);
             MkQuery request = server.take();
-            assertEquals("/es/_bulk/",request.uri().toString());
+            assertEquals("/es/_bulk/?refresh=wait_for", request.uri().toString());
             assertTrue("POST".equals(request.method()));
+            assertEquals(
+                BinaryUtils.toHex(
+                    MessageDigest.getInstance("SHA-256").digest(
+                        request.body().getBytes("UTF-8")
+                    )
+                ),
+                request.headers().get("X-Amz-Content-Sha256").get(0)
+            );
         } finally {
             server.stop();
         }
@@ -202,6 +215,7 @@ public class AmazonElasticSearchTestCase {
         MkContainer server = new MkGrizzlyContainer()
            .next(new MkAnswer.Simple(412))
            .start(port);
+        final long generation = IndexGenerations.system().current("testIndex");
         try {
             new AmazonElasticSearch(
                 "testIndex",
@@ -213,8 +227,11 @@ public class AmazonElasticSearchTestCase {
         } catch (AmazonServiceException ase) {
             assertTrue(ase.getErrorMessage().contains("Precondition Failed"));
             MkQuery request = server.take();
-            assertEquals("/es/_bulk/", request.uri().toString());
+            assertEquals("/es/_bulk/?refresh=wait_for", request.uri().toString());
             assertTrue("POST".equals(request.method()));
+            assertEquals(
+                generation, IndexGenerations.system().current("testIndex")
+            );
         }finally {
             server.stop();
         }
@@ -231,6 +248,8 @@ public class AmazonElasticSearchTestCase {
            .next(new MkAnswer.Simple("{\"status\":\"index deleted\"}"))
            .start(port);
         try {
+            final long generation = IndexGenerations.system()
+                .current("index.to.be.deleted");
             new AmazonElasticSearch(
                 "index.to.be.deleted",
                 new AccessKeyId.Fake("access_key"),
@@ -241,6 +260,10 @@ public class AmazonElasticSearchTestCase {
             MkQuery request = server.take();
             assertEquals("/es/index.to.be.deleted/", request.uri().toString());
             assertTrue("DELETE".equals(request.method()));
+            assertEquals(
+                generation + 1,
+                IndexGenerations.system().current("index.to.be.deleted")
+            );
         } finally {
             server.stop();
         }
@@ -265,7 +288,7 @@ public class AmazonElasticSearchTestCase {
                 new EsEndPoint.Fake("http://localhost:" + port + "/es/")
             ).delete("page", "document_id");
             MkQuery request = server.take();
-            assertEquals("/es/index/page/document_id/", request.uri().toString());
+            assertEquals("/es/index/page/document_id/?refresh=wait_for", request.uri().toString());
             assertTrue("DELETE".equals(request.method()));
         } finally {
             server.stop();
@@ -391,6 +414,226 @@ public class AmazonElasticSearchTestCase {
         }
     }
     
+    /**
+     * A search which fails on the best endpoint is retried on the replica.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void searchFailsOverToReplica() throws IOException {
+        int primaryPort = this.port();
+        int replicaPort = this.port();
+        MkContainer primary = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple(HttpStatus.SC_INTERNAL_SERVER_ERROR)
+        ).start(primaryPort);
+        MkContainer replica = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple(this.readResource("esSearchResponse.json"))
+        ).start(replicaPort);
+        try {
+            final List<EsNode> nodes = new ArrayList<>();
+            nodes.add(new EsNode("http://localhost:" + primaryPort + "/es", true));
+            nodes.add(new EsNode("http://localhost:" + replicaPort + "/es", false));
+            final EsRouting routing = new EsRouting(nodes);
+            ElasticSearch es = new AmazonElasticSearch(
+                "amihaiemilxtestrepo",
+                new AccessKeyId.Fake("aws_key_id"),
+                new SecretKey.Fake("secret_key"),
+                new Region.Fake("us-west"),
+                routing,
+                new Hedging(-1, 0)
+            );
+            SearchResultsPage srp = es.search(new SearchQuery("test", "page", 0, 10));
+            assertTrue(srp.totalHits() == 27);
+            assertEquals("/es/amihaiemilxtestrepo/_search/", primary.take().uri().toString());
+            assertEquals("/es/amihaiemilxtestrepo/_search/", replica.take().uri().toString());
+            assertFalse(nodes.get(0).available());
+            assertTrue(routing.reads().get(0) == nodes.get(1));
+        } finally {
+            primary.stop();
+            replica.stop();
+        }
+    }
+
+    /**
+     * The bulk export goes to the primary endpoint, never to a read replica.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void exportsToPrimaryOnly() throws Exception {
+        List<WebPage> pages = new ArrayList<WebPage>();
+        pages.add(this.mockWebPage("http://www.test.com/crawledpage.html"));
+        int replicaPort = this.port();
+        int primaryPort = this.port();
+        MkContainer replica = new MkGrizzlyContainer().start(replicaPort);
+        MkContainer primary = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple("{\"status\":\"ok\"}")
+        ).start(primaryPort);
+        try {
+            final List<EsNode> nodes = new ArrayList<>();
+            nodes.add(new EsNode("http://localhost:" + replicaPort + "/es", false));
+            nodes.add(new EsNode("http://localhost:" + primaryPort + "/es", true));
+            new AmazonElasticSearch(
+                "testIndex",
+                new AccessKeyId.Fake("access_key"),
+                new SecretKey.Fake("secret_key"),
+                new Region.Fake("ro"),
+                new EsRouting(nodes),
+                new Hedging(-1, 0)
+            ).export(pages);
+            MkQuery request = primary.take();
+            assertEquals("/es/_bulk/?refresh=wait_for", request.uri().toString());
+            assertTrue("POST".equals(request.method()));
+            assertTrue(replica.queries() == 0);
+        } finally {
+            primary.stop();
+            replica.stop();
+        }
+    }
+
+    /**
+     * In shared indexes mode, the search goes to the shared index,
+     * routed and filtered by repo.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void searchesSharedIndex() throws IOException {
+        int port = this.port();
+        MkContainer awsEs = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple(this.readResource("esSearchResponse.json"))
+        ).start(port);
+        try {
+            final SharedIndexes shared = new SharedIndexes(3);
+            ElasticSearch es = new AmazonElasticSearch(
+                "amihaiemilxtestrepo",
+                new AccessKeyId.Fake("aws_key_id"),
+                new SecretKey.Fake("secret_key"),
+                new Region.Fake("us-west"),
+                new EsRouting(new EsEndPoint.Fake("http://localhost:" + port + "/es")),
+                new Hedging(-1, 0),
+                shared
+            );
+            SearchResultsPage srp = es.search(new SearchQuery("test", "page", 0, 10));
+            assertTrue(srp.totalHits() == 27);
+            MkQuery request = awsEs.take();
+            assertEquals(
+                "/es/" + shared.index("amihaiemilxtestrepo")
+                + "/_search/?routing=amihaiemilxtestrepo",
+                request.uri().toString()
+            );
+            assertTrue(
+                request.body().contains("{\"term\":{\"repo\":\"amihaiemilxtestrepo\"}}")
+            );
+        } finally {
+            awsEs.stop();
+        }
+    }
+
+    /**
+     * In shared indexes mode, delete is a routed delete-by-query.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void deletesFromSharedIndex() throws IOException {
+        int port = this.port();
+        MkContainer awsEs = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple("{\"deleted\":12}")
+        ).start(port);
+        try {
+            final SharedIndexes shared = new SharedIndexes(3);
+            new AmazonElasticSearch(
+                "amihaiemilxtestrepo",
+                new AccessKeyId.Fake("aws_key_id"),
+                new SecretKey.Fake("secret_key"),
+                new Region.Fake("us-west"),
+                new EsRouting(new EsEndPoint.Fake("http://localhost:" + port + "/es")),
+                new Hedging(-1, 0),
+                shared
+            ).delete();
+            MkQuery request = awsEs.take();
+            assertEquals("POST", request.method());
+            assertEquals(
+                "/es/" + shared.index("amihaiemilxtestrepo")
+                + "/_delete_by_query/?routing=amihaiemilxtestrepo&refresh=true",
+                request.uri().toString()
+            );
+            assertEquals(
+                "{\"query\":{\"term\":{\"repo\":\"amihaiemilxtestrepo\"}}}",
+                request.body()
+            );
+        } finally {
+            awsEs.stop();
+        }
+    }
+
+    /**
+     * In shared indexes mode, the repo exists if it has pages.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void tellsIfRepoExistsInSharedIndex() throws IOException {
+        int port = this.port();
+        MkContainer awsEs = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple("{\"count\":3}"))
+            .next(new MkAnswer.Simple("{\"count\":0}"))
+            .start(port);
+        try {
+            final ElasticSearch es = new AmazonElasticSearch(
+                "amihaiemilxtestrepo",
+                new AccessKeyId.Fake("aws_key_id"),
+                new SecretKey.Fake("secret_key"),
+                new Region.Fake("us-west"),
+                new EsRouting(new EsEndPoint.Fake("http://localhost:" + port + "/es")),
+                new Hedging(-1, 0),
+                new SharedIndexes(3)
+            );
+            assertTrue(es.exists());
+            assertFalse(es.exists());
+            assertTrue(awsEs.take().uri().toString().contains("/_count/?routing="));
+        } finally {
+            awsEs.stop();
+        }
+    }
+
+    /**
+     * The search requests are measured: latency, bytes sent and received.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void measuresSearchRequests() throws IOException {
+        int port = this.port();
+        final String response = this.readResource("esSearchResponse.json");
+        MkContainer awsEs = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple(response)
+        ).start(port);
+        try {
+            final EsMetrics metrics = new EsMetrics();
+            new AmazonElasticSearch(
+                "testrepo",
+                new AccessKeyId.Fake("aws_key_id"),
+                new SecretKey.Fake("secret_key"),
+                new Region.Fake("us-west"),
+                new EsRouting(new EsEndPoint.Fake("http://localhost:" + port + "/es")),
+                new Hedging(-1, 0),
+                new SharedIndexes(0),
+                metrics
+            ).search(new SearchQuery("test", "page", 0, 10));
+            final EsOperation search = metrics.of("search", "testrepo");
+            assertEquals(1L, search.latencies().count());
+            assertEquals(0L, search.errors());
+            assertEquals(
+                awsEs.take().body().getBytes().length, search.sent()
+            );
+            assertEquals(response.getBytes().length, search.received());
+            assertTrue(
+                metrics.prometheus().contains(
+                    "charles_es_request_duration_seconds_count"
+                    + "{operation=\"search\",index=\"testrepo\"} 1"
+                )
+            );
+        } finally {
+            awsEs.stop();
+        }
+    }
+
     /**
      * Read resource for test.
      * @param resourceName
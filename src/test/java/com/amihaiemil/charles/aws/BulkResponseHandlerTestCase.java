@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.io.ByteArrayInputStream;
+
+import javax.json.JsonObject;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.http.HttpResponse;
+
+/**
+ * Unit tests for {@link BulkResponseHandler}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class BulkResponseHandlerTestCase {
+
+    /**
+     * A bulk without errors is returned as is.
+     */
+    @Test
+    public void readsSuccessfulBulk() {
+        final JsonObject bulk = new BulkResponseHandler().handle(
+            this.response(
+                200,
+                "{\"errors\":false,\"items\":[{\"index\":{\"status\":201}}]}"
+            )
+        );
+        MatcherAssert.assertThat(bulk.getJsonArray("items"), Matchers.hasSize(1));
+    }
+
+    /**
+     * The items rejected with 429 are thrown, the other failed ones are not.
+     */
+    @Test
+    public void throwsRejectedItems() {
+        try {
+            new BulkResponseHandler().handle(
+                this.response(
+                    200,
+                    "{\"errors\":true,\"items\":["
+                    + "{\"index\":{\"status\":201}},"
+                    + "{\"index\":{\"status\":429,\"error\":"
+                    + "{\"type\":\"es_rejected_execution_exception\"}}},"
+                    + "{\"index\":{\"status\":400,\"error\":"
+                    + "{\"type\":\"mapper_parsing_exception\"}}},"
+                    + "{\"index\":{\"status\":429}}]}"
+                )
+            );
+            MatcherAssert.assertThat("EsBulkRejection expected", false);
+        } catch (final EsBulkRejection ex) {
+            MatcherAssert.assertThat(ex.items(), Matchers.contains(1, 3));
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.is(429));
+            MatcherAssert.assertThat(
+                ex.getErrorMessage(), Matchers.equalTo("2 of 4 bulk items were rejected")
+            );
+        }
+    }
+
+    /**
+     * Failed items other than the rejected ones are only logged.
+     */
+    @Test
+    public void logsOtherFailedItems() {
+        final JsonObject bulk = new BulkResponseHandler().handle(
+            this.response(
+                200,
+                "{\"errors\":true,\"items\":[{\"index\":{\"status\":400,"
+                + "\"error\":{\"type\":\"mapper_parsing_exception\"}}}]}"
+            )
+        );
+        MatcherAssert.assertThat(bulk.getBoolean("errors"), Matchers.is(true));
+    }
+
+    /**
+     * An unexpected status is thrown.
+     */
+    @Test
+    public void throwsOnBadStatus() {
+        try {
+            new BulkResponseHandler().handle(this.response(413, "{}"));
+            MatcherAssert.assertThat("AmazonServiceException expected", false);
+        } catch (final AmazonServiceException ex) {
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.is(413));
+        }
+    }
+
+    /**
+     * Mock response.
+     * @param status Status.
+     * @param body Body.
+     * @return HttpResponse.
+     */
+    private HttpResponse response(final int status, final String body) {
+        final HttpResponse response = Mockito.mock(HttpResponse.class);
+        Mockito.when(response.getStatusCode()).thenReturn(status);
+        Mockito.when(response.getContent()).thenReturn(
+            new ByteArrayInputStream(body.getBytes())
+        );
+        return response;
+    }
+}
@@ -27,9 +27,11 @@ package com.amihaiemil.charles.aws;
 import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import javax.json.Json;
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import com.amihaiemil.charles.Link;
@@ -69,6 +71,46 @@ public class EsBulkJsonTestCase {
         );
     }
 
+    /**
+     * EsBulkJson routes the pages by repo and adds the repo field to them,
+     * when the index is shared.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void structuresPagesForSharedIndex() throws Exception {
+        List<WebPage> pages = new ArrayList<>();
+        pages.add(this.mockWebPage("http://amihaiemil.com/page.html"));
+        String[] lines = new EsBulkJson(
+            "charles-shared-1", "amihaiemilxrepo", pages
+        ).structure().split("\n");
+        assertTrue(lines.length == 2);
+        assertTrue(
+            lines[0].equals(
+                "{\"index\":{\"_index\":\"charles-shared-1\", \"_type\":\"page\", "
+                + "\"_id\":\"http://amihaiemil.com/page.html\", \"_routing\":\"amihaiemilxrepo\"}}"
+            )
+        );
+        assertTrue(lines[1].contains("\"repo\":\"amihaiemilxrepo\""));
+    }
+
+    /**
+     * EsBulkJson escapes the routing, which is spliced into the action line.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void escapesRouting() throws Exception {
+        List<WebPage> pages = new ArrayList<>();
+        pages.add(this.mockWebPage("http://amihaiemil.com/page.html"));
+        String action = new EsBulkJson(
+            "charles-shared-1", "amihaiemilx\"repo\\", pages
+        ).structure().split("\n")[0];
+        assertTrue(
+            Json.createReader(new StringReader(action)).readObject()
+                .getJsonObject("index").getString("_routing")
+                .equals("amihaiemilx\"repo\\")
+        );
+    }
+
     /**
      * EsBulkJson throws exception on empty docs list.
      */
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link EsRouting}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class EsRoutingTestCase {
+
+    /**
+     * EsRouting can parse the endpoints specification.
+     */
+    @Test
+    public void parsesEndpoints() {
+        final EsRouting routing = EsRouting.parse(
+            "read:http://replica.es:9200, write:https://primary.es"
+        );
+        MatcherAssert.assertThat(
+            routing.primary().read(), Matchers.equalTo("https://primary.es")
+        );
+        MatcherAssert.assertThat(routing.reads(), Matchers.hasSize(2));
+        MatcherAssert.assertThat(
+            routing.reads().get(0).read(),
+            Matchers.equalTo("http://replica.es:9200")
+        );
+    }
+
+    /**
+     * EsRouting complains about unknown roles.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void complainsAboutUnknownRole() {
+        EsRouting.parse("admin:https://primary.es");
+    }
+
+    /**
+     * EsRouting needs a writable endpoint.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void needsPrimary() {
+        EsRouting.parse("read:https://replica.es");
+    }
+
+    /**
+     * EsRouting falls back to aws.es.endpoint if the list is missing.
+     */
+    @Test
+    public void fallsBackToSingleEndpoint() {
+        System.setProperty(EsEndPoint.NAME, "https://single.es");
+        try {
+            final EsRouting routing = EsRouting.parse(null);
+            MatcherAssert.assertThat(
+                routing.primary().read(), Matchers.equalTo("https://single.es")
+            );
+            MatcherAssert.assertThat(routing.reads(), Matchers.hasSize(1));
+        } finally {
+            System.clearProperty(EsEndPoint.NAME);
+        }
+    }
+
+    /**
+     * EsRouting prefers the fastest available endpoint for reads.
+     */
+    @Test
+    public void readsFromFastestAvailable() {
+        final EsNode primary = new EsNode("https://primary.es", true);
+        final EsNode fast = new EsNode("https://fast.es", false);
+        final EsNode broken = new EsNode("https://broken.es", false);
+        final List<EsNode> nodes = new ArrayList<>();
+        nodes.add(primary);
+        nodes.add(fast);
+        nodes.add(broken);
+        primary.succeeded(200);
+        fast.succeeded(20);
+        broken.succeeded(1);
+        broken.failed();
+        final List<EsNode> reads = new EsRouting(nodes).reads();
+        MatcherAssert.assertThat(reads.get(0), Matchers.is(fast));
+        MatcherAssert.assertThat(reads.get(1), Matchers.is(primary));
+        MatcherAssert.assertThat(reads.get(2), Matchers.is(broken));
+    }
+
+    /**
+     * EsNode keeps an exponentially weighted average of the latency.
+     */
+    @Test
+    public void averagesLatency() {
+        final EsNode node = new EsNode("https://primary.es", true);
+        MatcherAssert.assertThat(node.latency(), Matchers.is(0.0));
+        node.succeeded(100);
+        node.succeeded(200);
+        MatcherAssert.assertThat(node.latency(), Matchers.closeTo(130, 0.1));
+    }
+
+    /**
+     * A node which was slow once is read from again after a while without
+     * requests, since its average latency decays.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void retriesSlowNodeAfterAWhile() throws Exception {
+        final EsNode primary = new EsNode(
+            new EsEndPoint.Fake("https://primary.es"), true, 50
+        );
+        final EsNode replica = new EsNode(
+            new EsEndPoint.Fake("https://replica.es"), false, 50
+        );
+        final EsRouting routing = new EsRouting(Arrays.asList(primary, replica));
+        primary.succeeded(1000);
+        replica.succeeded(10);
+        MatcherAssert.assertThat(routing.reads().get(0), Matchers.is(replica));
+        Thread.sleep(500);
+        replica.succeeded(10);
+        MatcherAssert.assertThat(routing.reads().get(0), Matchers.is(primary));
+        primary.succeeded(1000);
+        MatcherAssert.assertThat(routing.reads().get(0), Matchers.is(replica));
+    }
+}
@@ -0,0 +1,710 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for ElasticSearch, speaking the subset of the REST API
+ * used by {@link AmazonElasticSearch}: _bulk, _search, _count,
+ * _delete_by_query, PUT _template and HEAD/DELETE on indexes and documents.
+ * Documents are kept in memory.<br><br>
+ * Like ES with dynamic mapping, the <b>repo</b> field is analyzed text
+ * (split into lowercase words), unless a template created the index with
+ * it mapped as keyword; a term query on it matches one word only.<br><br>
+ * Latency, server errors (500), throttling (429) and rejected bulk items
+ * can be injected,
+ * so the client's behaviour (connections, retries, concurrency limits)
+ * can be measured offline. Unlike MkGrizzlyContainer, the answers do not
+ * have to be queued in advance, so it can serve any number of requests.
+ * <pre>
+ * try (EsStandIn es = new EsStandIn().latency(20).throttling(0.1).start()) {
+ *     new AmazonElasticSearch(..., new EsEndPoint.Fake(es.endpoint())).export(pages);
+ * }
+ * </pre>
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class EsStandIn implements Closeable {
+
+    /**
+     * Indexes: index name -> (document id -> document).
+     */
+    private final ConcurrentMap<String, Map<String, JsonObject>> indexes =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Index templates: name -> template.
+     */
+    private final ConcurrentMap<String, JsonObject> templates =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Indexes with the repo field mapped as keyword.
+     */
+    private final Set<String> keywords = Collections.newSetFromMap(
+        new ConcurrentHashMap<String, Boolean>()
+    );
+
+    /**
+     * Ids for the documents indexed without one.
+     */
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Number of received requests.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Number of requests answered with 429.
+     */
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * Number of requests answered with 500.
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Random, for the injected errors.
+     */
+    private final Random random;
+
+    /**
+     * Latency added to each request, in millis.
+     */
+    private volatile long latency;
+
+    /**
+     * Ratio of requests answered with 500.
+     */
+    private volatile double errors;
+
+    /**
+     * Ratio of requests answered with 429.
+     */
+    private volatile double throttling;
+
+    /**
+     * Ratio of bulk items rejected with 429.
+     */
+    private volatile double rejections;
+
+    /**
+     * HTTP server, once started.
+     */
+    private HttpServer server;
+
+    /**
+     * Threads of the server.
+     */
+    private ExecutorService threads;
+
+    /**
+     * Ctor.
+     */
+    public EsStandIn() {
+        this(new Random(42L));
+    }
+
+    /**
+     * Ctor.
+     * @param random Random, for the injected errors.
+     */
+    public EsStandIn(final Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Add latency to each request.
+     * @param millis Latency in millis.
+     * @return This stand-in.
+     */
+    public EsStandIn latency(final long millis) {
+        this.latency = millis;
+        return this;
+    }
+
+    /**
+     * Answer a ratio of the requests with 500.
+     * @param ratio Between 0 and 1.
+     * @return This stand-in.
+     */
+    public EsStandIn errors(final double ratio) {
+        this.errors = ratio;
+        return this;
+    }
+
+    /**
+     * Answer a ratio of the requests with 429.
+     * @param ratio Between 0 and 1.
+     * @return This stand-in.
+     */
+    public EsStandIn throttling(final double ratio) {
+        this.throttling = ratio;
+        return this;
+    }
+
+    /**
+     * Reject a ratio of the bulk items with 429 (es_rejected_execution_exception),
+     * while the bulk itself is answered with 200, as a busy ES does.
+     * @param ratio Between 0 and 1.
+     * @return This stand-in.
+     */
+    public EsStandIn rejections(final double ratio) {
+        this.rejections = ratio;
+        return this;
+    }
+
+    /**
+     * Start listening on a free port.
+     * @return This stand-in.
+     * @throws IOException If the server cannot be started.
+     */
+    public EsStandIn start() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.threads = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.threads);
+        this.server.createContext(
+            "/",
+            new HttpHandler() {
+                @Override
+                public void handle(final HttpExchange exchange) throws IOException {
+                    EsStandIn.this.serve(exchange);
+                }
+            }
+        );
+        this.server.start();
+        return this;
+    }
+
+    /**
+     * URL of this stand-in, to be used as ES endpoint.
+     * @return String.
+     */
+    public String endpoint() {
+        return "http://localhost:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Number of requests received so far.
+     * @return Long.
+     */
+    public long requests() {
+        return this.requests.get();
+    }
+
+    /**
+     * Number of requests answered with 429 so far.
+     * @return Long.
+     */
+    public long throttled() {
+        return this.throttled.get();
+    }
+
+    /**
+     * Number of requests answered with 500 so far.
+     * @return Long.
+     */
+    public long failed() {
+        return this.failed.get();
+    }
+
+    /**
+     * Documents of an index.
+     * @param index Index name.
+     * @return Map of id -> document; empty if the index does not exist.
+     */
+    public Map<String, JsonObject> documents(final String index) {
+        final Map<String, JsonObject> docs = this.indexes.get(index);
+        final Map<String, JsonObject> copy = new LinkedHashMap<>();
+        if(docs != null) {
+            copy.putAll(docs);
+        }
+        return copy;
+    }
+
+    @Override
+    public void close() {
+        if(this.server != null) {
+            this.server.stop(0);
+            this.threads.shutdownNow();
+        }
+    }
+
+    /**
+     * Serve a request.
+     * @param exchange HTTP exchange.
+     * @throws IOException If something goes wrong.
+     */
+    private void serve(final HttpExchange exchange) throws IOException {
+        this.requests.incrementAndGet();
+        try {
+            final byte[] body = EsStandIn.read(exchange);
+            if(this.latency > 0) {
+                TimeUnit.MILLISECONDS.sleep(this.latency);
+            }
+            final double dice = this.random.nextDouble();
+            if(dice < this.throttling) {
+                this.throttled.incrementAndGet();
+                EsStandIn.answer(exchange, 429, "{\"error\":\"too many requests\"}");
+            } else if(dice < this.throttling + this.errors) {
+                this.failed.incrementAndGet();
+                EsStandIn.answer(exchange, 500, "{\"error\":\"injected failure\"}");
+            } else {
+                this.route(exchange, body);
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            EsStandIn.answer(exchange, 503, "{\"error\":\"shutting down\"}");
+        } catch (final RuntimeException ex) {
+            EsStandIn.answer(
+                exchange, 400, Json.createObjectBuilder()
+                    .add("error", String.valueOf(ex.getMessage())).build()
+                    .toString()
+            );
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Route the request to the right API.
+     * @param exchange HTTP exchange.
+     * @param body Request body.
+     * @throws IOException If something goes wrong.
+     */
+    private void route(final HttpExchange exchange, final byte[] body)
+        throws IOException {
+        final List<String> path = new ArrayList<>();
+        for(final String part : exchange.getRequestURI().getRawPath().split("/")) {
+            if(!part.isEmpty()) {
+                path.add(URLDecoder.decode(part, "UTF-8"));
+            }
+        }
+        final String method = exchange.getRequestMethod().toUpperCase(Locale.ENGLISH);
+        final String last;
+        if(path.isEmpty()) {
+            last = "";
+        } else {
+            last = path.get(path.size() - 1);
+        }
+        if("_bulk".equals(last) && "POST".equals(method)) {
+            EsStandIn.answer(exchange, 200, this.bulk(body));
+        } else if(path.size() == 2 && "_search".equals(last)) {
+            EsStandIn.answer(exchange, 200, this.search(path.get(0), body));
+        } else if(path.size() == 2 && "_count".equals(last)) {
+            this.count(exchange, path.get(0), body);
+        } else if(path.size() == 2 && "_delete_by_query".equals(last)) {
+            this.deleteByQuery(exchange, path.get(0), body);
+        } else if(path.size() == 2 && "_template".equals(path.get(0))
+            && "PUT".equals(method)) {
+            this.templates.put(path.get(1), EsStandIn.json(body));
+            EsStandIn.answer(exchange, 200, "{\"acknowledged\":true}");
+        } else if(path.size() == 1 && "HEAD".equals(method)) {
+            exchange.sendResponseHeaders(
+                this.indexes.containsKey(path.get(0)) ? 200 : 404, -1
+            );
+        } else if(path.size() == 1 && "DELETE".equals(method)) {
+            if(this.indexes.remove(path.get(0)) == null) {
+                EsStandIn.answer(exchange, 404, "{\"found\":false}");
+            } else {
+                EsStandIn.answer(exchange, 200, "{\"acknowledged\":true}");
+            }
+        } else if(path.size() == 3 && "DELETE".equals(method)) {
+            final Map<String, JsonObject> docs = this.indexes.get(path.get(0));
+            if(docs == null || docs.remove(path.get(2)) == null) {
+                EsStandIn.answer(exchange, 404, "{\"found\":false}");
+            } else {
+                EsStandIn.answer(exchange, 200, "{\"found\":true}");
+            }
+        } else {
+            EsStandIn.answer(
+                exchange, 400,
+                "{\"error\":\"unsupported: " + method + " " + path + "\"}"
+            );
+        }
+    }
+
+    /**
+     * Bulk indexing.
+     * @param body NDJSON action and document lines.
+     * @return Response.
+     * @throws IOException If the body cannot be read.
+     */
+    private String bulk(final byte[] body) throws IOException {
+        final BufferedReader lines = new BufferedReader(
+            new InputStreamReader(
+                new ByteArrayInputStream(body), StandardCharsets.UTF_8
+            )
+        );
+        final JsonArrayBuilder items = Json.createArrayBuilder();
+        boolean errors = false;
+        String line = lines.readLine();
+        while(line != null) {
+            if(!line.trim().isEmpty()) {
+                final JsonObject action = EsStandIn.json(line)
+                    .getJsonObject("index");
+                final JsonObject doc = EsStandIn.json(lines.readLine());
+                final String index = action.getString("_index");
+                final String id = action.getString(
+                    "_id", "generated-" + this.ids.incrementAndGet()
+                );
+                if(this.random.nextDouble() < this.rejections) {
+                    errors = true;
+                    items.add(
+                        Json.createObjectBuilder().add(
+                            "index",
+                            Json.createObjectBuilder()
+                                .add("_index", index)
+                                .add("_id", id)
+                                .add("status", 429)
+                                .add(
+                                    "error",
+                                    Json.createObjectBuilder().add(
+                                        "type", "es_rejected_execution_exception"
+                                    )
+                                )
+                        )
+                    );
+                } else {
+                    this.index(index).put(id, doc);
+                    items.add(
+                        Json.createObjectBuilder().add(
+                            "index",
+                            Json.createObjectBuilder()
+                                .add("_index", index)
+                                .add("_id", id)
+                                .add("status", 201)
+                        )
+                    );
+                }
+            }
+            line = lines.readLine();
+        }
+        return Json.createObjectBuilder()
+            .add("took", 1)
+            .add("errors", errors)
+            .add("items", items)
+            .build().toString();
+    }
+
+    /**
+     * Search: documents with textContent containing the keywords,
+     * optionally filtered by repo.
+     * @param index Index name.
+     * @param body Query.
+     * @return Response.
+     */
+    private String search(final String index, final byte[] body) {
+        final JsonObject query = EsStandIn.json(body);
+        final int from = query.getInt("from", 0);
+        final int size = query.getInt("size", 10);
+        String keywords = "";
+        String repo = null;
+        final JsonArray filters = query.getJsonObject("query")
+            .getJsonObject("bool").getJsonArray("filter");
+        for(final JsonValue value : filters) {
+            final JsonObject filter = (JsonObject) value;
+            if(filter.containsKey("match_phrase_prefix")) {
+                keywords = filter.getJsonObject("match_phrase_prefix")
+                    .getString("textContent");
+            } else if(filter.containsKey("term")) {
+                repo = filter.getJsonObject("term").getString("repo");
+            }
+        }
+        final List<JsonObject> matches = this.matching(index, keywords, repo);
+        final JsonArrayBuilder hits = Json.createArrayBuilder();
+        for(int idx = from; idx < Math.min(from + size, matches.size()); ++idx) {
+            final JsonObject doc = matches.get(idx);
+            final String text = doc.getString("textContent", "");
+            hits.add(
+                Json.createObjectBuilder()
+                    .add("_index", index)
+                    .add("_type", "page")
+                    .add("_score", 1.0)
+                    .add("_source", doc)
+                    .add(
+                        "highlight",
+                        Json.createObjectBuilder().add(
+                            "textContent",
+                            Json.createArrayBuilder().add(
+                                text.substring(0, Math.min(150, text.length()))
+                            )
+                        )
+                    )
+            );
+        }
+        return Json.createObjectBuilder()
+            .add("took", 1)
+            .add("timed_out", false)
+            .add(
+                "hits",
+                Json.createObjectBuilder()
+                    .add("total", matches.size())
+                    .add("max_score", 1.0)
+                    .add("hits", hits)
+            ).build().toString();
+    }
+
+    /**
+     * Count the documents of a repo.
+     * @param exchange HTTP exchange.
+     * @param index Index name.
+     * @param body Term query on repo.
+     * @throws IOException If something goes wrong.
+     */
+    private void count(
+        final HttpExchange exchange, final String index, final byte[] body
+    ) throws IOException {
+        if(!this.indexes.containsKey(index)) {
+            EsStandIn.answer(exchange, 404, "{\"error\":\"index_not_found\"}");
+        } else {
+            final int count = this.matching(index, "", EsStandIn.repo(body)).size();
+            EsStandIn.answer(exchange, 200, "{\"count\":" + count + "}");
+        }
+    }
+
+    /**
+     * Delete the documents of a repo.
+     * @param exchange HTTP exchange.
+     * @param index Index name.
+     * @param body Term query on repo.
+     * @throws IOException If something goes wrong.
+     */
+    private void deleteByQuery(
+        final HttpExchange exchange, final String index, final byte[] body
+    ) throws IOException {
+        final Map<String, JsonObject> docs = this.indexes.get(index);
+        if(docs == null) {
+            EsStandIn.answer(exchange, 404, "{\"error\":\"index_not_found\"}");
+        } else {
+            final String repo = EsStandIn.repo(body);
+            int deleted = 0;
+            final Iterator<JsonObject> iter = docs.values().iterator();
+            final boolean keyword = this.keywords.contains(index);
+            while(iter.hasNext()) {
+                if(EsStandIn.term(repo, iter.next().getString("repo", ""), keyword)) {
+                    iter.remove();
+                    ++deleted;
+                }
+            }
+            EsStandIn.answer(exchange, 200, "{\"deleted\":" + deleted + "}");
+        }
+    }
+
+    /**
+     * Documents matching the keywords and repo.
+     * @param index Index name.
+     * @param keywords Keywords; empty matches everything.
+     * @param repo Repo; null matches everything.
+     * @return List of documents.
+     */
+    private List<JsonObject> matching(
+        final String index, final String keywords, final String repo
+    ) {
+        final List<JsonObject> matches = new ArrayList<>();
+        final Map<String, JsonObject> docs = this.indexes.get(index);
+        if(docs != null) {
+            final String lower = keywords.toLowerCase(Locale.ENGLISH);
+            final boolean keyword = this.keywords.contains(index);
+            for(final JsonObject doc : docs.values()) {
+                final boolean text = doc.getString("textContent", "")
+                    .toLowerCase(Locale.ENGLISH).contains(lower);
+                final boolean owner = repo == null
+                    || EsStandIn.term(repo, doc.getString("repo", ""), keyword);
+                if(text && owner) {
+                    matches.add(doc);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Documents of an index, created if missing.
+     * @param name Index name.
+     * @return Map of id -> document.
+     */
+    private Map<String, JsonObject> index(final String name) {
+        if(this.indexes.putIfAbsent(
+            name, new ConcurrentHashMap<String, JsonObject>()
+        ) == null && this.keyword(name)) {
+            this.keywords.add(name);
+        }
+        return this.indexes.get(name);
+    }
+
+    /**
+     * Does a template map the repo field of a new index as keyword?
+     * @param name Index name.
+     * @return True or false.
+     */
+    private boolean keyword(final String name) {
+        boolean keyword = false;
+        for(final JsonObject template : this.templates.values()) {
+            boolean matches = false;
+            for(final JsonValue pattern : template.getJsonArray("index_patterns")) {
+                final String prefix = ((JsonString) pattern).getString()
+                    .replace("*", "");
+                matches = matches || name.startsWith(prefix);
+            }
+            final JsonObject repo = template.getJsonObject("mappings")
+                .getJsonObject("page").getJsonObject("properties")
+                .getJsonObject("repo");
+            keyword = keyword || matches && repo != null
+                && "keyword".equals(repo.getString("type", ""));
+        }
+        return keyword;
+    }
+
+    /**
+     * Does a term query match the repo field?
+     * @param term Term.
+     * @param repo Value of the repo field.
+     * @param keyword Is the field mapped as keyword?
+     * @return True or false.
+     */
+    private static boolean term(
+        final String term, final String repo, final boolean keyword
+    ) {
+        boolean matches = false;
+        if(keyword) {
+            matches = term.equals(repo);
+        } else {
+            for(final String word : repo.toLowerCase(Locale.ENGLISH)
+                .split("[^\\p{L}\\p{N}]+")) {
+                matches = matches || word.equals(term);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Repo from a term query.
+     * @param body Query.
+     * @return Repo.
+     */
+    private static String repo(final byte[] body) {
+        return EsStandIn.json(body).getJsonObject("query")
+            .getJsonObject("term").getString("repo");
+    }
+
+    /**
+     * Parse JSON.
+     * @param body Bytes.
+     * @return JsonObject.
+     */
+    private static JsonObject json(final byte[] body) {
+        return EsStandIn.json(new String(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse JSON.
+     * @param body String.
+     * @return JsonObject.
+     */
+    private static JsonObject json(final String body) {
+        return Json.createReader(new StringReader(body)).readObject();
+    }
+
+    /**
+     * Read the request body.
+     * @param exchange HTTP exchange.
+     * @return Bytes.
+     * @throws IOException If something goes wrong.
+     */
+    private static byte[] read(final HttpExchange exchange) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read = exchange.getRequestBody().read(buffer);
+        while(read != -1) {
+            out.write(buffer, 0, read);
+            read = exchange.getRequestBody().read(buffer);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Send a JSON answer.
+     * @param exchange HTTP exchange.
+     * @param status HTTP status.
+     * @param json Body.
+     * @throws IOException If something goes wrong.
+     */
+    private static void answer(
+        final HttpExchange exchange, final int status, final String json
+    ) throws IOException {
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if("HEAD".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
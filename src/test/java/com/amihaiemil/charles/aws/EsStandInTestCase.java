@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amihaiemil.charles.DataExportException;
+import com.amihaiemil.charles.Link;
+import com.amihaiemil.charles.SnapshotWebPage;
+import com.amihaiemil.charles.WebPage;
+import com.amihaiemil.charles.aws.metrics.EsMetrics;
+import com.amihaiemil.charles.aws.requests.Hedging;
+import com.amihaiemil.charles.rest.model.SearchResultsPage;
+
+/**
+ * Unit tests for {@link EsStandIn}, driving {@link AmazonElasticSearch}
+ * through it.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class EsStandInTestCase {
+
+    /**
+     * Pages can be exported, searched and deleted.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void exportsSearchesAndDeletes() throws Exception {
+        try (final EsStandIn standin = new EsStandIn().start()) {
+            final ElasticSearch es = this.es("amihaiemilxrepo", standin, 0);
+            MatcherAssert.assertThat(es.exists(), Matchers.is(false));
+            es.export(this.pages("charles is a chatbot", 3));
+            MatcherAssert.assertThat(es.exists(), Matchers.is(true));
+            final SearchResultsPage found = es.search(
+                new SearchQuery("chatbot", "page", 0, 2)
+            );
+            MatcherAssert.assertThat(found.totalHits(), Matchers.is(3));
+            MatcherAssert.assertThat(found.results(), Matchers.hasSize(2));
+            MatcherAssert.assertThat(
+                es.search(new SearchQuery("missing", "page", 0, 10)).totalHits(),
+                Matchers.is(0)
+            );
+            es.delete("page", "http://amihaiemil.com/page0.html");
+            MatcherAssert.assertThat(
+                standin.documents("amihaiemilxrepo").size(), Matchers.is(2)
+            );
+            es.delete();
+            MatcherAssert.assertThat(es.exists(), Matchers.is(false));
+        }
+    }
+
+    /**
+     * Shared indexes work through the stand-in as well.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void servesSharedIndexes() throws Exception {
+        try (final EsStandIn standin = new EsStandIn().start()) {
+            final ElasticSearch first = this.es("ownerxfirst", standin, 1);
+            final ElasticSearch second = this.es("ownerxsecond", standin, 1);
+            first.export(this.pages("first repo", 2));
+            MatcherAssert.assertThat(first.exists(), Matchers.is(true));
+            MatcherAssert.assertThat(second.exists(), Matchers.is(false));
+            MatcherAssert.assertThat(
+                second.search(new SearchQuery("repo", "page", 0, 10)).totalHits(),
+                Matchers.is(0)
+            );
+            first.delete();
+            MatcherAssert.assertThat(first.exists(), Matchers.is(false));
+        }
+    }
+
+    /**
+     * In a shared index, repos with dots or dashes in their names are told
+     * apart: the repo field is mapped as keyword, not split into words.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void separatesDottedRepos() throws Exception {
+        try (final EsStandIn standin = new EsStandIn().start()) {
+            final ElasticSearch site = this.es(
+                "amihaiemilxamihaiemil.github.io", standin, 1
+            );
+            final ElasticSearch dashed = this.es(
+                "amihaiemilxcharles-rest", standin, 1
+            );
+            final ElasticSearch plain = this.es("amihaiemilxcharles", standin, 1);
+            site.export(this.pages("http://amihaiemil.github.io", "site page", 2));
+            dashed.export(
+                this.pages("http://amihaiemil.com/charles-rest", "dashed page", 3)
+            );
+            plain.export(
+                this.pages("http://amihaiemil.com/charles", "plain page", 1)
+            );
+            MatcherAssert.assertThat(site.exists(), Matchers.is(true));
+            MatcherAssert.assertThat(
+                site.search(new SearchQuery("page", "page", 0, 10)).totalHits(),
+                Matchers.is(2)
+            );
+            MatcherAssert.assertThat(
+                dashed.search(new SearchQuery("page", "page", 0, 10)).totalHits(),
+                Matchers.is(3)
+            );
+            MatcherAssert.assertThat(
+                plain.search(new SearchQuery("page", "page", 0, 10)).totalHits(),
+                Matchers.is(1)
+            );
+            plain.delete();
+            MatcherAssert.assertThat(plain.exists(), Matchers.is(false));
+            MatcherAssert.assertThat(dashed.exists(), Matchers.is(true));
+        }
+    }
+
+    /**
+     * The stand-in can throttle and fail requests, and add latency.
+     * The AWS SDK retries 429 and 5xx answers itself, so there may be
+     * more than one injected error per call.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void injectsThrottlingAndLatency() throws Exception {
+        try (final EsStandIn standin = new EsStandIn()
+            .throttling(1.0).latency(50).start()) {
+            final long start = System.currentTimeMillis();
+            try {
+                this.es("amihaiemilxrepo", standin, 0)
+                    .search(new SearchQuery("any", "page", 0, 10));
+                MatcherAssert.assertThat("429 expected", false);
+            } catch (final AmazonServiceException ex) {
+                MatcherAssert.assertThat(ex.getStatusCode(), Matchers.is(429));
+            }
+            MatcherAssert.assertThat(
+                System.currentTimeMillis() - start,
+                Matchers.greaterThanOrEqualTo(50L)
+            );
+            MatcherAssert.assertThat(
+                standin.throttled(), Matchers.greaterThanOrEqualTo(1L)
+            );
+            standin.throttling(0).errors(1.0);
+            try {
+                this.es("amihaiemilxrepo", standin, 0).exists();
+                MatcherAssert.assertThat("500 expected", false);
+            } catch (final AmazonServiceException ex) {
+                MatcherAssert.assertThat(ex.getStatusCode(), Matchers.is(500));
+            }
+            MatcherAssert.assertThat(
+                standin.failed(), Matchers.greaterThanOrEqualTo(1L)
+            );
+            MatcherAssert.assertThat(
+                standin.requests(),
+                Matchers.is(standin.throttled() + standin.failed())
+            );
+        }
+    }
+
+    /**
+     * The bulk items rejected by a busy ES are sent again, until all the
+     * pages are indexed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void resendsRejectedPages() throws Exception {
+        try (final EsStandIn standin = new EsStandIn().rejections(0.2).start()) {
+            this.es("amihaiemilxrepo", standin, 0).export(this.pages("page", 20));
+            MatcherAssert.assertThat(
+                standin.documents("amihaiemilxrepo").size(), Matchers.is(20)
+            );
+            MatcherAssert.assertThat(
+                standin.requests(), Matchers.greaterThan(1L)
+            );
+        }
+    }
+
+    /**
+     * If ES keeps rejecting the pages, the export fails after a few retries.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void givesUpOnRejectedPages() throws Exception {
+        try (final EsStandIn standin = new EsStandIn().rejections(1.0).start()) {
+            try {
+                this.es("amihaiemilxrepo", standin, 0)
+                    .export(this.pages("page", 2));
+                MatcherAssert.assertThat("DataExportException expected", false);
+            } catch (final DataExportException ex) {
+                MatcherAssert.assertThat(
+                    ex.getMessage(), Matchers.containsString("2 of 2")
+                );
+            }
+            MatcherAssert.assertThat(standin.requests(), Matchers.is(4L));
+        }
+    }
+
+    /**
+     * A search with a timeout gives up reading from a slow ES after it,
+     * without retrying.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void timesOutSlowSearches() throws Exception {
+        try (final EsStandIn standin = new EsStandIn().latency(2000).start()) {
+            final ElasticSearch es = new AmazonElasticSearch(
+                "amihaiemilxrepo",
+                new AccessKeyId.Fake("access_key"),
+                new SecretKey.Fake("secret_key"),
+                new Region.Fake("eu-central-1"),
+                new EsRouting(new EsEndPoint.Fake(standin.endpoint())),
+                new Hedging(-1, 0),
+                new SharedIndexes(0),
+                new EsMetrics(),
+                200
+            );
+            final long start = System.currentTimeMillis();
+            try {
+                es.search(new SearchQuery("any", "page", 0, 10));
+                MatcherAssert.assertThat("timeout expected", false);
+            } catch (final AmazonClientException ex) {
+                MatcherAssert.assertThat(
+                    System.currentTimeMillis() - start,
+                    Matchers.lessThan(2000L)
+                );
+            }
+            MatcherAssert.assertThat(standin.requests(), Matchers.is(1L));
+        }
+    }
+
+    /**
+     * AmazonElasticSearch pointing to the stand-in.
+     * @param index Index (repo) name.
+     * @param standin Stand-in.
+     * @param shared Number of shared indexes.
+     * @return ElasticSearch.
+     */
+    private ElasticSearch es(
+        final String index, final EsStandIn standin, final int shared
+    ) {
+        return new AmazonElasticSearch(
+            index,
+            new AccessKeyId.Fake("access_key"),
+            new SecretKey.Fake("secret_key"),
+            new Region.Fake("eu-central-1"),
+            new EsRouting(new EsEndPoint.Fake(standin.endpoint())),
+            new Hedging(-1, 0),
+            new SharedIndexes(shared)
+        );
+    }
+
+    /**
+     * Pages to export.
+     * @param text Text content.
+     * @param count How many.
+     * @return List of WebPage.
+     */
+    private List<WebPage> pages(final String text, final int count) {
+        return this.pages("http://amihaiemil.com", text, count);
+    }
+
+    /**
+     * Pages of a site, to export.
+     * @param site Site's URL.
+     * @param text Text content.
+     * @param count How many.
+     * @return List of WebPage.
+     */
+    private List<WebPage> pages(
+        final String site, final String text, final int count
+    ) {
+        final List<WebPage> pages = new ArrayList<>();
+        for(int idx = 0; idx < count; ++idx) {
+            final WebPage page = new SnapshotWebPage();
+            page.setUrl(site + "/page" + idx + ".html");
+            page.setLinks(new HashSet<Link>());
+            page.setTextContent(text);
+            page.setName("page" + idx + ".html");
+            page.setTitle("page " + idx);
+            pages.add(page);
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PopularQueries}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class PopularQueriesTestCase {
+
+    /**
+     * PopularQueries lists the most popular queries of each index.
+     */
+    @Test
+    public void listsTopQueriesPerIndex() {
+        final PopularQueries popular = new PopularQueries(1);
+        popular.add("first", new SearchQuery("rare", "page", 0, 10));
+        popular.add("first", new SearchQuery("Popular", "page", 0, 10));
+        popular.add("first", new SearchQuery("popular ", "page", 0, 10));
+        popular.add("second", new SearchQuery("other", "page", 0, 10));
+        final List<SearchQuery> top = popular.top("first");
+        MatcherAssert.assertThat(top, Matchers.hasSize(1));
+        MatcherAssert.assertThat(
+            top.get(0).canonical(),
+            Matchers.equalTo("ctg=\"page\" kw=\"popular\" from=0 size=10")
+        );
+        MatcherAssert.assertThat(
+            popular.indexes(), Matchers.containsInAnyOrder("first", "second")
+        );
+        MatcherAssert.assertThat(popular.top("missing"), Matchers.empty());
+    }
+
+    /**
+     * Disabled PopularQueries tracks nothing.
+     */
+    @Test
+    public void tracksNothingIfDisabled() {
+        final PopularQueries popular = new PopularQueries(0);
+        popular.add("first", new SearchQuery("test", "page", 0, 10));
+        MatcherAssert.assertThat(popular.indexes(), Matchers.empty());
+    }
+
+    /**
+     * PopularQueries forgets the least recently used index when it tracks
+     * too many.
+     */
+    @Test
+    public void forgetsLeastRecentIndex() {
+        final PopularQueries popular = new PopularQueries(2, 2, null);
+        popular.add("first", new SearchQuery("one", "page", 0, 10));
+        popular.add("second", new SearchQuery("two", "page", 0, 10));
+        popular.add("first", new SearchQuery("one", "page", 0, 10));
+        popular.add("third", new SearchQuery("three", "page", 0, 10));
+        MatcherAssert.assertThat(
+            popular.indexes(), Matchers.containsInAnyOrder("first", "third")
+        );
+        MatcherAssert.assertThat(popular.top("second"), Matchers.empty());
+    }
+
+    /**
+     * PopularQueries can be saved and loaded back.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void savesAndLoads() throws IOException {
+        final File file = File.createTempFile("popular", ".txt");
+        file.deleteOnExit();
+        final PopularQueries popular = new PopularQueries(2, file);
+        popular.add("idx", new SearchQuery("one", "page", 0, 10));
+        popular.add("idx", new SearchQuery("two", "page", 10, 10));
+        popular.add("idx", new SearchQuery("two", "page", 10, 10));
+        popular.save();
+        final PopularQueries loaded = new PopularQueries(2, file);
+        loaded.load();
+        final List<SearchQuery> top = loaded.top("idx");
+        MatcherAssert.assertThat(top, Matchers.hasSize(2));
+        MatcherAssert.assertThat(
+            top.get(0).canonical(),
+            Matchers.equalTo("ctg=\"page\" kw=\"two\" from=10 size=10")
+        );
+    }
+}
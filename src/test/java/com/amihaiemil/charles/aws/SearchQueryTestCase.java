@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.nio.charset.StandardCharsets;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SearchQuery}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SearchQueryTestCase {
+
+    /**
+     * SearchQuery renders the same JSON from the template as from the
+     * JsonObject.
+     */
+    @Test
+    public void rendersSameJsonAsBuilder() {
+        this.same(new SearchQuery("test", "page", 0, 10));
+        this.same(new SearchQuery("", "page", 20, 5));
+        this.same(new SearchQuery("java ee", "tech", 10, 10, "amihaiemilxrepo"));
+        this.same(new SearchQuery("some", "page", 0, 10, ""));
+    }
+
+    /**
+     * SearchQuery escapes special characters like javax.json does.
+     */
+    @Test
+    public void escapesLikeBuilder() {
+        this.same(new SearchQuery("say \"hi\" \\ bye", "page", 0, 10));
+        this.same(new SearchQuery("tab\there\nnew\rline\b\f", "page", 0, 10));
+        this.same(new SearchQuery("ctrl\u0001\u001f", "page", 0, 10));
+        this.same(new SearchQuery("ăîșț ünïcødé €", "cat\"egory", 0, 10, "x\\y"));
+    }
+
+    /**
+     * The template's output equals the builder's output.
+     * @param query Query.
+     */
+    private void same(final SearchQuery query) {
+        MatcherAssert.assertThat(
+            new String(query.toBytes(), StandardCharsets.UTF_8),
+            Matchers.equalTo(query.toJson().toString())
+        );
+    }
+
+    /**
+     * Equivalent queries have the same canonical form.
+     */
+    @Test
+    public void canonicalizesKeywords() {
+        MatcherAssert.assertThat(
+            new SearchQuery("  Some\t  WORDS ", "page", 0, 10).canonical(),
+            Matchers.equalTo(
+                new SearchQuery("some words", "page", 0, 10).canonical()
+            )
+        );
+        MatcherAssert.assertThat(
+            new SearchQuery("say \"hi\"", "page", 20, 10).canonical(),
+            Matchers.equalTo("ctg=\"page\" kw=\"say \\\"hi\\\"\" from=20 size=10")
+        );
+    }
+
+    /**
+     * SearchQuery can be parsed back from its canonical form.
+     */
+    @Test
+    public void parsesCanonicalForm() {
+        final String canonical = new SearchQuery(
+            "say \"hi\" \\ bye", "page", 20, 5
+        ).canonical();
+        MatcherAssert.assertThat(
+            SearchQuery.parse(canonical).canonical(),
+            Matchers.equalTo(canonical)
+        );
+    }
+
+    /**
+     * A category with spaces or quotes survives the canonical form.
+     */
+    @Test
+    public void parsesOddCategory() {
+        final String canonical = new SearchQuery(
+            "test", "my \"odd\" category", 0, 10
+        ).canonical();
+        MatcherAssert.assertThat(
+            SearchQuery.parse(canonical).canonical(),
+            Matchers.equalTo(canonical)
+        );
+    }
+
+    /**
+     * The canonical form saved by older versions, with the category
+     * unquoted, can still be parsed.
+     */
+    @Test
+    public void parsesUnquotedCategory() {
+        MatcherAssert.assertThat(
+            SearchQuery.parse("ctg=page kw=\"test\" from=0 size=10").canonical(),
+            Matchers.equalTo("ctg=\"page\" kw=\"test\" from=0 size=10")
+        );
+    }
+
+    /**
+     * SearchQuery refuses to parse a text which is not canonical.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesNonCanonicalText() {
+        SearchQuery.parse("kw=test");
+    }
+}
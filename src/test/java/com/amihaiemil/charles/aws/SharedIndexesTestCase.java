@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import javax.json.JsonObject;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SharedIndexes}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SharedIndexesTestCase {
+
+    /**
+     * SharedIndexes is disabled by default and keeps the repo's own index.
+     */
+    @Test
+    public void keepsOwnIndexWhenDisabled() {
+        final SharedIndexes shared = new SharedIndexes(0);
+        MatcherAssert.assertThat(shared.enabled(), Matchers.is(false));
+        MatcherAssert.assertThat(
+            shared.index("amihaiemilxrepo"), Matchers.equalTo("amihaiemilxrepo")
+        );
+    }
+
+    /**
+     * SharedIndexes always puts a repo in the same shared index.
+     */
+    @Test
+    public void picksStableSharedIndex() {
+        final SharedIndexes shared = new SharedIndexes(4);
+        final String index = shared.index("amihaiemilxrepo");
+        MatcherAssert.assertThat(
+            index, Matchers.startsWith(SharedIndexes.PREFIX)
+        );
+        final int number = Integer.valueOf(
+            index.substring(SharedIndexes.PREFIX.length())
+        );
+        MatcherAssert.assertThat(number, Matchers.greaterThanOrEqualTo(0));
+        MatcherAssert.assertThat(number, Matchers.lessThan(4));
+        MatcherAssert.assertThat(
+            new SharedIndexes(4).index("amihaiemilxrepo"), Matchers.equalTo(index)
+        );
+    }
+
+    /**
+     * SharedIndexes complains about negative numbers.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void complainsAboutNegativeCount() {
+        new SharedIndexes(-1);
+    }
+
+    /**
+     * The template of the shared indexes maps the repo as keyword.
+     */
+    @Test
+    public void mapsRepoAsKeyword() {
+        final JsonObject template = new SharedIndexes(3).template();
+        MatcherAssert.assertThat(
+            template.getJsonArray("index_patterns").getString(0),
+            Matchers.equalTo("charles-shared-*")
+        );
+        MatcherAssert.assertThat(
+            template.getJsonObject("mappings").getJsonObject("page")
+                .getJsonObject("properties").getJsonObject("repo")
+                .getString("type"),
+            Matchers.equalTo("keyword")
+        );
+    }
+
+    /**
+     * RepoQuery matches the repo's documents.
+     */
+    @Test
+    public void queriesRepo() {
+        MatcherAssert.assertThat(
+            new RepoQuery("amihaiemilxrepo").toJson().toString(),
+            Matchers.equalTo("{\"query\":{\"term\":{\"repo\":\"amihaiemilxrepo\"}}}")
+        );
+    }
+}
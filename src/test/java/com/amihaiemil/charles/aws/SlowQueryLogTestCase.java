@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.amihaiemil.charles.aws.metrics.SlowQueries;
+
+/**
+ * Unit tests for {@link SlowQueryLog}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SlowQueryLogTestCase {
+
+    /**
+     * SlowQueryLog records the searches over the threshold.
+     */
+    @Test
+    public void recordsSlowSearches() {
+        final SlowQueries queries = new SlowQueries(0, 10);
+        new SlowQueryLog(new ElasticSearch.Fake(true), "amihaiemilxrepo", queries)
+            .search(new SearchQuery("Test", "page", 0, 10));
+        MatcherAssert.assertThat(queries.slowest(10), Matchers.hasSize(1));
+        MatcherAssert.assertThat(
+            queries.slowest(10).get(0).toJson().getString("query"),
+            Matchers.equalTo("ctg=\"page\" kw=\"test\" from=0 size=10")
+        );
+        MatcherAssert.assertThat(
+            queries.slowest(10).get(0).toJson().getString("index"),
+            Matchers.equalTo("amihaiemilxrepo")
+        );
+    }
+
+    /**
+     * SlowQueryLog ignores the fast searches.
+     */
+    @Test
+    public void ignoresFastSearches() {
+        final SlowQueries queries = new SlowQueries(60000, 10);
+        new SlowQueryLog(new ElasticSearch.Fake(true), "amihaiemilxrepo", queries)
+            .search(new SearchQuery("test", "page", 0, 10));
+        MatcherAssert.assertThat(queries.slowest(10), Matchers.empty());
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SpaceSaving}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SpaceSavingTestCase {
+
+    /**
+     * SpaceSaving lists the most frequent keys first.
+     */
+    @Test
+    public void listsMostFrequentFirst() {
+        final SpaceSaving sketch = new SpaceSaving(10);
+        sketch.add("b");
+        sketch.add("a");
+        sketch.add("a");
+        sketch.add("c", 5);
+        MatcherAssert.assertThat(
+            sketch.top(2), Matchers.contains("c", "a")
+        );
+        MatcherAssert.assertThat(sketch.count("a"), Matchers.is(2L));
+        MatcherAssert.assertThat(sketch.count("missing"), Matchers.is(0L));
+    }
+
+    /**
+     * SpaceSaving keeps the heavy hitters when it is full: a new key
+     * replaces the least frequent one and inherits its count.
+     */
+    @Test
+    public void keepsHeavyHitters() {
+        final SpaceSaving sketch = new SpaceSaving(2);
+        for(int idx = 0; idx < 100; ++idx) {
+            sketch.add("popular", 2);
+            sketch.add("rare" + idx);
+        }
+        MatcherAssert.assertThat(sketch.top(1), Matchers.contains("popular"));
+        MatcherAssert.assertThat(sketch.count("popular"), Matchers.is(200L));
+        MatcherAssert.assertThat(sketch.count("rare99"), Matchers.is(100L));
+        MatcherAssert.assertThat(sketch.count("rare98"), Matchers.is(0L));
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.amihaiemil.charles.DataExportException;
+import com.amihaiemil.charles.WebPage;
+import com.amihaiemil.charles.rest.model.SearchResultsPage;
+
+/**
+ * Unit tests for {@link WarmUp} and {@link WarmUpOnExport}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class WarmUpTestCase {
+
+    /**
+     * WarmUp replays the popular queries of the index.
+     */
+    @Test
+    public void replaysPopularQueries() {
+        final PopularQueries popular = new PopularQueries(5);
+        popular.add("idx", new SearchQuery("first", "page", 0, 10));
+        popular.add("idx", new SearchQuery("second", "page", 0, 10));
+        popular.add("other", new SearchQuery("third", "page", 0, 10));
+        final Searches es = new Searches();
+        MatcherAssert.assertThat(
+            new WarmUp(popular, 0).replay("idx", es), Matchers.is(2)
+        );
+        MatcherAssert.assertThat(es.queries, Matchers.hasSize(2));
+    }
+
+    /**
+     * WarmUp replays the queries with spaces in their category too.
+     */
+    @Test
+    public void replaysQueriesWithSpacedCategory() {
+        final PopularQueries popular = new PopularQueries(5);
+        popular.add("idx", new SearchQuery("first", "my page", 0, 10));
+        final Searches es = new Searches();
+        MatcherAssert.assertThat(
+            new WarmUp(popular, 0).replay("idx", es), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            es.queries,
+            Matchers.contains("ctg=\"my page\" kw=\"first\" from=0 size=10")
+        );
+    }
+
+    /**
+     * WarmUpOnExport warms up the index only once after a series of
+     * exports.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void warmsUpOnceAfterExports() throws Exception {
+        final PopularQueries popular = new PopularQueries(5);
+        popular.add("idx", new SearchQuery("first", "page", 0, 10));
+        final Searches es = new Searches();
+        final ElasticSearch warming = new WarmUpOnExport(
+            es, "idx", new WarmUp(popular, 300)
+        );
+        warming.export(null);
+        warming.export(null);
+        warming.export(null);
+        MatcherAssert.assertThat(es.queries, Matchers.empty());
+        Thread.sleep(1000);
+        MatcherAssert.assertThat(es.queries, Matchers.hasSize(1));
+    }
+
+    /**
+     * ElasticSearch which remembers the searched queries.
+     */
+    private static final class Searches implements ElasticSearch {
+
+        /**
+         * Searched queries.
+         */
+        private final List<String> queries = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void export(final List<WebPage> pages)
+            throws DataExportException {
+            //nothing to export
+        }
+
+        @Override
+        public SearchResultsPage search(final SearchQuery query) {
+            this.queries.add(query.canonical());
+            return new SearchResultsPage.Fake();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public void delete() {
+            //nothing to delete
+        }
+
+        @Override
+        public void delete(final String type, final String id) {
+            //nothing to delete
+        }
+    }
+}
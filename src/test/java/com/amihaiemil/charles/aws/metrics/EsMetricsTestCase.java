@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.metrics;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link EsMetrics}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class EsMetricsTestCase {
+
+    /**
+     * EsMetrics returns the same EsOperation for the same operation and index.
+     */
+    @Test
+    public void reusesOperations() {
+        final EsMetrics metrics = new EsMetrics();
+        MatcherAssert.assertThat(
+            metrics.of("search", "repo"),
+            Matchers.sameInstance(metrics.of("search", "repo"))
+        );
+        MatcherAssert.assertThat(
+            metrics.of("search", "repo"),
+            Matchers.not(Matchers.sameInstance(metrics.of("export", "repo")))
+        );
+    }
+
+    /**
+     * EsMetrics renders the Prometheus text format.
+     */
+    @Test
+    public void rendersPrometheusText() {
+        final EsMetrics metrics = new EsMetrics();
+        final EsOperation search = metrics.of("search", "amihaiemil\"x");
+        search.record(30, true);
+        search.record(20000, false);
+        search.sent(120);
+        search.received(2048);
+        final String text = metrics.prometheus();
+        final String labels = "operation=\"search\",index=\"amihaiemil\\\"x\"";
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "# TYPE charles_es_request_duration_seconds histogram\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_duration_seconds_bucket{"
+                + labels + ",le=\"0.025\"} 0\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_duration_seconds_bucket{"
+                + labels + ",le=\"0.050\"} 1\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_duration_seconds_bucket{"
+                + labels + ",le=\"+Inf\"} 2\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_duration_seconds_sum{"
+                + labels + "} 20.030\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_errors_total{" + labels + "} 1\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_sent_bytes_total{" + labels + "} 120\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_received_bytes_total{" + labels + "} 2048\n"
+            )
+        );
+    }
+
+    /**
+     * EsMetrics counts the operations on the indexes over its limit under
+     * the same index.
+     */
+    @Test
+    public void boundsTrackedIndexes() {
+        final EsMetrics metrics = new EsMetrics(2);
+        metrics.of("search", "first").record(10, true);
+        metrics.of("export", "second").record(10, true);
+        metrics.of("search", "third").record(10, true);
+        metrics.of("export", "fourth").record(10, true);
+        MatcherAssert.assertThat(
+            metrics.of("search", "second").index(), Matchers.equalTo("second")
+        );
+        MatcherAssert.assertThat(
+            metrics.of("search", "third"),
+            Matchers.sameInstance(metrics.of("search", "fourth"))
+        );
+        MatcherAssert.assertThat(
+            metrics.of("search", "fourth").index(),
+            Matchers.equalTo(EsMetrics.OTHER)
+        );
+        final String text = metrics.prometheus();
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_duration_seconds_count{"
+                + "operation=\"export\",index=\"_other\"} 1\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text, Matchers.not(Matchers.containsString("third"))
+        );
+    }
+
+    /**
+     * EsMetrics renders the sizes of the requests per operation.
+     */
+    @Test
+    public void rendersRequestSizes() {
+        final EsMetrics metrics = new EsMetrics();
+        metrics.of("export", "first").sent(2000);
+        metrics.of("export", "second").sent(20000000);
+        final String text = metrics.prometheus();
+        final String labels = "operation=\"export\"";
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "# TYPE charles_es_request_size_bytes histogram\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_size_bytes_bucket{"
+                + labels + ",le=\"16384\"} 1\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_size_bytes_bucket{"
+                + labels + ",le=\"52428800\"} 2\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_size_bytes_sum{" + labels + "} 20002000\n"
+            )
+        );
+        MatcherAssert.assertThat(
+            text,
+            Matchers.containsString(
+                "charles_es_request_size_bytes_count{" + labels + "} 2\n"
+            )
+        );
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SlowQueries}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SlowQueriesTestCase {
+
+    /**
+     * SlowQueries records only the queries over the threshold.
+     */
+    @Test
+    public void recordsOnlySlowQueries() {
+        final SlowQueries queries = new SlowQueries(100, 10);
+        MatcherAssert.assertThat(
+            queries.record(SlowQueriesTestCase.query(99)), Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            queries.record(SlowQueriesTestCase.query(100)), Matchers.is(true)
+        );
+        MatcherAssert.assertThat(queries.slowest(10), Matchers.hasSize(1));
+    }
+
+    /**
+     * SlowQueries tells which latencies are slow, before any query is built.
+     */
+    @Test
+    public void tellsSlowLatencies() {
+        MatcherAssert.assertThat(new SlowQueries(100, 10).slow(99), Matchers.is(false));
+        MatcherAssert.assertThat(new SlowQueries(100, 10).slow(100), Matchers.is(true));
+        MatcherAssert.assertThat(new SlowQueries(-1, 10).slow(10000), Matchers.is(false));
+    }
+
+    /**
+     * Disabled SlowQueries records nothing.
+     */
+    @Test
+    public void recordsNothingIfDisabled() {
+        final SlowQueries queries = new SlowQueries(-1, 10);
+        MatcherAssert.assertThat(
+            queries.record(SlowQueriesTestCase.query(10000)), Matchers.is(false)
+        );
+        MatcherAssert.assertThat(queries.slowest(10), Matchers.empty());
+    }
+
+    /**
+     * SlowQueries keeps only the most recent queries and lists the
+     * slowest first.
+     */
+    @Test
+    public void listsSlowestOfTheMostRecent() {
+        final SlowQueries queries = new SlowQueries(0, 3);
+        queries.record(SlowQueriesTestCase.query(5000));
+        queries.record(SlowQueriesTestCase.query(200));
+        queries.record(SlowQueriesTestCase.query(700));
+        queries.record(SlowQueriesTestCase.query(300));
+        final List<SlowQuery> slowest = queries.slowest(2);
+        MatcherAssert.assertThat(slowest, Matchers.hasSize(2));
+        MatcherAssert.assertThat(slowest.get(0).latency(), Matchers.is(700L));
+        MatcherAssert.assertThat(slowest.get(1).latency(), Matchers.is(300L));
+    }
+
+    /**
+     * SlowQueries appends the recorded queries to the file, once.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void flushesToFile() throws IOException {
+        final File file = File.createTempFile("slowqueries", ".log");
+        file.deleteOnExit();
+        final SlowQueries queries = new SlowQueries(0, 10, file);
+        queries.record(SlowQueriesTestCase.query(1500));
+        queries.record(SlowQueriesTestCase.query(2500));
+        queries.flush();
+        queries.flush();
+        final List<String> lines = Files.readAllLines(
+            file.toPath(), StandardCharsets.UTF_8
+        );
+        MatcherAssert.assertThat(lines, Matchers.hasSize(2));
+        MatcherAssert.assertThat(
+            lines.get(1),
+            Matchers.equalTo(
+                "{\"time\":1,\"index\":\"amihaiemilxrepo\","
+                + "\"query\":\"ctg=page kw=\\\"test\\\" from=0 size=10\","
+                + "\"took\":3,\"latency\":2500,\"hits\":27}"
+            )
+        );
+    }
+
+    /**
+     * A slow query.
+     * @param latency Latency.
+     * @return SlowQuery.
+     */
+    private static SlowQuery query(final long latency) {
+        return new SlowQuery(
+            1, "amihaiemilxrepo", "ctg=page kw=\"test\" from=0 size=10",
+            3, latency, 27
+        );
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConcurrencyLimit}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class ConcurrencyLimitTestCase {
+
+    /**
+     * The limit grows while the requests are fast and the limit is used.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void growsWhenSaturated() throws Exception {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(2, 1, 10, 2.0);
+        for(int i = 0; i < 20; i++) {
+            limit.acquire();
+            limit.acquire();
+            limit.succeeded(100);
+            limit.succeeded(100);
+        }
+        MatcherAssert.assertThat(limit.limit(), Matchers.greaterThan(2));
+        MatcherAssert.assertThat(limit.inflight(), Matchers.is(0));
+    }
+
+    /**
+     * The limit does not grow if it is not used.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void doesNotGrowWhenIdle() throws Exception {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(2, 1, 10, 2.0);
+        for(int i = 0; i < 50; i++) {
+            limit.acquire();
+            limit.succeeded(100);
+        }
+        MatcherAssert.assertThat(limit.limit(), Matchers.is(2));
+    }
+
+    /**
+     * The limit is halved when a request is rejected, but not below min.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void halvesOnRejection() throws Exception {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(8, 2, 10, 2.0);
+        limit.acquire();
+        limit.rejected();
+        MatcherAssert.assertThat(limit.limit(), Matchers.is(4));
+        limit.acquire();
+        limit.rejected();
+        limit.acquire();
+        limit.rejected();
+        MatcherAssert.assertThat(limit.limit(), Matchers.is(2));
+    }
+
+    /**
+     * The limit decreases when requests are much slower than the baseline.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void decreasesOnSlowRequests() throws Exception {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(10, 1, 10, 2.0);
+        limit.acquire();
+        limit.succeeded(100);
+        limit.acquire();
+        limit.succeeded(1000);
+        MatcherAssert.assertThat(limit.limit(), Matchers.is(9));
+    }
+
+    /**
+     * A big request is slower, but per 64 KB it is not, so the limit stays.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void normalizesLatencyBySize() throws Exception {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(10, 1, 10, 2.0);
+        limit.acquire();
+        limit.succeeded(100, 1024);
+        limit.acquire();
+        limit.succeeded(1000, 10 * 64 * 1024);
+        MatcherAssert.assertThat(limit.limit(), Matchers.is(10));
+        limit.acquire();
+        limit.succeeded(1000, 64 * 1024);
+        MatcherAssert.assertThat(limit.limit(), Matchers.is(9));
+    }
+
+    /**
+     * Requests wait while the limit is reached.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void blocksWhenFull() throws Exception {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(1, 1, 1, 2.0);
+        limit.acquire();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final Thread waiting = new Thread(
+            new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        limit.acquire();
+                        acquired.countDown();
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        );
+        waiting.start();
+        MatcherAssert.assertThat(
+            acquired.await(200, TimeUnit.MILLISECONDS), Matchers.is(false)
+        );
+        limit.failed();
+        MatcherAssert.assertThat(
+            acquired.await(2, TimeUnit.SECONDS), Matchers.is(true)
+        );
+    }
+
+    /**
+     * The same endpoint always has the same limit.
+     */
+    @Test
+    public void sharedPerEndpoint() {
+        MatcherAssert.assertThat(
+            ConcurrencyLimit.of("http://localhost/es"),
+            Matchers.sameInstance(ConcurrencyLimit.of("http://localhost/es"))
+        );
+        MatcherAssert.assertThat(
+            ConcurrencyLimit.of("http://localhost/es"),
+            Matchers.not(
+                Matchers.sameInstance(ConcurrencyLimit.of("http://other/es"))
+            )
+        );
+    }
+}
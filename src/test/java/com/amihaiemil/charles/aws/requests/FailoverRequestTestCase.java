@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.Request;
+import com.amihaiemil.charles.aws.EsNode;
+
+/**
+ * Unit tests for {@link FailoverRequest} and {@link RoutedRequest}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class FailoverRequestTestCase {
+
+    /**
+     * FailoverRequest moves on to the next candidate if the node failed.
+     */
+    @Test
+    public void failsOverOnServerError() {
+        final EsNode down = new EsNode("http://localhost/down", true);
+        final EsNode up = new EsNode("http://localhost/up", false);
+        final List<AwsHttpRequest<String>> candidates = new ArrayList<>();
+        candidates.add(new RoutedRequest<>(new Failing(503), down));
+        candidates.add(
+            new RoutedRequest<>(new AwsHttpRequest.FakeAwsHttpRequest(), up)
+        );
+        MatcherAssert.assertThat(
+            new FailoverRequest<>(candidates).perform(),
+            Matchers.equalTo("performed fake request")
+        );
+        MatcherAssert.assertThat(down.available(), Matchers.is(false));
+        MatcherAssert.assertThat(up.available(), Matchers.is(true));
+    }
+
+    /**
+     * FailoverRequest moves on to the next candidate on network errors.
+     */
+    @Test
+    public void failsOverOnNetworkError() {
+        final List<AwsHttpRequest<String>> candidates = new ArrayList<>();
+        candidates.add(new Failing(-1));
+        candidates.add(new AwsHttpRequest.FakeAwsHttpRequest());
+        MatcherAssert.assertThat(
+            new FailoverRequest<>(candidates).perform(),
+            Matchers.equalTo("performed fake request")
+        );
+    }
+
+    /**
+     * FailoverRequest does not try other nodes on client errors, and the
+     * node is not marked as failed.
+     */
+    @Test
+    public void throwsClientErrors() {
+        final EsNode node = new EsNode("http://localhost/es", true);
+        final List<AwsHttpRequest<String>> candidates = new ArrayList<>();
+        candidates.add(new RoutedRequest<>(new Failing(404), node));
+        candidates.add(new Failing(500));
+        try {
+            new FailoverRequest<>(candidates).perform();
+            MatcherAssert.assertThat("Exception expected", false);
+        } catch (final AmazonServiceException ex) {
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.is(404));
+        }
+        MatcherAssert.assertThat(node.available(), Matchers.is(true));
+    }
+
+    /**
+     * FailoverRequest throws the last error if all the candidates failed.
+     */
+    @Test
+    public void throwsLastErrorIfAllFailed() {
+        final List<AwsHttpRequest<String>> candidates = new ArrayList<>();
+        candidates.add(new Failing(500));
+        candidates.add(new Failing(503));
+        try {
+            new FailoverRequest<>(candidates).perform();
+            MatcherAssert.assertThat("Exception expected", false);
+        } catch (final AmazonServiceException ex) {
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.is(503));
+        }
+    }
+
+    /**
+     * Fake request which fails with the given status, or with a network
+     * error if the status is negative.
+     */
+    private static final class Failing extends AwsHttpRequest<String> {
+
+        /**
+         * Status.
+         */
+        private final int status;
+
+        /**
+         * Ctor.
+         * @param status Status.
+         */
+        Failing(final int status) {
+            this.status = status;
+        }
+
+        @Override
+        public String perform() {
+            if(this.status < 0) {
+                throw new AmazonClientException("Connection refused");
+            }
+            final AmazonServiceException ase = new AmazonServiceException("Failed");
+            ase.setStatusCode(this.status);
+            throw ase;
+        }
+
+        @Override
+        Request<Void> request() {
+            return null;
+        }
+    }
+}
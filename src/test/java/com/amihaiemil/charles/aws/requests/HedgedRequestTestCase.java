@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.Request;
+
+/**
+ * Unit tests for {@link HedgedRequest}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class HedgedRequestTestCase {
+
+    /**
+     * HedgedRequest performs only the original request if it is fast.
+     */
+    @Test
+    public void fastOriginalIsNotHedged() {
+        final AtomicInteger performed = new AtomicInteger();
+        final AwsHttpRequest<String> hedged = new HedgedRequest<>(
+            new Delayed("original", 0, performed),
+            new Delayed("duplicate", 0, performed),
+            this.warmedUp(10)
+        );
+        MatcherAssert.assertThat(hedged.perform(), Matchers.equalTo("original"));
+        MatcherAssert.assertThat(performed.get(), Matchers.is(1));
+    }
+
+    /**
+     * HedgedRequest sends the duplicate if the original is slow and
+     * returns whichever response comes first.
+     */
+    @Test
+    public void slowOriginalIsHedged() {
+        final AtomicInteger performed = new AtomicInteger();
+        final AwsHttpRequest<String> hedged = new HedgedRequest<>(
+            new Delayed("original", 5000, performed),
+            new Delayed("duplicate", 0, performed),
+            this.warmedUp(10)
+        );
+        final long start = System.currentTimeMillis();
+        MatcherAssert.assertThat(hedged.perform(), Matchers.equalTo("duplicate"));
+        MatcherAssert.assertThat(
+            System.currentTimeMillis() - start, Matchers.lessThan(5000L)
+        );
+        MatcherAssert.assertThat(performed.get(), Matchers.is(2));
+    }
+
+    /**
+     * HedgedRequest waits for the original if there is no budget left.
+     */
+    @Test
+    public void noBudgetNoHedge() {
+        final AtomicInteger performed = new AtomicInteger();
+        final Hedging hedging = new Hedging(50, 0);
+        for(int i = 0; i < 100; i++) {
+            hedging.record(10);
+        }
+        final AwsHttpRequest<String> hedged = new HedgedRequest<>(
+            new Delayed("original", 200, performed),
+            new Delayed("duplicate", 0, performed),
+            hedging
+        );
+        MatcherAssert.assertThat(hedged.perform(), Matchers.equalTo("original"));
+        MatcherAssert.assertThat(performed.get(), Matchers.is(1));
+    }
+
+    /**
+     * HedgedRequest returns the duplicate's response if the original fails.
+     */
+    @Test
+    public void failedOriginalFallsBackToDuplicate() {
+        final AtomicInteger performed = new AtomicInteger();
+        final AwsHttpRequest<String> hedged = new HedgedRequest<>(
+            new Delayed(null, 300, performed),
+            new Delayed("duplicate", 0, performed),
+            this.warmedUp(10)
+        );
+        MatcherAssert.assertThat(hedged.perform(), Matchers.equalTo("duplicate"));
+    }
+
+    /**
+     * HedgedRequest rethrows the exception if there is no other response.
+     */
+    @Test(expected = AmazonServiceException.class)
+    public void rethrowsFailure() {
+        final AtomicInteger performed = new AtomicInteger();
+        new HedgedRequest<>(
+            new Delayed(null, 0, performed),
+            new Delayed("duplicate", 0, performed),
+            this.warmedUp(1000)
+        ).perform();
+    }
+
+    /**
+     * HedgedRequest returns the original's request.
+     */
+    @Test
+    public void returnsOriginalRequest() {
+        final AwsHttpRequest<String> original = new AwsHttpRequest.FakeAwsHttpRequest();
+        final AwsHttpRequest<String> hedged = new HedgedRequest<>(
+            original,
+            new AwsHttpRequest.FakeAwsHttpRequest(),
+            new Hedging(95, 0.05)
+        );
+        MatcherAssert.assertThat(
+            hedged.request(), Matchers.sameInstance(original.request())
+        );
+    }
+
+    /**
+     * Hedging with enough recorded latencies and budget.
+     * @param latency Latency of the recorded requests.
+     * @return Hedging.
+     */
+    private Hedging warmedUp(final long latency) {
+        final Hedging hedging = new Hedging(50, 1);
+        for(int i = 0; i < 100; i++) {
+            hedging.record(latency);
+        }
+        hedging.delay();
+        hedging.delay();
+        return hedging;
+    }
+
+    /**
+     * Fake request which answers after a delay.
+     */
+    private static final class Delayed extends AwsHttpRequest<String> {
+
+        /**
+         * Response, if null an exception is thrown.
+         */
+        private final String response;
+
+        /**
+         * Delay in millis.
+         */
+        private final long delay;
+
+        /**
+         * Counter of performed requests.
+         */
+        private final AtomicInteger performed;
+
+        /**
+         * Ctor.
+         * @param response Response.
+         * @param delay Delay in millis.
+         * @param performed Counter of performed requests.
+         */
+        Delayed(final String response, final long delay, final AtomicInteger performed) {
+            this.response = response;
+            this.delay = delay;
+            this.performed = performed;
+        }
+
+        @Override
+        public String perform() {
+            this.performed.incrementAndGet();
+            try {
+                Thread.sleep(this.delay);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if(this.response == null) {
+                throw new AmazonServiceException("Failed on purpose");
+            }
+            return this.response;
+        }
+
+        @Override
+        Request<Void> request() {
+            return null;
+        }
+    }
+}
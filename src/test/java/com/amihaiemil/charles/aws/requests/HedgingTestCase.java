@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Hedging}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class HedgingTestCase {
+
+    /**
+     * Hedging is disabled if the percentile is negative.
+     */
+    @Test
+    public void canBeDisabled() {
+        MatcherAssert.assertThat(
+            new Hedging(-1, 0.05).enabled(), Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            new Hedging(95, 0.05).enabled(), Matchers.is(true)
+        );
+    }
+
+    /**
+     * Hedging does not give a delay until enough latencies are recorded.
+     */
+    @Test
+    public void noDelayWithoutSamples() {
+        final Hedging hedging = new Hedging(90, 0.1);
+        MatcherAssert.assertThat(hedging.delay(), Matchers.is(-1L));
+        for(int i = 1; i <= 100; i++) {
+            hedging.record(i);
+        }
+        MatcherAssert.assertThat(hedging.delay(), Matchers.is(90L));
+    }
+
+    /**
+     * The number of hedges is capped by the ratio.
+     */
+    @Test
+    public void capsHedges() {
+        final Hedging hedging = new Hedging(90, 0.1);
+        int hedges = 0;
+        for(int i = 0; i < 100; i++) {
+            hedging.delay();
+            if(hedging.hedge()) {
+                hedges++;
+            }
+        }
+        MatcherAssert.assertThat(hedges, Matchers.lessThanOrEqualTo(10));
+        MatcherAssert.assertThat(hedges, Matchers.greaterThanOrEqualTo(9));
+    }
+
+    /**
+     * There are no hedges if the ratio is 0.
+     */
+    @Test
+    public void noHedgesWithZeroRatio() {
+        final Hedging hedging = new Hedging(90, 0);
+        for(int i = 0; i < 100; i++) {
+            hedging.delay();
+        }
+        MatcherAssert.assertThat(hedging.hedge(), Matchers.is(false));
+    }
+}
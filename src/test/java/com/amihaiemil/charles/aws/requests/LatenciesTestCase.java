@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Latencies}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class LatenciesTestCase {
+
+    /**
+     * Latencies returns -1 if nothing was recorded.
+     */
+    @Test
+    public void emptyWindow() {
+        final Latencies lat = new Latencies(10);
+        MatcherAssert.assertThat(lat.size(), Matchers.is(0));
+        MatcherAssert.assertThat(lat.percentile(99), Matchers.is(-1L));
+    }
+
+    /**
+     * Latencies can compute percentiles.
+     */
+    @Test
+    public void computesPercentiles() {
+        final Latencies lat = new Latencies(100);
+        for(int i = 100; i > 0; i--) {
+            lat.record(i);
+        }
+        MatcherAssert.assertThat(lat.percentile(50), Matchers.is(50L));
+        MatcherAssert.assertThat(lat.percentile(95), Matchers.is(95L));
+        MatcherAssert.assertThat(lat.percentile(100), Matchers.is(100L));
+        MatcherAssert.assertThat(lat.percentile(0), Matchers.is(1L));
+    }
+
+    /**
+     * Latencies forgets the oldest values.
+     */
+    @Test
+    public void overwritesOldValues() {
+        final Latencies lat = new Latencies(3);
+        lat.record(1000);
+        lat.record(1);
+        lat.record(2);
+        lat.record(3);
+        MatcherAssert.assertThat(lat.size(), Matchers.is(3));
+        MatcherAssert.assertThat(lat.percentile(100), Matchers.is(3L));
+    }
+}
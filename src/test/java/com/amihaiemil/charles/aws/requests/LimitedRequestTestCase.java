@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.Request;
+
+/**
+ * Unit tests for {@link LimitedRequest}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class LimitedRequestTestCase {
+
+    /**
+     * LimitedRequest performs the base request and frees the slot.
+     */
+    @Test
+    public void performsRequest() {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(1, 1, 4, 2.0);
+        final AwsHttpRequest<String> req = new LimitedRequest<>(
+            new AwsHttpRequest.FakeAwsHttpRequest(), limit
+        );
+        MatcherAssert.assertThat(
+            req.perform(), Matchers.equalTo("performed fake request")
+        );
+        MatcherAssert.assertThat(
+            req.request().getServiceName(), Matchers.equalTo("fake")
+        );
+        MatcherAssert.assertThat(limit.inflight(), Matchers.is(0));
+    }
+
+    /**
+     * LimitedRequest decreases the limit when ES answers with 429.
+     */
+    @Test
+    public void rejectionDecreasesLimit() {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(4, 1, 4, 2.0);
+        try {
+            new LimitedRequest<>(new Rejected(429), limit).perform();
+        } catch (final AmazonServiceException ex) {
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.is(429));
+        }
+        MatcherAssert.assertThat(limit.limit(), Matchers.is(2));
+        MatcherAssert.assertThat(limit.inflight(), Matchers.is(0));
+    }
+
+    /**
+     * LimitedRequest keeps the limit on other errors.
+     */
+    @Test
+    public void otherErrorsKeepLimit() {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(4, 1, 4, 2.0);
+        try {
+            new LimitedRequest<>(new Rejected(400), limit).perform();
+        } catch (final AmazonServiceException ex) {
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.is(400));
+        }
+        MatcherAssert.assertThat(limit.limit(), Matchers.is(4));
+        MatcherAssert.assertThat(limit.inflight(), Matchers.is(0));
+    }
+
+    /**
+     * Fake request which fails with the given status.
+     */
+    private static final class Rejected extends AwsHttpRequest<String> {
+
+        /**
+         * Status.
+         */
+        private final int status;
+
+        /**
+         * Ctor.
+         * @param status Status.
+         */
+        Rejected(final int status) {
+            this.status = status;
+        }
+
+        @Override
+        public String perform() {
+            final AmazonServiceException ase = new AmazonServiceException("Rejected");
+            ase.setStatusCode(this.status);
+            throw ase;
+        }
+
+        @Override
+        Request<Void> request() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.io.ByteArrayInputStream;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.Request;
+import com.amihaiemil.charles.aws.metrics.EsOperation;
+
+/**
+ * Unit tests for {@link MeasuredRequest}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class MeasuredRequestTestCase {
+
+    /**
+     * MeasuredRequest records the latency and the payload size.
+     */
+    @Test
+    public void recordsSuccess() {
+        final EsOperation operation = new EsOperation("search", "idx");
+        final AwsHttpRequest<String> post = new AwsPost<>(
+            new AwsHttpRequest.FakeAwsHttpRequest(),
+            new ByteArrayInputStream("{\"query\":{}}".getBytes())
+        );
+        MatcherAssert.assertThat(
+            new MeasuredRequest<>(post, operation).perform(),
+            Matchers.equalTo("performed fake request")
+        );
+        MatcherAssert.assertThat(operation.latencies().count(), Matchers.is(1L));
+        MatcherAssert.assertThat(operation.errors(), Matchers.is(0L));
+        MatcherAssert.assertThat(operation.sent(), Matchers.is(12L));
+    }
+
+    /**
+     * MeasuredRequest records failures and rethrows them.
+     */
+    @Test
+    public void recordsFailure() {
+        final EsOperation operation = new EsOperation("export", "idx");
+        final AwsHttpRequest<String> failing = new AwsHttpRequest<String>() {
+            private final AwsHttpRequest<String> fake =
+                new AwsHttpRequest.FakeAwsHttpRequest();
+            @Override
+            public String perform() {
+                final AmazonServiceException ex =
+                    new AmazonServiceException("Unavailable");
+                ex.setStatusCode(503);
+                throw ex;
+            }
+            @Override
+            Request<Void> request() {
+                return this.fake.request();
+            }
+        };
+        try {
+            new MeasuredRequest<>(failing, operation).perform();
+            MatcherAssert.assertThat("Exception expected", false);
+        } catch (final AmazonServiceException ex) {
+            MatcherAssert.assertThat(ex.getStatusCode(), Matchers.is(503));
+        }
+        MatcherAssert.assertThat(operation.latencies().count(), Matchers.is(1L));
+        MatcherAssert.assertThat(operation.errors(), Matchers.is(1L));
+    }
+
+    /**
+     * MeasuredRequest records runtime failures which are not
+     * AmazonClientExceptions, e.g. from the response handlers.
+     */
+    @Test
+    public void recordsRuntimeFailure() {
+        final EsOperation operation = new EsOperation("search", "idx");
+        final AwsHttpRequest<String> failing = new AwsHttpRequest<String>() {
+            private final AwsHttpRequest<String> fake =
+                new AwsHttpRequest.FakeAwsHttpRequest();
+            @Override
+            public String perform() {
+                throw new IllegalStateException("Malformed response");
+            }
+            @Override
+            Request<Void> request() {
+                return this.fake.request();
+            }
+        };
+        try {
+            new MeasuredRequest<>(failing, operation).perform();
+            MatcherAssert.assertThat("Exception expected", false);
+        } catch (final IllegalStateException ex) {
+            MatcherAssert.assertThat(ex.getMessage(), Matchers.is("Malformed response"));
+        }
+        MatcherAssert.assertThat(operation.latencies().count(), Matchers.is(1L));
+        MatcherAssert.assertThat(operation.errors(), Matchers.is(1L));
+    }
+}
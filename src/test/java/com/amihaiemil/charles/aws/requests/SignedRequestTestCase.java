@@ -24,6 +24,8 @@
  */
 package com.amihaiemil.charles.aws.requests;
 
+import java.io.InputStream;
+
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -93,4 +95,40 @@ public class SignedRequestTestCase {
         );
     }
 
+    /**
+     * SignedRequest uses the payload hash from the x-amz-content-sha256
+     * header, if present, instead of reading the content.
+     */
+    @Test
+    public void usesPrecomputedPayloadHash() {
+        final AwsHttpRequest<String> fake = new AwsHttpRequest.FakeAwsHttpRequest();
+        final String hash =
+            "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        fake.request().addHeader(SignedRequest.CONTENT_SHA256, hash);
+        fake.request().setContent(
+            new InputStream() {
+                @Override
+                public int read() {
+                    throw new IllegalStateException("Content should not be read!");
+                }
+            }
+        );
+        final AwsHttpRequest<String> signed = new SignedRequest<>(
+            fake,
+            new AccessKeyId.Fake("access_key"),
+            new SecretKey.Fake("secret"),
+            new Region.Fake("ro")
+        );
+        MatcherAssert.assertThat(
+            signed.perform(), Matchers.equalTo("performed fake request")
+        );
+        MatcherAssert.assertThat(
+            signed.request().getHeaders().get(SignedRequest.CONTENT_SHA256),
+            Matchers.equalTo(hash)
+        );
+        MatcherAssert.assertThat(
+            signed.request().getHeaders().get("Authorization"),
+            Matchers.containsString("x-amz-content-sha256")
+        );
+    }
 }
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.aws.requests;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SpilledPayload}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SpilledPayloadTestCase {
+
+    /**
+     * SpilledPayload hashes the content while it is written.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void hashesWrittenContent() throws Exception {
+        try (final SpilledPayload payload = new SpilledPayload()) {
+            try (final OutputStream out = payload.output()) {
+                out.write("abc".getBytes(StandardCharsets.UTF_8));
+            }
+            MatcherAssert.assertThat(
+                payload.sha256(),
+                Matchers.equalTo(
+                    "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"
+                )
+            );
+            MatcherAssert.assertThat(payload.length(), Matchers.is(3L));
+            MatcherAssert.assertThat(
+                IOUtils.toString(payload.content(), StandardCharsets.UTF_8),
+                Matchers.equalTo("abc")
+            );
+        }
+    }
+
+    /**
+     * SpilledPayload's content can be read again after reset, for retries.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void contentIsResettable() throws Exception {
+        try (final SpilledPayload payload = new SpilledPayload()) {
+            try (final OutputStream out = payload.output()) {
+                out.write("retry me".getBytes(StandardCharsets.UTF_8));
+            }
+            payload.content().mark(-1);
+            IOUtils.toByteArray(payload.content());
+            payload.content().reset();
+            MatcherAssert.assertThat(
+                IOUtils.toString(payload.content(), StandardCharsets.UTF_8),
+                Matchers.equalTo("retry me")
+            );
+        }
+    }
+
+    /**
+     * SpilledPayload deletes its file when closed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void deletesFileOnClose() throws Exception {
+        final SpilledPayload payload = new SpilledPayload();
+        try (final OutputStream out = payload.output()) {
+            out.write(1);
+        }
+        MatcherAssert.assertThat(payload.length(), Matchers.is(1L));
+        payload.close();
+        MatcherAssert.assertThat(payload.length(), Matchers.is(0L));
+    }
+}
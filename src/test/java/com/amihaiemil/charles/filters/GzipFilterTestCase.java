@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.servlet.AsyncContext;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link GzipFilter}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class GzipFilterTestCase {
+
+    /**
+     * Body of the responses.
+     */
+    private static final String BODY;
+
+    static {
+        final StringBuilder body = new StringBuilder("[");
+        for(int idx = 0; idx < 100; ++idx) {
+            body.append("{\"title\":\"Page ").append(idx).append("\"},");
+        }
+        BODY = body.append("{}]").toString();
+    }
+
+    /**
+     * GzipFilter negotiates the content coding.
+     */
+    @Test
+    public void negotiatesCoding() {
+        MatcherAssert.assertThat(GzipFilter.coding(null), Matchers.nullValue());
+        MatcherAssert.assertThat(GzipFilter.coding("identity"), Matchers.nullValue());
+        MatcherAssert.assertThat(GzipFilter.coding("gzip, deflate, br"), Matchers.is("gzip"));
+        MatcherAssert.assertThat(GzipFilter.coding("deflate"), Matchers.is("deflate"));
+        MatcherAssert.assertThat(GzipFilter.coding("gzip;q=0, deflate"), Matchers.is("deflate"));
+        MatcherAssert.assertThat(GzipFilter.coding("gzip;q=0.5, deflate;q=0.8"), Matchers.is("deflate"));
+        MatcherAssert.assertThat(GzipFilter.coding("*"), Matchers.is("gzip"));
+        MatcherAssert.assertThat(GzipFilter.coding("*;q=0"), Matchers.nullValue());
+    }
+
+    /**
+     * GzipFilter compresses with gzip.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void compressesWithGzip() throws Exception {
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        final HttpServletResponse response = this.response(sent, null);
+        new GzipFilter(0, 256).doFilter(
+            this.request("gzip"), response, new Writes(BODY)
+        );
+        Mockito.verify(response).setHeader("Content-Encoding", "gzip");
+        Mockito.verify(response).setContentLength(sent.size());
+        Mockito.verify(response).addHeader("Vary", "Accept-Encoding");
+        MatcherAssert.assertThat(sent.size(), Matchers.lessThan(BODY.length()));
+        MatcherAssert.assertThat(
+            this.read(new GZIPInputStream(new ByteArrayInputStream(sent.toByteArray()))),
+            Matchers.is(BODY)
+        );
+    }
+
+    /**
+     * GzipFilter compresses with deflate.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void compressesWithDeflate() throws Exception {
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        final HttpServletResponse response = this.response(sent, null);
+        new GzipFilter(0, 256).doFilter(
+            this.request("deflate"), response, new Writes(BODY)
+        );
+        Mockito.verify(response).setHeader("Content-Encoding", "deflate");
+        MatcherAssert.assertThat(
+            this.read(new InflaterInputStream(new ByteArrayInputStream(sent.toByteArray()))),
+            Matchers.is(BODY)
+        );
+    }
+
+    /**
+     * GzipFilter sends small bodies uncompressed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void leavesSmallBodies() throws Exception {
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        final HttpServletResponse response = this.response(sent, null);
+        new GzipFilter(0, 256).doFilter(
+            this.request("gzip"), response, new Writes("{}")
+        );
+        Mockito.verify(response, Mockito.never()).setHeader(
+            Mockito.eq("Content-Encoding"), Mockito.anyString()
+        );
+        MatcherAssert.assertThat(
+            new String(sent.toByteArray(), StandardCharsets.UTF_8), Matchers.is("{}")
+        );
+    }
+
+    /**
+     * GzipFilter passes the request through if the client does not
+     * accept compressed bodies.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void passesUncompressedThrough() throws Exception {
+        final HttpServletRequest request = this.request(null);
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        final FilterChain chain = Mockito.mock(FilterChain.class);
+        new GzipFilter(0, 256).doFilter(request, response, chain);
+        Mockito.verify(chain).doFilter(request, response);
+        Mockito.verify(response).addHeader("Vary", "Accept-Encoding");
+    }
+
+    /**
+     * GzipFilter sends the cached compressed body of a response with
+     * the same URL and ETag.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void cachesCompressedBodies() throws Exception {
+        final GzipFilter filter = new GzipFilter(1024 * 1024, 256);
+        final ByteArrayOutputStream first = new ByteArrayOutputStream();
+        filter.doFilter(
+            this.request("gzip"), this.response(first, "\"1\""), new Writes(BODY)
+        );
+        final ByteArrayOutputStream second = new ByteArrayOutputStream();
+        filter.doFilter(
+            this.request("gzip"), this.response(second, "\"1\""),
+            new Writes(BODY.replace("Page", "Cached"))
+        );
+        MatcherAssert.assertThat(second.toByteArray(), Matchers.is(first.toByteArray()));
+        final ByteArrayOutputStream changed = new ByteArrayOutputStream();
+        filter.doFilter(
+            this.request("gzip"), this.response(changed, "\"2\""),
+            new Writes(BODY.replace("Page", "Changed"))
+        );
+        MatcherAssert.assertThat(
+            this.read(new GZIPInputStream(new ByteArrayInputStream(changed.toByteArray()))),
+            Matchers.is(BODY.replace("Page", "Changed"))
+        );
+    }
+
+    /**
+     * GzipFilter sends the compressed body of an async request before
+     * its async context is completed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sendsAsyncBodyBeforeCompleting() throws Exception {
+        final HttpServletRequest request = this.request("gzip");
+        final AsyncContext origin = Mockito.mock(AsyncContext.class);
+        Mockito.when(request.startAsync()).thenReturn(origin);
+        Mockito.when(request.isAsyncStarted()).thenReturn(true);
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        final AtomicInteger atComplete = new AtomicInteger(-1);
+        Mockito.doAnswer(
+            new Answer<Void>() {
+                @Override
+                public Void answer(final InvocationOnMock invocation) {
+                    atComplete.set(sent.size());
+                    return null;
+                }
+            }
+        ).when(origin).complete();
+        final AtomicReference<AsyncContext> started = new AtomicReference<>();
+        new GzipFilter(0, 256).doFilter(
+            request, this.response(sent, null),
+            new FilterChain() {
+                @Override
+                public void doFilter(
+                    final ServletRequest req, final ServletResponse resp
+                ) throws IOException {
+                    started.set(req.startAsync());
+                    resp.getWriter().write(BODY);
+                }
+            }
+        );
+        MatcherAssert.assertThat(sent.size(), Matchers.is(0));
+        started.get().complete();
+        Mockito.verify(origin).complete();
+        MatcherAssert.assertThat(atComplete.get(), Matchers.greaterThan(0));
+        MatcherAssert.assertThat(
+            this.read(new GZIPInputStream(new ByteArrayInputStream(sent.toByteArray()))),
+            Matchers.is(BODY)
+        );
+    }
+
+    /**
+     * Mock a GET request to /api/s/amihaiemil/charles.
+     * @param accept Accept-Encoding header.
+     * @return HttpServletRequest.
+     */
+    private HttpServletRequest request(final String accept) {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeader("Accept-Encoding")).thenReturn(accept);
+        Mockito.when(request.getMethod()).thenReturn("GET");
+        Mockito.when(request.getRequestURI()).thenReturn("/api/s/amihaiemil/charles");
+        Mockito.when(request.getQueryString()).thenReturn("kw=test");
+        return request;
+    }
+
+    /**
+     * Mock a 200 JSON response.
+     * @param sent Where the body is sent.
+     * @param etag ETag header, may be null.
+     * @return HttpServletResponse.
+     * @throws IOException If something goes wrong.
+     */
+    private HttpServletResponse response(
+        final ByteArrayOutputStream sent, final String etag
+    ) throws IOException {
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(response.getStatus()).thenReturn(200);
+        Mockito.when(response.getContentType()).thenReturn("application/json");
+        Mockito.when(response.getCharacterEncoding()).thenReturn("UTF-8");
+        Mockito.when(response.getHeader("ETag")).thenReturn(etag);
+        Mockito.when(response.getOutputStream()).thenReturn(
+            new ServletOutputStream() {
+                @Override
+                public void write(final int b) {
+                    sent.write(b);
+                }
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+                @Override
+                public void setWriteListener(final WriteListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            }
+        );
+        return response;
+    }
+
+    /**
+     * Read a stream as UTF-8.
+     * @param input Stream.
+     * @return String.
+     * @throws IOException If something goes wrong.
+     */
+    private String read(final InputStream input) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[1024];
+        int read = input.read(chunk);
+        while(read != -1) {
+            bytes.write(chunk, 0, read);
+            read = input.read(chunk);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Chain writing a body.
+     */
+    private static final class Writes implements FilterChain {
+
+        /**
+         * Body.
+         */
+        private final String body;
+
+        /**
+         * Ctor.
+         * @param body Body.
+         */
+        Writes(final String body) {
+            this.body = body;
+        }
+
+        @Override
+        public void doFilter(final ServletRequest request, final ServletResponse response)
+            throws IOException {
+            response.getWriter().write(this.body);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link RateLimitFilter}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class RateLimitFilterTestCase {
+
+    /**
+     * RateLimitFilter answers 429 with Retry-After to a client over
+     * its limit.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void limitsClients() throws Exception {
+        final RateLimitFilter filter = new RateLimitFilter(
+            new RateLimits(0.5, 1, 10), null
+        );
+        final HttpServletRequest request = this.request("1.2.3.4", "/api/s/amihaiemil/repo");
+        final FilterChain chain = Mockito.mock(FilterChain.class);
+        final HttpServletResponse first = Mockito.mock(HttpServletResponse.class);
+        filter.doFilter(request, first, chain);
+        Mockito.verify(chain).doFilter(request, first);
+        final HttpServletResponse second = this.response();
+        filter.doFilter(request, second, chain);
+        Mockito.verify(chain, Mockito.never()).doFilter(request, second);
+        Mockito.verify(second).setStatus(429);
+        Mockito.verify(second).setHeader("Retry-After", "2");
+    }
+
+    /**
+     * RateLimitFilter limits each index, whatever the client.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void limitsIndexes() throws Exception {
+        final RateLimitFilter filter = new RateLimitFilter(
+            null, new RateLimits(1, 1, 10)
+        );
+        final FilterChain chain = Mockito.mock(FilterChain.class);
+        final HttpServletRequest one = this.request("1.1.1.1", "/api/s/Amihaiemil/Repo");
+        final HttpServletRequest two = this.request("2.2.2.2", "/api/s/amihaiemil/repo");
+        final HttpServletRequest other = this.request("2.2.2.2", "/api/s/amihaiemil/other");
+        filter.doFilter(one, Mockito.mock(HttpServletResponse.class), chain);
+        final HttpServletResponse limited = this.response();
+        filter.doFilter(two, limited, chain);
+        Mockito.verify(limited).setStatus(429);
+        final HttpServletResponse allowed = Mockito.mock(HttpServletResponse.class);
+        filter.doFilter(other, allowed, chain);
+        Mockito.verify(chain).doFilter(other, allowed);
+    }
+
+    /**
+     * RateLimitFilter limits the clients behind a trusted proxy by their
+     * X-Forwarded-For address, and ignores the header from anyone else.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void limitsClientsBehindTrustedProxy() throws Exception {
+        final RateLimitFilter filter = new RateLimitFilter(
+            new RateLimits(0.5, 1, 10), null, RateLimitFilter.proxies("10.0.0.1, 10.0.0.2")
+        );
+        final FilterChain chain = Mockito.mock(FilterChain.class);
+        final HttpServletRequest one = this.request("10.0.0.1", "/api/s/amihaiemil/repo");
+        Mockito.when(one.getHeader("X-Forwarded-For")).thenReturn("6.6.6.6, 1.1.1.1, 10.0.0.2");
+        final HttpServletRequest two = this.request("10.0.0.1", "/api/s/amihaiemil/repo");
+        Mockito.when(two.getHeader("X-Forwarded-For")).thenReturn("2.2.2.2");
+        final HttpServletRequest spoofed = this.request("3.3.3.3", "/api/s/amihaiemil/repo");
+        Mockito.when(spoofed.getHeader("X-Forwarded-For")).thenReturn("1.1.1.1");
+        final HttpServletResponse first = Mockito.mock(HttpServletResponse.class);
+        filter.doFilter(one, first, chain);
+        Mockito.verify(chain).doFilter(one, first);
+        final HttpServletResponse second = Mockito.mock(HttpServletResponse.class);
+        filter.doFilter(two, second, chain);
+        Mockito.verify(chain).doFilter(two, second);
+        final HttpServletResponse third = Mockito.mock(HttpServletResponse.class);
+        filter.doFilter(spoofed, third, chain);
+        Mockito.verify(chain).doFilter(spoofed, third);
+        final HttpServletResponse limited = this.response();
+        filter.doFilter(one, limited, chain);
+        Mockito.verify(limited).setStatus(429);
+    }
+
+    /**
+     * RateLimitFilter gives the client's token back when the index limit
+     * rejects the request.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void refundsClientWhenIndexIsLimited() throws Exception {
+        final RateLimitFilter filter = new RateLimitFilter(
+            new RateLimits(0.5, 1, 10), new RateLimits(0.5, 1, 10)
+        );
+        final FilterChain chain = Mockito.mock(FilterChain.class);
+        filter.doFilter(
+            this.request("1.1.1.1", "/api/s/amihaiemil/repo"),
+            Mockito.mock(HttpServletResponse.class), chain
+        );
+        final HttpServletResponse limited = this.response();
+        filter.doFilter(this.request("2.2.2.2", "/api/s/amihaiemil/repo"), limited, chain);
+        Mockito.verify(limited).setStatus(429);
+        final HttpServletRequest other = this.request("2.2.2.2", "/api/s/amihaiemil/other");
+        final HttpServletResponse allowed = Mockito.mock(HttpServletResponse.class);
+        filter.doFilter(other, allowed, chain);
+        Mockito.verify(chain).doFilter(other, allowed);
+    }
+
+    /**
+     * Mock a request.
+     * @param address Client IP.
+     * @param uri Request URI.
+     * @return HttpServletRequest.
+     */
+    private HttpServletRequest request(final String address, final String uri) {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getRemoteAddr()).thenReturn(address);
+        Mockito.when(request.getContextPath()).thenReturn("");
+        Mockito.when(request.getRequestURI()).thenReturn(uri);
+        return request;
+    }
+
+    /**
+     * Mock a response which can be written.
+     * @return HttpServletResponse.
+     * @throws Exception If something goes wrong.
+     */
+    private HttpServletResponse response() throws Exception {
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(response.getWriter()).thenReturn(
+            new PrintWriter(new StringWriter())
+        );
+        return response;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.filters;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TokenBucket} and {@link RateLimits}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class TokenBucketTestCase {
+
+    /**
+     * TokenBucket allows a burst, then refills at the given rate.
+     */
+    @Test
+    public void allowsBurstThenRate() {
+        final long second = TimeUnit.SECONDS.toNanos(1);
+        final TokenBucket bucket = new TokenBucket(2, 3, 0);
+        for(int idx = 0; idx < 3; ++idx) {
+            MatcherAssert.assertThat(bucket.take(0), Matchers.is(0L));
+        }
+        MatcherAssert.assertThat(bucket.take(0), Matchers.is(second / 2));
+        MatcherAssert.assertThat(bucket.take(second / 2), Matchers.is(0L));
+        MatcherAssert.assertThat(bucket.take(second / 2), Matchers.greaterThan(0L));
+        MatcherAssert.assertThat(bucket.idle(second), Matchers.is(false));
+        MatcherAssert.assertThat(bucket.idle(2 * second), Matchers.is(true));
+    }
+
+    /**
+     * RateLimits limits each key separately.
+     */
+    @Test
+    public void limitsEachKey() {
+        final RateLimits limits = RateLimits.parse("1/1", 10);
+        final long now = System.nanoTime();
+        MatcherAssert.assertThat(limits.take("a", now), Matchers.is(0L));
+        MatcherAssert.assertThat(limits.take("a", now), Matchers.greaterThan(0L));
+        MatcherAssert.assertThat(limits.take("b", now), Matchers.is(0L));
+    }
+
+    /**
+     * RateLimits evicts the idle buckets when there are too many.
+     */
+    @Test
+    public void evictsIdleBuckets() {
+        final RateLimits limits = new RateLimits(100, 1, 2);
+        final long now = System.nanoTime();
+        limits.take("a", now);
+        limits.take("b", now);
+        MatcherAssert.assertThat(limits.size(), Matchers.is(2));
+        limits.take("c", now + TimeUnit.SECONDS.toNanos(2));
+        MatcherAssert.assertThat(limits.size(), Matchers.is(1));
+    }
+
+    /**
+     * RateLimits can be disabled.
+     */
+    @Test
+    public void parsesDisabledLimits() {
+        MatcherAssert.assertThat(RateLimits.parse("", 10), Matchers.nullValue());
+        MatcherAssert.assertThat(RateLimits.parse(null, 10), Matchers.nullValue());
+    }
+}
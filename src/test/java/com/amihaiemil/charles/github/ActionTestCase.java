@@ -34,6 +34,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import javax.json.Json;
+import javax.json.JsonObject;
+
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -185,6 +188,27 @@ public class ActionTestCase {
                 .startsWith(expectedStartsWith)); //there should be only 2 comments - the command and the reply.
         
     }
+    /**
+     * An Action given the comment answers it, without looking for it
+     * among the issue's comments.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void actionWithKnownComment() throws Exception {
+        Language english = (Language)new English();
+        Issue issue = this.githubIssue("amihaiemil", "@charlesmike hello there");
+        JsonObject comment = Json.createObjectBuilder()
+            .add("id", 1)
+            .add("body", "@charlesmike hello from the webhook")
+            .add("user", Json.createObjectBuilder().add("login", "amihaiemil"))
+            .build();
+        new Action(issue, comment).perform();
+        List<Comment> comments = Lists.newArrayList(issue.comments().iterate());
+        String expectedReply = "> @charlesmike hello from the webhook\n\n"
+            + String.format(english.response("hello.comment"),"amihaiemil");
+        assertTrue(comments.get(1).json().getString("body").equals(expectedReply));
+    }
+
     /**
      * Creates an Issue with the given command.
      * @param commander Author of the comment;
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.jcabi.github.Github;
+import com.jcabi.github.User;
+import com.jcabi.github.Users;
+
+/**
+ * Unit tests for {@link AgentLogin}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class AgentLoginTestCase {
+
+    /**
+     * AgentLogin asks Github for the login only once.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void fetchesLoginOnce() throws Exception {
+        final User self = Mockito.mock(User.class);
+        Mockito.when(self.login()).thenReturn("charlesmike");
+        final Users users = Mockito.mock(Users.class);
+        Mockito.when(users.self()).thenReturn(self);
+        final Github github = Mockito.mock(Github.class);
+        Mockito.when(github.users()).thenReturn(users);
+        final AgentLogin login = new AgentLogin(github);
+        MatcherAssert.assertThat(login.value(), Matchers.is("charlesmike"));
+        MatcherAssert.assertThat(login.value(), Matchers.is("charlesmike"));
+        Mockito.verify(self, Mockito.times(1)).login();
+    }
+
+    /**
+     * AgentLogin can be given the login.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void knowsGivenLogin() throws Exception {
+        MatcherAssert.assertThat(
+            new AgentLogin("charlesmike").value(), Matchers.is("charlesmike")
+        );
+    }
+}
@@ -31,6 +31,8 @@ import static org.junit.Assert.fail;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
 
 import javax.json.Json;
 import javax.json.JsonObject;
@@ -44,10 +46,12 @@ import org.mockito.Mockito;
 import com.amihaiemil.camel.Yaml;
 import com.jcabi.github.Repo;
 import com.jcabi.github.Repos.RepoCreate;
+import com.jcabi.github.RtGithub;
 import com.jcabi.github.mock.MkGithub;
 import com.jcabi.http.mock.MkAnswer;
 import com.jcabi.http.mock.MkContainer;
 import com.jcabi.http.mock.MkGrizzlyContainer;
+import com.jcabi.http.mock.MkQuery;
 
 /**
  * Unit tests for {@link CachedRepo}
@@ -71,7 +75,7 @@ public class CachedRepoTestCase {
             .start(port);
         try {
             CachedRepo crepo = Mockito.spy(
-                new CachedRepo(Mockito.mock(Repo.class))
+                new CachedRepo(this.repo(new RtGithub()))
             );
             Mockito.when(crepo.json()).thenReturn(Json
                 .createObjectBuilder()
@@ -102,7 +106,7 @@ public class CachedRepoTestCase {
             .start(port);
         try {
             CachedRepo crepo = Mockito.spy(
-                new CachedRepo(Mockito.mock(Repo.class))
+                new CachedRepo(this.repo(new RtGithub()))
             );
             Mockito.when(crepo.json()).thenReturn(Json
                 .createObjectBuilder()
@@ -120,6 +124,43 @@ public class CachedRepoTestCase {
         }
     }
     
+    /**
+     * CachedRepo asks for the gh-pages branch with the Github's
+     * credentials.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void asksForGhPagesBranchAuthenticated() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start(port);
+        try {
+            CachedRepo crepo = Mockito.spy(
+                new CachedRepo(this.repo(new RtGithub("charlestoken")))
+            );
+            Mockito.when(crepo.json()).thenReturn(Json
+                .createObjectBuilder()
+                .add(
+                    "branches_url",
+                    "http://localhost:" + port + "/branches{/branch}"
+                ).build()
+            );
+            assertTrue(crepo.hasGhPagesBranch());
+            final MkQuery query = server.take();
+            assertTrue(query.uri().getPath().equals("/branches/gh-pages"));
+            String auth = null;
+            for(final Map.Entry<String, List<String>> header : query.headers().entrySet()) {
+                if("authorization".equalsIgnoreCase(header.getKey())) {
+                    auth = header.getValue().get(0);
+                }
+            }
+            assertTrue("token charlestoken".equals(auth));
+        } finally {
+            server.stop();
+        }
+    }
+
     /**
      * CommandedRepo throws IOException if the http response
      * status is not appropriate.
@@ -133,7 +174,7 @@ public class CachedRepoTestCase {
             .start(port);
         try {
             CachedRepo crepo = Mockito.spy(
-                new CachedRepo(Mockito.mock(Repo.class))
+                new CachedRepo(this.repo(new RtGithub()))
             );
             Mockito.when(crepo.json()).thenReturn(Json
                 .createObjectBuilder()
@@ -231,4 +272,15 @@ public class CachedRepoTestCase {
             return socket.getLocalPort();
         }
     }
+
+    /**
+     * Mock a repo of the given Github.
+     * @param github Github.
+     * @return Repo.
+     */
+    private Repo repo(final RtGithub github) {
+        final Repo repo = Mockito.mock(Repo.class);
+        Mockito.when(repo.github()).thenReturn(github);
+        return repo;
+    }
 }
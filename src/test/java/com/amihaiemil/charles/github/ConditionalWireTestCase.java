@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.jcabi.http.Request;
+import com.jcabi.http.Response;
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+import com.jcabi.http.mock.MkQuery;
+import com.jcabi.http.request.ApacheRequest;
+
+/**
+ * Unit tests for {@link ConditionalWire} and {@link ConditionalCache}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class ConditionalWireTestCase {
+
+    /**
+     * ConditionalWire sends If-None-Match with the cached ETag and serves
+     * the 304 from the cache, with the fresh headers.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void servesNotModifiedFromCache() throws Exception {
+        final int port = this.port();
+        final MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "{\"name\":\"charles\"}")
+                    .withHeader("ETag", "\"abc\"")
+                    .withHeader("X-RateLimit-Remaining", "10")
+            )
+            .next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_NOT_MODIFIED, "")
+                    .withHeader("ETag", "\"abc\"")
+                    .withHeader("X-RateLimit-Remaining", "9")
+            )
+            .start(port);
+        final ConditionalCache cache = new ConditionalCache(10);
+        try {
+            final Request request = new ApacheRequest("http://localhost:" + port + "/repos/a/b")
+                .through(ConditionalWire.class, cache);
+            request.fetch();
+            MatcherAssert.assertThat(cache.size(), Matchers.is(1));
+            final Response second = request.fetch();
+            MatcherAssert.assertThat(second.status(), Matchers.is(HttpURLConnection.HTTP_OK));
+            MatcherAssert.assertThat(second.body(), Matchers.is("{\"name\":\"charles\"}"));
+            MatcherAssert.assertThat(
+                second.headers().get("X-RateLimit-Remaining").get(0), Matchers.is("9")
+            );
+            MatcherAssert.assertThat(this.header(server.take(), "If-None-Match"), Matchers.nullValue());
+            MatcherAssert.assertThat(this.header(server.take(), "If-None-Match"), Matchers.is("\"abc\""));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * ConditionalWire sends If-Modified-Since if there is no ETag and
+     * forgets the response when the resource is gone.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void usesLastModifiedAndForgetsGone() throws Exception {
+        final int port = this.port();
+        final String modified = "Mon, 16 Oct 2017 10:00:00 GMT";
+        final MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "page")
+                    .withHeader("Last-Modified", modified)
+            )
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_NOT_FOUND, ""))
+            .start(port);
+        final ConditionalCache cache = new ConditionalCache(10);
+        try {
+            final Request request = new ApacheRequest("http://localhost:" + port + "/contents")
+                .through(ConditionalWire.class, cache);
+            request.fetch();
+            MatcherAssert.assertThat(
+                request.fetch().status(), Matchers.is(HttpURLConnection.HTTP_NOT_FOUND)
+            );
+            MatcherAssert.assertThat(cache.size(), Matchers.is(0));
+            server.take();
+            MatcherAssert.assertThat(
+                this.header(server.take(), "If-Modified-Since"), Matchers.is(modified)
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * ConditionalWire does not cache other methods than GET.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void ignoresPost() throws Exception {
+        final int port = this.port();
+        final MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "created")
+                    .withHeader("ETag", "\"abc\"")
+            )
+            .start(port);
+        final ConditionalCache cache = new ConditionalCache(10);
+        try {
+            new ApacheRequest("http://localhost:" + port + "/comments")
+                .through(ConditionalWire.class, cache)
+                .method(Request.POST)
+                .fetch();
+            MatcherAssert.assertThat(cache.size(), Matchers.is(0));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * ConditionalCache evicts the least recently used responses.
+     */
+    @Test
+    public void cacheEvictsLeastRecentlyUsed() {
+        final ConditionalCache cache = new ConditionalCache(2);
+        final Response response = Mockito.mock(Response.class);
+        cache.put("a", response);
+        cache.put("b", response);
+        cache.get("a");
+        cache.put("c", response);
+        MatcherAssert.assertThat(cache.size(), Matchers.is(2));
+        MatcherAssert.assertThat(cache.get("a"), Matchers.notNullValue());
+        MatcherAssert.assertThat(cache.get("b"), Matchers.nullValue());
+    }
+
+    /**
+     * Value of a received header.
+     * @param query Received request.
+     * @param name Header name.
+     * @return Value or null.
+     */
+    private String header(final MkQuery query, final String name) {
+        String value = null;
+        for(final Map.Entry<String, List<String>> header : query.headers().entrySet()) {
+            if(name.equalsIgnoreCase(header.getKey())) {
+                value = header.getValue().get(0);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Find a free port.
+     * @return A free port.
+     * @throws IOException If something goes wrong.
+     */
+    private int port() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
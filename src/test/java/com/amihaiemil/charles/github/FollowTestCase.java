@@ -109,6 +109,24 @@ public final class FollowTestCase {
         Mockito.verify(logger).error("IOException while trying to follow the user.");
     }
 
+    /**
+     * Follow does not follow the user if the Github rate limit is low,
+     * but goes on with the next step.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void skipsWhenRateLimitIsLow() throws Exception {
+        final Command com = this.mockCommand();
+        final Logger logger = Mockito.mock(Logger.class);
+        final RateLimit limit = new RateLimit(100);
+        limit.update(150, System.currentTimeMillis() / 1000 + 3600);
+        final Step next = Mockito.mock(Step.class);
+        new Follow(next, limit).perform(com, logger);
+        Mockito.verify(logger).info("Github rate limit is low, not following the user.");
+        Mockito.verify(com.issue().repo().github(), Mockito.never()).entry();
+        Mockito.verify(next).perform(com, logger);
+    }
+
     /**
      * Find a free port.
      * @return A free port.
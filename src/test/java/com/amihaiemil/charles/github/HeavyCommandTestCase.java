@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import javax.json.Json;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link HeavyCommand}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class HeavyCommandTestCase {
+
+    /**
+     * The crawls are heavy commands.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsAreHeavy() throws Exception {
+        MatcherAssert.assertThat(this.heavy("@charlesmike index your site"), Matchers.is(true));
+        MatcherAssert.assertThat(this.heavy("@charlesmike index the sitemap"), Matchers.is(true));
+        MatcherAssert.assertThat(this.heavy("@charlesmike index this page"), Matchers.is(true));
+        MatcherAssert.assertThat(new HeavyCommand(null).value(), Matchers.is(true));
+    }
+
+    /**
+     * The other commands are not heavy.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void othersAreNotHeavy() throws Exception {
+        MatcherAssert.assertThat(this.heavy("@charlesmike hello"), Matchers.is(false));
+        MatcherAssert.assertThat(this.heavy("@charlesmike delete index"), Matchers.is(false));
+        MatcherAssert.assertThat(this.heavy("@charlesmike what?"), Matchers.is(false));
+    }
+
+    /**
+     * HeavyCommand tells the work of a crawl: indexsite alone, the other
+     * crawls with their link.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void tellsWork() throws Exception {
+        MatcherAssert.assertThat(this.work("@charlesmike index your site"), Matchers.is("indexsite"));
+        MatcherAssert.assertThat(
+            this.work("@charlesmike index [this](http://amihaiemil.github.io/a.html) page"),
+            Matchers.is("indexpage http://amihaiemil.github.io/a.html")
+        );
+        MatcherAssert.assertThat(this.work("@charlesmike index this page"), Matchers.nullValue());
+        MatcherAssert.assertThat(this.work("@charlesmike hello"), Matchers.nullValue());
+        MatcherAssert.assertThat(new HeavyCommand(null).work(), Matchers.nullValue());
+    }
+
+    /**
+     * Work of the comment.
+     * @param body Body of the comment.
+     * @return String.
+     * @throws Exception If something goes wrong.
+     */
+    private String work(final String body) throws Exception {
+        return new HeavyCommand(
+            Json.createObjectBuilder().add("body", body).build()
+        ).work();
+    }
+
+    /**
+     * Is the comment a heavy command?
+     * @param body Body of the comment.
+     * @return True or false.
+     * @throws Exception If something goes wrong.
+     */
+    private boolean heavy(final String body) throws Exception {
+        return new HeavyCommand(Json.createObjectBuilder().add("body", body).build()).value();
+    }
+}
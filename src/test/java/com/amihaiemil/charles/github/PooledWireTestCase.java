@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.jcabi.http.Request;
+import com.jcabi.http.Response;
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+import com.jcabi.http.mock.MkQuery;
+import com.jcabi.http.request.ApacheRequest;
+
+/**
+ * Unit tests for {@link PooledWire}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class PooledWireTestCase {
+
+    /**
+     * PooledWire sends the requests through the shared client and keeps
+     * the connection alive for the next request.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void reusesConnection() throws Exception {
+        final int port = this.port();
+        final MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "first"))
+            .next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_NOT_FOUND, "second")
+                    .withHeader("X-Charles", "yes")
+            )
+            .start(port);
+        final PoolingHttpClientConnectionManager pool =
+            new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        final CloseableHttpClient client = HttpClients.custom()
+            .setConnectionManager(pool).build();
+        try {
+            final Request request = new ApacheRequest("http://localhost:" + port + "/")
+                .through(PooledWire.class, client);
+            final Response first = request.fetch();
+            MatcherAssert.assertThat(first.status(), Matchers.is(HttpURLConnection.HTTP_OK));
+            MatcherAssert.assertThat(first.body(), Matchers.is("first"));
+            final Response second = request.fetch();
+            MatcherAssert.assertThat(second.status(), Matchers.is(HttpURLConnection.HTTP_NOT_FOUND));
+            MatcherAssert.assertThat(second.body(), Matchers.is("second"));
+            MatcherAssert.assertThat(
+                second.headers().containsKey("X-Charles"), Matchers.is(true)
+            );
+            MatcherAssert.assertThat(pool.getTotalStats().getAvailable(), Matchers.is(1));
+            MatcherAssert.assertThat(pool.getTotalStats().getLeased(), Matchers.is(0));
+        } finally {
+            client.close();
+            server.stop();
+        }
+    }
+
+    /**
+     * PooledWire sends a body only with the requests which have one.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sendsBodyOnlyIfAny() throws Exception {
+        final int port = this.port();
+        final MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_CREATED))
+            .start(port);
+        final CloseableHttpClient client = HttpClients.createDefault();
+        try {
+            final Request request = new ApacheRequest("http://localhost:" + port + "/")
+                .through(PooledWire.class, client);
+            request.method(Request.GET).fetch();
+            request.method(Request.POST).body().set("{\"body\":\"hi\"}").back().fetch();
+            final MkQuery get = server.take();
+            MatcherAssert.assertThat(get.method(), Matchers.is(Request.GET));
+            MatcherAssert.assertThat(
+                get.headers().containsKey(HttpHeaders.CONTENT_LENGTH), Matchers.is(false)
+            );
+            final MkQuery post = server.take();
+            MatcherAssert.assertThat(post.method(), Matchers.is(Request.POST));
+            MatcherAssert.assertThat(post.body(), Matchers.is("{\"body\":\"hi\"}"));
+        } finally {
+            client.close();
+            server.stop();
+        }
+    }
+
+    /**
+     * GithubClient builds a pooled HTTP client.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void githubClientSharesGithub() throws Exception {
+        final GithubClient github = new GithubClient(
+            "token", GithubClient.pooled(2), new ConditionalCache(10), new RateLimit(10)
+        );
+        MatcherAssert.assertThat(github.github(), Matchers.sameInstance(github.github()));
+        github.close();
+    }
+
+    /**
+     * Find a free port.
+     * @return A free port.
+     * @throws IOException If something goes wrong.
+     */
+    private int port() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
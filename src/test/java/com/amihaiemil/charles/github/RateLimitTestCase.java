@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+import com.jcabi.http.request.ApacheRequest;
+
+/**
+ * Unit tests for {@link RateLimit} and {@link RateLimitWire}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class RateLimitTestCase {
+
+    /**
+     * RateLimit lets everything start while the limit is not known or
+     * plenty of calls remain.
+     */
+    @Test
+    public void startsRightAway() {
+        final RateLimit limit = new RateLimit(100);
+        MatcherAssert.assertThat(limit.acquire(1000L), Matchers.is(0L));
+        MatcherAssert.assertThat(limit.cosmetic(1000L), Matchers.is(true));
+        limit.update(4000, 3600);
+        MatcherAssert.assertThat(limit.acquire(1000L), Matchers.is(0L));
+        MatcherAssert.assertThat(limit.acquire(1000L), Matchers.is(0L));
+        MatcherAssert.assertThat(limit.cosmetic(1000L), Matchers.is(true));
+    }
+
+    /**
+     * RateLimit paces the starts when few calls remain and skips the
+     * cosmetic calls.
+     */
+    @Test
+    public void pacesWhenLow() {
+        final RateLimit limit = new RateLimit(100);
+        limit.update(200, 3600);
+        MatcherAssert.assertThat(limit.acquire(0L), Matchers.is(0L));
+        MatcherAssert.assertThat(limit.acquire(0L), Matchers.is(36000L));
+        MatcherAssert.assertThat(limit.acquire(36000L), Matchers.is(0L));
+        MatcherAssert.assertThat(limit.cosmetic(0L), Matchers.is(false));
+    }
+
+    /**
+     * RateLimit parks the actions until the reset when the reserve is
+     * reached.
+     */
+    @Test
+    public void parksUntilReset() {
+        final RateLimit limit = new RateLimit(100);
+        limit.update(50, 3600);
+        MatcherAssert.assertThat(limit.acquire(600000L), Matchers.is(3000000L));
+        MatcherAssert.assertThat(limit.acquire(3600000L), Matchers.is(0L));
+        MatcherAssert.assertThat(limit.cosmetic(3600000L), Matchers.is(true));
+    }
+
+    /**
+     * RateLimit keeps the lowest remaining of a window, since responses
+     * may come out of order, and starts over with a new window.
+     */
+    @Test
+    public void keepsLowestRemaining() {
+        final RateLimit limit = new RateLimit(100);
+        limit.update(300, 3600);
+        limit.update(400, 3600);
+        MatcherAssert.assertThat(limit.remaining(), Matchers.is(300));
+        limit.update(5000, 7200);
+        MatcherAssert.assertThat(limit.remaining(), Matchers.is(5000));
+        limit.update(10, 3600);
+        MatcherAssert.assertThat(limit.remaining(), Matchers.is(5000));
+    }
+
+    /**
+     * RateLimitWire reads the rate limit headers of the responses.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void wireReadsHeaders() throws Exception {
+        final int port = this.port();
+        final MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "{}")
+                    .withHeader("X-RateLimit-Remaining", "4321")
+                    .withHeader("X-RateLimit-Reset", "1508140800")
+            )
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "{}"))
+            .start(port);
+        final RateLimit limit = new RateLimit(100);
+        try {
+            final ApacheRequest request = new ApacheRequest("http://localhost:" + port + "/");
+            request.through(RateLimitWire.class, limit).fetch();
+            MatcherAssert.assertThat(limit.remaining(), Matchers.is(4321));
+            request.through(RateLimitWire.class, limit).fetch();
+            MatcherAssert.assertThat(limit.remaining(), Matchers.is(4321));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Find a free port.
+     * @return A free port.
+     * @throws IOException If something goes wrong.
+     */
+    private int port() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
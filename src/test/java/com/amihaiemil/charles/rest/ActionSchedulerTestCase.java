@@ -0,0 +1,390 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.json.Json;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.amihaiemil.charles.github.Action;
+import com.amihaiemil.charles.github.ActionTestCase;
+import com.amihaiemil.charles.rest.model.Notification;
+import com.google.common.collect.Lists;
+import com.jcabi.github.Comment;
+import com.jcabi.github.Issue;
+
+/**
+ * Unit tests for {@link ActionScheduler}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class ActionSchedulerTestCase {
+
+    /**
+     * ActionScheduler puts the crawls and the unknown commands in the
+     * heavy lane, the others in the fast one.
+     */
+    @Test
+    public void choosesLanes() {
+        final Lane fast = new Lane("fast", 1, 1);
+        final Lane heavy = new Lane("heavy", 1, 1);
+        final ActionScheduler scheduler = new ActionScheduler(fast, heavy);
+        MatcherAssert.assertThat(
+            scheduler.lane(this.notification("@charlesmike hello")), Matchers.is(fast)
+        );
+        MatcherAssert.assertThat(
+            scheduler.lane(this.notification("@charlesmike delete this page")),
+            Matchers.is(fast)
+        );
+        MatcherAssert.assertThat(
+            scheduler.lane(this.notification("@charlesmike index your site")),
+            Matchers.is(heavy)
+        );
+        MatcherAssert.assertThat(
+            scheduler.lane(this.notification(null)), Matchers.is(heavy)
+        );
+        scheduler.close();
+    }
+
+    /**
+     * ActionScheduler exposes the metrics of the lanes.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void exposesMetrics() throws Exception {
+        final Lane fast = new Lane("fast", 1, 1);
+        final ActionScheduler scheduler = new ActionScheduler(fast, new Lane("heavy", 1, 1));
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<Boolean> blocked = new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        scheduler.execute(this.notification("amihaiemil/a", "@charlesmike hello"), blocked, null, null);
+        scheduler.execute(this.notification("amihaiemil/b", "@charlesmike hello"), blocked, null, null);
+        try {
+            scheduler.execute(
+                this.notification("amihaiemil/c", "@charlesmike hello"), blocked, null, null
+            );
+        } catch (final RejectedExecutionException ex) {
+            MatcherAssert.assertThat(fast.rejected(), Matchers.is(1L));
+        }
+        final String metrics = scheduler.prometheus();
+        MatcherAssert.assertThat(
+            metrics, Matchers.containsString("charles_actions_queue_depth{lane=\"fast\"} 1\n")
+        );
+        MatcherAssert.assertThat(
+            metrics, Matchers.containsString("charles_actions_rejected_total{lane=\"fast\"} 1\n")
+        );
+        MatcherAssert.assertThat(
+            metrics, Matchers.containsString("charles_actions_wait_seconds_bucket{lane=\"heavy\",le=\"+Inf\"} 0\n")
+        );
+        release.countDown();
+        scheduler.close();
+    }
+
+    /**
+     * An elastic lane runs many blocked actions at the same time,
+     * without a queue.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void elasticLaneRunsManyActions() throws Exception {
+        final Lane lane = Lane.elastic("fast", 500, 256 * 1024);
+        final CountDownLatch started = new CountDownLatch(300);
+        final CountDownLatch release = new CountDownLatch(1);
+        for(int idx = 0; idx < 300; ++idx) {
+            lane.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (final InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            );
+        }
+        MatcherAssert.assertThat(started.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(lane.active(), Matchers.is(300));
+        MatcherAssert.assertThat(lane.depth(), Matchers.is(0));
+        release.countDown();
+        lane.close();
+    }
+
+    /**
+     * An Action runs on an elastic lane, with MkGithub.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void runsActionOnElasticLane() throws Exception {
+        final Issue issue = new ActionTestCase().githubIssue("amihaiemil", "@charlesmike hello");
+        final ActionScheduler scheduler = new ActionScheduler(
+            ActionScheduler.fastLane("elastic"), new Lane("heavy", 1, 1)
+        );
+        final CountDownLatch done = new CountDownLatch(1);
+        final Action action = new Action(issue);
+        scheduler.execute(
+            this.notification("@charlesmike hello"),
+            new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    final boolean indexed = action.perform();
+                    done.countDown();
+                    return indexed;
+                }
+            },
+            null, null
+        );
+        MatcherAssert.assertThat(done.await(10, TimeUnit.SECONDS), Matchers.is(true));
+        final List<Comment> comments = Lists.newArrayList(issue.comments().iterate());
+        MatcherAssert.assertThat(comments.size(), Matchers.is(2));
+        scheduler.close();
+    }
+
+    /**
+     * ActionScheduler runs the actions of a repository one after the
+     * other and merges a crawl into the same crawl of the repository,
+     * waiting behind another action.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void serializesActionsOfRepository() throws Exception {
+        final ActionScheduler scheduler = new ActionScheduler(
+            new Lane("fast", 4, 10), new Lane("heavy", 4, 10)
+        );
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final AtomicInteger crawls = new AtomicInteger();
+        final AtomicInteger merged = new AtomicInteger();
+        final Callable<Boolean> crawl = new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                crawls.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+                return true;
+            }
+        };
+        final Runnable merge = new Runnable() {
+            @Override
+            public void run() {
+                merged.incrementAndGet();
+                done.countDown();
+            }
+        };
+        final Notification index = this.notification("amihaiemil/charles", "@charlesmike index your site");
+        scheduler.execute(
+            this.notification("amihaiemil/charles", "@charlesmike hello"),
+            new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                    return true;
+                }
+            },
+            null, null
+        );
+        scheduler.execute(index, crawl, merge, null);
+        scheduler.execute(index, crawl, merge, null);
+        Thread.sleep(200);
+        MatcherAssert.assertThat(done.getCount(), Matchers.is(3L));
+        MatcherAssert.assertThat(crawls.get(), Matchers.is(0));
+        release.countDown();
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(crawls.get(), Matchers.is(1));
+        MatcherAssert.assertThat(merged.get(), Matchers.is(1));
+        scheduler.close();
+    }
+
+    /**
+     * ActionScheduler runs a crawl which waited behind a quick command of
+     * its repository in the heavy lane, not on the fast lane's thread.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void runsWaitingCrawlInHeavyLane() throws Exception {
+        final ActionScheduler scheduler = new ActionScheduler(
+            new Lane("fast", 1, 10), new Lane("heavy", 1, 10)
+        );
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        final AtomicReference<String> hello = new AtomicReference<>();
+        final AtomicReference<String> crawl = new AtomicReference<>();
+        scheduler.execute(
+            this.notification("amihaiemil/charles", "@charlesmike hello"),
+            new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    hello.set(Thread.currentThread().getName());
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                    return true;
+                }
+            },
+            null, null
+        );
+        scheduler.execute(
+            this.notification("amihaiemil/charles", "@charlesmike index your site"),
+            new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    crawl.set(Thread.currentThread().getName());
+                    done.countDown();
+                    return true;
+                }
+            },
+            null, null
+        );
+        release.countDown();
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(hello.get(), Matchers.startsWith("charles-fast-"));
+        MatcherAssert.assertThat(crawl.get(), Matchers.startsWith("charles-heavy-"));
+        scheduler.close();
+    }
+
+    /**
+     * ActionScheduler does not merge two indexpage commands for different
+     * links: both pages are crawled, one after the other.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void doesNotMergeDifferentPages() throws Exception {
+        final ActionScheduler scheduler = new ActionScheduler(
+            new Lane("fast", 4, 10), new Lane("heavy", 4, 10)
+        );
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        final AtomicInteger crawls = new AtomicInteger();
+        final AtomicInteger merged = new AtomicInteger();
+        final Callable<Boolean> crawl = new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                crawls.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+                return true;
+            }
+        };
+        final Runnable merge = new Runnable() {
+            @Override
+            public void run() {
+                merged.incrementAndGet();
+                done.countDown();
+            }
+        };
+        scheduler.execute(
+            this.notification(
+                "amihaiemil/charles",
+                "@charlesmike index [this](http://amihaiemil.github.io/a.html) page"
+            ),
+            crawl, merge, null
+        );
+        scheduler.execute(
+            this.notification(
+                "amihaiemil/charles",
+                "@charlesmike index [this](http://amihaiemil.github.io/b.html) page"
+            ),
+            crawl, merge, null
+        );
+        release.countDown();
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(crawls.get(), Matchers.is(2));
+        MatcherAssert.assertThat(merged.get(), Matchers.is(0));
+        scheduler.close();
+    }
+
+    /**
+     * ActionScheduler knows only the pooled and elastic modes.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesUnknownMode() {
+        ActionScheduler.fastLane("virtual");
+    }
+
+    /**
+     * Mock a notification.
+     * @param body Body of the comment; null if it is not known.
+     * @return Notification.
+     */
+    private Notification notification(final String body) {
+        return this.notification("amihaiemil/charles", body);
+    }
+
+    /**
+     * Mock a notification.
+     * @param repo Full name of the repository.
+     * @param body Body of the comment; null if it is not known.
+     * @return Notification.
+     */
+    private Notification notification(final String repo, final String body) {
+        final Notification notification = Mockito.mock(Notification.class);
+        Mockito.when(notification.repoFullName()).thenReturn(repo);
+        if(body != null) {
+            Mockito.when(notification.comment()).thenReturn(
+                Json.createObjectBuilder().add("body", body).build()
+            );
+        }
+        return notification;
+    }
+}
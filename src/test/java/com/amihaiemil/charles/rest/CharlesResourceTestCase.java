@@ -24,6 +24,7 @@
  */
 package com.amihaiemil.charles.rest;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -34,12 +35,15 @@ import java.net.ServerSocket;
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.io.IOUtils;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import com.amihaiemil.charles.aws.AccessKeyId;
@@ -82,8 +86,8 @@ public final class CharlesResourceTestCase {
             new EsEndPoint.Fake("http://localhost:" + port + "/elasticsearch")
         );
         try {
-            Response resp = resource.search("amihaiemil", "testrepo", "test", "page", "0", "3");
-            JsonObject page = Json.createReader(new StringReader(resp.getEntity().toString())).readObject();
+            Response resp = this.search(resource, "amihaiemil", "testrepo", "test", "page", "0", "3", "1");
+            JsonObject page = this.json(resp);
             MatcherAssert.assertThat(
                 page.getString("previousPage"), Matchers.equalTo("-")
             );
@@ -94,7 +98,7 @@ public final class CharlesResourceTestCase {
                 )
             );
             MatcherAssert.assertThat(
-                page.getJsonArray("pages").size(), Matchers.is(9)
+                page.getJsonArray("pages").size(), Matchers.is(4)
             );
             MatcherAssert.assertThat(
                 page.getJsonArray("pages").getString(0),
@@ -103,7 +107,7 @@ public final class CharlesResourceTestCase {
                 )
             );
             MatcherAssert.assertThat(
-                page.getJsonArray("pages").getString(8),
+                page.getJsonArray("pages").getString(3),
                 Matchers.equalTo(
                     "https://example.com?kw=test&ctg=page&index=24&size=3"
                 )
@@ -113,6 +117,169 @@ public final class CharlesResourceTestCase {
         }
     }
     
+    /**
+     * CharlesResource only links the first, the last and the pages
+     * around the current one.
+     * @throws IOException In case something goes wrong.
+     */
+    @Test
+    public void pagesAreWindowed() throws IOException {
+        int port = this.port();
+        MkContainer awsEs = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple(this.readResource("esSearchResponse.json"))
+        ).start(port);
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getRequestURL()).thenReturn(
+            new StringBuffer("http://example.com")
+        );
+        CharlesResource resource = new CharlesResource(
+            request,
+            new AccessKeyId.Fake("aws_key_id"),
+            new SecretKey.Fake("secret_key"),
+            new Region.Fake("us-west"),
+            new EsEndPoint.Fake("http://localhost:" + port + "/elasticsearch")
+        );
+        try {
+            JsonObject page = this.json(
+                this.search(resource, "amihaiemil", "testrepo", "test", "page", "12", "3", "1")
+            );
+            MatcherAssert.assertThat(page.getInt("pageNr"), Matchers.is(5));
+            MatcherAssert.assertThat(
+                page.getJsonArray("pages").size(), Matchers.is(7)
+            );
+            MatcherAssert.assertThat(
+                page.getJsonArray("pages").getString(1),
+                Matchers.equalTo(
+                    "https://example.com?kw=test&ctg=page&index=6&size=3"
+                )
+            );
+            MatcherAssert.assertThat(
+                page.getJsonArray("pages").getString(5),
+                Matchers.equalTo(
+                    "https://example.com?kw=test&ctg=page&index=18&size=3"
+                )
+            );
+        } finally {
+            awsEs.stop();
+        }
+    }
+
+    /**
+     * CharlesResource can return the compact (v2) format.
+     * @throws IOException In case something goes wrong.
+     */
+    @Test
+    public void returnsCompactFormat() throws IOException {
+        int port = this.port();
+        MkContainer awsEs = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple(this.readResource("esSearchResponse.json"))
+        ).start(port);
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getRequestURL()).thenReturn(
+            new StringBuffer("http://example.com")
+        );
+        CharlesResource resource = new CharlesResource(
+            request,
+            new AccessKeyId.Fake("aws_key_id"),
+            new SecretKey.Fake("secret_key"),
+            new Region.Fake("us-west"),
+            new EsEndPoint.Fake("http://localhost:" + port + "/elasticsearch")
+        );
+        try {
+            JsonObject page = this.json(
+                this.search(resource, "amihaiemil", "testrepo", "test", "page", "0", "3", "2")
+            );
+            MatcherAssert.assertThat(page.getInt("v"), Matchers.is(2));
+            MatcherAssert.assertThat(page.getInt("hits"), Matchers.is(27));
+            MatcherAssert.assertThat(page.getInt("page"), Matchers.is(1));
+            MatcherAssert.assertThat(page.isNull("prev"), Matchers.is(true));
+            MatcherAssert.assertThat(page.getInt("next"), Matchers.is(2));
+            MatcherAssert.assertThat(
+                page.getJsonArray("pages").toString(),
+                Matchers.equalTo("[1,2,3,9]")
+            );
+            MatcherAssert.assertThat(
+                page.getJsonArray("results").size(), Matchers.greaterThan(0)
+            );
+        } finally {
+            awsEs.stop();
+        }
+    }
+
+    /**
+     * CharlesResource answers 304, without searching, if the client
+     * already has the results.
+     * @throws IOException In case something goes wrong.
+     */
+    @Test
+    public void answersNotModified() throws IOException {
+        int port = this.port();
+        MkContainer awsEs = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple(this.readResource("esSearchResponse.json"))
+        ).start(port);
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getRequestURL()).thenReturn(
+            new StringBuffer("http://example.com")
+        );
+        CharlesResource resource = new CharlesResource(
+            request,
+            new AccessKeyId.Fake("aws_key_id"),
+            new SecretKey.Fake("secret_key"),
+            new Region.Fake("us-west"),
+            new EsEndPoint.Fake("http://localhost:" + port + "/elasticsearch")
+        );
+        try {
+            Response first = this.search(resource, "amihaiemil", "etagrepo", "test", "page", "0", "3", "1");
+            MatcherAssert.assertThat(first.getStatus(), Matchers.is(200));
+            final String etag = first.getHeaderString("ETag");
+            MatcherAssert.assertThat(etag, Matchers.notNullValue());
+            MatcherAssert.assertThat(
+                first.getHeaderString("Cache-Control"), Matchers.equalTo("no-cache")
+            );
+            Mockito.when(request.getHeader("If-None-Match")).thenReturn(etag);
+            Response second = this.search(resource, "amihaiemil", "etagrepo", "test", "page", "0", "3", "1");
+            MatcherAssert.assertThat(second.getStatus(), Matchers.is(304));
+            MatcherAssert.assertThat(
+                second.getHeaderString("ETag"), Matchers.equalTo(etag)
+            );
+            MatcherAssert.assertThat(awsEs.queries(), Matchers.is(1));
+        } finally {
+            awsEs.stop();
+        }
+    }
+
+    /**
+     * Search and wait for the suspended response to be resumed.
+     * @param resource CharlesResource.
+     * @param params User, repo, keywords, category, index, size, version.
+     * @return Response.
+     */
+    private Response search(CharlesResource resource, String... params) {
+        final AsyncResponse async = Mockito.mock(AsyncResponse.class);
+        resource.search(
+            async, params[0], params[1], params[2], params[3],
+            params[4], params[5], params[6]
+        );
+        final ArgumentCaptor<Object> resumed =
+            ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(async, Mockito.timeout(10000)).resume(resumed.capture());
+        return (Response) resumed.getValue();
+    }
+
+    /**
+     * Read the streamed JSON entity of a response.
+     * @param resp Response.
+     * @return JsonObject.
+     * @throws IOException If it goes wrong.
+     */
+    private JsonObject json(Response resp) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) resp.getEntity()).write(out);
+        return Json.createReader(
+            new StringReader(new String(out.toByteArray(), "UTF-8"))
+        ).readObject();
+    }
+
     /**
      * Read resource for test.
      * @param resourceName
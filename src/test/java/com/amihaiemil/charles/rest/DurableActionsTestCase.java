@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.json.Json;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.amihaiemil.charles.rest.journal.Journal;
+import com.amihaiemil.charles.rest.model.Notification;
+
+/**
+ * Unit tests for {@link DurableActions}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class DurableActionsTestCase {
+
+    /**
+     * Folder of the journals.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * DurableActions journals the notifications and hands them to
+     * the handler.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void handlesNotifications() throws Exception {
+        final Journal journal = new Journal(this.folder.newFolder(), 1024);
+        final NotificationHandler handler = Mockito.mock(NotificationHandler.class);
+        final DurableActions actions = new DurableActions(journal, this.scheduler(), 0, handler);
+        actions.take(
+            Arrays.asList(
+                this.notification("amihaiemil/charles", 1),
+                this.notification("amihaiemil/charles", 2)
+            )
+        );
+        final ArgumentCaptor<Notification> handled =
+            ArgumentCaptor.forClass(Notification.class);
+        Mockito.verify(handler, Mockito.timeout(5000).times(2)).handle(handled.capture());
+        MatcherAssert.assertThat(
+            handled.getAllValues().get(0).repoFullName(),
+            Matchers.is("amihaiemil/charles")
+        );
+        MatcherAssert.assertThat(
+            handled.getAllValues().get(0).comment().getString("body"),
+            Matchers.is("@charlesmike hello")
+        );
+        final long end = System.currentTimeMillis() + 5000;
+        while(journal.pending() > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        MatcherAssert.assertThat(journal.pending(), Matchers.is(0));
+        actions.close();
+    }
+
+    /**
+     * DurableActions recovers the notifications which were not handled
+     * before it was closed, without their comments, so the Action checks
+     * whether it replied already.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void recoversUnhandledNotifications() throws Exception {
+        final File dir = this.folder.newFolder();
+        final CountDownLatch stuck = new CountDownLatch(1);
+        final DurableActions first = new DurableActions(
+            new Journal(dir, 1024), this.scheduler(), 0,
+            new NotificationHandler() {
+                @Override
+                public boolean handle(final Notification notification) throws IOException {
+                    try {
+                        stuck.await(5, TimeUnit.SECONDS);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return true;
+                }
+
+                @Override
+                public void merged(final Notification notification) {
+                    //nothing is merged in this test
+                }
+            }
+        );
+        first.take(Arrays.asList(this.notification("amihaiemil/charles", 7)));
+        first.close();
+        stuck.countDown();
+        final NotificationHandler handler = Mockito.mock(NotificationHandler.class);
+        final DurableActions second = new DurableActions(
+            new Journal(dir, 1024), this.scheduler(), 0, handler
+        );
+        second.recover();
+        second.recover();
+        final ArgumentCaptor<Notification> handled =
+            ArgumentCaptor.forClass(Notification.class);
+        Mockito.verify(handler, Mockito.timeout(5000)).handle(handled.capture());
+        MatcherAssert.assertThat(handled.getValue().issueNumber(), Matchers.is(7));
+        MatcherAssert.assertThat(handled.getValue().comment(), Matchers.nullValue());
+        second.close();
+    }
+
+    /**
+     * Scheduler with small lanes.
+     * @return ActionScheduler.
+     */
+    private ActionScheduler scheduler() {
+        return new ActionScheduler(new Lane("fast", 2, 10), new Lane("heavy", 2, 10));
+    }
+
+    /**
+     * Mock a notification.
+     * @param repo Repo full name.
+     * @param issue Issue number.
+     * @return Notification.
+     */
+    private Notification notification(final String repo, final int issue) {
+        final Notification notification = Mockito.mock(Notification.class);
+        Mockito.when(notification.comment()).thenReturn(
+            Json.createObjectBuilder().add("body", "@charlesmike hello").build()
+        );
+        Mockito.when(notification.repoFullName()).thenReturn(repo);
+        Mockito.when(notification.issueNumber()).thenReturn(issue);
+        return notification;
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.amihaiemil.charles.github.RateLimit;
+import com.amihaiemil.charles.rest.model.Notification;
+
+/**
+ * Unit tests for {@link IssueCoalescer}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class IssueCoalescerTestCase {
+
+    /**
+     * IssueCoalescer handles the notifications about the same issue,
+     * which come within the window, only once.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void coalescesWithinWindow() throws Exception {
+        final ActionScheduler workers = this.scheduler(2, 10);
+        final NotificationHandler handler = Mockito.mock(NotificationHandler.class);
+        final IssueCoalescer coalescer = new IssueCoalescer(300, workers, handler);
+        final CountDownLatch done = new CountDownLatch(4);
+        final Runnable count = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+        coalescer.submit(this.notification("amihaiemil/charles", 1), count);
+        coalescer.submit(this.notification("Amihaiemil/Charles", 1), count);
+        coalescer.submit(this.notification("amihaiemil/charles", 1), count);
+        coalescer.submit(this.notification("amihaiemil/charles", 2), count);
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        Mockito.verify(handler, Mockito.times(2)).handle(Mockito.any(Notification.class));
+        MatcherAssert.assertThat(coalescer.size(), Matchers.is(0));
+        coalescer.close();
+        workers.close();
+    }
+
+    /**
+     * IssueCoalescer gathers the notifications which come while the issue
+     * is handled and handles it once more afterwards.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void handlesAgainAfterRunning() throws Exception {
+        final ActionScheduler workers = this.scheduler(2, 10);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger handled = new AtomicInteger();
+        final IssueCoalescer coalescer = new IssueCoalescer(
+            0, workers,
+            new NotificationHandler() {
+                @Override
+                public boolean handle(final Notification notification) throws IOException {
+                    handled.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return true;
+                }
+
+                @Override
+                public void merged(final Notification notification) {
+                    //nothing is merged in this test
+                }
+            }
+        );
+        final CountDownLatch done = new CountDownLatch(3);
+        final Runnable count = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+        coalescer.submit(this.notification("amihaiemil/charles", 1), count);
+        MatcherAssert.assertThat(started.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        coalescer.submit(this.notification("amihaiemil/charles", 1), count);
+        coalescer.submit(this.notification("amihaiemil/charles", 1), count);
+        MatcherAssert.assertThat(handled.get(), Matchers.is(1));
+        release.countDown();
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(handled.get(), Matchers.is(2));
+        coalescer.close();
+        workers.close();
+    }
+
+    /**
+     * IssueCoalescer tries an issue again later if its lane is full.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void retriesWhenLaneIsFull() throws Exception {
+        final Lane heavy = new Lane("heavy", 1, 1);
+        final ActionScheduler workers = new ActionScheduler(new Lane("fast", 1, 1), heavy);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger handled = new AtomicInteger();
+        final IssueCoalescer coalescer = new IssueCoalescer(
+            0, workers,
+            new NotificationHandler() {
+                @Override
+                public boolean handle(final Notification notification) throws IOException {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    handled.incrementAndGet();
+                    return true;
+                }
+
+                @Override
+                public void merged(final Notification notification) {
+                    //nothing is merged in this test
+                }
+            }
+        );
+        final CountDownLatch done = new CountDownLatch(3);
+        final Runnable count = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+        coalescer.submit(this.notification("amihaiemil/charles", 1), count);
+        coalescer.submit(this.notification("amihaiemil/charles-rest", 2), count);
+        coalescer.submit(this.notification("amihaiemil/versioneye-badge", 3), count);
+        final long end = System.currentTimeMillis() + 5000;
+        while(heavy.rejected() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        MatcherAssert.assertThat(heavy.rejected(), Matchers.greaterThan(0L));
+        release.countDown();
+        MatcherAssert.assertThat(done.await(10, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(handled.get(), Matchers.is(3));
+        coalescer.close();
+        workers.close();
+    }
+
+    /**
+     * IssueCoalescer parks an issue while the Github rate limit is
+     * exhausted and handles it after the reset.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void parksWhileRateLimitIsLow() throws Exception {
+        final RateLimit limit = new RateLimit(10);
+        limit.update(5, System.currentTimeMillis() / 1000 + 2);
+        final ActionScheduler workers = new ActionScheduler(
+            new Lane("fast", 1, 1), new Lane("heavy", 1, 1), new KeyedExecutor(4), limit
+        );
+        final NotificationHandler handler = Mockito.mock(NotificationHandler.class);
+        final IssueCoalescer coalescer = new IssueCoalescer(0, workers, handler);
+        final CountDownLatch done = new CountDownLatch(1);
+        coalescer.submit(
+            this.notification("amihaiemil/charles", 1),
+            new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            }
+        );
+        Thread.sleep(500);
+        Mockito.verify(handler, Mockito.never()).handle(Mockito.any(Notification.class));
+        MatcherAssert.assertThat(coalescer.size(), Matchers.is(1));
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        Mockito.verify(handler).handle(Mockito.any(Notification.class));
+        coalescer.close();
+        workers.close();
+    }
+
+    /**
+     * Scheduler with lanes of the same size.
+     * @param threads Threads of each lane.
+     * @param queue Queue of each lane.
+     * @return ActionScheduler.
+     */
+    private ActionScheduler scheduler(final int threads, final int queue) {
+        return new ActionScheduler(
+            new Lane("fast", threads, queue), new Lane("heavy", threads, queue)
+        );
+    }
+
+    /**
+     * Mock a notification.
+     * @param repo Repo full name.
+     * @param issue Issue number.
+     * @return Notification.
+     */
+    private Notification notification(final String repo, final int issue) {
+        final Notification notification = Mockito.mock(Notification.class);
+        Mockito.when(notification.repoFullName()).thenReturn(repo);
+        Mockito.when(notification.issueNumber()).thenReturn(issue);
+        return notification;
+    }
+}
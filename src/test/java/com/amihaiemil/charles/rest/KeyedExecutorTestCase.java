@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link KeyedExecutor}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class KeyedExecutorTestCase {
+
+    /**
+     * KeyedExecutor never runs two tasks with the same key at the same
+     * time, but runs all of them.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void serializesSameKey() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(8);
+        final KeyedExecutor keyed = new KeyedExecutor(4);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(200);
+        for(int idx = 0; idx < 200; ++idx) {
+            keyed.execute(
+                "amihaiemil/charles", null, threads,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        if(running.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        Thread.yield();
+                        running.decrementAndGet();
+                        done.countDown();
+                        return true;
+                    }
+                },
+                null, null
+            );
+        }
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(overlaps.get(), Matchers.is(0));
+        threads.shutdown();
+        MatcherAssert.assertThat(threads.awaitTermination(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(keyed.size(), Matchers.is(0));
+    }
+
+    /**
+     * KeyedExecutor runs the tasks with different keys at the same time,
+     * even if the keys share a stripe.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void runsDifferentKeysInParallel() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(3);
+        final KeyedExecutor keyed = new KeyedExecutor(1);
+        final CountDownLatch started = new CountDownLatch(3);
+        final CountDownLatch release = new CountDownLatch(1);
+        for(final String repo : new String[] {"a/a", "b/b", "c/c"}) {
+            keyed.execute(
+                repo, null, threads, KeyedExecutorTestCase.blocked(started, release, true),
+                null, null
+            );
+        }
+        MatcherAssert.assertThat(started.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(keyed.size(), Matchers.is(3));
+        release.countDown();
+        threads.shutdown();
+    }
+
+    /**
+     * KeyedExecutor merges a task into a waiting one with the same merge
+     * key and runs its callback after that one did its work.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void mergesDuplicates() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(2);
+        final KeyedExecutor keyed = new KeyedExecutor(4);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger crawls = new AtomicInteger();
+        final AtomicInteger merged = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(4);
+        final Callable<Boolean> crawl = KeyedExecutorTestCase.counted(crawls, done, true);
+        final Runnable merge = KeyedExecutorTestCase.counted(merged, done);
+        keyed.execute(
+            "a/a", null, threads, KeyedExecutorTestCase.blocked(started, release, true),
+            null, null
+        );
+        keyed.execute("a/a", "indexsite", threads, crawl, merge, null);
+        keyed.execute("a/a", "indexsite", threads, crawl, merge, null);
+        keyed.execute("a/a", "indexsitemap", threads, crawl, merge, null);
+        keyed.execute("a/a", "indexsitemap", threads, crawl, merge, null);
+        MatcherAssert.assertThat(started.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(merged.get(), Matchers.is(0));
+        release.countDown();
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(crawls.get(), Matchers.is(2));
+        MatcherAssert.assertThat(merged.get(), Matchers.is(2));
+        threads.shutdown();
+    }
+
+    /**
+     * KeyedExecutor does not merge a task into a running one, which may
+     * have started before the changes the new task asks for.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void doesNotMergeIntoRunningTask() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(2);
+        final KeyedExecutor keyed = new KeyedExecutor(4);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger crawls = new AtomicInteger();
+        final AtomicInteger merged = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        keyed.execute(
+            "a/a", "indexsite", threads,
+            KeyedExecutorTestCase.blocked(started, release, true), null, null
+        );
+        MatcherAssert.assertThat(started.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        keyed.execute(
+            "a/a", "indexsite", threads,
+            KeyedExecutorTestCase.counted(crawls, done, true),
+            KeyedExecutorTestCase.counted(merged, done), null
+        );
+        release.countDown();
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(crawls.get(), Matchers.is(1));
+        MatcherAssert.assertThat(merged.get(), Matchers.is(0));
+        threads.shutdown();
+    }
+
+    /**
+     * KeyedExecutor runs the merged tasks themselves, one of them with the
+     * others merged into it, if the task they were merged into did not do
+     * its work.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void runsMergedTaskIfDuplicateFails() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(2);
+        final KeyedExecutor keyed = new KeyedExecutor(4);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger refused = new AtomicInteger();
+        final AtomicInteger crawls = new AtomicInteger();
+        final AtomicInteger merged = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(3);
+        keyed.execute(
+            "a/a", null, threads, KeyedExecutorTestCase.blocked(started, release, true),
+            null, null
+        );
+        keyed.execute(
+            "a/a", "indexsite", threads,
+            KeyedExecutorTestCase.counted(refused, done, false),
+            KeyedExecutorTestCase.counted(merged, done), null
+        );
+        keyed.execute(
+            "a/a", "indexsite", threads,
+            KeyedExecutorTestCase.counted(crawls, done, true),
+            KeyedExecutorTestCase.counted(merged, done), null
+        );
+        keyed.execute(
+            "a/a", "indexsite", threads,
+            KeyedExecutorTestCase.counted(crawls, done, true),
+            KeyedExecutorTestCase.counted(merged, done), null
+        );
+        MatcherAssert.assertThat(started.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        release.countDown();
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(refused.get(), Matchers.is(1));
+        MatcherAssert.assertThat(crawls.get(), Matchers.is(1));
+        MatcherAssert.assertThat(merged.get(), Matchers.is(1));
+        threads.shutdown();
+    }
+
+    /**
+     * KeyedExecutor reports a waiting task whose executor rejects it,
+     * together with the tasks merged into it, and goes on with the next.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void reportsRejectedWaitingTask() throws Exception {
+        final ExecutorService threads = Executors.newSingleThreadExecutor();
+        final ExecutorService closed = Executors.newSingleThreadExecutor();
+        closed.shutdown();
+        final KeyedExecutor keyed = new KeyedExecutor(4);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger rejected = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(3);
+        final Runnable reject = KeyedExecutorTestCase.counted(rejected, done);
+        keyed.execute(
+            "a/a", null, threads, KeyedExecutorTestCase.blocked(started, release, true),
+            null, null
+        );
+        keyed.execute("a/a", "indexsite", closed, null, null, reject);
+        keyed.execute("a/a", "indexsite", closed, null, null, reject);
+        keyed.execute(
+            "a/a", null, threads,
+            KeyedExecutorTestCase.counted(new AtomicInteger(), done, true),
+            null, null
+        );
+        release.countDown();
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(rejected.get(), Matchers.is(2));
+        threads.shutdown();
+    }
+
+    /**
+     * KeyedExecutor forgets a task rejected by the executor, so the next
+     * task with the same key can run.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void forgetsRejectedTask() throws Exception {
+        final ExecutorService threads = Executors.newSingleThreadExecutor();
+        final KeyedExecutor keyed = new KeyedExecutor(4);
+        threads.shutdown();
+        boolean rejected = false;
+        try {
+            keyed.execute(
+                "a/a", null, threads,
+                KeyedExecutorTestCase.counted(new AtomicInteger(), new CountDownLatch(1), true),
+                null, null
+            );
+        } catch (final RejectedExecutionException ex) {
+            rejected = true;
+        }
+        MatcherAssert.assertThat(rejected, Matchers.is(true));
+        MatcherAssert.assertThat(keyed.size(), Matchers.is(0));
+        final ExecutorService others = Executors.newSingleThreadExecutor();
+        final CountDownLatch done = new CountDownLatch(1);
+        keyed.execute(
+            "a/a", null, others,
+            KeyedExecutorTestCase.counted(new AtomicInteger(), done, true),
+            null, null
+        );
+        MatcherAssert.assertThat(done.await(5, TimeUnit.SECONDS), Matchers.is(true));
+        others.shutdown();
+    }
+
+    /**
+     * Task which waits to be released.
+     * @param started Counted down when the task starts.
+     * @param release Released by the test.
+     * @param result What the task returns.
+     * @return Callable.
+     */
+    private static Callable<Boolean> blocked(
+        final CountDownLatch started, final CountDownLatch release,
+        final boolean result
+    ) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Task which counts its runs.
+     * @param count Number of runs.
+     * @param done Counted down after each run.
+     * @param result What the task returns.
+     * @return Callable.
+     */
+    private static Callable<Boolean> counted(
+        final AtomicInteger count, final CountDownLatch done,
+        final boolean result
+    ) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                count.incrementAndGet();
+                done.countDown();
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Callback which counts its runs.
+     * @param count Number of runs.
+     * @param done Counted down after each run.
+     * @return Runnable.
+     */
+    private static Runnable counted(
+        final AtomicInteger count, final CountDownLatch done
+    ) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+                done.countDown();
+            }
+        };
+    }
+}
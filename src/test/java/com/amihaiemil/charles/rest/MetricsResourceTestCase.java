@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import java.net.HttpURLConnection;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.amihaiemil.charles.aws.metrics.EsMetrics;
+import com.amihaiemil.charles.aws.metrics.SlowQueries;
+
+/**
+ * Unit tests for {@link MetricsResource}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class MetricsResourceTestCase {
+
+    /**
+     * MetricsResource refuses the calls without the agreed upon token.
+     */
+    @Test
+    public void forbidsCallsWithoutToken() {
+        System.setProperty("github.auth.token", "metrics-token");
+        try {
+            MatcherAssert.assertThat(
+                this.resource(null).metrics().getStatus(),
+                Matchers.is(HttpURLConnection.HTTP_FORBIDDEN)
+            );
+            MatcherAssert.assertThat(
+                this.resource("wrong").slowQueries(10).getStatus(),
+                Matchers.is(HttpURLConnection.HTTP_FORBIDDEN)
+            );
+        } finally {
+            System.clearProperty("github.auth.token");
+        }
+    }
+
+    /**
+     * MetricsResource serves the calls with the agreed upon token.
+     */
+    @Test
+    public void servesCallsWithToken() {
+        System.setProperty("github.auth.token", "metrics-token");
+        try {
+            final Response metrics = this.resource("metrics-token").metrics();
+            MatcherAssert.assertThat(
+                metrics.getStatus(), Matchers.is(HttpURLConnection.HTTP_OK)
+            );
+            MatcherAssert.assertThat(
+                this.resource("metrics-token").slowQueries(10).getEntity(),
+                Matchers.<Object>is("[]")
+            );
+        } finally {
+            System.clearProperty("github.auth.token");
+        }
+    }
+
+    /**
+     * MetricsResource refuses every call if no token is configured.
+     */
+    @Test
+    public void forbidsCallsIfTokenIsMissing() {
+        MatcherAssert.assertThat(
+            this.resource("").metrics().getStatus(),
+            Matchers.is(HttpURLConnection.HTTP_FORBIDDEN)
+        );
+    }
+
+    /**
+     * MetricsResource for a request with the given Authorization header.
+     * @param token Authorization header, may be null.
+     * @return MetricsResource.
+     */
+    private MetricsResource resource(final String token) {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeader(HttpHeaders.AUTHORIZATION)).thenReturn(token);
+        return new MetricsResource(
+            new EsMetrics(), new SlowQueries(100, 10),
+            new ActionScheduler(new Lane("fast", 1, 1), new Lane("heavy", 1, 1)),
+            request
+        );
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.amihaiemil.charles.aws.IndexGenerations;
+
+/**
+ * Unit tests for {@link SearchETag}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class SearchETagTestCase {
+
+    /**
+     * SearchETag is the same for the same query and index generation.
+     */
+    @Test
+    public void isStable() {
+        final IndexGenerations generations = new IndexGenerations("e");
+        MatcherAssert.assertThat(
+            new SearchETag(generations, "idx", "query", "1").toString(),
+            Matchers.equalTo(
+                new SearchETag(generations, "idx", "query", "1").toString()
+            )
+        );
+        MatcherAssert.assertThat(
+            new SearchETag(generations, "idx", "query", "1").toString(),
+            Matchers.not(
+                Matchers.equalTo(
+                    new SearchETag(generations, "idx", "query", "2").toString()
+                )
+            )
+        );
+    }
+
+    /**
+     * SearchETag changes when the index changes.
+     */
+    @Test
+    public void changesWithGeneration() {
+        final IndexGenerations generations = new IndexGenerations("e");
+        final String before = new SearchETag(generations, "idx", "q").toString();
+        generations.bump("idx");
+        final SearchETag after = new SearchETag(generations, "idx", "q");
+        MatcherAssert.assertThat(after.matches(before), Matchers.is(false));
+        MatcherAssert.assertThat(
+            after.toString(), Matchers.startsWith("\"e-1-")
+        );
+    }
+
+    /**
+     * SearchETag matches lists of tags, weak tags and the wildcard.
+     */
+    @Test
+    public void matchesIfNoneMatch() {
+        final SearchETag etag = new SearchETag(
+            new IndexGenerations("e"), "idx", "q"
+        );
+        MatcherAssert.assertThat(
+            etag.matches("\"other\", " + etag), Matchers.is(true)
+        );
+        MatcherAssert.assertThat(etag.matches("W/" + etag), Matchers.is(true));
+        MatcherAssert.assertThat(etag.matches("*"), Matchers.is(true));
+        MatcherAssert.assertThat(etag.matches("\"other\""), Matchers.is(false));
+        MatcherAssert.assertThat(etag.matches(null), Matchers.is(false));
+    }
+}
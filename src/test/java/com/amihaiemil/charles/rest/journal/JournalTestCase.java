@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest.journal;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link Journal}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class JournalTestCase {
+
+    /**
+     * Folder of the journals.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Journal recovers the records which are not done.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void recoversPendingRecords() throws Exception {
+        final File dir = this.folder.newFolder();
+        final Journal journal = new Journal(dir, 1024);
+        final Record first = journal.append(this.bytes("first"));
+        journal.append(this.bytes("second"));
+        journal.append(this.bytes("third"));
+        journal.done(first.offset());
+        MatcherAssert.assertThat(journal.checkpoint(), Matchers.is(first.next()));
+        journal.close();
+        final Journal reopened = new Journal(dir, 1024);
+        final List<Record> recovered = reopened.recovered();
+        MatcherAssert.assertThat(recovered.size(), Matchers.is(2));
+        MatcherAssert.assertThat(this.text(recovered.get(0)), Matchers.is("second"));
+        MatcherAssert.assertThat(this.text(recovered.get(1)), Matchers.is("third"));
+        MatcherAssert.assertThat(reopened.pending(), Matchers.is(2));
+        final Record fourth = reopened.append(this.bytes("fourth"));
+        MatcherAssert.assertThat(fourth.offset(), Matchers.is(recovered.get(1).next()));
+        reopened.close();
+    }
+
+    /**
+     * The checkpoint stops at the oldest pending record.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void checkpointsOldestPending() throws Exception {
+        final Journal journal = new Journal(this.folder.newFolder(), 1024);
+        final Record first = journal.append(this.bytes("first"));
+        final Record second = journal.append(this.bytes("second"));
+        journal.done(second.offset());
+        MatcherAssert.assertThat(journal.checkpoint(), Matchers.is(0L));
+        journal.done(first.offset());
+        MatcherAssert.assertThat(journal.checkpoint(), Matchers.is(second.next()));
+        MatcherAssert.assertThat(journal.pending(), Matchers.is(0));
+        journal.close();
+    }
+
+    /**
+     * Journal ignores a torn record at the end.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void ignoresTornRecord() throws Exception {
+        final File dir = this.folder.newFolder();
+        final Journal journal = new Journal(dir, 1024);
+        journal.append(this.bytes("whole"));
+        final Record torn = journal.append(this.bytes("torn"));
+        journal.close();
+        try (final RandomAccessFile file = new RandomAccessFile(
+            new File(dir, String.format("%019d.journal", 0)), "rw"
+        )) {
+            file.seek(torn.next() - 1);
+            file.write('X');
+        }
+        final Journal reopened = new Journal(dir, 1024);
+        MatcherAssert.assertThat(reopened.recovered().size(), Matchers.is(1));
+        MatcherAssert.assertThat(
+            reopened.append(this.bytes("new")).offset(), Matchers.is(torn.offset())
+        );
+        reopened.close();
+    }
+
+    /**
+     * Journal rolls to a new segment when the current one is full and
+     * deletes the segments before the checkpoint.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void rollsAndDeletesSegments() throws Exception {
+        final File dir = this.folder.newFolder();
+        final Journal journal = new Journal(dir, 64);
+        final List<Record> records = new ArrayList<>();
+        for(int idx = 0; idx < 10; ++idx) {
+            records.add(journal.append(this.bytes("record" + idx)));
+        }
+        MatcherAssert.assertThat(dir.list().length, Matchers.greaterThan(3));
+        for(int idx = 0; idx < 9; ++idx) {
+            journal.done(records.get(idx).offset());
+        }
+        MatcherAssert.assertThat(dir.list().length, Matchers.is(2));
+        journal.close();
+        final Journal reopened = new Journal(dir, 64);
+        MatcherAssert.assertThat(reopened.recovered().size(), Matchers.is(1));
+        MatcherAssert.assertThat(
+            this.text(reopened.recovered().get(0)), Matchers.is("record9")
+        );
+        reopened.close();
+    }
+
+    /**
+     * Concurrent writers all get their records synced.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void syncsConcurrentWriters() throws Exception {
+        final File dir = this.folder.newFolder();
+        final Journal journal = new Journal(dir, 64 * 1024);
+        final ExecutorService writers = Executors.newFixedThreadPool(8);
+        final List<Future<Record>> futures = new ArrayList<>();
+        for(int idx = 0; idx < 200; ++idx) {
+            final String text = "record" + idx;
+            futures.add(
+                writers.submit(
+                    new Callable<Record>() {
+                        @Override
+                        public Record call() throws Exception {
+                            return journal.append(JournalTestCase.this.bytes(text));
+                        }
+                    }
+                )
+            );
+        }
+        for(final Future<Record> future : futures) {
+            future.get();
+        }
+        writers.shutdown();
+        journal.close();
+        MatcherAssert.assertThat(
+            new Journal(dir, 64 * 1024).recovered().size(), Matchers.is(200)
+        );
+    }
+
+    /**
+     * Journal refuses empty payloads.
+     * @throws Exception If something goes wrong.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesEmptyPayload() throws Exception {
+        new Journal(this.folder.newFolder(), 64).append(new byte[0]);
+    }
+
+    /**
+     * UTF-8 bytes.
+     * @param text Text.
+     * @return Bytes.
+     */
+    private byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Payload of a record as text.
+     * @param record Record.
+     * @return String.
+     */
+    private String text(final Record record) {
+        return new String(record.payload(), StandardCharsets.UTF_8);
+    }
+}
@@ -26,6 +26,7 @@
 package com.amihaiemil.charles.rest.model;
 
 import javax.json.Json;
+import javax.json.JsonObject;
 
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
@@ -92,4 +93,68 @@ public final class IssueCommentNotificationTestCase {
         MatcherAssert.assertThat(notification.issueNumber(), Matchers.is(899));
         MatcherAssert.assertThat(notification.repoFullName(), Matchers.equalTo("jeff/test"));
     }
+
+    /**
+     * A IssueCommentNotification has the comment only if it was just created.
+     */
+    @Test
+    public void hasCreatedComment() {
+        MatcherAssert.assertThat(
+            new IssueCommentNotification(this.payload("created", "amihaiemil", "@charlesmike hello"))
+                .comment().getString("body"),
+            Matchers.equalTo("@charlesmike hello")
+        );
+        MatcherAssert.assertThat(
+            new IssueCommentNotification(this.payload("edited", "amihaiemil", "@charlesmike hello"))
+                .comment(),
+            Matchers.nullValue()
+        );
+    }
+
+    /**
+     * A IssueCommentNotification is addressed to the agent only if the
+     * comment mentions it and is not the agent's own.
+     */
+    @Test
+    public void checksAddressee() {
+        MatcherAssert.assertThat(
+            new IssueCommentNotification(this.payload("created", "amihaiemil", "@charlesmike hello"))
+                .addressedTo("charlesmike"),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            new IssueCommentNotification(this.payload("created", "amihaiemil", "nice work"))
+                .addressedTo("charlesmike"),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            new IssueCommentNotification(this.payload("created", "charlesmike", "> @charlesmike hello"))
+                .addressedTo("charlesmike"),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            new IssueCommentNotification(this.payload("deleted", "amihaiemil", "@charlesmike hello"))
+                .addressedTo("charlesmike"),
+            Matchers.is(false)
+        );
+    }
+
+    /**
+     * Webhook payload.
+     * @param action Action: created, edited or deleted.
+     * @param author Author of the comment.
+     * @param body Body of the comment.
+     * @return JsonObject.
+     */
+    private JsonObject payload(final String action, final String author, final String body) {
+        return Json.createObjectBuilder()
+            .add("action", action)
+            .add(
+                "comment",
+                Json.createObjectBuilder()
+                    .add("body", body)
+                    .add("user", Json.createObjectBuilder().add("login", author))
+            )
+            .build();
+    }
 }
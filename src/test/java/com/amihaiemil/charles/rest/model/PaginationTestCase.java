@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice,
+ *  this list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of charles-rest nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.rest.model;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Pagination}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class PaginationTestCase {
+
+    /**
+     * Pagination shows the first, the last and the pages around the
+     * current one, no matter how many hits there are.
+     */
+    @Test
+    public void showsWindowOfPages() {
+        final Pagination pagination = new Pagination(50000, 100, 1);
+        MatcherAssert.assertThat(pagination.current(), Matchers.is(101));
+        MatcherAssert.assertThat(pagination.last(), Matchers.is(50000));
+        MatcherAssert.assertThat(
+            pagination.pages(),
+            Matchers.contains(1, 99, 100, 101, 102, 103, 50000)
+        );
+        MatcherAssert.assertThat(pagination.start(99), Matchers.is(98));
+    }
+
+    /**
+     * Pagination handles the first and the last pages.
+     */
+    @Test
+    public void handlesEdges() {
+        MatcherAssert.assertThat(
+            new Pagination(27, 0, 3).pages(), Matchers.contains(1, 2, 3, 9)
+        );
+        MatcherAssert.assertThat(
+            new Pagination(27, 24, 3).pages(), Matchers.contains(1, 7, 8, 9)
+        );
+        MatcherAssert.assertThat(
+            new Pagination(2, 0, 10).pages(), Matchers.contains(1)
+        );
+        MatcherAssert.assertThat(
+            new Pagination(0, 0, 10).pages(), Matchers.empty()
+        );
+    }
+
+    /**
+     * Pagination knows if there are previous and next pages.
+     */
+    @Test
+    public void knowsPreviousAndNext() {
+        final Pagination first = new Pagination(27, 0, 10);
+        MatcherAssert.assertThat(first.hasPrevious(), Matchers.is(false));
+        MatcherAssert.assertThat(first.hasNext(), Matchers.is(true));
+        final Pagination last = new Pagination(27, 20, 10);
+        MatcherAssert.assertThat(last.hasPrevious(), Matchers.is(true));
+        MatcherAssert.assertThat(last.hasNext(), Matchers.is(false));
+    }
+}